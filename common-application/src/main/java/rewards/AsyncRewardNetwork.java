@@ -0,0 +1,25 @@
+package rewards;
+
+import common.concurrent.CompletionFuture;
+
+/**
+ * Asynchronous version of the application-boundary for the "rewards" application, for callers rewarding many dinings
+ * at once. Rewards are made on a bounded pool of threads, and the caller is given a future it can compose, such as with
+ * timeouts, fallbacks or CompletionFuture.allOf, without blocking a thread of its own for each dining.
+ *
+ * @see RewardNetwork
+ */
+public interface AsyncRewardNetwork {
+
+    /**
+     * Reward an account for dining, asynchronously.
+     * <p/>
+     * For a dining to be eligible for reward: - It must have been paid for by a registered credit card of a valid
+     * member account in the network. - It must have taken place at a restaurant participating in the network.
+     *
+     * @param dining a charge made to a credit card for dining at a restaurant
+     * @return future for confirmation of the reward, failed with the exception if the dining is not rewarded, or with
+     *         a RejectedExecutionException if there are too many dinings waiting to be rewarded already
+     */
+    CompletionFuture<RewardConfirmation> rewardAccountFor(Dining dining);
+}
@@ -1,5 +1,7 @@
 package rewards;
 
+import java.util.List;
+
 /**
  * Rewards a member account for dining at a restaurant.
  * 
@@ -26,6 +28,19 @@ public interface RewardNetwork {
 	 */
 	public RewardConfirmation rewardAccountFor(Dining dining);
 
+    /**
+     * Reward accounts for a batch of dinings in one pass.
+     *
+     * Accounts and restaurants for the whole batch are looked up together, and all rewards are recorded in a single
+     * transaction, so if any dining is not eligible for reward then none of the batch is rewarded. With accounts
+     * spread over shards, the accounts of a batch must all be on one shard.
+     *
+     * @param dinings charges made to credit cards for dining at restaurants
+     * @return confirmations of the rewards, in the same order as the dinings
+     * @throws org.springframework.dao.InvalidDataAccessApiUsageException if the accounts are on several shards
+     */
+    List<RewardConfirmation> rewardAccountsFor(List<Dining> dinings);
+
 
     /**
      * Find the reward corresponding to supplied dining information
@@ -0,0 +1,56 @@
+package rewards.internal;
+
+import common.concurrent.CompletionFuture;
+import rewards.AsyncRewardNetwork;
+import rewards.Dining;
+import rewards.RewardConfirmation;
+import rewards.RewardNetwork;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Rewards accounts for dining asynchronously, by running a RewardNetwork with an executor.
+ * <p/>
+ * The executor should be bounded, with a limited number of threads and a limited queue, and should reject dinings
+ * when the queue is full rather than running them in the caller's thread, so that callers are never blocked.
+ */
+public class AsyncRewardNetworkImpl implements AsyncRewardNetwork {
+
+    /**
+     * Reward network doing the rewarding
+     */
+    private final RewardNetwork rewardNetwork;
+
+    /**
+     * Executor to reward with
+     */
+    private final Executor executor;
+
+    /**
+     * Constructor taking reward network and executor to run it with
+     *
+     * @param rewardNetwork
+     * @param executor
+     */
+    public AsyncRewardNetworkImpl(RewardNetwork rewardNetwork, Executor executor) {
+        this.rewardNetwork = rewardNetwork;
+        this.executor = executor;
+    }
+
+    /**
+     * Reward an account for dining, with the executor
+     *
+     * @param dining a charge made to a credit card for dining at a restaurant
+     * @return future for confirmation of the reward
+     */
+    @Override
+    public CompletionFuture<RewardConfirmation> rewardAccountFor(final Dining dining) {
+        return CompletionFuture.supply(new Callable<RewardConfirmation>() {
+            @Override
+            public RewardConfirmation call() throws Exception {
+                return rewardNetwork.rewardAccountFor(dining);
+            }
+        }, executor);
+    }
+}
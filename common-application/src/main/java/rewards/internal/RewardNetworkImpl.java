@@ -4,6 +4,8 @@ import common.money.MonetaryAmount;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import rewards.AccountContribution;
 import rewards.Dining;
@@ -11,10 +13,21 @@ import rewards.RewardConfirmation;
 import rewards.RewardNetwork;
 import rewards.internal.account.Account;
 import rewards.internal.account.AccountRepository;
+import rewards.internal.restaurant.BenefitAvailabilityRules;
 import rewards.internal.restaurant.Restaurant;
 import rewards.internal.restaurant.RestaurantRepository;
+import rewards.internal.reward.DiningAlreadyRewardedException;
 import rewards.internal.reward.RewardRepository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Rewards an Account for Dining at a Restaurant.
  * 
@@ -22,6 +35,12 @@ import rewards.internal.reward.RewardRepository;
  * the domain-layer to carry out the process of rewarding benefits to accounts for dining.
  * 
  * Said in other words, this class implements the "reward account for dining" use case.
+ * <p/>
+ * Optionally serializes rewards for the same account within this JVM, by locking the account from before it is loaded
+ * until the transaction completes, so that concurrent rewards for the same account wait for each other rather than
+ * failing their optimistic lock checks. Rewards made by other JVMs are still only caught by the optimistic lock check.
+ * A transaction rewarding several dinings in separate calls takes their locks in dining order rather than stripe
+ * order, so a reward that cannot get its locks in time fails with CannotAcquireLockException instead of deadlocking.
  */
 @Service("rewardNetwork")
 public class RewardNetworkImpl implements RewardNetwork {
@@ -32,6 +51,11 @@ public class RewardNetworkImpl implements RewardNetwork {
 
 	private RewardRepository rewardRepository;
 
+    /**
+     * Locks for serializing rewards for the same account, or null not to
+     */
+    private StripedAccountLocks accountLocks;
+
 	/**
 	 * Creates a new reward network.
 	 * @param accountRepository the repository for loading accounts to reward
@@ -45,6 +69,15 @@ public class RewardNetworkImpl implements RewardNetwork {
 		this.rewardRepository = rewardRepository;
 	}
 
+    /**
+     * Setter for locks to serialize rewards for the same account with; by default they are not serialized
+     *
+     * @param accountLocks
+     */
+    public void setAccountLocks(StripedAccountLocks accountLocks) {
+        this.accountLocks = accountLocks;
+    }
+
     /**
      * Create reward from dining.
      * If the account is not found, throw 
@@ -55,20 +88,52 @@ public class RewardNetworkImpl implements RewardNetwork {
 	@Transactional
     @Override
 	public RewardConfirmation rewardAccountFor(Dining dining) {
-		Account account = accountRepository.findByCreditCard(dining.getCreditCardNumber());
-        if (account == null) {
-            throw new EmptyResultDataAccessException("account not found for creditCardNumber:dining=" + dining, 1);
+        List<ReentrantLock> heldLocks = lockAccountsFor(Collections.singleton(dining.getCreditCardNumber()));
+        try {
+            Account account = accountRepository.findForRewardByCreditCard(dining.getCreditCardNumber());
+            if (account == null) {
+                throw new EmptyResultDataAccessException("account not found for creditCardNumber:dining=" + dining, 1);
+            }
+
+            Restaurant restaurant = restaurantRepository.findByMerchantNumber(dining.getMerchantNumber());
+            return rewardAccountFor(dining, account, restaurant);
+        } finally {
+            unlock(heldLocks);
         }
+	}
 
-		Restaurant restaurant = restaurantRepository.findByMerchantNumber(dining.getMerchantNumber());
-        if (restaurant == null) {
-            throw new EmptyResultDataAccessException("restaurant not found for merchantNumber:dining=" + dining, 1);
+    /**
+     * Create rewards for a batch of dinings, looking up all accounts and restaurants together.
+     * If any account or restaurant is not found, throw and record none of the batch.
+     *
+     * @param dinings charges made to credit cards for dining at restaurants
+     * @return reward confirmations, in dining order
+     */
+    @Transactional
+    @Override
+    public List<RewardConfirmation> rewardAccountsFor(List<Dining> dinings) {
+        Set<String> creditCardNumbers = new HashSet<String>();
+        Set<String> merchantNumbers = new HashSet<String>();
+        for (Dining dining : dinings) {
+            creditCardNumbers.add(dining.getCreditCardNumber());
+            merchantNumbers.add(dining.getMerchantNumber());
         }
 
-        MonetaryAmount amount = restaurant.calculateBenefitFor(account, dining);
-		AccountContribution contribution = account.makeContribution(amount);
-		return rewardRepository.confirmReward(contribution, dining);
-	}
+        List<ReentrantLock> heldLocks = lockAccountsFor(creditCardNumbers);
+        try {
+            Map<String, Account> accounts = accountRepository.findByCreditCards(creditCardNumbers);
+            Map<String, Restaurant> restaurants = restaurantRepository.findByMerchantNumbers(merchantNumbers);
+
+            List<RewardConfirmation> rewardConfirmations = new ArrayList<RewardConfirmation>(dinings.size());
+            for (Dining dining : dinings) {
+                rewardConfirmations.add(rewardAccountFor(dining, accounts.get(dining.getCreditCardNumber()),
+                                                         restaurants.get(dining.getMerchantNumber())));
+            }
+            return rewardConfirmations;
+        } finally {
+            unlock(heldLocks);
+        }
+    }
 
     /**
      * Find the reward corresponding to supplied dining information
@@ -88,4 +153,91 @@ public class RewardNetworkImpl implements RewardNetwork {
 
         return rewardConfirmation;
     }
+
+    /**
+     * Helper locking the accounts for credit cards, if rewards for the same account are serialized. Inside a
+     * transaction, the locks are held until it completes, so that a reward waiting for an account sees the changes
+     * made by the one before it; otherwise they are returned, to be released by the caller. Locks held by another
+     * thread are waited for at most the locks' timeout.
+     *
+     * @param creditCardNumbers credit cards of the accounts to lock
+     * @return locks for the caller to release, empty if there are none or the transaction will release them
+     */
+    private List<ReentrantLock> lockAccountsFor(Collection<String> creditCardNumbers) {
+        if (accountLocks == null) {
+            return Collections.emptyList();
+        }
+
+        List<Integer> accountIds = new ArrayList<Integer>(creditCardNumbers.size());
+        for (String creditCardNumber : creditCardNumbers) {
+            accountIds.add(accountRepository.findAccountIdByCreditCard(creditCardNumber));
+        }
+        final List<ReentrantLock> heldLocks = accountLocks.lock(accountIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return heldLocks;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                accountLocks.unlock(heldLocks);
+            }
+        });
+        return Collections.emptyList();
+    }
+
+    /**
+     * Helper releasing locks returned by lockAccountsFor
+     *
+     * @param heldLocks
+     */
+    private void unlock(List<ReentrantLock> heldLocks) {
+        if (!heldLocks.isEmpty()) {
+            accountLocks.unlock(heldLocks);
+        }
+    }
+
+    /**
+     * Helper rewarding the account for dining at the restaurant, looking up the account's benefit so far this month if
+     * the restaurant caps it.
+     * The cap is checked against the rewards committed when the total is read, so two rewards for the same account and
+     * restaurant made at the same time could each stay within the cap but together exceed it. Unless the account has
+     * no beneficiaries, both update the same beneficiaries, so the second to commit fails its optimistic lock check
+     * rather than exceeding the cap; with account locks, the second waits and reads the first one's reward.
+     * If the account or restaurant is null, throw EmptyResultDataAccessException
+     * If the reward repository reports the dining already rewarded, with the existing confirmation, this contribution
+     * is cancelled, so that the account is left as it was, and the existing confirmation is returned.
+     *
+     * @param dining     a charge made to a credit card for dining at a restaurant
+     * @param account    the account for the dining credit card
+     * @param restaurant the restaurant for the dining merchant number
+     * @return reward confirmation
+     */
+    private RewardConfirmation rewardAccountFor(Dining dining, Account account, Restaurant restaurant) {
+        if (account == null) {
+            throw new EmptyResultDataAccessException("account not found for creditCardNumber:dining=" + dining, 1);
+        }
+
+        if (restaurant == null) {
+            throw new EmptyResultDataAccessException("restaurant not found for merchantNumber:dining=" + dining, 1);
+        }
+
+        MonetaryAmount amount;
+        if (restaurant.hasMonthlyBenefitCap()) {
+            BenefitAvailabilityRules rules = restaurant.getBenefitAvailabilityRules();
+            MonetaryAmount benefitThisMonth = rewardRepository.findRewardTotalFor(
+                    account.getNumber(), restaurant.getNumber(), rules.getMonthStart(dining),
+                    rules.getNextMonthStart(dining));
+            amount = restaurant.calculateBenefitFor(account, dining, benefitThisMonth);
+        } else {
+            amount = restaurant.calculateBenefitFor(account, dining);
+        }
+        AccountContribution contribution = account.makeContribution(amount);
+        try {
+            return rewardRepository.confirmReward(contribution, dining);
+        } catch (DiningAlreadyRewardedException e) {
+            account.cancelContribution(contribution);
+            return e.getExistingConfirmation();
+        }
+    }
 }
\ No newline at end of file
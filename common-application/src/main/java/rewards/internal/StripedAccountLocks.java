@@ -0,0 +1,268 @@
+package rewards.internal;
+
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks for serializing work on accounts within this JVM, so that rewards for the same account are made one after
+ * another while rewards for different accounts are made in parallel.
+ * <p/>
+ * Rather than a lock per account, a fixed number of locks (stripes) is shared among all accounts by account id, so
+ * two accounts occasionally share a lock and wait for each other. Several accounts are locked in stripe order, so
+ * threads locking overlapping sets of accounts in one call cannot deadlock. Locks taken by separate calls, as when
+ * they are held until a transaction rewarding several dinings completes, are not ordered, so a thread waits at most
+ * lockTimeoutMs for a lock before giving up with CannotAcquireLockException, releasing the locks it took in that call.
+ * <p/>
+ * Keeps statistics of how often and for how long threads waited for a lock, and how often they gave up.
+ */
+@ManagedResource(description = "Account locks")
+public class StripedAccountLocks {
+
+    /**
+     * Default number of locks shared among the accounts
+     */
+    public static final int DEFAULT_STRIPE_COUNT = 256;
+
+    /**
+     * Default time to wait for a lock before giving up
+     */
+    public static final long DEFAULT_LOCK_TIMEOUT_MS = 5000L;
+
+    /**
+     * Locks, one per stripe
+     */
+    private final ReentrantLock[] stripes;
+
+    /**
+     * Number of stripes less one, for masking hashes to a stripe index
+     */
+    private final int mask;
+
+    /**
+     * Time to wait for a lock before giving up
+     */
+    private volatile long lockTimeoutMs = DEFAULT_LOCK_TIMEOUT_MS;
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong acquiredCount  = new AtomicLong();
+    private final AtomicLong contendedCount = new AtomicLong();
+    private final AtomicLong waitNanos      = new AtomicLong();
+    private final AtomicLong maxWaitNanos   = new AtomicLong();
+    private final AtomicLong timeoutCount   = new AtomicLong();
+
+    /**
+     * Constructor with the default number of stripes
+     */
+    public StripedAccountLocks() {
+        this(DEFAULT_STRIPE_COUNT);
+    }
+
+    /**
+     * Constructor taking number of stripes
+     *
+     * @param stripeCount number of locks shared among the accounts, rounded up to a power of 2
+     */
+    public StripedAccountLocks(int stripeCount) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("stripeCount must be at least 1:stripeCount=" + stripeCount);
+        }
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Lock the accounts, waiting up to lockTimeoutMs for each lock held by another thread
+     *
+     * @param accountIds ids of the accounts to lock; nulls are ignored
+     * @return locks held, to be passed to unlock by the same thread
+     * @throws CannotAcquireLockException if a lock was not acquired in time, or the thread was interrupted waiting
+     */
+    public List<ReentrantLock> lock(Collection<Integer> accountIds) {
+        SortedSet<Integer> stripeIndexes = new TreeSet<Integer>();
+        for (Integer accountId : accountIds) {
+            if (accountId != null) {
+                stripeIndexes.add(stripeIndex(accountId));
+            }
+        }
+
+        List<ReentrantLock> held = new ArrayList<ReentrantLock>(stripeIndexes.size());
+        for (Integer stripeIndex : stripeIndexes) {
+            ReentrantLock lock = stripes[stripeIndex];
+            if (!lock.tryLock()) {
+                final long start = System.nanoTime();
+                boolean acquired = false;
+                try {
+                    acquired = lock.tryLock(lockTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                recordWait(System.nanoTime() - start);
+                if (!acquired) {
+                    timeoutCount.incrementAndGet();
+                    unlock(held);
+                    throw new CannotAcquireLockException("account lock not acquired:stripe=" + stripeIndex +
+                                                         ", lockTimeoutMs=" + lockTimeoutMs);
+                }
+            }
+            acquiredCount.incrementAndGet();
+            held.add(lock);
+        }
+        return held;
+    }
+
+    /**
+     * Unlock locks returned by lock
+     *
+     * @param held
+     */
+    public void unlock(List<ReentrantLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    /**
+     * Setter for time to wait for a lock before giving up
+     *
+     * @param lockTimeoutMs
+     */
+    public void setLockTimeoutMs(long lockTimeoutMs) {
+        this.lockTimeoutMs = lockTimeoutMs;
+    }
+
+    /**
+     * @return time to wait for a lock before giving up, in milliseconds
+     */
+    @ManagedAttribute
+    public long getLockTimeoutMs() {
+        return lockTimeoutMs;
+    }
+
+    /**
+     * @return number of locks shared among the accounts
+     */
+    @ManagedAttribute
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * @return number of locks currently held
+     */
+    @ManagedAttribute
+    public int getLockedCount() {
+        int locked = 0;
+        for (ReentrantLock stripe : stripes) {
+            if (stripe.isLocked()) {
+                locked++;
+            }
+        }
+        return locked;
+    }
+
+    /**
+     * @return number of locks acquired
+     */
+    @ManagedAttribute
+    public long getAcquiredCount() {
+        return acquiredCount.get();
+    }
+
+    /**
+     * @return number of locks acquired after waiting for another thread
+     */
+    @ManagedAttribute
+    public long getContendedCount() {
+        return contendedCount.get();
+    }
+
+    /**
+     * @return total time spent waiting for locks, in milliseconds
+     */
+    @ManagedAttribute
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    /**
+     * @return longest time spent waiting for a lock, in milliseconds
+     */
+    @ManagedAttribute
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /**
+     * @return mean time spent waiting for a contended lock, in microseconds
+     */
+    @ManagedAttribute
+    public long getMeanContendedWaitMicros() {
+        final long contended = contendedCount.get();
+        return (contended == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(waitNanos.get() / contended);
+    }
+
+    /**
+     * @return number of times a thread gave up waiting for a lock
+     */
+    @ManagedAttribute
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * Reset the statistics
+     */
+    @ManagedOperation
+    public void resetStatistics() {
+        acquiredCount.set(0);
+        contendedCount.set(0);
+        waitNanos.set(0);
+        maxWaitNanos.set(0);
+        timeoutCount.set(0);
+    }
+
+    /**
+     * Helper recording a wait for a lock
+     *
+     * @param nanos time waited
+     */
+    private void recordWait(long nanos) {
+        contendedCount.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        long max = maxWaitNanos.get();
+        while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    /**
+     * Helper finding the stripe for an account, spreading sequential ids over the stripes
+     *
+     * @param accountId
+     * @return stripe index
+     */
+    private int stripeIndex(int accountId) {
+        final int h = accountId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
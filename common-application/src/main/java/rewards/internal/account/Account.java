@@ -331,6 +331,23 @@ public class Account {
         return new AccountContribution(getNumber(), amount, distributions);
     }
 
+    /**
+     * Take back a contribution made to this account by {@link #makeContribution}, debiting each beneficiary the amount
+     * distributed to it, such as when the contribution turns out not to be needed before it is saved.
+     *
+     * @param contribution the contribution made
+     */
+    public void cancelContribution(AccountContribution contribution) {
+        for (Distribution distribution : contribution.getDistributions()) {
+            Beneficiary beneficiary = beneficiaries.get(distribution.getBeneficiary());
+            if (beneficiary == null) {
+                throw new IllegalArgumentException(
+                        "Cannot cancel contribution: no beneficiary named '" + distribution.getBeneficiary() + "'");
+            }
+            beneficiary.debit(distribution.getAmount());
+        }
+    }
+
     /**
      * Distribute the contribution amount among this account's beneficiaries.
      *
@@ -18,7 +18,9 @@
 
 package rewards.internal.account;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Loads account aggregates. Called by the reward network to find and reconstitute Account entities from an external
@@ -98,4 +100,31 @@ public interface AccountRepository {
      */
     Account findByCreditCard(String creditCardNumber);
 
+    /**
+     * Find the id of the account for a credit card number, without loading the account; for identifying the account
+     * before it is loaded, such as to serialize work on it.
+     *
+     * @param creditCardNumber the credit card number
+     * @return the account id, or null, if not found
+     */
+    Integer findAccountIdByCreditCard(String creditCardNumber);
+
+    /**
+     * Load an account by its credit card number for rewarding: only the account details and beneficiaries are loaded,
+     * not the credit cards. Only changes to the beneficiaries of the account returned are saved.
+     *
+     * @param creditCardNumber the credit card number
+     * @return the account object, or null, if not found
+     */
+    Account findForRewardByCreditCard(String creditCardNumber);
+
+    /**
+     * Load the accounts for several credit card numbers with a single query, for rewarding: as for
+     * findForRewardByCreditCard, the credit cards are not loaded and only changes to the beneficiaries are saved.
+     *
+     * @param creditCardNumbers the credit card numbers
+     * @return map of credit card number to account, with no entry for card numbers that have no account
+     */
+    Map<String, Account> findByCreditCards(Collection<String> creditCardNumbers);
+
 }
\ No newline at end of file
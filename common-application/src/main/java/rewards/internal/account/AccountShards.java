@@ -0,0 +1,216 @@
+package rewards.internal.account;
+
+import common.datasource.ShardContext;
+import common.datasource.ShardRoutingDataSource;
+import org.apache.log4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides which shard holds an account, for the sharded account and reward repositories: an account, with its
+ * beneficiaries, credit cards and rewards, lives on the shard given by a hash of its account number.
+ * <p/>
+ * Accounts are looked up by credit card number when rewarding, so this keeps an in-memory directory from credit card
+ * number to shard, loaded from every shard on first use; cards not in the directory are looked for on every shard, and
+ * added once found.
+ * <p/>
+ * Work that has to look at every shard, such as listing all accounts, is done by {@link #scatter}, in a new read-only
+ * transaction per shard, since a transaction works on a single shard.
+ *
+ * @see ShardRoutingDataSource
+ */
+public class AccountShards {
+
+    /**
+     * Logger
+     */
+    private final Logger logger = Logger.getLogger("rewards");
+
+    /**
+     * Shard databases
+     */
+    private final ShardRoutingDataSource dataSource;
+
+    /**
+     * Template for the transaction on each shard when scattering
+     */
+    private final TransactionTemplate scatterTransaction;
+
+    /**
+     * Directory from credit card number to shard
+     */
+    private final CreditCardIndex creditCardShards = new CreditCardIndex();
+
+    /**
+     * Whether the directory has been loaded
+     */
+    private volatile boolean creditCardShardsLoaded;
+
+    /**
+     * Creates the account shards
+     *
+     * @param dataSource         shard databases
+     * @param transactionManager transaction manager for the dataSource wrapping the shards
+     */
+    public AccountShards(ShardRoutingDataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.dataSource = dataSource;
+        this.scatterTransaction = new TransactionTemplate(transactionManager);
+        scatterTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        scatterTransaction.setReadOnly(true);
+    }
+
+    /**
+     * @return number of shards
+     */
+    public int getShardCount() {
+        return dataSource.getShardCount();
+    }
+
+    /**
+     * Find the shard holding an account
+     *
+     * @param accountNumber
+     * @return index of the shard
+     */
+    public int shardForAccountNumber(String accountNumber) {
+        return (accountNumber.hashCode() & Integer.MAX_VALUE) % getShardCount();
+    }
+
+    /**
+     * Find the shard holding the account for a credit card, from the directory if the card is in it, otherwise by
+     * looking for it on every shard
+     *
+     * @param creditCardNumber
+     * @return index of the shard, or null if no shard has the card
+     */
+    public Integer shardForCreditCard(final String creditCardNumber) {
+        loadCreditCardShards();
+        final int indexed = creditCardShards.get(creditCardNumber);
+        if (indexed != CreditCardIndex.NO_ACCOUNT) {
+            return indexed;
+        }
+
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            final int count = new JdbcTemplate(dataSource.getShard(shard)).queryForObject(
+                    "select count(*) from T_ACCOUNT_CREDIT_CARD where NUMBER = ?", Integer.class, creditCardNumber);
+            if (count > 0) {
+                creditCardShards.put(creditCardNumber, shard);
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record the shard holding the account for credit cards, such as when they are added to an account
+     *
+     * @param creditCardNumbers
+     * @param shard
+     */
+    public void putCreditCards(Iterable<String> creditCardNumbers, int shard) {
+        for (String creditCardNumber : creditCardNumbers) {
+            creditCardShards.put(creditCardNumber, shard);
+        }
+    }
+
+    /**
+     * Drop a credit card from the directory, once its account was not found on the shard, so that it is looked for
+     * again on every shard
+     *
+     * @param creditCardNumber
+     */
+    public void removeCreditCard(String creditCardNumber) {
+        creditCardShards.remove(creditCardNumber);
+    }
+
+    /**
+     * Bind a shard to the current transaction, so that the repositories work on it for the rest of the transaction
+     *
+     * @param shard index of the shard
+     * @throws IllegalStateException if there is no transaction, or it is already bound to another shard
+     */
+    public void bind(int shard) {
+        ShardContext.bindToTransaction(shard);
+    }
+
+    /**
+     * Do some work on every shard, each in its own read-only transaction, suspending any current transaction
+     *
+     * @param callback the work
+     * @return result for each shard, by index
+     */
+    public <T> List<T> scatter(ShardCallback<T> callback) {
+        final List<T> results = new ArrayList<T>(getShardCount());
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            results.add(onShard(shard, callback));
+        }
+        return results;
+    }
+
+    /**
+     * Do some work on one shard, in its own read-only transaction, suspending any current transaction so that it is
+     * left free to bind another shard
+     *
+     * @param shard    index of the shard
+     * @param callback the work
+     * @return result
+     */
+    public <T> T onShard(final int shard, final ShardCallback<T> callback) {
+        return scatterTransaction.execute(new TransactionCallback<T>() {
+            @Override
+            public T doInTransaction(TransactionStatus status) {
+                bind(shard);
+                return callback.doOnShard(shard);
+            }
+        });
+    }
+
+    /**
+     * Helper loading the directory from every shard, if not already loaded
+     */
+    private void loadCreditCardShards() {
+        if (creditCardShardsLoaded) {
+            return;
+        }
+        synchronized (creditCardShards) {
+            if (!creditCardShardsLoaded) {
+                for (int i = 0; i < getShardCount(); i++) {
+                    final int shard = i;
+                    new JdbcTemplate(dataSource.getShard(shard)).query(
+                            "select NUMBER from T_ACCOUNT_CREDIT_CARD", new RowCallbackHandler() {
+                        @Override
+                        public void processRow(ResultSet rs) throws SQLException {
+                            creditCardShards.put(rs.getString(1), shard);
+                        }
+                    });
+                }
+                creditCardShardsLoaded = true;
+                logger.debug("loaded credit card shard directory:size=" + creditCardShards.size());
+            }
+        }
+    }
+
+    /**
+     * Work done on each shard by {@link AccountShards#scatter}
+     */
+    public interface ShardCallback<T> {
+
+        /**
+         * Do the work on a shard, which is bound to the current transaction
+         *
+         * @param shard index of the shard
+         * @return result
+         */
+        T doOnShard(int shard);
+    }
+}
@@ -125,6 +125,15 @@ public class Beneficiary {
         savings = savings.add(amount);
     }
 
+    /**
+     * Debit the amount from this beneficiary's saving balance, taking back an earlier credit.
+     *
+     * @param amount the amount to debit
+     */
+    public void debit(MonetaryAmount amount) {
+        savings = savings.subtract(amount);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
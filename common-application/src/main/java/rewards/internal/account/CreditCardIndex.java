@@ -0,0 +1,333 @@
+package rewards.internal.account;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact in-memory index from credit card number to account entity id.
+ * <p/>
+ * Card numbers are held as primitive longs, and account ids as ints, in an open-addressing hash table with linear
+ * probing, so there is no per-entry object. Each account's card keys are also kept in a small array, so that an
+ * account's cards can be removed without scanning the table. Only card numbers of 1 to 17 digits can be indexed; see
+ * {@link #toKey}.
+ * <p/>
+ * Thread-safe: lookups share a read lock, changes take the write lock.
+ */
+public class CreditCardIndex {
+
+    /**
+     * Value returned for a card number with no account
+     */
+    public static final int NO_ACCOUNT = -1;
+
+    /**
+     * Key marking an empty slot; card numbers are never negative
+     */
+    private static final long EMPTY = -1L;
+
+    /**
+     * Table is grown when more than this fraction full
+     */
+    private static final float LOAD_FACTOR = 0.5f;
+
+    /**
+     * Longest card number that can be indexed, so that its value fits below the length bits of the key
+     */
+    private static final int MAX_DIGITS = 17;
+
+    /**
+     * Position of the card number length in the key, telling apart numbers differing only in leading zeros
+     */
+    private static final int LENGTH_SHIFT = 57;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int size;
+
+    /**
+     * Keys of the cards indexed for each account
+     */
+    private final Map<Integer, long[]> keysByAccount = new HashMap<Integer, long[]>();
+
+    /**
+     * Create empty index
+     */
+    public CreditCardIndex() {
+        allocate(64);
+    }
+
+    /**
+     * Convert a credit card number to its index key: its value, with its length in the top bits
+     *
+     * @param creditCardNumber
+     * @return key, or -1 if the number cannot be indexed (null, empty, not all digits or too long)
+     */
+    public static long toKey(String creditCardNumber) {
+        if (creditCardNumber == null || creditCardNumber.length() == 0 || creditCardNumber.length() > MAX_DIGITS) {
+            return EMPTY;
+        }
+        long key = 0;
+        for (int i = 0; i < creditCardNumber.length(); i++) {
+            final char c = creditCardNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return EMPTY;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key | ((long) creditCardNumber.length() << LENGTH_SHIFT);
+    }
+
+    /**
+     * Get the account id for a card number
+     *
+     * @param creditCardNumber
+     * @return account id, or NO_ACCOUNT if the card is not indexed
+     */
+    public int get(String creditCardNumber) {
+        final long key = toKey(creditCardNumber);
+        if (key == EMPTY) {
+            return NO_ACCOUNT;
+        }
+        lock.readLock().lock();
+        try {
+            final int slot = findSlot(key);
+            return (keys[slot] == EMPTY ? NO_ACCOUNT : values[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Index a card number for an account, replacing any existing entry for the card
+     *
+     * @param creditCardNumber
+     * @param accountId
+     * @return true if indexed, false if the number cannot be indexed
+     */
+    public boolean put(String creditCardNumber, int accountId) {
+        final long key = toKey(creditCardNumber);
+        if (key == EMPTY) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            final int slot = findSlot(key);
+            final boolean added = (keys[slot] == EMPTY);
+            if (!added) {
+                if (values[slot] == accountId) {
+                    return true;
+                }
+                removeAccountKey(values[slot], key);
+            }
+            keys[slot] = key;
+            values[slot] = accountId;
+            addAccountKey(accountId, key);
+            if (added && ++size > keys.length * LOAD_FACTOR) {
+                resize(keys.length * 2);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a card number
+     *
+     * @param creditCardNumber
+     */
+    public void remove(String creditCardNumber) {
+        final long key = toKey(creditCardNumber);
+        if (key == EMPTY) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            final int slot = findSlot(key);
+            if (keys[slot] != EMPTY) {
+                removeAccountKey(values[slot], key);
+                removeSlot(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all card numbers indexed for an account
+     *
+     * @param accountId
+     */
+    public void removeAccount(int accountId) {
+        lock.writeLock().lock();
+        try {
+            final long[] accountKeys = keysByAccount.remove(accountId);
+            if (accountKeys == null) {
+                return;
+            }
+            for (long key : accountKeys) {
+                final int slot = findSlot(key);
+                if (keys[slot] != EMPTY) {
+                    removeSlot(slot);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all card numbers
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            allocate(64);
+            keysByAccount.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of card numbers indexed
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Helper recording a card key against its account
+     *
+     * @param accountId
+     * @param key
+     */
+    private void addAccountKey(int accountId, long key) {
+        final long[] accountKeys = keysByAccount.get(accountId);
+        if (accountKeys == null) {
+            keysByAccount.put(accountId, new long[]{key});
+        } else {
+            final long[] grown = Arrays.copyOf(accountKeys, accountKeys.length + 1);
+            grown[accountKeys.length] = key;
+            keysByAccount.put(accountId, grown);
+        }
+    }
+
+    /**
+     * Helper forgetting a card key recorded against its account
+     *
+     * @param accountId
+     * @param key
+     */
+    private void removeAccountKey(int accountId, long key) {
+        final long[] accountKeys = keysByAccount.get(accountId);
+        if (accountKeys == null) {
+            return;
+        }
+        for (int i = 0; i < accountKeys.length; i++) {
+            if (accountKeys[i] == key) {
+                if (accountKeys.length == 1) {
+                    keysByAccount.remove(accountId);
+                } else {
+                    final long[] shrunk = new long[accountKeys.length - 1];
+                    System.arraycopy(accountKeys, 0, shrunk, 0, i);
+                    System.arraycopy(accountKeys, i + 1, shrunk, i, shrunk.length - i);
+                    keysByAccount.put(accountId, shrunk);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper finding the slot holding key, or the empty slot where it belongs
+     *
+     * @param key
+     * @return slot
+     */
+    private int findSlot(long key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Helper emptying a slot, shifting back following entries so that lookups never stop early
+     *
+     * @param slot
+     */
+    private void removeSlot(int slot) {
+        final int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            final int home = hash(keys[next]) & mask;
+            // move next into the gap unless its home slot lies cyclically in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        --size;
+    }
+
+    /**
+     * Helper growing the table, re-inserting all entries
+     *
+     * @param capacity new capacity, a power of 2
+     */
+    private void resize(int capacity) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                final int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                ++size;
+            }
+        }
+    }
+
+    /**
+     * Helper allocating empty table
+     *
+     * @param capacity a power of 2
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        size = 0;
+    }
+
+    /**
+     * Helper spreading the bits of a card number
+     *
+     * @param key
+     * @return hash
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -4,12 +4,30 @@ import org.apache.log4j.Logger;
 import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.engine.SessionFactoryImplementor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Finds account objects using the Hibernate API.
+ * <p/>
+ * Accounts for rewarding are loaded with a projection of the account details and beneficiaries in a single query,
+ * leaving out the eagerly mapped credit cards, which rewarding does not use. Such an account is not itself persistent,
+ * but its beneficiaries are, so the savings credited to them are saved. When accounts are in the second-level cache,
+ * they are loaded whole instead, so that after the first time they are rewarded without a query.
+ * <p/>
+ * Keeps an in-memory index from credit card number to account id, loaded on first use, so that the account for a
+ * credit card can be loaded by primary key. Changes made through this repository are applied to the index when their
+ * transaction commits; cards added by other means are picked up the first time they are looked up.
  */
 @Repository
 public class HibernateAccountRepository implements AccountRepository {
@@ -19,11 +37,28 @@ public class HibernateAccountRepository implements AccountRepository {
      */
     private SessionFactory sessionFactory;
 
+    /**
+     * Account details and beneficiary for each beneficiary (or none) of the accounts for credit cards, for rewarding
+     */
+    private static final String REWARD_ACCOUNT_SELECT =
+            "select c.creditCardNumber, a.entityId, a.number, a.name, a.dateOfBirth, a.email, a.receiveNewsletter, " +
+            "a.receiveMonthlyEmailUpdate, b from Account a join a.creditCards c left join a.beneficiaries b ";
+
     /**
      * Logger
      */
     private Logger logger = Logger.getLogger("rewards");
 
+    /**
+     * Index from credit card number to account id
+     */
+    private final CreditCardIndex creditCardIndex = new CreditCardIndex();
+
+    /**
+     * Whether the credit card index has been loaded
+     */
+    private volatile boolean creditCardIndexLoaded;
+
     /**
      * Creates an new hibernate-based account repository.
      *
@@ -93,7 +128,8 @@ public class HibernateAccountRepository implements AccountRepository {
     }
 
     /**
-     * Check there is no account using the supplied credit card numbers.
+     * Check there is no account using the supplied credit card numbers. A card in the credit card index is in use;
+     * otherwise the database is checked, as the card may have been added since the index was loaded.
      *
      * @param creditCardNumber
      * @return true if it is available, false if it is already in use
@@ -101,6 +137,11 @@ public class HibernateAccountRepository implements AccountRepository {
      */
     @Override
     public boolean hasNoAccountWithCreditCard(final String creditCardNumber) {
+        loadCreditCardIndex();
+        if (creditCardIndex.get(creditCardNumber) != CreditCardIndex.NO_ACCOUNT) {
+            return false;
+        }
+
         Query query = getCurrentSession().createQuery(
                 "select count(a) from Account a join a.creditCards c where c.creditCardNumber = :creditCardNumber");
         query = query.setString("creditCardNumber", creditCardNumber);
@@ -123,7 +164,8 @@ public class HibernateAccountRepository implements AccountRepository {
     }
 
     /**
-     * Load an account by its credit card number.
+     * Load an account by its credit card number, by primary key if the card is in the credit card index, otherwise by
+     * query (adding the card to the index if found).
      *
      * @param creditCardNumber the credit card number
      * @return the account object
@@ -131,10 +173,118 @@ public class HibernateAccountRepository implements AccountRepository {
      */
     @Override
     public Account findByCreditCard(String creditCardNumber) {
+        loadCreditCardIndex();
+        final int accountId = creditCardIndex.get(creditCardNumber);
+        if (accountId != CreditCardIndex.NO_ACCOUNT) {
+            Account account = getAccount(accountId);
+            if (account != null && account.hasCreditCard(creditCardNumber)) {
+                return account;
+            }
+            // card has moved or gone, since the index was updated
+            creditCardIndex.remove(creditCardNumber);
+        }
+
         Query query = getCurrentSession().createQuery(
                 "select a from Account a join a.creditCards c where c.creditCardNumber = :creditCardNumber");
         query.setString("creditCardNumber", creditCardNumber);
-        return (Account) query.uniqueResult();
+        Account account = (Account) query.uniqueResult();
+        if (account != null) {
+            creditCardIndex.put(creditCardNumber, account.getEntityId());
+        }
+        return account;
+    }
+
+    /**
+     * Find the id of the account for a credit card number from the credit card index, otherwise by query (adding the
+     * card to the index if found). A card that has moved to another account since it was indexed may give the id of
+     * the account it was on.
+     *
+     * @param creditCardNumber the credit card number
+     * @return the account id, or null, if not found
+     * @see rewards.internal.account.AccountRepository#findAccountIdByCreditCard(String)
+     */
+    @Override
+    public Integer findAccountIdByCreditCard(String creditCardNumber) {
+        loadCreditCardIndex();
+        final int accountId = creditCardIndex.get(creditCardNumber);
+        if (accountId != CreditCardIndex.NO_ACCOUNT) {
+            return accountId;
+        }
+
+        Query query = getCurrentSession().createQuery(
+                "select a.entityId from Account a join a.creditCards c where c.creditCardNumber = :creditCardNumber");
+        query.setString("creditCardNumber", creditCardNumber);
+        Integer foundId = (Integer) query.uniqueResult();
+        if (foundId != null) {
+            creditCardIndex.put(creditCardNumber, foundId);
+        }
+        return foundId;
+    }
+
+    /**
+     * Load an account's details and beneficiaries by its credit card number, without its credit cards: by primary key
+     * if the card is in the credit card index, otherwise by card number (adding the card to the index if found).
+     * When accounts are in the second-level cache, an indexed account is loaded whole by primary key instead, so that
+     * after the first time it comes from the cache.
+     *
+     * @param creditCardNumber the credit card number
+     * @return the account object
+     * @see rewards.internal.account.AccountRepository#findForRewardByCreditCard(String)
+     */
+    @Override
+    public Account findForRewardByCreditCard(String creditCardNumber) {
+        loadCreditCardIndex();
+        final int accountId = creditCardIndex.get(creditCardNumber);
+        if (accountId != CreditCardIndex.NO_ACCOUNT) {
+            Account account;
+            if (isAccountCached()) {
+                account = getAccount(accountId);
+                if (account != null && !account.hasCreditCard(creditCardNumber)) {
+                    account = null;
+                }
+            } else {
+                Query query = getCurrentSession().createQuery(
+                        REWARD_ACCOUNT_SELECT +
+                        "where a.entityId = :accountId and c.creditCardNumber = :creditCardNumber");
+                query.setInteger("accountId", accountId);
+                query.setString("creditCardNumber", creditCardNumber);
+                account = createRewardAccounts(query).get(creditCardNumber);
+            }
+            if (account != null) {
+                return account;
+            }
+            // card has moved or gone, since the index was updated
+            creditCardIndex.remove(creditCardNumber);
+        }
+
+        Query query = getCurrentSession().createQuery(
+                REWARD_ACCOUNT_SELECT + "where c.creditCardNumber = :creditCardNumber");
+        query.setString("creditCardNumber", creditCardNumber);
+        Account account = createRewardAccounts(query).get(creditCardNumber);
+        if (account != null) {
+            creditCardIndex.put(creditCardNumber, account.getEntityId());
+        }
+        return account;
+    }
+
+    /**
+     * Load the details and beneficiaries of the accounts for several credit card numbers with a single query, without
+     * their credit cards.
+     *
+     * @param creditCardNumbers the credit card numbers
+     * @return map of credit card number to account, with no entry for card numbers that have no account
+     * @see rewards.internal.account.AccountRepository#findByCreditCards(java.util.Collection)
+     */
+    @Override
+    public Map<String, Account> findByCreditCards(Collection<String> creditCardNumbers) {
+        if (creditCardNumbers.isEmpty()) {
+            return new HashMap<String, Account>();
+        }
+
+        Query query = getCurrentSession().createQuery(
+                REWARD_ACCOUNT_SELECT + "where c.creditCardNumber in (:creditCardNumbers)");
+        query.setParameterList("creditCardNumbers", creditCardNumbers);
+        return createRewardAccounts(query);
     }
 
     /**
@@ -145,8 +295,9 @@ public class HibernateAccountRepository implements AccountRepository {
      */
     @Override
     public void update(Account account) {
-        // Nothing to do in Hibernate
+        // Nothing to do in Hibernate, apart from keeping the credit card index in step
         logger.debug("updated account=" + account);
+        indexCreditCardsAfterCommit(account);
     }
 
     /**
@@ -158,6 +309,116 @@ public class HibernateAccountRepository implements AccountRepository {
     @Override
     public void create(Account account) {
         getCurrentSession().save(account);
+        indexCreditCardsAfterCommit(account);
+    }
+
+    /**
+     * Reload the credit card index from the database on next use
+     */
+    public void resetCreditCardIndex() {
+        synchronized (creditCardIndex) {
+            creditCardIndex.clear();
+            creditCardIndexLoaded = false;
+        }
+    }
+
+    /**
+     * Load the credit card index from the database, if not already loaded
+     */
+    @SuppressWarnings("unchecked")
+    protected void loadCreditCardIndex() {
+        if (creditCardIndexLoaded) {
+            return;
+        }
+        synchronized (creditCardIndex) {
+            if (!creditCardIndexLoaded) {
+                List<Object[]> rows = (List<Object[]>) getCurrentSession().createQuery(
+                        "select c.creditCardNumber, a.entityId from Account a join a.creditCards c").list();
+                for (Object[] row : rows) {
+                    creditCardIndex.put((String) row[0], (Integer) row[1]);
+                }
+                creditCardIndexLoaded = true;
+                logger.debug("loaded credit card index:size=" + creditCardIndex.size());
+            }
+        }
+    }
+
+    /**
+     * Helper creating the accounts for rewarding from the rows of a REWARD_ACCOUNT_SELECT query, one account per
+     * entity id, holding the persistent beneficiaries
+     *
+     * @param query
+     * @return map of credit card number to account
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Account> createRewardAccounts(Query query) {
+        final Map<Integer, Account> accountsById = new HashMap<Integer, Account>();
+        final Map<Integer, Set<Beneficiary>> beneficiariesById = new HashMap<Integer, Set<Beneficiary>>();
+        final Map<String, Account> accounts = new HashMap<String, Account>();
+        for (Object[] row : (List<Object[]>) query.list()) {
+            final Integer accountId = (Integer) row[1];
+            Account account = accountsById.get(accountId);
+            if (account == null) {
+                account = new Account((String) row[2], (String) row[3], (Date) row[4], (String) row[5],
+                                      (Boolean) row[6], (Boolean) row[7]);
+                account.setEntityId(accountId);
+                accountsById.put(accountId, account);
+                beneficiariesById.put(accountId, new HashSet<Beneficiary>());
+            }
+            if (row[8] != null) {
+                beneficiariesById.get(accountId).add((Beneficiary) row[8]);
+            }
+            accounts.put((String) row[0], account);
+        }
+
+        for (Map.Entry<Integer, Account> entry : accountsById.entrySet()) {
+            entry.getValue().setBeneficiaries(beneficiariesById.get(entry.getKey()));
+        }
+        return accounts;
+    }
+
+    /**
+     * Re-index the account's credit cards once the current transaction commits, or immediately if there is no
+     * transaction synchronization
+     *
+     * @param account
+     */
+    private void indexCreditCardsAfterCommit(final Account account) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    indexCreditCards(account);
+                }
+            });
+        } else {
+            indexCreditCards(account);
+        }
+    }
+
+    /**
+     * Replace the index entries for the account with its current credit cards
+     *
+     * @param account
+     */
+    private void indexCreditCards(Account account) {
+        final Integer accountId = account.getEntityId();
+        if (accountId == null) {
+            return;
+        }
+        creditCardIndex.removeAccount(accountId);
+        for (String creditCardNumber : account.getCreditCardNumbers()) {
+            creditCardIndex.put(creditCardNumber, accountId);
+        }
+    }
+
+    /**
+     * Helper checking whether accounts are held in the second-level cache
+     *
+     * @return true if the second-level cache is enabled and has a region for accounts
+     */
+    private boolean isAccountCached() {
+        return ((SessionFactoryImplementor) sessionFactory).getEntityPersister(Account.class.getName()).hasCache();
     }
 
     /**
@@ -0,0 +1,354 @@
+package rewards.internal.account;
+
+import org.hibernate.SessionFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Account repository spreading accounts over several databases (shards) by a hash of their account number, with a
+ * Hibernate account repository working on each shard.
+ * <p/>
+ * Lookups by account number or credit card go to the one shard holding the account, binding it to the current
+ * transaction, so the transaction's changes (including rewards, through the sharded reward repository) all go to that
+ * shard. A transaction can only work on one shard, so a batch of accounts spread over several shards is rejected before
+ * any shard is bound. Finding the id of the account for a credit card, as done to lock accounts, uses a transaction of
+ * its own, leaving the current one unbound.
+ * <p/>
+ * Getting all accounts, checking a name is not in use, and finding the shard of an account id not seen before, look at
+ * every shard, each in its own transaction. Account ids must therefore be unique across the shards: each shard's
+ * T_ACCOUNT identity must be strided, starting at a value equal to the shard index modulo the number of shards and
+ * incrementing by the number of shards, which is checked when an account is created. Uniqueness of names and credit
+ * cards across shards is only checked, not enforced by the databases.
+ * <p/>
+ * Credit card and beneficiary ids repeat across shards, so this cannot be used with the Hibernate second-level cache.
+ *
+ * @see AccountShards
+ */
+@Repository
+public class ShardedAccountRepository implements AccountRepository {
+
+    /**
+     * Shards the accounts are spread over
+     */
+    private final AccountShards shards;
+
+    /**
+     * Repository for each shard, by index
+     */
+    private final List<HibernateAccountRepository> repositories;
+
+    /**
+     * Shard of each account id looked up by id
+     */
+    private final ConcurrentMap<Integer, Integer> accountIdShards = new ConcurrentHashMap<Integer, Integer>();
+
+    /**
+     * Creates a new sharded account repository
+     *
+     * @param sessionFactory the Hibernate session factory, on a dataSource routing to the bound shard
+     * @param shards         the shards the accounts are spread over
+     */
+    public ShardedAccountRepository(SessionFactory sessionFactory, AccountShards shards) {
+        this.shards = shards;
+        this.repositories = new ArrayList<HibernateAccountRepository>(shards.getShardCount());
+        for (int i = 0; i < shards.getShardCount(); i++) {
+            repositories.add(new HibernateAccountRepository(sessionFactory));
+        }
+    }
+
+    /**
+     * Get all accounts, from every shard
+     *
+     * @return list of accounts, not attached to the current transaction
+     * @see rewards.internal.account.AccountRepository#getAllAccounts()
+     */
+    @Override
+    public List<Account> getAllAccounts() {
+        final List<Account> accounts = new ArrayList<Account>();
+        for (List<Account> shardAccounts : shards.scatter(new AccountShards.ShardCallback<List<Account>>() {
+            @Override
+            public List<Account> doOnShard(int shard) {
+                return repositories.get(shard).getAllAccounts();
+            }
+        })) {
+            accounts.addAll(shardAccounts);
+        }
+        return accounts;
+    }
+
+    /**
+     * Get account by ID, or null if it doesn't exist, from the shard it was last found on, or else by looking for it on
+     * every shard
+     *
+     * @param id
+     * @return account
+     * @see rewards.internal.account.AccountRepository#getAccount(Integer)
+     */
+    @Override
+    public Account getAccount(final Integer id) {
+        Integer shard = accountIdShards.get(id);
+        if (shard == null) {
+            final List<Integer> found = new ArrayList<Integer>();
+            for (Integer candidate : shards.scatter(new AccountShards.ShardCallback<Integer>() {
+                @Override
+                public Integer doOnShard(int shard) {
+                    return (repositories.get(shard).getAccount(id) == null) ? null : shard;
+                }
+            })) {
+                if (candidate != null) {
+                    found.add(candidate);
+                }
+            }
+            if (found.size() > 1) {
+                throw new IncorrectResultSizeDataAccessException("account id on several shards:id=" + id, 1,
+                                                                 found.size());
+            }
+            if (found.isEmpty()) {
+                return null;
+            }
+            shard = found.get(0);
+            accountIdShards.put(id, shard);
+        }
+
+        final Account account = bind(shard).getAccount(id);
+        if (account == null) {
+            accountIdShards.remove(id);
+        }
+        return account;
+    }
+
+    /**
+     * Persist updated account attributes, on the account's shard
+     *
+     * @param account object with new values, including appropriate entityId
+     * @see rewards.internal.account.AccountRepository#update(Account)
+     */
+    @Override
+    public void update(Account account) {
+        final int shard = shards.shardForAccountNumber(account.getNumber());
+        bind(shard).update(account);
+        putCreditCardsAfterCommit(account, shard);
+    }
+
+    /**
+     * Persist new account, on the shard for its account number, checking the id the shard gave it is one only that
+     * shard gives
+     *
+     * @param account object with new values
+     * @throws DataIntegrityViolationException if the shard's account ids are not strided, so that the id could be given
+     *                                         by another shard as well
+     * @see rewards.internal.account.AccountRepository#create(Account)
+     */
+    @Override
+    public void create(Account account) {
+        final int shard = shards.shardForAccountNumber(account.getNumber());
+        bind(shard).create(account);
+        if (account.getEntityId() % shards.getShardCount() != shard) {
+            throw new DataIntegrityViolationException("account id not strided for its shard:id=" +
+                                                      account.getEntityId() + ", shard=" + shard + ", shardCount=" +
+                                                      shards.getShardCount());
+        }
+        putCreditCardsAfterCommit(account, shard);
+    }
+
+    /**
+     * Check there is no account with the supplied name on any shard
+     *
+     * @param accountName
+     * @return true if it is available, false if it is already in use
+     * @see rewards.internal.account.AccountRepository#hasNoAccountWithName(String)
+     */
+    @Override
+    public boolean hasNoAccountWithName(final String accountName) {
+        for (Boolean hasNoAccount : shards.scatter(new AccountShards.ShardCallback<Boolean>() {
+            @Override
+            public Boolean doOnShard(int shard) {
+                return repositories.get(shard).hasNoAccountWithName(accountName);
+            }
+        })) {
+            if (!hasNoAccount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check there is no account with the supplied number, on the shard for the number
+     *
+     * @param accountNumber
+     * @return true if it is available, false if it is already in use
+     * @see rewards.internal.account.AccountRepository#hasNoAccountWithNumber(String)
+     */
+    @Override
+    public boolean hasNoAccountWithNumber(String accountNumber) {
+        return bind(shards.shardForAccountNumber(accountNumber)).hasNoAccountWithNumber(accountNumber);
+    }
+
+    /**
+     * Check there is no account using the supplied credit card number on any shard, from the credit card directory
+     * where possible
+     *
+     * @param creditCardNumber
+     * @return true if it is available, false if it is already in use
+     * @see rewards.internal.account.AccountRepository#hasNoAccountWithCreditCard(String)
+     */
+    @Override
+    public boolean hasNoAccountWithCreditCard(String creditCardNumber) {
+        return shards.shardForCreditCard(creditCardNumber) == null;
+    }
+
+    /**
+     * Load an account by its account number, from the shard for the number
+     *
+     * @param accountNumber the account number
+     * @return the account object
+     * @see rewards.internal.account.AccountRepository#findByAccountNumber(String)
+     */
+    @Override
+    public Account findByAccountNumber(String accountNumber) {
+        return bind(shards.shardForAccountNumber(accountNumber)).findByAccountNumber(accountNumber);
+    }
+
+    /**
+     * Load an account by its credit card number, from the shard holding the card
+     *
+     * @param creditCardNumber the credit card number
+     * @return the account object
+     * @see rewards.internal.account.AccountRepository#findByCreditCard(String)
+     */
+    @Override
+    public Account findByCreditCard(String creditCardNumber) {
+        final Integer shard = shards.shardForCreditCard(creditCardNumber);
+        if (shard == null) {
+            return null;
+        }
+        final Account account = bind(shard).findByCreditCard(creditCardNumber);
+        if (account == null) {
+            shards.removeCreditCard(creditCardNumber);
+        }
+        return account;
+    }
+
+    /**
+     * Find the id of the account for a credit card number, from the shard holding the card, in a transaction of its
+     * own so that the current transaction is not bound to the shard
+     *
+     * @param creditCardNumber the credit card number
+     * @return the account id, or null, if not found
+     * @see rewards.internal.account.AccountRepository#findAccountIdByCreditCard(String)
+     */
+    @Override
+    public Integer findAccountIdByCreditCard(final String creditCardNumber) {
+        final Integer shard = shards.shardForCreditCard(creditCardNumber);
+        if (shard == null) {
+            return null;
+        }
+        return shards.onShard(shard, new AccountShards.ShardCallback<Integer>() {
+            @Override
+            public Integer doOnShard(int shard) {
+                return repositories.get(shard).findAccountIdByCreditCard(creditCardNumber);
+            }
+        });
+    }
+
+    /**
+     * Load an account's details and beneficiaries by its credit card number, from the shard holding the card
+     *
+     * @param creditCardNumber the credit card number
+     * @return the account object
+     * @see rewards.internal.account.AccountRepository#findForRewardByCreditCard(String)
+     */
+    @Override
+    public Account findForRewardByCreditCard(String creditCardNumber) {
+        final Integer shard = shards.shardForCreditCard(creditCardNumber);
+        if (shard == null) {
+            return null;
+        }
+        final Account account = bind(shard).findForRewardByCreditCard(creditCardNumber);
+        if (account == null) {
+            shards.removeCreditCard(creditCardNumber);
+        }
+        return account;
+    }
+
+    /**
+     * Load the details and beneficiaries of the accounts for several credit card numbers, with a query on the shard
+     * holding them. The cards must all be on the same shard, which is checked before the shard is bound.
+     *
+     * @param creditCardNumbers the credit card numbers
+     * @return map of credit card number to account, with no entry for card numbers that have no account
+     * @throws InvalidDataAccessApiUsageException if the cards are on several shards
+     * @see rewards.internal.account.AccountRepository#findByCreditCards(java.util.Collection)
+     */
+    @Override
+    public Map<String, Account> findByCreditCards(Collection<String> creditCardNumbers) {
+        final Map<Integer, List<String>> creditCardNumbersByShard = new LinkedHashMap<Integer, List<String>>();
+        for (String creditCardNumber : creditCardNumbers) {
+            final Integer shard = shards.shardForCreditCard(creditCardNumber);
+            if (shard != null) {
+                List<String> shardCreditCardNumbers = creditCardNumbersByShard.get(shard);
+                if (shardCreditCardNumbers == null) {
+                    shardCreditCardNumbers = new ArrayList<String>();
+                    creditCardNumbersByShard.put(shard, shardCreditCardNumbers);
+                }
+                shardCreditCardNumbers.add(creditCardNumber);
+            }
+        }
+        if (creditCardNumbersByShard.size() > 1) {
+            throw new InvalidDataAccessApiUsageException(
+                    "credit cards of a batch must be on one shard, split the batch by shard:creditCardNumbersByShard=" +
+                    creditCardNumbersByShard);
+        }
+
+        if (creditCardNumbersByShard.isEmpty()) {
+            return new HashMap<String, Account>();
+        }
+        final Map.Entry<Integer, List<String>> entry = creditCardNumbersByShard.entrySet().iterator().next();
+        return bind(entry.getKey()).findByCreditCards(entry.getValue());
+    }
+
+    /**
+     * Helper binding a shard to the current transaction
+     *
+     * @param shard
+     * @return repository for the shard
+     */
+    private HibernateAccountRepository bind(int shard) {
+        shards.bind(shard);
+        return repositories.get(shard);
+    }
+
+    /**
+     * Record the shard of the account's credit cards once the current transaction commits, or immediately if there is
+     * no transaction synchronization
+     *
+     * @param account
+     * @param shard
+     */
+    private void putCreditCardsAfterCommit(final Account account, final int shard) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    shards.putCreditCards(account.getCreditCardNumbers(), shard);
+                }
+            });
+        } else {
+            shards.putCreditCards(account.getCreditCardNumbers(), shard);
+        }
+    }
+}
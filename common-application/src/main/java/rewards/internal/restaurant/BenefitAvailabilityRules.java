@@ -0,0 +1,375 @@
+package rewards.internal.restaurant;
+
+import common.money.MonetaryAmount;
+import rewards.Dining;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Restaurant-specific rules restricting when benefit is available for dining, on top of the restaurant's
+ * BenefitAvailabilityPolicy: on which days, at what times, for what minimum amount, and up to how much benefit per
+ * account per month.
+ * <p/>
+ * Rules are written as semicolon-separated clauses, any of which may be left out:
+ * <pre>
+ * days=MON-FRI,SUN;hours=11:30-14:30,18:00-22:00;minAmount=20.00;monthlyCap=25.00
+ * </pre>
+ * Days are three-letter English abbreviations, and ranges may wrap round the week (FRI-MON). Hours are 24-hour times in
+ * the default time zone when the rules are compiled, from (inclusive) to (exclusive), and may wrap round midnight
+ * (22:00-02:00, where the time after midnight counts as the day the dining is on); a window ending when it starts, such
+ * as 00:00-24:00, is the whole day. minAmount is the smallest dining
+ * amount rewarded, and monthlyCap the most benefit given to an account for dining at the restaurant in a calendar month.
+ * The cap is applied to the benefit recorded so far, so concurrent rewards rely on the reward network to serialize
+ * them; see RewardNetworkImpl.
+ * <p/>
+ * The rules are compiled once, when the restaurant is loaded, into a day bit mask, a minute-of-day bit map and amounts
+ * in cents, so checking a dining is a few arithmetic operations and creates no objects.
+ * <p/>
+ * A value object. Immutable.
+ *
+ * @see BenefitAvailabilityRulesUserType
+ */
+public final class BenefitAvailabilityRules implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Day abbreviations, in the order of Calendar.SUNDAY to Calendar.SATURDAY
+     */
+    private static final String[] DAY_NAMES = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+
+    /**
+     * Every day of the week
+     */
+    private static final int ALL_DAYS = 0x7F;
+
+    private static final int  MINUTES_PER_DAY = 24 * 60;
+    private static final long MILLIS_PER_DAY  = MINUTES_PER_DAY * 60 * 1000L;
+
+    /**
+     * 1 January 1970 was a Thursday: days since then plus this, modulo 7, is the day of the week with Sunday as 0
+     */
+    private static final int EPOCH_DAY_OF_WEEK = 4;
+
+    /**
+     * Rules as written
+     */
+    private final String rules;
+
+    /**
+     * Time zone hours are in
+     */
+    private final TimeZone timeZone;
+
+    /**
+     * Bit set for each day of the week available, Sunday as bit 0
+     */
+    private final int dayMask;
+
+    /**
+     * Bit set for each minute of the day available, or null if available all day
+     */
+    private final long[] minuteMask;
+
+    /**
+     * Smallest dining amount rewarded, in cents
+     */
+    private final long minimumAmountCents;
+
+    /**
+     * Most benefit per account per month, or null if unlimited
+     */
+    private final MonetaryAmount monthlyCap;
+
+    /**
+     * Helper constructor, for compile
+     */
+    private BenefitAvailabilityRules(String rules, TimeZone timeZone, int dayMask, long[] minuteMask,
+                                     long minimumAmountCents, MonetaryAmount monthlyCap) {
+        this.rules = rules;
+        this.timeZone = timeZone;
+        this.dayMask = dayMask;
+        this.minuteMask = minuteMask;
+        this.minimumAmountCents = minimumAmountCents;
+        this.monthlyCap = monthlyCap;
+    }
+
+    /**
+     * Compile rules, with hours in the default time zone
+     *
+     * @param rules rules as written, for example "days=MON-FRI;hours=11:30-14:30;minAmount=20.00"
+     * @return compiled rules
+     * @throws IllegalArgumentException if the rules cannot be understood
+     */
+    public static BenefitAvailabilityRules compile(String rules) {
+        return compile(rules, TimeZone.getDefault());
+    }
+
+    /**
+     * Compile rules
+     *
+     * @param rules    rules as written
+     * @param timeZone time zone for hours
+     * @return compiled rules
+     * @throws IllegalArgumentException if the rules cannot be understood
+     */
+    public static BenefitAvailabilityRules compile(String rules, TimeZone timeZone) {
+        int dayMask = ALL_DAYS;
+        long[] minuteMask = null;
+        long minimumAmountCents = 0;
+        MonetaryAmount monthlyCap = null;
+
+        for (String clause : rules.split(";")) {
+            clause = clause.trim();
+            if (clause.length() == 0) {
+                continue;
+            }
+            final int equals = clause.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("expected name=value:clause=" + clause + ", rules=" + rules);
+            }
+            final String name = clause.substring(0, equals).trim();
+            final String value = clause.substring(equals + 1).trim();
+            try {
+                if (name.equals("days")) {
+                    dayMask = parseDays(value);
+                } else if (name.equals("hours")) {
+                    minuteMask = parseHours(value);
+                } else if (name.equals("minAmount")) {
+                    minimumAmountCents = toCents(new BigDecimal(value));
+                } else if (name.equals("monthlyCap")) {
+                    monthlyCap = new MonetaryAmount(new BigDecimal(value));
+                } else {
+                    throw new IllegalArgumentException("unknown rule:" + name);
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("invalid rule:clause=" + clause + ", rules=" + rules, e);
+            }
+        }
+        return new BenefitAvailabilityRules(rules, timeZone, dayMask, minuteMask, minimumAmountCents, monthlyCap);
+    }
+
+    /**
+     * Check whether the dining is on a day and at a time that benefit is available, for at least the minimum amount
+     *
+     * @param dining the dining event
+     * @return true if available
+     */
+    public boolean isBenefitAvailableFor(Dining dining) {
+        return isBenefitAvailableFor(dining.getDate().getTime(), dining.getAmount());
+    }
+
+    /**
+     * Check whether a dining at the time, for the amount, is on a day and at a time that benefit is available, for at
+     * least the minimum amount
+     *
+     * @param time   time of the dining, in milliseconds since the epoch
+     * @param amount amount of the dining
+     * @return true if available
+     */
+    public boolean isBenefitAvailableFor(long time, float amount) {
+        if (Math.round(amount * 100.0) < minimumAmountCents) {
+            return false;
+        }
+
+        final long localTime = time + timeZone.getOffset(time);
+        long day = localTime / MILLIS_PER_DAY;
+        long millisOfDay = localTime % MILLIS_PER_DAY;
+        if (millisOfDay < 0) {
+            day--;
+            millisOfDay += MILLIS_PER_DAY;
+        }
+        final int dayOfWeek = (int) (((day + EPOCH_DAY_OF_WEEK) % 7 + 7) % 7);
+        if ((dayMask & (1 << dayOfWeek)) == 0) {
+            return false;
+        }
+
+        if (minuteMask == null) {
+            return true;
+        }
+        final int minuteOfDay = (int) (millisOfDay / 60000L);
+        return (minuteMask[minuteOfDay >>> 6] & (1L << minuteOfDay)) != 0;
+    }
+
+    /**
+     * @return true if the benefit per account per month is limited
+     */
+    public boolean hasMonthlyCap() {
+        return (monthlyCap != null);
+    }
+
+    /**
+     * @return most benefit per account per month, or null if unlimited
+     */
+    public MonetaryAmount getMonthlyCap() {
+        return monthlyCap;
+    }
+
+    /**
+     * Limit a benefit to what is left of the monthly cap
+     *
+     * @param benefit          benefit before the cap
+     * @param benefitThisMonth benefit already given to the account this month
+     * @return benefit, reduced if necessary so the month's total does not exceed the cap
+     */
+    public MonetaryAmount capBenefit(MonetaryAmount benefit, MonetaryAmount benefitThisMonth) {
+        if (monthlyCap == null) {
+            return benefit;
+        }
+        final BigDecimal remaining = monthlyCap.asBigDecimal().subtract(benefitThisMonth.asBigDecimal());
+        if (remaining.signum() <= 0) {
+            return MonetaryAmount.zero();
+        }
+        return (benefit.asBigDecimal().compareTo(remaining) > 0) ? new MonetaryAmount(remaining) : benefit;
+    }
+
+    /**
+     * Get the start of the calendar month, in the rules' time zone, that a dining is in
+     *
+     * @param dining
+     * @return first moment of the month
+     */
+    public Date getMonthStart(Dining dining) {
+        final Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTime(dining.getDate());
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+
+    /**
+     * Get the start of the calendar month after the one a dining is in, in the rules' time zone
+     *
+     * @param dining
+     * @return first moment of the next month
+     */
+    public Date getNextMonthStart(Dining dining) {
+        final Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTime(getMonthStart(dining));
+        calendar.add(Calendar.MONTH, 1);
+        return calendar.getTime();
+    }
+
+    /**
+     * @return rules as written
+     */
+    public String getRules() {
+        return rules;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BenefitAvailabilityRules)) return false;
+
+        BenefitAvailabilityRules that = (BenefitAvailabilityRules) o;
+        return rules.equals(that.rules) && timeZone.getID().equals(that.timeZone.getID());
+    }
+
+    @Override
+    public int hashCode() {
+        return rules.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return rules;
+    }
+
+    /**
+     * Helper parsing days, for example "MON-FRI,SUN"
+     *
+     * @param value
+     * @return day mask
+     */
+    private static int parseDays(String value) {
+        int mask = 0;
+        for (String range : value.split(",")) {
+            final String[] ends = range.split("-");
+            final int from = parseDay(ends[0]);
+            final int to = (ends.length > 1) ? parseDay(ends[1]) : from;
+            for (int day = from; ; day = (day + 1) % 7) {
+                mask |= 1 << day;
+                if (day == to) {
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Helper parsing a day abbreviation
+     *
+     * @param value
+     * @return day of week, Sunday as 0
+     */
+    private static int parseDay(String value) {
+        final String name = value.trim().toUpperCase();
+        for (int day = 0; day < DAY_NAMES.length; day++) {
+            if (DAY_NAMES[day].equals(name)) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException("unknown day:" + value);
+    }
+
+    /**
+     * Helper parsing hours, for example "11:30-14:30,18:00-22:00"
+     *
+     * @param value
+     * @return minute mask
+     */
+    private static long[] parseHours(String value) {
+        final long[] mask = new long[(MINUTES_PER_DAY + 63) / 64];
+        for (String window : value.split(",")) {
+            final String[] ends = window.split("-");
+            if (ends.length != 2) {
+                throw new IllegalArgumentException("expected from-to:" + window);
+            }
+            final int from = parseMinuteOfDay(ends[0]);
+            final int to = parseMinuteOfDay(ends[1]);
+            // from == to, as in 00:00-24:00, is the whole day
+            int minute = from;
+            do {
+                mask[minute >>> 6] |= 1L << minute;
+                minute = (minute + 1) % MINUTES_PER_DAY;
+            } while (minute != to);
+        }
+        return mask;
+    }
+
+    /**
+     * Helper parsing a time of day, for example "14:30"
+     *
+     * @param value
+     * @return minute of day
+     */
+    private static int parseMinuteOfDay(String value) {
+        final String[] parts = value.trim().split(":");
+        final int hours = Integer.parseInt(parts[0]);
+        final int minutes = (parts.length > 1) ? Integer.parseInt(parts[1]) : 0;
+        if (parts.length > 2 || hours < 0 || hours > 24 || minutes < 0 || minutes > 59
+            || hours * 60 + minutes > MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("invalid time:" + value);
+        }
+        return (hours * 60 + minutes) % MINUTES_PER_DAY;
+    }
+
+    /**
+     * Helper converting an amount to whole cents, rounding up so that an amount just under the minimum never passes
+     *
+     * @param amount
+     * @return cents
+     */
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, BigDecimal.ROUND_CEILING).longValue();
+    }
+}
@@ -0,0 +1,48 @@
+package rewards.internal.restaurant;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.hibernate.HibernateException;
+
+import common.repository.ImmutableValueUserType;
+
+/**
+ * A Hibernate user type for the BenefitAvailabilityRules type. This class enables Hibernate to map a
+ * BenefitAvailabilityRules object to and from a varchar column holding the rules as written, compiling them as they
+ * are loaded.
+ * @see BenefitAvailabilityRules
+ */
+public class BenefitAvailabilityRulesUserType extends ImmutableValueUserType {
+
+	public Class returnedClass() {
+		return BenefitAvailabilityRules.class;
+	}
+
+	public int[] sqlTypes() {
+		return new int[] { Types.VARCHAR };
+	}
+
+	public Object nullSafeGet(ResultSet rs, String[] names, Object owner) throws HibernateException, SQLException {
+		String value = rs.getString(names[0]);
+		if (value == null) {
+			return null;
+		}
+		try {
+			return BenefitAvailabilityRules.compile(value);
+		} catch (IllegalArgumentException e) {
+			throw new HibernateException("invalid benefit availability rules:owner=" + owner, e);
+		}
+	}
+
+	public void nullSafeSet(PreparedStatement ps, Object value, int index) throws HibernateException, SQLException {
+		if (value == null) {
+			ps.setNull(index, Types.VARCHAR);
+		} else {
+			BenefitAvailabilityRules rules = (BenefitAvailabilityRules) value;
+			ps.setString(index, rules.getRules());
+		}
+	}
+}
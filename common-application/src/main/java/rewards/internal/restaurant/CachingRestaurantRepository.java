@@ -0,0 +1,331 @@
+package rewards.internal.restaurant;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of restaurants by merchant number, in front of another restaurant repository.
+ * <p/>
+ * The cache holds at most maxSize restaurants, evicting the least recently used. Once an entry is older than
+ * timeToLiveMs it is revalidated against the restaurant's VERSION column: if the version is unchanged the entry is kept
+ * for another time-to-live without reloading the restaurant, otherwise it is reloaded. Unknown merchant numbers are
+ * not cached.
+ * <p/>
+ * Restaurants handed out are shared between callers and transactions, so they must be treated as read-only, and a
+ * change to a restaurant is only seen once its entry expires and is revalidated. The cache is therefore opt-in, with the
+ * restaurant-cache profile, which also exports it over JMX.
+ */
+@ManagedResource(description = "Restaurant cache")
+public class CachingRestaurantRepository implements RestaurantRepository {
+
+    /**
+     * Default maximum number of restaurants cached
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    /**
+     * Default time before a cached restaurant is revalidated
+     */
+    public static final long DEFAULT_TIME_TO_LIVE_MS = 60000L;
+
+    /**
+     * Repository we're caching
+     */
+    private final RestaurantRepository restaurantRepository;
+
+    /**
+     * Maximum number of restaurants cached
+     */
+    private final int maxSize;
+
+    /**
+     * Time before a cached restaurant is revalidated against its version
+     */
+    private volatile long timeToLiveMs = DEFAULT_TIME_TO_LIVE_MS;
+
+    /**
+     * Cached entries in least recently used order; all access synchronized on the map
+     */
+    private final Map<String, CacheEntry> entries;
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong hitCount          = new AtomicLong();
+    private final AtomicLong missCount         = new AtomicLong();
+    private final AtomicLong evictionCount     = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Constructor taking repository to cache, using default maximum size
+     *
+     * @param restaurantRepository
+     */
+    public CachingRestaurantRepository(RestaurantRepository restaurantRepository) {
+        this(restaurantRepository, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor taking repository to cache and maximum number of restaurants cached
+     *
+     * @param restaurantRepository
+     * @param maxSize
+     */
+    public CachingRestaurantRepository(RestaurantRepository restaurantRepository, final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1:maxSize=" + maxSize);
+        }
+        this.restaurantRepository = restaurantRepository;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Find the restaurant for supplied merchantNumber, from the cache if present and still current
+     *
+     * @param merchantNumber the merchant number
+     * @return restaurant, or null if not found
+     */
+    @Override
+    public Restaurant findByMerchantNumber(String merchantNumber) {
+        final Restaurant cached = findCurrent(merchantNumber, currentTimeMillis());
+        if (cached != null) {
+            return cached;
+        }
+
+        missCount.incrementAndGet();
+        final Restaurant restaurant = restaurantRepository.findByMerchantNumber(merchantNumber);
+        if (restaurant != null) {
+            putEntry(restaurant);
+        }
+        return restaurant;
+    }
+
+    /**
+     * Find the restaurants for several merchantNumbers, revalidating expired entries by version and loading those not
+     * cached (or changed) with a single query
+     *
+     * @param merchantNumbers the merchant numbers
+     * @return map of merchant number to restaurant, with no entry for merchant numbers that are not found
+     */
+    @Override
+    public Map<String, Restaurant> findByMerchantNumbers(Collection<String> merchantNumbers) {
+        final Map<String, Restaurant> restaurants = new HashMap<String, Restaurant>();
+        final List<String> toLoad = new ArrayList<String>();
+        final long now = currentTimeMillis();
+        for (String merchantNumber : merchantNumbers) {
+            final Restaurant cached = findCurrent(merchantNumber, now);
+            if (cached != null) {
+                restaurants.put(merchantNumber, cached);
+            } else {
+                missCount.incrementAndGet();
+                toLoad.add(merchantNumber);
+            }
+        }
+
+        if (!toLoad.isEmpty()) {
+            final Map<String, Restaurant> loaded = restaurantRepository.findByMerchantNumbers(toLoad);
+            for (Restaurant restaurant : loaded.values()) {
+                putEntry(restaurant);
+            }
+            restaurants.putAll(loaded);
+        }
+        return restaurants;
+    }
+
+    /**
+     * Find the current version of the restaurant, always from the underlying repository
+     *
+     * @param merchantNumber the merchant number
+     * @return version, or null if not found
+     */
+    @Override
+    public Integer findVersionByMerchantNumber(String merchantNumber) {
+        return restaurantRepository.findVersionByMerchantNumber(merchantNumber);
+    }
+
+    /**
+     * Remove all cached restaurants
+     */
+    @ManagedOperation
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    @ManagedAttribute
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of lookups that went to the underlying repository
+     */
+    @ManagedAttribute
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of restaurants evicted to stay within the maximum size
+     */
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return number of cached restaurants dropped because their version had changed
+     */
+    @ManagedAttribute
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * @return number of restaurants currently cached
+     */
+    @ManagedAttribute
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return maximum number of restaurants cached
+     */
+    @ManagedAttribute
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return time before a cached restaurant is revalidated against its version
+     */
+    @ManagedAttribute
+    public long getTimeToLiveMs() {
+        return timeToLiveMs;
+    }
+
+    /**
+     * @param timeToLiveMs time before a cached restaurant is revalidated against its version
+     */
+    @ManagedAttribute
+    public void setTimeToLiveMs(long timeToLiveMs) {
+        this.timeToLiveMs = timeToLiveMs;
+    }
+
+    /**
+     * Current time, overridable for testing expiry
+     *
+     * @return current time in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Helper finding a cached restaurant that is still current, revalidating an expired entry against the restaurant's
+     * version and dropping it if the version has changed
+     *
+     * @param merchantNumber
+     * @param now current time
+     * @return cached restaurant, or null if not cached or no longer current
+     */
+    private Restaurant findCurrent(String merchantNumber, long now) {
+        final CacheEntry entry = getEntry(merchantNumber);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.isExpired(now)) {
+            hitCount.incrementAndGet();
+            return entry.restaurant;
+        }
+
+        final Integer version = restaurantRepository.findVersionByMerchantNumber(merchantNumber);
+        if (version != null && version == entry.restaurant.getVersion()) {
+            hitCount.incrementAndGet();
+            putEntry(entry.restaurant);
+            return entry.restaurant;
+        }
+
+        invalidationCount.incrementAndGet();
+        removeEntry(merchantNumber);
+        return null;
+    }
+
+    /**
+     * Helper getting cached entry
+     *
+     * @param merchantNumber
+     * @return entry, or null if not cached
+     */
+    private CacheEntry getEntry(String merchantNumber) {
+        synchronized (entries) {
+            return entries.get(merchantNumber);
+        }
+    }
+
+    /**
+     * Helper caching restaurant, with a fresh time-to-live
+     *
+     * @param restaurant
+     */
+    private void putEntry(Restaurant restaurant) {
+        final CacheEntry entry = new CacheEntry(restaurant, currentTimeMillis() + timeToLiveMs);
+        synchronized (entries) {
+            entries.put(restaurant.getNumber(), entry);
+        }
+    }
+
+    /**
+     * Helper removing cached entry
+     *
+     * @param merchantNumber
+     */
+    private void removeEntry(String merchantNumber) {
+        synchronized (entries) {
+            entries.remove(merchantNumber);
+        }
+    }
+
+    /**
+     * A cached restaurant, with the time after which it must be revalidated
+     */
+    private static class CacheEntry {
+        private final Restaurant restaurant;
+        private final long       expiresAt;
+
+        CacheEntry(Restaurant restaurant, long expiresAt) {
+            this.restaurant = restaurant;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
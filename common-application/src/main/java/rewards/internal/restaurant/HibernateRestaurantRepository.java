@@ -4,12 +4,22 @@ import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Finds restaurants using the Hibernate API.
  */
 @Repository
 public class HibernateRestaurantRepository implements RestaurantRepository {
 
+    /**
+     * Query cache region for restaurants looked up by merchant number, used when the query cache is enabled
+     */
+    public static final String MERCHANT_NUMBER_QUERY_REGION = "rewards.restaurantByMerchantNumber";
+
 	private SessionFactory sessionFactory;
 
 	/**
@@ -22,7 +32,8 @@ public class HibernateRestaurantRepository implements RestaurantRepository {
 
 
     /**
-     * Find the restaurant for supplied merchantNumber
+     * Find the restaurant for supplied merchantNumber. The query is cacheable, so when the second-level and query
+     * caches are enabled a repeated lookup is answered without going to the database.
      *
      * @param merchantNumber the merchant number
      * @return restaurant, or null if not found
@@ -30,9 +41,47 @@ public class HibernateRestaurantRepository implements RestaurantRepository {
     @Override
 	public Restaurant findByMerchantNumber(String merchantNumber) {
 		return (Restaurant) getCurrentSession().createQuery("from Restaurant r where r.number = :merchantNumber")
-				.setString("merchantNumber", merchantNumber).uniqueResult();
+				.setString("merchantNumber", merchantNumber)
+                .setCacheable(true).setCacheRegion(MERCHANT_NUMBER_QUERY_REGION)
+                .uniqueResult();
 	}
 
+    /**
+     * Find the restaurants for several merchantNumbers with a single query
+     *
+     * @param merchantNumbers the merchant numbers
+     * @return map of merchant number to restaurant, with no entry for merchant numbers that are not found
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Restaurant> findByMerchantNumbers(Collection<String> merchantNumbers) {
+        Map<String, Restaurant> restaurants = new HashMap<String, Restaurant>();
+        if (merchantNumbers.isEmpty()) {
+            return restaurants;
+        }
+
+        List<Restaurant> found = (List<Restaurant>) getCurrentSession()
+                .createQuery("from Restaurant r where r.number in (:merchantNumbers)")
+                .setParameterList("merchantNumbers", merchantNumbers).list();
+        for (Restaurant restaurant : found) {
+            restaurants.put(restaurant.getNumber(), restaurant);
+        }
+        return restaurants;
+    }
+
+    /**
+     * Find the current version of the restaurant for supplied merchantNumber, without loading the restaurant
+     *
+     * @param merchantNumber the merchant number
+     * @return version, or null if not found
+     */
+    @Override
+    public Integer findVersionByMerchantNumber(String merchantNumber) {
+        return (Integer) getCurrentSession().createQuery(
+                "select r.version from Restaurant r where r.number = :merchantNumber")
+                .setString("merchantNumber", merchantNumber).uniqueResult();
+    }
+
 	/**
 	 * Returns the session associated with the ongoing reward transaction.
 	 * @return the transactional session
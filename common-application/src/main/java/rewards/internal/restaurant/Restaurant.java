@@ -12,7 +12,7 @@ import rewards.internal.account.Account;
  * A restaurant establishment in the network. Like AppleBee's.
  * 
  * Restaurants calculate how much benefit may be awarded to an account for dining based on a availability policy and a
- * benefit percentage.
+ * benefit percentage, optionally restricted further by benefit availability rules.
  */
 @Entity
 @Table(name = "T_RESTAURANT")
@@ -35,6 +35,10 @@ public class Restaurant {
 	@Column(name = "BENEFIT_AVAILABILITY_POLICY")
 	private BenefitAvailabilityPolicy benefitAvailabilityPolicy;
 
+	@Column(name = "BENEFIT_AVAILABILITY_RULES")
+	@Type(type = "rewards.internal.restaurant.BenefitAvailabilityRulesUserType")
+	private BenefitAvailabilityRules benefitAvailabilityRules;
+
     @Version
     private int version;
 
@@ -86,6 +90,14 @@ public class Restaurant {
 		this.benefitAvailabilityPolicy = benefitAvailabilityPolicy;
 	}
 
+	/**
+	 * Sets the rules that further restrict when dining at this restaurant is eligible for benefit.
+	 * @param benefitAvailabilityRules the benefit availability rules, or null for no further restriction
+	 */
+	public void setBenefitAvailabilityRules(BenefitAvailabilityRules benefitAvailabilityRules) {
+		this.benefitAvailabilityRules = benefitAvailabilityRules;
+	}
+
 	/**
 	 * Returns the name of this restaurant.
 	 */
@@ -114,20 +126,67 @@ public class Restaurant {
 		return benefitAvailabilityPolicy;
 	}
 
+	/**
+	 * Returns this restaurant's benefit availability rules, or null if it has none.
+	 */
+	public BenefitAvailabilityRules getBenefitAvailabilityRules() {
+		return benefitAvailabilityRules;
+	}
+
+	/**
+	 * Returns true if the benefit for dining at this restaurant is limited per account per month.
+	 */
+	public boolean hasMonthlyBenefitCap() {
+		return benefitAvailabilityRules != null && benefitAvailabilityRules.hasMonthlyCap();
+	}
+
+	/**
+	 * Returns the optimistic locking version of this restaurant, incremented whenever it is updated.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the optimistic locking version - only for repositories that load restaurants without Hibernate.
+	 * @param version the version loaded
+	 */
+	void setVersion(int version) {
+		this.version = version;
+	}
+
 	/**
 	 * Calculate the benefit eligible to this account for dining at this restaurant.
 	 * @param account the account that dined at this restaurant
 	 * @param dining a dining event that occurred
-	 * @return the benefit amount eligible for reward
+	 * @return the benefit amount eligible for reward, before any monthly cap
 	 */
 	public MonetaryAmount calculateBenefitFor(Account account, Dining dining) {
-		if (this.benefitAvailabilityPolicy.isBenefitAvailableFor(account, dining)) {
+		if (this.benefitAvailabilityPolicy.isBenefitAvailableFor(account, dining)
+				&& (benefitAvailabilityRules == null || benefitAvailabilityRules.isBenefitAvailableFor(dining))) {
 			return new MonetaryAmount(dining.getAmount()).multiplyBy(benefitPercentage);
 		} else {
 			return MonetaryAmount.zero();
 		}
 	}
 
+	/**
+	 * Calculate the benefit eligible to this account for dining at this restaurant, limited by the monthly cap if
+	 * there is one.
+	 * @param account the account that dined at this restaurant
+	 * @param dining a dining event that occurred
+	 * @param benefitThisMonth the benefit already rewarded to this account for dining at this restaurant in the month
+	 * of the dining
+	 * @return the benefit amount eligible for reward
+	 */
+	public MonetaryAmount calculateBenefitFor(Account account, Dining dining, MonetaryAmount benefitThisMonth) {
+		MonetaryAmount benefit = calculateBenefitFor(account, dining);
+		if (benefitAvailabilityRules == null) {
+			return benefit;
+		}
+		return benefitAvailabilityRules.capBenefit(benefit, benefitThisMonth);
+	}
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -136,6 +195,8 @@ public class Restaurant {
         Restaurant that = (Restaurant) o;
 
         if (benefitAvailabilityPolicy != that.benefitAvailabilityPolicy) return false;
+        if (benefitAvailabilityRules != null ? !benefitAvailabilityRules.equals(that.benefitAvailabilityRules) : that.benefitAvailabilityRules != null)
+            return false;
         if (benefitPercentage != null ? !benefitPercentage.equals(that.benefitPercentage) : that.benefitPercentage != null)
             return false;
         if (name != null ? !name.equals(that.name) : that.name != null) return false;
@@ -150,6 +211,7 @@ public class Restaurant {
         result = 31 * result + (name != null ? name.hashCode() : 0);
         result = 31 * result + (benefitPercentage != null ? benefitPercentage.hashCode() : 0);
         result = 31 * result + (benefitAvailabilityPolicy != null ? benefitAvailabilityPolicy.hashCode() : 0);
+        result = 31 * result + (benefitAvailabilityRules != null ? benefitAvailabilityRules.hashCode() : 0);
         return result;
     }
 
@@ -162,6 +224,7 @@ public class Restaurant {
         sb.append(", name='").append(name).append('\'');
         sb.append(", benefitPercentage=").append(benefitPercentage);
         sb.append(", benefitAvailabilityPolicy=").append(benefitAvailabilityPolicy);
+        sb.append(", benefitAvailabilityRules=").append(benefitAvailabilityRules);
         sb.append('}');
         return sb.toString();
     }
@@ -1,5 +1,8 @@
 package rewards.internal.restaurant;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Loads restaurant aggregates. Called by the reward network to find and reconstitute Restaurant entities from an
  * external form such as a set of RDMS rows.
@@ -15,4 +18,20 @@ public interface RestaurantRepository {
      * @return restaurant, or null if not found
      */
 	public Restaurant findByMerchantNumber(String merchantNumber);
+
+    /**
+     * Find the restaurants for several merchantNumbers with a single query
+     *
+     * @param merchantNumbers the merchant numbers
+     * @return map of merchant number to restaurant, with no entry for merchant numbers that are not found
+     */
+    public Map<String, Restaurant> findByMerchantNumbers(Collection<String> merchantNumbers);
+
+    /**
+     * Find the current version of the restaurant for supplied merchantNumber, without loading the restaurant
+     *
+     * @param merchantNumber the merchant number
+     * @return version, or null if not found
+     */
+    public Integer findVersionByMerchantNumber(String merchantNumber);
 }
@@ -0,0 +1,307 @@
+package rewards.internal.restaurant;
+
+import common.money.Percentage;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Restaurant repository answering every lookup from an in-memory snapshot of the whole of T_RESTAURANT, indexed by
+ * merchant number, loaded with plain JDBC rather than Hibernate.
+ * <p/>
+ * A snapshot is never changed once built. refresh builds a new one and swaps it in, so lookups are a volatile read
+ * and a hash lookup, with no locking, and always see a consistent set of restaurants. refresh is incremental: it reads
+ * just the ID and VERSION of every row, and only reloads rows that are new or whose version has changed, dropping
+ * those deleted. It is meant to be called periodically in the background, so restaurant changes are seen within the
+ * refresh interval; rows changed without incrementing VERSION are not seen until the application restarts. A row that
+ * cannot be made into a restaurant, such as one with an unknown benefit availability policy, is logged and counted but
+ * does not stop the refresh: the snapshot keeps the restaurant as it was, if it had one, and the row is tried again on
+ * the next refresh.
+ * <p/>
+ * Restaurants handed out are shared between callers and transactions, so they must be treated as read-only.
+ */
+@ManagedResource(description = "Restaurant snapshot")
+public class SnapshotRestaurantRepository implements RestaurantRepository, InitializingBean {
+
+    /**
+     * Largest number of ids in one reload query
+     */
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private static final String SELECT_RESTAURANTS =
+            "select ID, MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, BENEFIT_AVAILABILITY_POLICY, " +
+            "BENEFIT_AVAILABILITY_RULES, VERSION from T_RESTAURANT";
+
+    /**
+     * Logger
+     */
+    private final Logger logger = Logger.getLogger("rewards");
+
+    /**
+     * DataSource
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Current snapshot, replaced whole by refresh
+     */
+    private volatile Snapshot snapshot = new Snapshot(Collections.<Integer, Restaurant>emptyMap());
+
+    /**
+     * Mapper from T_RESTAURANT row to restaurant
+     */
+    private final RowMapper<Restaurant> restaurantMapper = new RestaurantRowMapper();
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong refreshCount  = new AtomicLong();
+    private final AtomicLong reloadedCount = new AtomicLong();
+    private final AtomicLong skippedCount  = new AtomicLong();
+    private volatile long lastRefreshTime;
+    private volatile long lastRefreshMillis;
+
+    /**
+     * Setter for injecting dataSource
+     *
+     * @param dataSource
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Load the first snapshot
+     *
+     * @throws Exception
+     */
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        refresh();
+    }
+
+    /**
+     * Find the restaurant for supplied merchantNumber in the current snapshot
+     *
+     * @param merchantNumber the merchant number
+     * @return restaurant, or null if not found
+     */
+    @Override
+    public Restaurant findByMerchantNumber(String merchantNumber) {
+        return snapshot.byMerchantNumber.get(merchantNumber);
+    }
+
+    /**
+     * Find the restaurants for several merchantNumbers in the current snapshot
+     *
+     * @param merchantNumbers the merchant numbers
+     * @return map of merchant number to restaurant, with no entry for merchant numbers that are not found
+     */
+    @Override
+    public Map<String, Restaurant> findByMerchantNumbers(Collection<String> merchantNumbers) {
+        final Snapshot current = snapshot;
+        final Map<String, Restaurant> restaurants = new HashMap<String, Restaurant>();
+        for (String merchantNumber : merchantNumbers) {
+            final Restaurant restaurant = current.byMerchantNumber.get(merchantNumber);
+            if (restaurant != null) {
+                restaurants.put(merchantNumber, restaurant);
+            }
+        }
+        return restaurants;
+    }
+
+    /**
+     * Find the current version of the restaurant, always from the database
+     *
+     * @param merchantNumber the merchant number
+     * @return version, or null if not found
+     */
+    @Override
+    public Integer findVersionByMerchantNumber(String merchantNumber) {
+        final List<Integer> versions = jdbcTemplate.queryForList(
+                "select VERSION from T_RESTAURANT where MERCHANT_NUMBER = ?", Integer.class, merchantNumber);
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
+    /**
+     * Bring the snapshot up to date with T_RESTAURANT, reloading only restaurants that are new or whose version has
+     * changed. Not to be called by several threads at once.
+     */
+    @ManagedOperation
+    public synchronized void refresh() {
+        final long start = System.nanoTime();
+        final Snapshot current = snapshot;
+
+        final Map<Integer, Integer> versions = new HashMap<Integer, Integer>();
+        jdbcTemplate.query("select ID, VERSION from T_RESTAURANT", new RowCallbackHandler() {
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                versions.put(rs.getInt(1), rs.getInt(2));
+            }
+        });
+
+        final List<Integer> changedIds = new ArrayList<Integer>();
+        for (Map.Entry<Integer, Integer> version : versions.entrySet()) {
+            final Restaurant restaurant = current.byId.get(version.getKey());
+            if (restaurant == null || restaurant.getVersion() != version.getValue()) {
+                changedIds.add(version.getKey());
+            }
+        }
+        final boolean removed = !versions.keySet().containsAll(current.byId.keySet());
+
+        if (!changedIds.isEmpty() || removed) {
+            final Map<Integer, Restaurant> byId = new HashMap<Integer, Restaurant>(current.byId);
+            byId.keySet().retainAll(versions.keySet());
+            for (Restaurant restaurant : loadRestaurants(changedIds, changedIds.size() == versions.size())) {
+                byId.put(restaurant.getEntityId(), restaurant);
+            }
+            snapshot = new Snapshot(byId);
+            logger.debug("refreshed restaurant snapshot:size=" + byId.size() + ", reloaded=" + changedIds.size());
+        }
+
+        reloadedCount.addAndGet(changedIds.size());
+        refreshCount.incrementAndGet();
+        lastRefreshTime = System.currentTimeMillis();
+        lastRefreshMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * @return number of restaurants in the snapshot
+     */
+    @ManagedAttribute
+    public int getSize() {
+        return snapshot.byId.size();
+    }
+
+    /**
+     * @return number of refreshes
+     */
+    @ManagedAttribute
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * @return number of restaurants loaded, over all refreshes
+     */
+    @ManagedAttribute
+    public long getReloadedCount() {
+        return reloadedCount.get();
+    }
+
+    /**
+     * @return number of rows that could not be made into restaurants, over all refreshes
+     */
+    @ManagedAttribute
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * @return time the last refresh finished, in milliseconds since the epoch
+     */
+    @ManagedAttribute
+    public long getLastRefreshTime() {
+        return lastRefreshTime;
+    }
+
+    /**
+     * @return time the last refresh took, in milliseconds
+     */
+    @ManagedAttribute
+    public long getLastRefreshMillis() {
+        return lastRefreshMillis;
+    }
+
+    /**
+     * Helper loading restaurants by id, in as few queries as possible, skipping rows that cannot be made into
+     * restaurants
+     *
+     * @param ids ids of the restaurants to load
+     * @param all true if these are all the restaurants, so they can be loaded without a where clause
+     * @return restaurants
+     */
+    private List<Restaurant> loadRestaurants(List<Integer> ids, boolean all) {
+        final List<Restaurant> restaurants = new ArrayList<Restaurant>(ids.size());
+        final RowCallbackHandler handler = new RowCallbackHandler() {
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                try {
+                    restaurants.add(restaurantMapper.mapRow(rs, rs.getRow()));
+                } catch (RuntimeException e) {
+                    skippedCount.incrementAndGet();
+                    logger.warn("skipped restaurant row:id=" + rs.getInt("ID") + ", error=" + e);
+                }
+            }
+        };
+        if (all) {
+            jdbcTemplate.query(SELECT_RESTAURANTS, handler);
+            return restaurants;
+        }
+
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+            final List<Integer> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+            final StringBuilder sql = new StringBuilder(SELECT_RESTAURANTS).append(" where ID in (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+            jdbcTemplate.query(sql.toString(), chunk.toArray(), handler);
+        }
+        return restaurants;
+    }
+
+    /**
+     * Restaurants at one point in time, indexed by id and merchant number. Never changed once built.
+     */
+    private static class Snapshot {
+        private final Map<Integer, Restaurant> byId;
+        private final Map<String, Restaurant>  byMerchantNumber;
+
+        Snapshot(Map<Integer, Restaurant> byId) {
+            this.byId = byId;
+            this.byMerchantNumber = new HashMap<String, Restaurant>(byId.size() * 2);
+            for (Restaurant restaurant : byId.values()) {
+                byMerchantNumber.put(restaurant.getNumber(), restaurant);
+            }
+        }
+    }
+
+    /**
+     * Maps a T_RESTAURANT row to a restaurant, compiling its benefit availability rules
+     */
+    private static class RestaurantRowMapper implements RowMapper<Restaurant> {
+
+        @Override
+        public Restaurant mapRow(ResultSet rs, int rowNum) throws SQLException {
+            final Restaurant restaurant = new Restaurant(rs.getString("MERCHANT_NUMBER"), rs.getString("NAME"));
+            restaurant.setEntityId(rs.getInt("ID"));
+            restaurant.setBenefitPercentage(Percentage.valueOf(rs.getBigDecimal("BENEFIT_PERCENTAGE")));
+            restaurant.setBenefitAvailabilityPolicy(
+                    BenefitAvailabilityPolicy.valueOf(rs.getString("BENEFIT_AVAILABILITY_POLICY")));
+            final String rules = rs.getString("BENEFIT_AVAILABILITY_RULES");
+            if (rules != null) {
+                restaurant.setBenefitAvailabilityRules(BenefitAvailabilityRules.compile(rules));
+            }
+            restaurant.setVersion(rs.getInt("VERSION"));
+            return restaurant;
+        }
+    }
+}
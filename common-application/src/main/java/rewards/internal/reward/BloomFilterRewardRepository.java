@@ -0,0 +1,295 @@
+package rewards.internal.reward;
+
+import common.money.MonetaryAmount;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import rewards.AccountContribution;
+import rewards.Dining;
+import rewards.RewardConfirmation;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reward repository that answers findConfirmationFor from a Bloom filter of the fingerprints of rewarded dinings, only
+ * going to the repository behind it when the dining has probably been rewarded already.
+ * <p/>
+ * Almost every dining checked by the idempotent receiver is new, so almost every check is answered without a query.
+ * The filter is warmed from T_REWARD at startup and every confirmReward made through this repository is added to it.
+ * Rewards deleted from the database, or confirmed in a transaction that rolls back, are left in the filter and just
+ * cost a query if seen again.
+ * <p/>
+ * Rewards confirmed after startup by another JVM, or otherwise bypassing this repository, are not in the filter, so
+ * their dinings would be reported as not rewarded: only use this where this repository is the only writer of T_REWARD.
+ * The unique dining fingerprint index still prevents such a dining being rewarded twice. It is therefore opt-in, with
+ * the reward-filter profile.
+ *
+ * @see DiningFingerprint
+ */
+@ManagedResource(description = "Reward Bloom filter")
+public class BloomFilterRewardRepository implements RewardRepository, InitializingBean {
+
+    /**
+     * Default number of fingerprints before the filter has to grow
+     */
+    public static final int DEFAULT_INITIAL_CAPACITY = 100000;
+
+    /**
+     * Default probability of going to the database for a dining that has not been rewarded
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * SQL loading the fingerprints of existing rewards
+     */
+    private static final String FINGERPRINTS_SQL = "select DINING_FINGERPRINT from T_REWARD";
+
+    /**
+     * Logger
+     */
+    private final Logger logger = Logger.getLogger("rewards");
+
+    /**
+     * Repository we're filtering
+     */
+    private final RewardRepository rewardRepository;
+
+    /**
+     * DataSource to warm the filter from
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Number of fingerprints before the filter has to grow
+     */
+    private int initialCapacity = DEFAULT_INITIAL_CAPACITY;
+
+    /**
+     * Probability of going to the database for a dining that has not been rewarded
+     */
+    private double falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+
+    /**
+     * Filter of rewarded dining fingerprints, created on warming
+     */
+    private volatile ScalableBloomFilter filter;
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong lookupCount        = new AtomicLong();
+    private final AtomicLong filteredCount      = new AtomicLong();
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+
+    /**
+     * Constructor taking repository to filter
+     *
+     * @param rewardRepository
+     */
+    public BloomFilterRewardRepository(RewardRepository rewardRepository) {
+        this.rewardRepository = rewardRepository;
+    }
+
+    /**
+     * Setter for injecting dataSource holding T_REWARD, to warm the filter from
+     *
+     * @param dataSource
+     */
+    public void setDataSource(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Setter for the number of fingerprints before the filter has to grow; takes effect on warming
+     *
+     * @param initialCapacity
+     */
+    public void setInitialCapacity(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+    }
+
+    /**
+     * Setter for the probability of going to the database for a dining that has not been rewarded; takes effect on
+     * warming
+     *
+     * @param falsePositiveRate
+     */
+    public void setFalsePositiveRate(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Warm the filter from T_REWARD
+     *
+     * @throws Exception
+     */
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        warm();
+    }
+
+    /**
+     * (Re-)create the filter and load the fingerprints of all existing rewards into it. Rewards confirmed while
+     * warming are added to the old filter and may be missed, so this is meant for startup.
+     */
+    public void warm() {
+        if (jdbcTemplate == null) {
+            throw new IllegalStateException("dataSource must be set to warm the filter");
+        }
+        final ScalableBloomFilter warmFilter = new ScalableBloomFilter(initialCapacity, falsePositiveRate);
+        jdbcTemplate.query(FINGERPRINTS_SQL, new RowCallbackHandler() {
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                warmFilter.add(rs.getString(1));
+            }
+        });
+        filter = warmFilter;
+        logger.info("warmed reward filter:size=" + warmFilter.getSize() + ", bits=" + warmFilter.getBitCount());
+    }
+
+    /**
+     * Confirm the reward, adding the dining to the filter
+     *
+     * @param contribution the account contribution that was made
+     * @param dining       the dining event that resulted in the account contribution
+     * @return reward confirmation
+     */
+    @Override
+    public RewardConfirmation confirmReward(AccountContribution contribution, Dining dining) {
+        final RewardConfirmation rewardConfirmation = rewardRepository.confirmReward(contribution, dining);
+        getFilter().add(DiningFingerprint.fingerprintOf(dining));
+        return rewardConfirmation;
+    }
+
+    /**
+     * Find the confirmation for the dining, only going to the database if the filter says it has probably been
+     * rewarded
+     *
+     * @param dining
+     * @return the RewardConfirmation for this particular Dining, <code>null</code> otherwise
+     */
+    @Override
+    public RewardConfirmation findConfirmationFor(Dining dining) {
+        lookupCount.incrementAndGet();
+        if (!getFilter().mightContain(DiningFingerprint.fingerprintOf(dining))) {
+            filteredCount.incrementAndGet();
+            return null;
+        }
+
+        final RewardConfirmation rewardConfirmation = rewardRepository.findConfirmationFor(dining);
+        if (rewardConfirmation == null) {
+            falsePositiveCount.incrementAndGet();
+        }
+        return rewardConfirmation;
+    }
+
+    /**
+     * Find the total reward, from the database
+     *
+     * @param accountNumber  the account rewarded
+     * @param merchantNumber the restaurant dined at
+     * @param from           earliest dining time, inclusive
+     * @param until          latest dining time, exclusive
+     * @return total reward, zero if there were none
+     */
+    @Override
+    public MonetaryAmount findRewardTotalFor(String accountNumber, String merchantNumber, Date from, Date until) {
+        return rewardRepository.findRewardTotalFor(accountNumber, merchantNumber, from, until);
+    }
+
+    /**
+     * List the account's rewards, from the database
+     *
+     * @param accountNumber the account rewarded
+     * @param handler       the handler to call for each confirmation
+     */
+    @Override
+    public void findConfirmationsFor(String accountNumber, RewardConfirmationHandler handler) {
+        rewardRepository.findConfirmationsFor(accountNumber, handler);
+    }
+
+    /**
+     * @return number of findConfirmationFor calls
+     */
+    @ManagedAttribute
+    public long getLookupCount() {
+        return lookupCount.get();
+    }
+
+    /**
+     * @return number of findConfirmationFor calls answered by the filter, without a query
+     */
+    @ManagedAttribute
+    public long getFilteredCount() {
+        return filteredCount.get();
+    }
+
+    /**
+     * @return number of findConfirmationFor calls that queried and found no reward
+     */
+    @ManagedAttribute
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.get();
+    }
+
+    /**
+     * @return number of fingerprints added to the filter
+     */
+    @ManagedAttribute
+    public long getSize() {
+        return getFilter().getSize();
+    }
+
+    /**
+     * @return number of times the filter has grown, plus 1
+     */
+    @ManagedAttribute
+    public int getStageCount() {
+        return getFilter().getStageCount();
+    }
+
+    /**
+     * @return memory used by the filter, in bits
+     */
+    @ManagedAttribute
+    public long getBitCount() {
+        return getFilter().getBitCount();
+    }
+
+    /**
+     * @return probability of going to the database for a dining that has not been rewarded, as configured
+     */
+    @ManagedAttribute
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * @return probability of going to the database for a dining that has not been rewarded, estimated from how full
+     *         the filter is
+     */
+    @ManagedAttribute
+    public double getEstimatedFalsePositiveRate() {
+        return getFilter().getEstimatedFalsePositiveRate();
+    }
+
+    /**
+     * Helper getting the filter, which must have been warmed
+     *
+     * @return filter
+     */
+    private ScalableBloomFilter getFilter() {
+        final ScalableBloomFilter current = filter;
+        if (current == null) {
+            throw new IllegalStateException("reward filter has not been warmed");
+        }
+        return current;
+    }
+}
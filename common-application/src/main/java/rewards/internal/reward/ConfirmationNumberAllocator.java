@@ -0,0 +1,143 @@
+package rewards.internal.reward;
+
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out reward confirmation numbers from blocks reserved in the database (a pooled sequence allocator).
+ * <p/>
+ * The S_REWARD_CONFIRMATION_NUMBER sequence increments by a whole block of numbers, so each value taken from it
+ * reserves the block of numbers up to it: value v reserves v - blockSize up to v - 1. Sequence values are never
+ * re-used, so blocks never overlap, whether they are reserved by this allocator, another allocator in a different JVM
+ * sharing the database, or this allocator after a restart. Numbers left in a block when the JVM stops are simply
+ * skipped.
+ * <p/>
+ * The block size is checked against the sequence's increment before the first block is reserved, and must not exceed
+ * it: a larger block would reach into the block of the previous value. A smaller one is safe, as with allocators of
+ * different block sizes sharing the database, but skips the rest of each increment. To raise the block size, alter the
+ * sequence to increment by it and restart it at least the new increment past its next value, as some databases,
+ * HSQLDB among them, have already worked the next value out with the old increment.
+ * <p/>
+ * Numbers within a block are handed out with a lock-free counter; only reserving a new block is synchronized.
+ * A block size of 1 gives the sequence values themselves, i.e. one database round trip per confirmation number.
+ */
+public class ConfirmationNumberAllocator {
+
+    /**
+     * SQL reserving the next block
+     */
+    private static final String NEXT_VALUE_SQL =
+            "select next value for S_REWARD_CONFIRMATION_NUMBER from DUAL_REWARD_CONFIRMATION_NUMBER";
+
+    /**
+     * SQL finding how far the sequence increments, as the standard information schema has it
+     */
+    private static final String INCREMENT_SQL =
+            "select INCREMENT from INFORMATION_SCHEMA.SEQUENCES where SEQUENCE_NAME = 'S_REWARD_CONFIRMATION_NUMBER'";
+
+    /**
+     * JdbcTemplate for reserving blocks
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * How many confirmation numbers to reserve at once
+     */
+    private final int blockSize;
+
+    /**
+     * Block currently being handed out, null until first used
+     */
+    private volatile Block block;
+
+    /**
+     * Whether the block size has been checked against the sequence's increment
+     */
+    private boolean incrementChecked;
+
+    /**
+     * Constructor taking JdbcTemplate and block size
+     *
+     * @param jdbcTemplate for access to the confirmation number sequence
+     * @param blockSize    how many confirmation numbers to reserve per database round trip, at most the sequence's
+     *                     increment
+     */
+    public ConfirmationNumberAllocator(JdbcTemplate jdbcTemplate, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be at least 1:blockSize=" + blockSize);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Get next confirmation number, only going to the database when the current block is used up
+     *
+     * @return next number
+     */
+    public String nextConfirmationNumber() {
+        while (true) {
+            final Block current = block;
+            if (current != null) {
+                final long value = current.next.getAndIncrement();
+                if (value < current.limit) {
+                    return String.valueOf(value);
+                }
+            }
+            reserveBlock(current);
+        }
+    }
+
+    /**
+     * @return how many confirmation numbers are reserved per database round trip
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Reserve a new block, unless another thread already replaced the exhausted one
+     *
+     * @param exhausted the block found to be used up
+     * @throws InvalidDataAccessResourceUsageException if the block size is more than the sequence's increment
+     */
+    private synchronized void reserveBlock(Block exhausted) {
+        if (block == exhausted) {
+            if (!incrementChecked) {
+                checkIncrement();
+            }
+            final long next = jdbcTemplate.queryForObject(NEXT_VALUE_SQL, Long.class);
+            block = new Block(next - blockSize, next);
+        }
+    }
+
+    /**
+     * Helper checking the block size fits in the sequence's increment
+     *
+     * @throws InvalidDataAccessResourceUsageException if the block size is more than the increment
+     */
+    private void checkIncrement() {
+        final long increment = Long.parseLong(jdbcTemplate.queryForObject(INCREMENT_SQL, String.class).trim());
+        if (blockSize > increment) {
+            throw new InvalidDataAccessResourceUsageException(
+                    "confirmation number block size is more than S_REWARD_CONFIRMATION_NUMBER increments by, so " +
+                    "blocks would overlap:blockSize=" + blockSize + ", increment=" + increment);
+        }
+        incrementChecked = true;
+    }
+
+    /**
+     * A reserved range of confirmation numbers [next, limit)
+     */
+    private static class Block {
+        private final AtomicLong next;
+        private final long       limit;
+
+        Block(long first, long limit) {
+            this.next = new AtomicLong(first);
+            this.limit = limit;
+        }
+    }
+}
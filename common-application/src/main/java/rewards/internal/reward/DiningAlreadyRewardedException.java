@@ -0,0 +1,39 @@
+package rewards.internal.reward;
+
+import org.springframework.dao.DuplicateKeyException;
+import rewards.RewardConfirmation;
+
+/**
+ * Exception reporting that a dining has already been rewarded, with the existing confirmation, thrown by an idempotent
+ * reward repository instead of recording the reward again. The current transaction is left usable.
+ */
+public class DiningAlreadyRewardedException extends DuplicateKeyException {
+
+    /**
+     * For serialization
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Confirmation of the reward already made for the dining
+     */
+    private final RewardConfirmation existingConfirmation;
+
+    /**
+     * Constructor taking message and existing confirmation
+     *
+     * @param msg
+     * @param existingConfirmation
+     */
+    public DiningAlreadyRewardedException(String msg, RewardConfirmation existingConfirmation) {
+        super(msg + ":existingConfirmation=" + existingConfirmation);
+        this.existingConfirmation = existingConfirmation;
+    }
+
+    /**
+     * @return confirmation of the reward already made for the dining, with the contribution made then
+     */
+    public RewardConfirmation getExistingConfirmation() {
+        return existingConfirmation;
+    }
+}
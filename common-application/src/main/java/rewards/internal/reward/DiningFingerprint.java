@@ -0,0 +1,36 @@
+package rewards.internal.reward;
+
+import rewards.Dining;
+
+/**
+ * Identifies a dining by everything that distinguishes it: credit card, merchant, amount and date/time.
+ * <p/>
+ * The fingerprint is stored with each reward (T_REWARD.DINING_FINGERPRINT, which has a unique index), so the reward
+ * for a dining can be found with a single indexed lookup. It is a readable concatenation of the values rather than a
+ * hash, so two different dinings can never share a fingerprint.
+ */
+public final class DiningFingerprint {
+
+    /**
+     * Separator between the fingerprint values; cannot appear in card or merchant numbers
+     */
+    private static final char SEPARATOR = '|';
+
+    private DiningFingerprint() {
+    }
+
+    /**
+     * Get the fingerprint of a dining
+     *
+     * @param dining
+     * @return fingerprint, for example "1234123412341234|1234567890|100.0|1318006800000"
+     */
+    public static String fingerprintOf(Dining dining) {
+        return new StringBuilder(64)
+                .append(dining.getCreditCardNumber()).append(SEPARATOR)
+                .append(dining.getMerchantNumber()).append(SEPARATOR)
+                .append(dining.getAmount()).append(SEPARATOR)
+                .append(dining.getDate().getTime())
+                .toString();
+    }
+}
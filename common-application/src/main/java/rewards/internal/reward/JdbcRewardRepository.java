@@ -1,19 +1,44 @@
 package rewards.internal.reward;
 
 import common.datetime.SimpleDate;
+import common.money.MonetaryAmount;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import rewards.AccountContribution;
 import rewards.Dining;
 import rewards.RewardConfirmation;
 
 import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * JDBC implementation of a reward repository that records the result of a reward transaction by inserting a reward
  * confirmation record.
+ * <p/>
+ * In idempotent mode, the insert is tried first, after a savepoint, and only when it breaks the unique dining
+ * constraint is the failed insert rolled back to the savepoint and the existing reward looked up. It is then reported
+ * by a {@link DiningAlreadyRewardedException} carrying the existing confirmation, leaving the transaction usable, which
+ * the reward network turns into cancelling the account contribution just made. Callers can then skip checking for an
+ * existing reward before every reward, and concurrent consumers of the same dining cannot both reward it.
  */
 @Repository
 public class JdbcRewardRepository implements RewardRepository {
@@ -23,6 +48,51 @@ public class JdbcRewardRepository implements RewardRepository {
      */
     private JdbcTemplate jdbcTemplate;
 
+    /**
+     * Default number of confirmation numbers reserved per sequence query
+     */
+    public static final int DEFAULT_CONFIRMATION_NUMBER_BLOCK_SIZE = 100;
+
+    /**
+     * Default number of rewards read per query when listing an account's rewards
+     */
+    public static final int DEFAULT_HISTORY_PAGE_SIZE = 100;
+
+    /**
+     * Query for a page of an account's rewards, with their distributions, after a given reward date and ID
+     */
+    private static final String HISTORY_PAGE_SQL =
+            "select r.ID, r.CONFIRMATION_NUMBER, r.REWARD_AMOUNT, r.REWARD_DATE, r.ACCOUNT_NUMBER, d.BENEFICIARY_NAME, " +
+            "d.DISTRIBUTION_AMOUNT, d.ALLOCATION_PERCENTAGE, d.BENEFICIARY_SAVINGS from (select ID, " +
+            "CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER from T_REWARD where ACCOUNT_NUMBER = ? " +
+            "and (REWARD_DATE > ? or (REWARD_DATE = ? and ID > ?)) order by REWARD_DATE, ID limit ?) r " +
+            "left outer join T_REWARD_DISTRIBUTION d on r.ID = d.REWARD_ID order by r.REWARD_DATE, r.ID";
+
+    /**
+     * Allocator for confirmation numbers
+     */
+    private ConfirmationNumberAllocator confirmationNumberAllocator;
+
+    /**
+     * Number of confirmation numbers reserved per sequence query
+     */
+    private int confirmationNumberBlockSize = DEFAULT_CONFIRMATION_NUMBER_BLOCK_SIZE;
+
+    /**
+     * Prefix put before each allocated confirmation number
+     */
+    private String confirmationNumberPrefix = "";
+
+    /**
+     * Whether confirming a reward for a dining already rewarded reports the existing confirmation
+     */
+    private boolean idempotent;
+
+    /**
+     * Number of rewards read per query when listing an account's rewards
+     */
+    private int historyPageSize = DEFAULT_HISTORY_PAGE_SIZE;
+
     /**
      * ResulSet Extractor
      */
@@ -36,63 +106,187 @@ public class JdbcRewardRepository implements RewardRepository {
      */
     public void setDataSource(DataSource dataSource) {
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.confirmationNumberAllocator = new ConfirmationNumberAllocator(jdbcTemplate, confirmationNumberBlockSize);
+    }
+
+    /**
+     * Setter for the number of confirmation numbers reserved per sequence query. Use 1 for a sequence query per reward.
+     * It must be at most the increment of the confirmation number sequence, the default in the test schema.
+     *
+     * @param confirmationNumberBlockSize
+     */
+    public void setConfirmationNumberBlockSize(int confirmationNumberBlockSize) {
+        this.confirmationNumberBlockSize = confirmationNumberBlockSize;
+        if (jdbcTemplate != null) {
+            this.confirmationNumberAllocator =
+                    new ConfirmationNumberAllocator(jdbcTemplate, confirmationNumberBlockSize);
+        }
+    }
+
+    /**
+     * Setter for the prefix put before each confirmation number, to keep them unique across databases that each
+     * allocate numbers from their own sequence; by default there is none
+     *
+     * @param confirmationNumberPrefix
+     */
+    public void setConfirmationNumberPrefix(String confirmationNumberPrefix) {
+        this.confirmationNumberPrefix = confirmationNumberPrefix;
+    }
+
+    /**
+     * Setter for whether confirming a reward for a dining already rewarded reports the existing confirmation with a
+     * DiningAlreadyRewardedException, leaving the transaction usable, rather than a plain DuplicateKeyException; by
+     * default it throws the plain exception
+     *
+     * @param idempotent
+     */
+    public void setIdempotent(boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * Setter for the number of rewards read per query when listing an account's rewards
+     *
+     * @param historyPageSize
+     */
+    public void setHistoryPageSize(int historyPageSize) {
+        if (historyPageSize < 1) {
+            throw new IllegalArgumentException("historyPageSize must be at least 1:historyPageSize=" + historyPageSize);
+        }
+        this.historyPageSize = historyPageSize;
     }
 
 
     /**
      * Create a record of a reward that will track a contribution made to an account for dining.
+     * <p/>
+     * The reward ID is taken from the generated keys of the reward insert, and the distributions are inserted as a
+     * single JDBC batch, so this costs two statements however many beneficiaries there are.
+     * <p/>
+     * In idempotent mode, the insert is made after a savepoint, so that if the dining has already been rewarded the
+     * failed insert is rolled back to it, rather than relying on the database to carry on with the transaction after
+     * an error, and the existing confirmation, with the contribution made then, is reported.
      *
      * @param contribution the account contribution that was made
      * @param dining       the dining event that resulted in the account contribution
      * @return reward confirmation
+     * @throws DiningAlreadyRewardedException in idempotent mode, if the dining has already been rewarded
      */
     public RewardConfirmation confirmReward(AccountContribution contribution, Dining dining) {
+        final String confirmationNumber = nextConfirmationNumber();
+        if (!idempotent) {
+            insertReward(confirmationNumber, SimpleDate.today().asDate(), contribution, dining);
+            return new RewardConfirmation(confirmationNumber, contribution);
+        }
+
+        try {
+            insertRewardAfterSavepoint(confirmationNumber, SimpleDate.today().asDate(), contribution, dining);
+        } catch (DuplicateKeyException e) {
+            final RewardConfirmation existingConfirmation = findConfirmationFor(dining);
+            if (existingConfirmation == null) {
+                throw e;
+            }
+            throw new DiningAlreadyRewardedException("dining already rewarded:dining=" + dining, existingConfirmation);
+        }
+        return new RewardConfirmation(confirmationNumber, contribution);
+    }
+
+    /**
+     * Helper inserting a reward after a savepoint on the transaction's connection, rolling back to it if the insert
+     * fails, so that the transaction can carry on. Outside a transaction each statement commits on its own, so no
+     * savepoint is needed.
+     *
+     * @param confirmationNumber the confirmation number given to the reward
+     * @param rewardDate         the date the reward was confirmed
+     * @param contribution       the account contribution that was made
+     * @param dining             the dining event that resulted in the account contribution
+     */
+    private void insertRewardAfterSavepoint(final String confirmationNumber, final Date rewardDate,
+                                            final AccountContribution contribution, final Dining dining) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            insertReward(confirmationNumber, rewardDate, contribution, dining);
+            return;
+        }
+
+        jdbcTemplate.execute(new ConnectionCallback<Object>() {
+            @Override
+            public Object doInConnection(Connection connection) throws SQLException {
+                final Savepoint savepoint = connection.setSavepoint();
+                try {
+                    insertReward(confirmationNumber, rewardDate, contribution, dining);
+                } catch (RuntimeException e) {
+                    connection.rollback(savepoint);
+                    throw e;
+                }
+                connection.releaseSavepoint(savepoint);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Insert a reward confirmed elsewhere, with its distributions, as two statements.
+     *
+     * @param confirmationNumber the confirmation number already given to the reward
+     * @param rewardDate         the date the reward was confirmed
+     * @param contribution       the account contribution that was made
+     * @param dining             the dining event that resulted in the account contribution
+     */
+    void insertReward(String confirmationNumber, Date rewardDate, AccountContribution contribution, Dining dining) {
 
         final String rewardSql =
                 "insert into T_REWARD (CONFIRMATION_NUMBER, REWARD_AMOUNT, REWARD_DATE, ACCOUNT_NUMBER, " +
-                "DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT) values (?, ?, ?, ?, ?, ?, ?)";
-        final String confirmationNumber = nextConfirmationNumber();
+                "DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT, DINING_FINGERPRINT) " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?)";
         final String distributionSql =
                 "insert into T_REWARD_DISTRIBUTION (REWARD_ID, BENEFICIARY_NAME, DISTRIBUTION_AMOUNT, " +
                 "ALLOCATION_PERCENTAGE, BENEFICIARY_SAVINGS) values (?, ?, ?, ?, ?)";
 
-        jdbcTemplate.update(rewardSql, confirmationNumber, contribution.getAmount().asBigDecimal(),
-                            SimpleDate.today().asDate(), contribution.getAccountNumber(), dining.getMerchantNumber(),
-                            dining.getDate(), dining.getAmount());
+        final Object[] rewardArgs = {confirmationNumber, contribution.getAmount().asBigDecimal(),
+                                     rewardDate, contribution.getAccountNumber(),
+                                     dining.getMerchantNumber(), dining.getDate(), dining.getAmount(),
+                                     DiningFingerprint.fingerprintOf(dining)};
 
-        final long rewardId =
-                jdbcTemplate.queryForLong("select ID from T_REWARD where CONFIRMATION_NUMBER = ?", confirmationNumber);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(new PreparedStatementCreator() {
+            @Override
+            public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+                PreparedStatement ps = connection.prepareStatement(rewardSql, new String[]{"ID"});
+                new ArgumentPreparedStatementSetter(rewardArgs).setValues(ps);
+                return ps;
+            }
+        }, keyHolder);
 
-        for (AccountContribution.Distribution distribution : contribution.getDistributions()) {
-            jdbcTemplate.update(distributionSql, rewardId, distribution.getBeneficiary(),
-                                distribution.getAmount().asBigDecimal(), distribution.getPercentage().asBigDecimal(),
-                                distribution.getTotalSavings().asBigDecimal());
-        }
+        final long rewardId = keyHolder.getKey().longValue();
 
-        final RewardConfirmation rewardConfirmation = new RewardConfirmation(confirmationNumber, contribution);
-        return rewardConfirmation;
+        if (!contribution.getDistributions().isEmpty()) {
+            List<Object[]> distributionArgs = new ArrayList<Object[]>(contribution.getDistributions().size());
+            for (AccountContribution.Distribution distribution : contribution.getDistributions()) {
+                distributionArgs.add(new Object[]{rewardId, distribution.getBeneficiary(),
+                                                  distribution.getAmount().asBigDecimal(),
+                                                  distribution.getPercentage().asBigDecimal(),
+                                                  distribution.getTotalSavings().asBigDecimal()});
+            }
+            jdbcTemplate.batchUpdate(distributionSql, distributionArgs);
+        }
     }
 
     /**
-     * Finds a RewardConfirmation related to this Dining.
+     * Finds a RewardConfirmation related to this Dining, with a point lookup on the unique dining fingerprint.
      *
      * @param dining
      * @return the RewardConfirmation for this particular Dining, <code>null</code> otherwise
+     * @see DiningFingerprint
      */
     @Override
     public RewardConfirmation findConfirmationFor(Dining dining) {
         final String sql =
                 "select r.CONFIRMATION_NUMBER, r.REWARD_AMOUNT, r.ACCOUNT_NUMBER, r.DINING_DATE, d.BENEFICIARY_NAME, " +
                 "d.DISTRIBUTION_AMOUNT, d.ALLOCATION_PERCENTAGE, d.BENEFICIARY_SAVINGS from T_REWARD r left outer " +
-                "join T_REWARD_DISTRIBUTION d on r.ID = d.REWARD_ID, " +
-                "T_ACCOUNT a, T_ACCOUNT_CREDIT_CARD cc where a.NUMBER = r.ACCOUNT_NUMBER and a.ID = cc.ACCOUNT_ID and" +
-                " r.DINING_AMOUNT = ? and cc.NUMBER = ? and r.DINING_MERCHANT_NUMBER = ? and r" +
-                ".DINING_DATE = ?";
+                "join T_REWARD_DISTRIBUTION d on r.ID = d.REWARD_ID where r.DINING_FINGERPRINT = ?";
 
         List<RewardConfirmation> rewardConfirmations = jdbcTemplate.query(sql, rewardConfirmationResultSetExtractor,
-                                                                          dining.getAmount(),
-                                                                          dining.getCreditCardNumber(),
-                                                                          dining.getMerchantNumber(), dining.getDate());
+                                                                          DiningFingerprint.fingerprintOf(dining));
 
         if (rewardConfirmations.size() > 1) {
             throw new IncorrectResultSizeDataAccessException("multiple confirmations for dining=" + dining, 1);
@@ -104,14 +298,119 @@ public class JdbcRewardRepository implements RewardRepository {
     }
 
     /**
-     * Helper to get next confirmation number
+     * Finds the total reward made to an account for dining at a restaurant between two times, with a range scan of
+     * the account, merchant and dining date index.
+     *
+     * @param accountNumber  the account rewarded
+     * @param merchantNumber the restaurant dined at
+     * @param from           earliest dining time, inclusive
+     * @param until          latest dining time, exclusive
+     * @return total reward, zero if there were none
+     */
+    @Override
+    public MonetaryAmount findRewardTotalFor(String accountNumber, String merchantNumber, Date from, Date until) {
+        final String sql =
+                "select sum(REWARD_AMOUNT) from T_REWARD where ACCOUNT_NUMBER = ? and DINING_MERCHANT_NUMBER = ? " +
+                "and DINING_DATE >= ? and DINING_DATE < ?";
+
+        final BigDecimal total = jdbcTemplate.queryForObject(sql, BigDecimal.class, accountNumber, merchantNumber,
+                                                             from, until);
+        return (total == null) ? MonetaryAmount.zero() : new MonetaryAmount(total);
+    }
+
+    /**
+     * Passes each of an account's reward confirmations to a handler, oldest first, a page at a time. Each page is a
+     * range scan of the account, reward date and ID index, starting after the last reward of the page before (keyset
+     * pagination), so every page costs the same however far into the history it is, and only one reward is held in
+     * memory at a time.
+     *
+     * @param accountNumber the account rewarded
+     * @param handler       the handler to call for each confirmation
+     */
+    @Override
+    public void findConfirmationsFor(String accountNumber, RewardConfirmationHandler handler) {
+        HistoryPageHandler page = new HistoryPageHandler(handler);
+        Date lastRewardDate = new Date(0);
+        long lastId = -1;
+        do {
+            page.reset();
+            jdbcTemplate.query(HISTORY_PAGE_SQL, page, accountNumber, lastRewardDate, lastRewardDate, lastId,
+                               historyPageSize);
+            page.finish();
+            lastRewardDate = page.lastRewardDate;
+            lastId = page.lastId;
+        } while (page.rewardCount == historyPageSize);
+    }
+
+    /**
+     * Get the next confirmation number, from the current block reserved by the allocator, after the prefix
      *
      * @return next number
      */
-    private String nextConfirmationNumber() {
-        String sql = "select next value for S_REWARD_CONFIRMATION_NUMBER from DUAL_REWARD_CONFIRMATION_NUMBER";
-        return jdbcTemplate.queryForObject(sql, String.class);
+    String nextConfirmationNumber() {
+        return confirmationNumberPrefix + confirmationNumberAllocator.nextConfirmationNumber();
     }
 
+    /**
+     * Row handler for a page of an account's rewards, passing each reward to the handler once all its distribution
+     * rows have been read, and remembering the key of the last reward to start the next page after
+     */
+    private static final class HistoryPageHandler implements RowCallbackHandler {
+
+        private final RewardConfirmationHandler handler;
 
-}
\ No newline at end of file
+        private int rewardCount;
+        private long lastId;
+        private Date lastRewardDate;
+
+        private String confirmationNumber;
+        private String accountNumber;
+        private MonetaryAmount amount;
+        private Set<AccountContribution.Distribution> distributions;
+
+        private HistoryPageHandler(RewardConfirmationHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            final long id = rs.getLong("ID");
+            if (confirmationNumber == null || id != lastId) {
+                finish();
+                rewardCount++;
+                lastId = id;
+                lastRewardDate = rs.getDate("REWARD_DATE");
+                confirmationNumber = rs.getString("CONFIRMATION_NUMBER");
+                accountNumber = rs.getString("ACCOUNT_NUMBER");
+                amount = new MonetaryAmount(rs.getDouble("REWARD_AMOUNT"));
+                distributions = new HashSet<AccountContribution.Distribution>();
+            }
+
+            final AccountContribution.Distribution distribution =
+                    RewardConfirmationResultSetExtractor.mapDistribution(rs);
+            if (distribution != null) {
+                distributions.add(distribution);
+            }
+        }
+
+        /**
+         * Start a new page
+         */
+        private void reset() {
+            rewardCount = 0;
+            confirmationNumber = null;
+        }
+
+        /**
+         * Pass the reward read so far, if any, to the handler
+         */
+        private void finish() {
+            if (confirmationNumber != null) {
+                handler.processConfirmation(new RewardConfirmation(
+                        confirmationNumber, new AccountContribution(accountNumber, amount, distributions)),
+                                            lastRewardDate);
+                confirmationNumber = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,697 @@
+package rewards.internal.reward;
+
+import common.datetime.SimpleDate;
+import common.money.MonetaryAmount;
+import common.money.Percentage;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import rewards.AccountContribution;
+import rewards.Dining;
+import rewards.RewardConfirmation;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reward repository that records confirmed rewards, with their distributions, by appending them to a memory-mapped
+ * ledger on local disk, replaying them into T_REWARD and T_REWARD_DISTRIBUTION in the background.
+ * <p/>
+ * Confirming a reward costs a memory copy into the ledger rather than two statements against the database, so rewards
+ * are recorded at the speed of sequential disk writes. Rewards not yet replayed are kept in memory by dining
+ * fingerprint, so findConfirmationFor and findRewardTotalFor see them as soon as they are confirmed, and go to the
+ * database for the rest. On startup, the rewards appended since the last checkpoint are read back from the ledger and
+ * replayed again, so none is lost if the JVM stopped before they reached the database. Each reward is replayed, with
+ * its distributions, in a transaction of its own. A reward whose dining is already in the database under the same
+ * confirmation number has been replayed before, and is skipped; under another confirmation number, it is a conflict
+ * that stops the replay, and is counted as a replay failure, until resolved by hand.
+ * <p/>
+ * A dining already rewarded, whether pending or in the database, is rejected with DuplicateKeyException when the
+ * reward is confirmed, as JdbcRewardRepository does.
+ * <p/>
+ * Within a transaction, the reward is appended just before it commits, once the other changes have been flushed, so
+ * that a transaction rolling back leaves nothing in the ledger. The database commit failing after that still leaves
+ * the reward in the ledger. Confirmation numbers are still allocated from the database sequence, in blocks.
+ * <p/>
+ * The ledger is local to this JVM, so only use this where this repository is the only writer of T_REWARD, and where
+ * the database may lag behind by the replay interval: reports reading T_REWARD directly miss the rewards not yet
+ * replayed.
+ *
+ * @see RewardLedger
+ */
+@ManagedResource(description = "Reward ledger")
+public class LedgerRewardRepository implements RewardRepository, InitializingBean, DisposableBean {
+
+    /**
+     * Default size of each ledger segment file
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Default number of rewards replayed between checkpoints
+     */
+    public static final int DEFAULT_REPLAY_BATCH_SIZE = 500;
+
+    /**
+     * Version of the ledger record format
+     */
+    private static final byte RECORD_FORMAT = 1;
+
+    /**
+     * Logger
+     */
+    private final Logger logger = Logger.getLogger("rewards");
+
+    /**
+     * Repository the rewards are replayed into, and which allocates confirmation numbers
+     */
+    private final JdbcRewardRepository rewardRepository = new JdbcRewardRepository();
+
+    /**
+     * Transaction each reward is replayed in
+     */
+    private TransactionTemplate replayTransaction;
+
+    /**
+     * Directory holding the ledger
+     */
+    private File directory;
+
+    /**
+     * Size of each ledger segment file
+     */
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * Whether every append is forced to disk
+     */
+    private boolean forceOnAppend;
+
+    /**
+     * Number of rewards replayed between checkpoints
+     */
+    private int replayBatchSize = DEFAULT_REPLAY_BATCH_SIZE;
+
+    /**
+     * Ledger, opened on initialization
+     */
+    private RewardLedger ledger;
+
+    /**
+     * Position of the next reward to replay; guarded by this
+     */
+    private RewardLedger.Cursor replayCursor;
+
+    /**
+     * Rewards appended but not yet replayed, by dining fingerprint
+     */
+    private final ConcurrentMap<String, Entry> pending = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Rewards appended but not yet replayed, by account and merchant number, for totalling; guarded by itself
+     */
+    private final Map<String, List<Entry>> pendingByAccountAndMerchant = new HashMap<String, List<Entry>>();
+
+    /**
+     * Held to replay a reward, moving it from pending to the database, and to total rewards, so that none is counted
+     * twice or missed
+     */
+    private final ReadWriteLock replayLock = new ReentrantReadWriteLock();
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong appendedCount      = new AtomicLong();
+    private final AtomicLong replayedCount      = new AtomicLong();
+    private final AtomicLong replayFailureCount = new AtomicLong();
+
+    /**
+     * Setter for the dataSource the rewards are replayed into
+     *
+     * @param dataSource
+     */
+    public void setDataSource(DataSource dataSource) {
+        rewardRepository.setDataSource(dataSource);
+        replayTransaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Setter for the directory holding the ledger, which is created if need be
+     *
+     * @param directory
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Setter for the size of each ledger segment file
+     *
+     * @param segmentSize
+     */
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Setter for whether every append is forced to disk, so that rewards survive the machine crashing as well as the
+     * JVM; by default they are not
+     *
+     * @param forceOnAppend
+     */
+    public void setForceOnAppend(boolean forceOnAppend) {
+        this.forceOnAppend = forceOnAppend;
+    }
+
+    /**
+     * Setter for the number of rewards replayed between checkpoints
+     *
+     * @param replayBatchSize
+     */
+    public void setReplayBatchSize(int replayBatchSize) {
+        this.replayBatchSize = replayBatchSize;
+    }
+
+    /**
+     * Open the ledger, and recover the rewards not yet replayed
+     *
+     * @throws Exception
+     */
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory is required");
+        }
+        ledger = new RewardLedger(directory, segmentSize, forceOnAppend);
+
+        final int recovered = ledger.read(ledger.cursorAfter(ledger.getCheckpoint()), Integer.MAX_VALUE,
+                                          new RewardLedger.RecordHandler() {
+                                              @Override
+                                              public void handle(long sequence, byte[] record) {
+                                                  addPending(decode(record));
+                                              }
+                                          });
+        synchronized (this) {
+            replayCursor = ledger.cursorAfter(ledger.getCheckpoint());
+        }
+        logger.info("opened reward ledger:directory=" + directory + ", unreplayed=" + recovered);
+    }
+
+    /**
+     * Replay what is left in the ledger, and close it
+     */
+    @Override
+    public void destroy() {
+        try {
+            replay();
+        } finally {
+            ledger.close();
+        }
+    }
+
+    /**
+     * Record a reward by appending it to the ledger, when the current transaction commits if there is one.
+     *
+     * @param contribution the account contribution that was made
+     * @param dining       the dining event that resulted in the account contribution
+     * @return reward confirmation
+     * @throws DuplicateKeyException if the dining has already been rewarded
+     */
+    @Override
+    public RewardConfirmation confirmReward(AccountContribution contribution, Dining dining) {
+        final RewardConfirmation existingConfirmation = findConfirmationFor(dining);
+        if (existingConfirmation != null) {
+            throw new DuplicateKeyException("dining already rewarded:dining=" + dining + ", confirmationNumber=" +
+                                            existingConfirmation.getConfirmationNumber());
+        }
+
+        final RewardConfirmation rewardConfirmation =
+                new RewardConfirmation(rewardRepository.nextConfirmationNumber(), contribution);
+        final Entry entry = new Entry(rewardConfirmation, dining, SimpleDate.today().asDate());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    flushTransaction();
+                    append(entry);
+                }
+            });
+        } else {
+            append(entry);
+        }
+        return rewardConfirmation;
+    }
+
+    /**
+     * Finds the reward confirmation for a dining among the rewards not yet replayed, or else in the database.
+     *
+     * @param dining
+     * @return the RewardConfirmation for this particular Dining, <code>null</code> otherwise
+     */
+    @Override
+    public RewardConfirmation findConfirmationFor(Dining dining) {
+        final Entry entry = pending.get(DiningFingerprint.fingerprintOf(dining));
+        return (entry != null) ? entry.rewardConfirmation : rewardRepository.findConfirmationFor(dining);
+    }
+
+    /**
+     * Finds the total reward made to an account for dining at a restaurant between two times, adding the rewards not
+     * yet replayed to those in the database.
+     *
+     * @param accountNumber  the account rewarded
+     * @param merchantNumber the restaurant dined at
+     * @param from           earliest dining time, inclusive
+     * @param until          latest dining time, exclusive
+     * @return total reward, zero if there were none
+     */
+    @Override
+    public MonetaryAmount findRewardTotalFor(String accountNumber, String merchantNumber, Date from, Date until) {
+        replayLock.readLock().lock();
+        try {
+            MonetaryAmount total = rewardRepository.findRewardTotalFor(accountNumber, merchantNumber, from, until);
+            final List<Entry> entries;
+            synchronized (pendingByAccountAndMerchant) {
+                final List<Entry> indexed = pendingByAccountAndMerchant.get(accountAndMerchant(accountNumber,
+                                                                                             merchantNumber));
+                entries = (indexed == null) ? Collections.<Entry>emptyList() : new ArrayList<Entry>(indexed);
+            }
+            for (Entry entry : entries) {
+                final Date date = entry.dining.getDate();
+                if (!date.before(from) && date.before(until)) {
+                    total = total.add(entry.rewardConfirmation.getAccountContribution().getAmount());
+                }
+            }
+            return total;
+        } finally {
+            replayLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * List the account's rewards from the database, followed by those not yet replayed. The rewards pending when the
+     * listing starts are noted first, and any replayed while the database is read are only passed on once.
+     *
+     * @param accountNumber the account rewarded
+     * @param handler       the handler to call for each confirmation
+     */
+    @Override
+    public void findConfirmationsFor(String accountNumber, final RewardConfirmationHandler handler) {
+        final List<Entry> accountEntries = new ArrayList<Entry>();
+        for (Entry entry : pending.values()) {
+            if (entry.rewardConfirmation.getAccountContribution().getAccountNumber().equals(accountNumber)) {
+                accountEntries.add(entry);
+            }
+        }
+        final Map<String, Entry> accountPending = new LinkedHashMap<String, Entry>();
+        for (Entry entry : sortedByRewardDate(accountEntries)) {
+            accountPending.put(entry.rewardConfirmation.getConfirmationNumber(), entry);
+        }
+
+        rewardRepository.findConfirmationsFor(accountNumber, new RewardConfirmationHandler() {
+            @Override
+            public void processConfirmation(RewardConfirmation rewardConfirmation, Date rewardDate) {
+                accountPending.remove(rewardConfirmation.getConfirmationNumber());
+                handler.processConfirmation(rewardConfirmation, rewardDate);
+            }
+        });
+        for (Entry entry : accountPending.values()) {
+            handler.processConfirmation(entry.rewardConfirmation, entry.rewardDate);
+        }
+    }
+
+    /**
+     * Replay the rewards appended since the last replay into the database, checkpointing after each batch. A reward
+     * that fails to replay is retried on the next replay, with those after it.
+     *
+     * @return number of rewards replayed
+     */
+    @ManagedOperation
+    public synchronized int replay() {
+        int replayed = 0;
+        try {
+            int batch;
+            do {
+                batch = ledger.read(replayCursor, replayBatchSize, new RewardLedger.RecordHandler() {
+                    @Override
+                    public void handle(long sequence, byte[] record) {
+                        replay(decode(record));
+                    }
+                });
+                replayed += batch;
+            } while (batch == replayBatchSize);
+        } catch (DataAccessException e) {
+            replayFailureCount.incrementAndGet();
+            logger.warn("cannot replay reward, retrying on next replay:sequence=" +
+                        (replayCursor.getLastSequence() + 1), e);
+        } finally {
+            if (replayCursor.getLastSequence() > ledger.getCheckpoint()) {
+                try {
+                    ledger.checkpoint(replayCursor.getLastSequence());
+                } catch (IOException e) {
+                    logger.warn("cannot checkpoint reward ledger:sequence=" + replayCursor.getLastSequence(), e);
+                }
+            }
+        }
+        replayedCount.addAndGet(replayed);
+        return replayed;
+    }
+
+    /**
+     * @return number of rewards appended and not yet replayed
+     */
+    @ManagedAttribute
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return number of rewards appended since startup
+     */
+    @ManagedAttribute
+    public long getAppendedCount() {
+        return appendedCount.get();
+    }
+
+    /**
+     * @return number of rewards replayed since startup
+     */
+    @ManagedAttribute
+    public long getReplayedCount() {
+        return replayedCount.get();
+    }
+
+    /**
+     * @return number of replays stopped by a reward failing to replay
+     */
+    @ManagedAttribute
+    public long getReplayFailureCount() {
+        return replayFailureCount.get();
+    }
+
+    /**
+     * @return sequence number of the last reward appended
+     */
+    @ManagedAttribute
+    public long getLastSequence() {
+        return ledger.getLastSequence();
+    }
+
+    /**
+     * @return sequence number of the last reward replayed and checkpointed
+     */
+    @ManagedAttribute
+    public long getCheckpoint() {
+        return ledger.getCheckpoint();
+    }
+
+    /**
+     * @return number of ledger segment files
+     */
+    @ManagedAttribute
+    public int getSegmentCount() {
+        return ledger.getSegmentCount();
+    }
+
+    /**
+     * Helper appending a reward to the ledger, making it visible to the finders first, so that it is never replayed
+     * before it is pending. A reward for the same dining confirmed by a concurrent transaction since this one checked
+     * is rejected.
+     *
+     * @param entry
+     */
+    private void append(Entry entry) {
+        if (pending.putIfAbsent(entry.fingerprint, entry) != null) {
+            throw new DuplicateKeyException("dining already rewarded:dining=" + entry.dining);
+        }
+        indexPending(entry);
+        try {
+            ledger.append(encode(entry));
+        } catch (IOException e) {
+            removePending(entry);
+            throw new DataAccessResourceFailureException("cannot append reward to ledger:directory=" + directory, e);
+        }
+        appendedCount.incrementAndGet();
+    }
+
+    /**
+     * Helper replaying a reward into the database in a transaction of its own, then dropping it from the rewards not
+     * yet replayed. A reward already in the database under the same confirmation number is skipped.
+     *
+     * @param entry
+     * @throws DataIntegrityViolationException if the dining is in the database under another confirmation number
+     */
+    private void replay(final Entry entry) {
+        final String confirmationNumber = entry.rewardConfirmation.getConfirmationNumber();
+        replayLock.writeLock().lock();
+        try {
+            try {
+                replayTransaction.execute(new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus status) {
+                        rewardRepository.insertReward(confirmationNumber, entry.rewardDate,
+                                                      entry.rewardConfirmation.getAccountContribution(), entry.dining);
+                    }
+                });
+            } catch (DuplicateKeyException e) {
+                final RewardConfirmation existingConfirmation = rewardRepository.findConfirmationFor(entry.dining);
+                if (existingConfirmation == null
+                        || !existingConfirmation.getConfirmationNumber().equals(confirmationNumber)) {
+                    throw new DataIntegrityViolationException("reward conflicts with one in the database:" +
+                                                              "confirmationNumber=" + confirmationNumber +
+                                                              ", existing=" + existingConfirmation, e);
+                }
+                logger.info("reward already replayed:confirmationNumber=" + confirmationNumber);
+            }
+            removePending(entry);
+        } finally {
+            replayLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Helper adding a reward read back from the ledger to the rewards not yet replayed, in place of any earlier one
+     * for the same dining
+     *
+     * @param entry
+     */
+    private void addPending(Entry entry) {
+        final Entry previous = pending.put(entry.fingerprint, entry);
+        if (previous != null) {
+            unindexPending(previous);
+        }
+        indexPending(entry);
+    }
+
+    /**
+     * Helper dropping a reward from the rewards not yet replayed, unless it has been replaced by another for the same
+     * dining. The entry may have been read back from the ledger, so is matched by confirmation number.
+     *
+     * @param entry
+     */
+    private void removePending(Entry entry) {
+        final Entry current = pending.get(entry.fingerprint);
+        if (current != null
+                && current.rewardConfirmation.getConfirmationNumber().equals(
+                        entry.rewardConfirmation.getConfirmationNumber())
+                && pending.remove(entry.fingerprint, current)) {
+            unindexPending(current);
+        }
+    }
+
+    /**
+     * Helper indexing a pending reward by account and merchant number
+     *
+     * @param entry
+     */
+    private void indexPending(Entry entry) {
+        synchronized (pendingByAccountAndMerchant) {
+            List<Entry> entries = pendingByAccountAndMerchant.get(entry.accountAndMerchant);
+            if (entries == null) {
+                entries = new ArrayList<Entry>(4);
+                pendingByAccountAndMerchant.put(entry.accountAndMerchant, entries);
+            }
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Helper removing a pending reward from the index by account and merchant number
+     *
+     * @param entry
+     */
+    private void unindexPending(Entry entry) {
+        synchronized (pendingByAccountAndMerchant) {
+            final List<Entry> entries = pendingByAccountAndMerchant.get(entry.accountAndMerchant);
+            if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+                pendingByAccountAndMerchant.remove(entry.accountAndMerchant);
+            }
+        }
+    }
+
+    /**
+     * Helper making the key of the index of pending rewards
+     *
+     * @param accountNumber
+     * @param merchantNumber
+     * @return key
+     */
+    private static String accountAndMerchant(String accountNumber, String merchantNumber) {
+        return accountNumber + '/' + merchantNumber;
+    }
+
+    /**
+     * Helper flushing the changes made in the current transaction, so that failures such as optimistic lock conflicts
+     * are raised before the reward is appended, rather than when the transaction commits
+     */
+    private static void flushTransaction() {
+        try {
+            TransactionAspectSupport.currentTransactionStatus().flush();
+        } catch (NoTransactionException e) {
+            // not a declarative transaction: its changes are flushed on commit
+        }
+    }
+
+    /**
+     * Helper encoding a reward as a ledger record
+     *
+     * @param entry
+     * @return record
+     */
+    private static byte[] encode(Entry entry) {
+        final AccountContribution contribution = entry.rewardConfirmation.getAccountContribution();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(RECORD_FORMAT);
+            out.writeUTF(entry.rewardConfirmation.getConfirmationNumber());
+            out.writeLong(entry.rewardDate.getTime());
+            out.writeUTF(contribution.getAccountNumber());
+            out.writeUTF(contribution.getAmount().asBigDecimal().toString());
+            out.writeFloat(entry.dining.getAmount());
+            out.writeUTF(entry.dining.getCreditCardNumber());
+            out.writeUTF(entry.dining.getMerchantNumber());
+            out.writeLong(entry.dining.getDate().getTime());
+            out.writeInt(contribution.getDistributions().size());
+            for (AccountContribution.Distribution distribution : contribution.getDistributions()) {
+                out.writeUTF(distribution.getBeneficiary());
+                out.writeUTF(distribution.getAmount().asBigDecimal().toString());
+                out.writeUTF(distribution.getPercentage().asBigDecimal().toString());
+                out.writeUTF(distribution.getTotalSavings().asBigDecimal().toString());
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot encode reward", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Helper decoding a reward from a ledger record
+     *
+     * @param record
+     * @return reward
+     */
+    private static Entry decode(byte[] record) {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        try {
+            final byte format = in.readByte();
+            if (format != RECORD_FORMAT) {
+                throw new IllegalStateException("unknown ledger record format:format=" + format);
+            }
+            final String confirmationNumber = in.readUTF();
+            final Date rewardDate = new Date(in.readLong());
+            final String accountNumber = in.readUTF();
+            final MonetaryAmount amount = new MonetaryAmount(new BigDecimal(in.readUTF()));
+            final float diningAmount = in.readFloat();
+            final String creditCardNumber = in.readUTF();
+            final String merchantNumber = in.readUTF();
+            final Date diningDate = new Date(in.readLong());
+            final int distributionCount = in.readInt();
+            final Set<AccountContribution.Distribution> distributions =
+                    new HashSet<AccountContribution.Distribution>(distributionCount * 2);
+            for (int i = 0; i < distributionCount; i++) {
+                distributions.add(new AccountContribution.Distribution(
+                        in.readUTF(), new MonetaryAmount(new BigDecimal(in.readUTF())),
+                        Percentage.valueOf(new BigDecimal(in.readUTF())), new MonetaryAmount(new BigDecimal(in.readUTF()))));
+            }
+            return new Entry(new RewardConfirmation(confirmationNumber,
+                                                    new AccountContribution(accountNumber, amount, distributions)),
+                             new Dining(diningAmount, creditCardNumber, merchantNumber, diningDate), rewardDate);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot decode ledger record", e);
+        }
+    }
+
+    /**
+     * Helper sorting pending rewards by reward date
+     *
+     * @param entries
+     * @return the entries, sorted
+     */
+    private static List<Entry> sortedByRewardDate(List<Entry> entries) {
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry entry1, Entry entry2) {
+                return entry1.rewardDate.compareTo(entry2.rewardDate);
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * A reward in the ledger
+     */
+    private static final class Entry {
+        private final RewardConfirmation rewardConfirmation;
+        private final Dining             dining;
+        private final Date               rewardDate;
+        private final String             fingerprint;
+        private final String             accountAndMerchant;
+
+        private Entry(RewardConfirmation rewardConfirmation, Dining dining, Date rewardDate) {
+            this.rewardConfirmation = rewardConfirmation;
+            this.dining = dining;
+            this.rewardDate = rewardDate;
+            this.fingerprint = DiningFingerprint.fingerprintOf(dining);
+            this.accountAndMerchant = accountAndMerchant(
+                    rewardConfirmation.getAccountContribution().getAccountNumber(), dining.getMerchantNumber());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package rewards.internal.reward;
+
+import rewards.RewardConfirmation;
+
+import java.util.Date;
+
+/**
+ * Callback receiving an account's reward confirmations one at a time, as they are read, so that a long reward history
+ * never has to be held in memory.
+ *
+ * @see RewardRepository#findConfirmationsFor(String, RewardConfirmationHandler)
+ */
+public interface RewardConfirmationHandler {
+
+    /**
+     * Process a reward confirmation
+     *
+     * @param rewardConfirmation the confirmation, with the contribution made
+     * @param rewardDate         the date the reward was confirmed
+     */
+    void processConfirmation(RewardConfirmation rewardConfirmation, Date rewardDate);
+}
@@ -68,16 +68,8 @@ public class RewardConfirmationResultSetExtractor implements ResultSetExtractor<
                 amount = new MonetaryAmount(resultSet.getDouble("REWARD_AMOUNT"));
             }
 
-            final String beneficiaryName = resultSet.getString("BENEFICIARY_NAME");
-            if (beneficiaryName != null) {
-                final MonetaryAmount distributionAmount =
-                        new MonetaryAmount(resultSet.getDouble("DISTRIBUTION_AMOUNT"));
-                final Percentage allocationPercentage = new Percentage(resultSet.getDouble("ALLOCATION_PERCENTAGE"));
-                final MonetaryAmount beneficiarySavings =
-                        new MonetaryAmount(resultSet.getDouble("BENEFICIARY_SAVINGS"));
-                AccountContribution.Distribution distribution =
-                        new AccountContribution.Distribution(beneficiaryName, distributionAmount, allocationPercentage,
-                                                             beneficiarySavings);
+            final AccountContribution.Distribution distribution = mapDistribution(resultSet);
+            if (distribution != null) {
                 distributions.add(distribution);
             }
         }
@@ -88,6 +80,25 @@ public class RewardConfirmationResultSetExtractor implements ResultSetExtractor<
     }
 
 
+    /**
+     * Map the distribution columns of the current row, outer joined from T_REWARD_DISTRIBUTION
+     *
+     * @param resultSet
+     * @return distribution, or null if the reward has none
+     * @throws SQLException
+     */
+    static AccountContribution.Distribution mapDistribution(ResultSet resultSet) throws SQLException {
+        final String beneficiaryName = resultSet.getString("BENEFICIARY_NAME");
+        if (beneficiaryName == null) {
+            return null;
+        }
+        final MonetaryAmount distributionAmount = new MonetaryAmount(resultSet.getDouble("DISTRIBUTION_AMOUNT"));
+        final Percentage allocationPercentage = Percentage.valueOf(resultSet.getDouble("ALLOCATION_PERCENTAGE"));
+        final MonetaryAmount beneficiarySavings = new MonetaryAmount(resultSet.getDouble("BENEFICIARY_SAVINGS"));
+        return new AccountContribution.Distribution(beneficiaryName, distributionAmount, allocationPercentage,
+                                                    beneficiarySavings);
+    }
+
     /**
      * Helper that will build a reward confirmation for the provided confirmation number,
      * assuming that there is one (confirmationNumber not null)
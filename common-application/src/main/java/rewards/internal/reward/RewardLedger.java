@@ -0,0 +1,465 @@
+package rewards.internal.reward;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records in memory-mapped segment files, numbered by a sequence starting at 1.
+ * <p/>
+ * Records are copied into the mapped segment one after the other, so appending is a memory copy and the operating
+ * system writes the pages out sequentially; a full segment is forced to disk and a new one started. Each record is
+ * framed by its length, a CRC32 of its bytes and its sequence number, so that on opening, the end of the log is found
+ * by reading the last segment up to the first record that is missing, torn or out of sequence.
+ * <p/>
+ * A written record survives the process crashing, as the mapped pages belong to the operating system; to survive the
+ * machine crashing as well, force each append to disk with forceOnAppend, at the cost of a disk write per record.
+ * <p/>
+ * The checkpoint records the sequence up to which the records have been dealt with (replayed elsewhere), and segments
+ * holding only records up to it are deleted. One thread at a time may read, while others append.
+ */
+class RewardLedger {
+
+    /**
+     * Size of the frame before each record: length, CRC32 and sequence number
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * Size of the end marker (a zero length) kept after the last record
+     */
+    private static final int END_MARKER_SIZE = 4;
+
+    private static final String SEGMENT_PREFIX = "ledger-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    /**
+     * Directory holding the segments and checkpoint
+     */
+    private final File directory;
+
+    /**
+     * Size of each new segment
+     */
+    private final int segmentSize;
+
+    /**
+     * Whether every append is forced to disk
+     */
+    private final boolean forceOnAppend;
+
+    /**
+     * Segments, oldest first
+     */
+    private final List<Segment> segments = new CopyOnWriteArrayList<Segment>();
+
+    /**
+     * Segment being appended to, and where the next record goes in it; guarded by this
+     */
+    private Segment current;
+    private int writeOffset;
+    private boolean closed;
+
+    /**
+     * Sequence of the last record appended; every record up to it can be read
+     */
+    private volatile long lastSequence;
+
+    /**
+     * Sequence up to which records have been dealt with
+     */
+    private volatile long checkpoint;
+
+    /**
+     * Open the ledger in a directory, creating it if need be, and find the end of the log
+     *
+     * @param directory     directory holding the segments and checkpoint
+     * @param segmentSize   size of each new segment
+     * @param forceOnAppend whether every append is forced to disk
+     * @throws IOException if the directory or a segment cannot be opened
+     */
+    RewardLedger(File directory, int segmentSize, boolean forceOnAppend) throws IOException {
+        if (segmentSize < HEADER_SIZE + END_MARKER_SIZE) {
+            throw new IllegalArgumentException("segment size too small:segmentSize=" + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create ledger directory:directory=" + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+        this.checkpoint = readCheckpoint();
+        open();
+    }
+
+    /**
+     * Append a record to the log, starting a new segment if it does not fit in the current one
+     *
+     * @param record
+     * @return sequence number of the record
+     * @throws IOException if the ledger is closed or a new segment cannot be created
+     */
+    synchronized long append(byte[] record) throws IOException {
+        if (closed) {
+            throw new IOException("ledger closed:directory=" + directory);
+        }
+        final int size = HEADER_SIZE + record.length;
+        if (size + END_MARKER_SIZE > segmentSize) {
+            throw new IllegalArgumentException("record too large for segment:size=" + size);
+        }
+        if (writeOffset + size + END_MARKER_SIZE > current.buffer.capacity()) {
+            current.buffer.force();
+            roll(lastSequence + 1);
+        }
+
+        final long sequence = lastSequence + 1;
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+
+        final MappedByteBuffer buffer = current.buffer;
+        final ByteBuffer body = buffer.duplicate();
+        body.position(writeOffset + HEADER_SIZE);
+        body.put(record);
+        buffer.putInt(writeOffset + size, 0);
+        buffer.putLong(writeOffset + 8, sequence);
+        buffer.putInt(writeOffset + 4, (int) crc.getValue());
+        buffer.putInt(writeOffset, record.length);
+        if (forceOnAppend) {
+            buffer.force();
+        }
+
+        writeOffset += size;
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Get a cursor positioned to read the records after a sequence number
+     *
+     * @param sequence
+     * @return cursor
+     */
+    Cursor cursorAfter(long sequence) {
+        final Cursor cursor = new Cursor(segments.get(0), 0, segments.get(0).firstSequence);
+        for (Segment segment : segments) {
+            if (segment.firstSequence <= sequence + 1) {
+                cursor.segment = segment;
+                cursor.nextSequence = segment.firstSequence;
+            }
+        }
+        while (cursor.nextSequence <= sequence && cursor.nextSequence <= lastSequence) {
+            final byte[] record = readRecord(cursor.segment.buffer, cursor.offset, cursor.nextSequence);
+            if (record == null) {
+                throw new IllegalStateException("ledger record missing:sequence=" + cursor.nextSequence);
+            }
+            cursor.offset += HEADER_SIZE + record.length;
+            cursor.nextSequence++;
+        }
+        return cursor;
+    }
+
+    /**
+     * Read records appended so far from a cursor, moving it past each record once the handler has dealt with it
+     *
+     * @param cursor     where to read from
+     * @param maxRecords greatest number of records to read
+     * @param handler    called with each record, in sequence
+     * @return number of records read
+     */
+    int read(Cursor cursor, int maxRecords, RecordHandler handler) {
+        final long last = lastSequence;
+        int count = 0;
+        while (count < maxRecords && cursor.nextSequence <= last) {
+            final byte[] record = readRecord(cursor.segment.buffer, cursor.offset, cursor.nextSequence);
+            if (record == null) {
+                final Segment next = segmentAfter(cursor.segment);
+                if (next == null || next.firstSequence != cursor.nextSequence) {
+                    throw new IllegalStateException("ledger record missing:sequence=" + cursor.nextSequence);
+                }
+                cursor.segment = next;
+                cursor.offset = 0;
+                continue;
+            }
+            handler.handle(cursor.nextSequence, record);
+            cursor.offset += HEADER_SIZE + record.length;
+            cursor.nextSequence++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Record that the records up to a sequence number have been dealt with, deleting the segments that only hold such
+     * records. The checkpoint file is replaced by renaming, so it is never seen half written.
+     *
+     * @param sequence
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void checkpoint(long sequence) throws IOException {
+        final File temporary = new File(directory, CHECKPOINT_FILE + ".tmp");
+        final FileOutputStream stream = new FileOutputStream(temporary);
+        try {
+            final DataOutputStream out = new DataOutputStream(stream);
+            out.writeLong(sequence);
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+        final File file = new File(directory, CHECKPOINT_FILE);
+        if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+            throw new IOException("cannot replace checkpoint:file=" + file);
+        }
+        checkpoint = sequence;
+
+        for (Segment segment : segments) {
+            final Segment next = segmentAfter(segment);
+            if (next == null || next.firstSequence > sequence + 1) {
+                break;
+            }
+            segments.remove(segment);
+            if (!segment.file.delete()) {
+                throw new IOException("cannot delete segment:file=" + segment.file);
+            }
+        }
+    }
+
+    /**
+     * @return sequence up to which records have been dealt with
+     */
+    long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @return sequence of the last record appended, 0 if none
+     */
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return number of segment files
+     */
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Force the current segment to disk and refuse further appends. The segments stay mapped until garbage collected.
+     */
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            current.buffer.force();
+        }
+    }
+
+    /**
+     * Helper mapping the existing segments, and finding the end of the last one
+     *
+     * @throws IOException
+     */
+    private void open() throws IOException {
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        // names hold zero-padded first sequence numbers, so sort in sequence order
+        Arrays.sort(files);
+        for (File file : files) {
+            final String name = file.getName();
+            final long firstSequence =
+                    Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            segments.add(new Segment(firstSequence, file, map(file, file.length())));
+        }
+
+        if (segments.isEmpty()) {
+            roll(checkpoint + 1);
+            lastSequence = checkpoint;
+            return;
+        }
+
+        current = segments.get(segments.size() - 1);
+        long sequence = current.firstSequence;
+        int offset = 0;
+        byte[] record;
+        while ((record = readRecord(current.buffer, offset, sequence)) != null) {
+            offset += HEADER_SIZE + record.length;
+            sequence++;
+        }
+        writeOffset = offset;
+        lastSequence = sequence - 1;
+        if (writeOffset + END_MARKER_SIZE <= current.buffer.capacity()) {
+            // overwrite whatever a torn append left behind
+            current.buffer.putInt(writeOffset, 0);
+        }
+    }
+
+    /**
+     * Helper starting a new segment
+     *
+     * @param firstSequence sequence of the first record it will hold
+     * @throws IOException
+     */
+    private void roll(long firstSequence) throws IOException {
+        final File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence,
+                                                            SEGMENT_SUFFIX));
+        if (current != null && current.firstSequence == firstSequence) {
+            // the current segment holds no record, and is remapped at full size
+            segments.remove(current);
+        }
+        current = new Segment(firstSequence, file, map(file, segmentSize));
+        segments.add(current);
+        writeOffset = 0;
+    }
+
+    /**
+     * Helper mapping a file, read-write, creating or extending it to the size mapped
+     *
+     * @param file
+     * @param size
+     * @return mapped buffer, which stays valid once the file is closed
+     * @throws IOException
+     */
+    private MappedByteBuffer map(File file, long size) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            if (randomAccessFile.length() < size) {
+                randomAccessFile.setLength(size);
+            }
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Helper reading a record, checking its frame
+     *
+     * @param buffer   segment
+     * @param offset   where the record starts in the segment
+     * @param sequence sequence number the record should have
+     * @return record, or null if there is no intact record with that sequence number at the offset
+     */
+    private static byte[] readRecord(ByteBuffer buffer, int offset, long sequence) {
+        if (offset + HEADER_SIZE > buffer.capacity()) {
+            return null;
+        }
+        final int length = buffer.getInt(offset);
+        if (length <= 0 || length > buffer.capacity() - offset - HEADER_SIZE
+                || buffer.getLong(offset + 8) != sequence) {
+            return null;
+        }
+        final byte[] record = new byte[length];
+        final ByteBuffer body = buffer.duplicate();
+        body.position(offset + HEADER_SIZE);
+        body.get(record);
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        return ((int) crc.getValue() == buffer.getInt(offset + 4)) ? record : null;
+    }
+
+    /**
+     * Helper finding the segment after another
+     *
+     * @param segment
+     * @return next segment, or null if there is none
+     */
+    private Segment segmentAfter(Segment segment) {
+        // by sequence rather than position, as the segment may have been deleted since
+        for (Segment candidate : segments) {
+            if (candidate.firstSequence > segment.firstSequence) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper reading the checkpoint
+     *
+     * @return checkpoint, 0 if none has been written
+     * @throws IOException
+     */
+    private long readCheckpoint() throws IOException {
+        final File file = new File(directory, CHECKPOINT_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readLong();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Called with each record read, in sequence
+     */
+    interface RecordHandler {
+
+        /**
+         * Deal with a record; if this throws, the cursor stays on the record
+         *
+         * @param sequence
+         * @param record
+         */
+        void handle(long sequence, byte[] record);
+    }
+
+    /**
+     * Position of the next record to read. Not thread-safe: each reading thread needs its own.
+     */
+    static final class Cursor {
+        private Segment segment;
+        private int     offset;
+        private long    nextSequence;
+
+        private Cursor(Segment segment, int offset, long nextSequence) {
+            this.segment = segment;
+            this.offset = offset;
+            this.nextSequence = nextSequence;
+        }
+
+        /**
+         * @return sequence of the last record read, or before the first to read
+         */
+        long getLastSequence() {
+            return nextSequence - 1;
+        }
+    }
+
+    /**
+     * A mapped segment file
+     */
+    private static final class Segment {
+        private final long             firstSequence;
+        private final File             file;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long firstSequence, File file, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
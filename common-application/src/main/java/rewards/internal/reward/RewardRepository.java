@@ -1,9 +1,12 @@
 package rewards.internal.reward;
 
+import common.money.MonetaryAmount;
 import rewards.AccountContribution;
 import rewards.Dining;
 import rewards.RewardConfirmation;
 
+import java.util.Date;
+
 /**
  * Handles creating records of reward transactions to track contributions made to accounts for dining at restaurants.
  */
@@ -11,6 +14,9 @@ public interface RewardRepository {
 
 	/**
 	 * Create a record of a reward that will track a contribution made to an account for dining.
+	 * An idempotent repository may instead throw DiningAlreadyRewardedException, holding the existing confirmation with
+	 * the contribution made then, when the dining has already been rewarded; the contribution passed in is then not
+	 * recorded, and the transaction can carry on.
 	 * @param contribution the account contribution that was made
 	 * @param dining the dining event that resulted in the account contribution
 	 * @return a reward confirmation object that can be used for reporting and to lookup the reward details at a later
@@ -25,4 +31,23 @@ public interface RewardRepository {
      * @return the RewardConfirmation for this particular Dining, <code>null</code> otherwise
      */
     RewardConfirmation findConfirmationFor(Dining dining);
+
+    /**
+     * Finds the total reward made to an account for dining at a restaurant between two times.
+     *
+     * @param accountNumber  the account rewarded
+     * @param merchantNumber the restaurant dined at
+     * @param from           earliest dining time, inclusive
+     * @param until          latest dining time, exclusive
+     * @return total reward, zero if there were none
+     */
+    MonetaryAmount findRewardTotalFor(String accountNumber, String merchantNumber, Date from, Date until);
+
+    /**
+     * Passes each of an account's reward confirmations to a handler, oldest first, without loading them all at once.
+     *
+     * @param accountNumber the account rewarded
+     * @param handler       the handler to call for each confirmation
+     */
+    void findConfirmationsFor(String accountNumber, RewardConfirmationHandler handler);
 }
\ No newline at end of file
@@ -0,0 +1,252 @@
+package rewards.internal.reward;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of strings that grows as elements are added, keeping the overall false-positive rate within the one
+ * requested (Almeida et al., "Scalable Bloom Filters").
+ * <p/>
+ * Elements go into the newest of a series of plain Bloom filters. When it reaches its capacity a new one is started,
+ * with twice the capacity and half the false-positive rate, so the compounded rate stays below the target however many
+ * are added. mightContain is false only if the element was definitely never added; true means it probably was.
+ * <p/>
+ * Thread-safe: bits are set with atomic operations, so adds and lookups do not lock; only starting a new filter is
+ * synchronized. An element being added concurrently with a lookup may or may not be seen by it.
+ */
+public class ScalableBloomFilter {
+
+    /**
+     * Each new filter's capacity is this times the previous one's
+     */
+    private static final int GROWTH = 2;
+
+    /**
+     * Each new filter's false-positive rate is this times the previous one's
+     */
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    /**
+     * Capacity of the first filter
+     */
+    private final int initialCapacity;
+
+    /**
+     * Overall false-positive rate to stay within
+     */
+    private final double falsePositiveRate;
+
+    /**
+     * Filters, oldest first; elements are added to the last
+     */
+    private final List<Stage> stages = new CopyOnWriteArrayList<Stage>();
+
+    /**
+     * Number of elements added
+     */
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Constructor taking expected number of elements and overall false-positive rate
+     *
+     * @param initialCapacity   elements the first filter holds before another is started
+     * @param falsePositiveRate overall probability of mightContain being true for an element never added, in (0, 1)
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("initialCapacity must be at least 1:initialCapacity=" + initialCapacity);
+        }
+        if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0)) {
+            throw new IllegalArgumentException(
+                    "falsePositiveRate must be between 0 and 1:falsePositiveRate=" + falsePositiveRate);
+        }
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        stages.add(new Stage(initialCapacity, falsePositiveRate * (1 - TIGHTENING_RATIO)));
+    }
+
+    /**
+     * Add an element
+     *
+     * @param element
+     */
+    public void add(String element) {
+        final long hash = hash(element);
+        Stage stage = stages.get(stages.size() - 1);
+        if (!stage.reserve()) {
+            stage = grow();
+        }
+        stage.add(hash);
+        size.incrementAndGet();
+    }
+
+    /**
+     * Check whether an element might have been added
+     *
+     * @param element
+     * @return false if the element was definitely never added, true if it probably was
+     */
+    public boolean mightContain(String element) {
+        final long hash = hash(element);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of elements added, including repeats
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * @return number of plain Bloom filters making up this one
+     */
+    public int getStageCount() {
+        return stages.size();
+    }
+
+    /**
+     * @return total bits used by the filters
+     */
+    public long getBitCount() {
+        long bits = 0;
+        for (Stage stage : stages) {
+            bits += stage.bitCount;
+        }
+        return bits;
+    }
+
+    /**
+     * @return capacity of the first filter
+     */
+    public int getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    /**
+     * @return overall false-positive rate this filter stays within
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Estimate the current false-positive rate from how full each filter is
+     *
+     * @return estimated probability of mightContain being true for an element never added
+     */
+    public double getEstimatedFalsePositiveRate() {
+        double trueNegative = 1.0;
+        for (Stage stage : stages) {
+            trueNegative *= 1.0 - stage.estimatedFalsePositiveRate();
+        }
+        return 1.0 - trueNegative;
+    }
+
+    /**
+     * Reserve a place in the newest filter, starting a new one if it is full (unless another thread already has)
+     *
+     * @return filter with a place reserved for the element
+     */
+    private synchronized Stage grow() {
+        Stage stage = stages.get(stages.size() - 1);
+        while (!stage.reserve()) {
+            stage = new Stage(stage.capacity * GROWTH, stage.falsePositiveRate * TIGHTENING_RATIO);
+            stages.add(stage);
+        }
+        return stage;
+    }
+
+    /**
+     * Helper hashing an element to 64 bits (FNV-1a, then mixed so both halves are well distributed)
+     *
+     * @param element
+     * @return hash
+     */
+    private static long hash(String element) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < element.length(); i++) {
+            h ^= element.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= (h >>> 33);
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+
+    /**
+     * A plain Bloom filter sized for its capacity and false-positive rate
+     */
+    private static class Stage {
+        private final int             capacity;
+        private final double          falsePositiveRate;
+        private final long            bitCount;
+        private final int             hashCount;
+        private final AtomicLongArray words;
+        private final AtomicLong      count = new AtomicLong();
+
+        Stage(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            final double ln2 = Math.log(2);
+            final long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+            this.bitCount = Math.max(64, (bits + 63) / 64 * 64);
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * ln2));
+            this.words = new AtomicLongArray((int) (bitCount / 64));
+        }
+
+        boolean reserve() {
+            while (true) {
+                final long current = count.get();
+                if (current >= capacity) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void add(long hash) {
+            final long h1 = hash >>> 32;
+            final long h2 = hash & 0xFFFFFFFFL;
+            for (int i = 0; i < hashCount; i++) {
+                final long bit = (h1 + i * h2) % bitCount;
+                final int word = (int) (bit >>> 6);
+                final long mask = 1L << bit;
+                while (true) {
+                    final long value = words.get(word);
+                    if ((value & mask) != 0 || words.compareAndSet(word, value, value | mask)) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        boolean mightContain(long hash) {
+            final long h1 = hash >>> 32;
+            final long h2 = hash & 0xFFFFFFFFL;
+            for (int i = 0; i < hashCount; i++) {
+                final long bit = (h1 + i * h2) % bitCount;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double estimatedFalsePositiveRate() {
+            return Math.pow(1.0 - Math.exp(-hashCount * (double) count.get() / bitCount), hashCount);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package rewards.internal.reward;
+
+import common.money.MonetaryAmount;
+import org.springframework.stereotype.Repository;
+import rewards.AccountContribution;
+import rewards.Dining;
+import rewards.RewardConfirmation;
+import rewards.internal.account.AccountShards;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reward repository keeping each reward on the shard of the account rewarded, alongside the account, with a JDBC
+ * reward repository working on each shard. The shard is bound to the current transaction, so a reward is recorded in
+ * the same transaction as the account it credits.
+ * <p/>
+ * Each shard allocates confirmation numbers from its own sequence, so they are prefixed with the shard index, as in
+ * "1-300", to keep them unique across shards.
+ *
+ * @see AccountShards
+ */
+@Repository
+public class ShardedRewardRepository implements RewardRepository {
+
+    /**
+     * Shards the accounts are spread over
+     */
+    private final AccountShards shards;
+
+    /**
+     * Repository for each shard, by index
+     */
+    private final List<JdbcRewardRepository> repositories;
+
+    /**
+     * Creates a new sharded reward repository
+     *
+     * @param dataSource the dataSource routing to the bound shard, shared with the account repository
+     * @param shards     the shards the accounts are spread over
+     */
+    public ShardedRewardRepository(DataSource dataSource, AccountShards shards) {
+        this.shards = shards;
+        this.repositories = new ArrayList<JdbcRewardRepository>(shards.getShardCount());
+        for (int i = 0; i < shards.getShardCount(); i++) {
+            final JdbcRewardRepository repository = new JdbcRewardRepository();
+            repository.setDataSource(dataSource);
+            repository.setConfirmationNumberPrefix(i + "-");
+            repositories.add(repository);
+        }
+    }
+
+    /**
+     * Create a record of a reward, on the shard of the account rewarded
+     *
+     * @param contribution the account contribution that was made
+     * @param dining       the dining event that resulted in the account contribution
+     * @return reward confirmation
+     */
+    @Override
+    public RewardConfirmation confirmReward(AccountContribution contribution, Dining dining) {
+        return bind(shards.shardForAccountNumber(contribution.getAccountNumber())).confirmReward(contribution, dining);
+    }
+
+    /**
+     * Finds the reward confirmation for a dining, on the shard of the account for its credit card
+     *
+     * @param dining
+     * @return the RewardConfirmation for this particular Dining, <code>null</code> otherwise
+     */
+    @Override
+    public RewardConfirmation findConfirmationFor(Dining dining) {
+        final Integer shard = shards.shardForCreditCard(dining.getCreditCardNumber());
+        return (shard == null) ? null : bind(shard).findConfirmationFor(dining);
+    }
+
+    /**
+     * Finds the total reward made to an account for dining at a restaurant between two times, on the account's shard
+     *
+     * @param accountNumber  the account rewarded
+     * @param merchantNumber the restaurant dined at
+     * @param from           earliest dining time, inclusive
+     * @param until          latest dining time, exclusive
+     * @return total reward, zero if there were none
+     */
+    @Override
+    public MonetaryAmount findRewardTotalFor(String accountNumber, String merchantNumber, Date from, Date until) {
+        return bind(shards.shardForAccountNumber(accountNumber)).findRewardTotalFor(accountNumber, merchantNumber,
+                                                                                     from, until);
+    }
+
+    /**
+     * List the account's rewards, from the account's shard
+     *
+     * @param accountNumber the account rewarded
+     * @param handler       the handler to call for each confirmation
+     */
+    @Override
+    public void findConfirmationsFor(String accountNumber, RewardConfirmationHandler handler) {
+        bind(shards.shardForAccountNumber(accountNumber)).findConfirmationsFor(accountNumber, handler);
+    }
+
+    /**
+     * Helper binding a shard to the current transaction
+     *
+     * @param shard
+     * @return repository for the shard
+     */
+    private JdbcRewardRepository bind(int shard) {
+        shards.bind(shard);
+        return repositories.get(shard);
+    }
+}
@@ -83,4 +83,5 @@ insert into T_RESTAURANT (MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, BENEFIT_AVA
 insert into T_RESTAURANT (MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, BENEFIT_AVAILABILITY_POLICY, VERSION) values ('1020304050', 'Subway', .04, 'ALWAYS_AVAILABLE', 0);
 insert into T_RESTAURANT (MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, BENEFIT_AVAILABILITY_POLICY, VERSION) values ('1122334455', 'Bizzaros Pizza', .08, 'ALWAYS_AVAILABLE', 0);
 insert into T_RESTAURANT (MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, BENEFIT_AVAILABILITY_POLICY, VERSION) values ('2233445566', 'Red Lobster', .04, 'ALWAYS_AVAILABLE', 0);
-insert into T_RESTAURANT (MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, BENEFIT_AVAILABILITY_POLICY, VERSION) values ('3344556677', 'Outback', .08, 'ALWAYS_AVAILABLE', 0);
\ No newline at end of file
+insert into T_RESTAURANT (MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, BENEFIT_AVAILABILITY_POLICY, VERSION) values ('3344556677', 'Outback', .08, 'ALWAYS_AVAILABLE', 0);
+insert into T_RESTAURANT (MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, BENEFIT_AVAILABILITY_POLICY, BENEFIT_AVAILABILITY_RULES, VERSION) values ('4455667788', 'Nandos', .10, 'ALWAYS_AVAILABLE', 'days=MON-FRI;hours=11:30-14:30;minAmount=20.00;monthlyCap=10.00', 0);
\ No newline at end of file
@@ -0,0 +1,71 @@
+package rewards;
+
+import org.junit.After;
+import org.junit.Before;
+import org.springframework.context.support.GenericXmlApplicationContext;
+
+/**
+ * Base for system tests of the rewards application with profiles active. Creates the application context with the
+ * profiles given before each test and closes it after, leaving subclasses only the checks of their feature.
+ */
+public abstract class AbstractRewardNetworkProfileTests {
+
+    /**
+     * Configuration for system testing with profiles active, against its own database
+     */
+    protected static final String PROFILE_TEST_CONFIG = "classpath:/rewards/common-application-profile-test-config.xml";
+
+    /**
+     * Profiles active in the application context
+     */
+    private final String[] profiles;
+
+    protected GenericXmlApplicationContext context;
+
+    protected RewardNetwork rewardNetwork;
+
+    /**
+     * Constructor taking the profiles to activate
+     *
+     * @param profiles
+     */
+    protected AbstractRewardNetworkProfileTests(String... profiles) {
+        this.profiles = profiles;
+    }
+
+    @Before
+    public void setUpContext() {
+        context = createContext(getConfigLocation(), profiles);
+        rewardNetwork = context.getBean(RewardNetwork.class);
+    }
+
+    @After
+    public void tearDownContext() {
+        context.close();
+    }
+
+    /**
+     * Returns the configuration to load, by default {@link #PROFILE_TEST_CONFIG}. Subclasses testing against other
+     * databases override this.
+     *
+     * @return location of the test configuration
+     */
+    protected String getConfigLocation() {
+        return PROFILE_TEST_CONFIG;
+    }
+
+    /**
+     * Helper creating and refreshing an application context with the profiles given
+     *
+     * @param configLocation
+     * @param profiles
+     * @return application context
+     */
+    private static GenericXmlApplicationContext createContext(String configLocation, String... profiles) {
+        GenericXmlApplicationContext context = new GenericXmlApplicationContext();
+        context.getEnvironment().setActiveProfiles(profiles);
+        context.load(configLocation);
+        context.refresh();
+        return context;
+    }
+}
@@ -0,0 +1,84 @@
+package rewards;
+
+import common.concurrent.CompletionFuture;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A system test rewarding dinings with the async-rewards profile, which adds an asynchronous version of the reward
+ * network running rewards on a bounded pool of threads.
+ */
+public class RewardNetworkAsyncTests extends AbstractRewardNetworkProfileTests {
+
+    private AsyncRewardNetwork asyncRewardNetwork;
+
+    /**
+     * Constructor activating the async-rewards profile
+     */
+    public RewardNetworkAsyncTests() {
+        super("async-rewards");
+    }
+
+    @Before
+    public void setUp() {
+        asyncRewardNetwork = context.getBean(AsyncRewardNetwork.class);
+    }
+
+
+    /**
+     * Test rewarding dinings asynchronously, for different accounts at once, waiting for them together
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRewardForDiningsAsync() throws Exception {
+        Date now = new Date();
+        CompletionFuture<RewardConfirmation> future0 =
+                asyncRewardNetwork.rewardAccountFor(new Dining(500.0f, "1234123412341234", "1234567890", now));
+        CompletionFuture<RewardConfirmation> future1 =
+                asyncRewardNetwork.rewardAccountFor(new Dining(500.0f, "1234123412340004", "1020304050", now));
+
+        List<RewardConfirmation> confirmations =
+                CompletionFuture.allOf(Arrays.asList(future0, future1)).get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals("confirmations", 2, confirmations.size());
+        Assert.assertEquals("account 0", "123456789", confirmations.get(0).getAccountContribution().getAccountNumber());
+        Assert.assertEquals("account 4", "123456004", confirmations.get(1).getAccountContribution().getAccountNumber());
+    }
+
+
+    /**
+     * Test asynchronous reward for dining with bad credit card fails the future, which a fallback can replace
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRewardForDiningAsyncBadCreditCard() throws Exception {
+        Dining dining = new Dining(500.0f, "1234123412341235", "1234567890", new Date());
+        CompletionFuture<RewardConfirmation> future = asyncRewardNetwork.rewardAccountFor(dining);
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("cause=" + e.getCause(), e.getCause() instanceof EmptyResultDataAccessException);
+        }
+
+        final RewardConfirmation notRewarded = new RewardConfirmation("none", null);
+        Assert.assertSame("fallback", notRewarded,
+                          future.withFallback(new CompletionFuture.Fallback<RewardConfirmation>() {
+                              @Override
+                              public RewardConfirmation valueFor(Throwable failure) throws Exception {
+                                  return notRewarded;
+                              }
+                          }).get());
+    }
+}
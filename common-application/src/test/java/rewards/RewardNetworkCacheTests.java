@@ -0,0 +1,79 @@
+package rewards;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * A system test comparing the SQL used to reward dinings with the hibernate-cache profile, which holds accounts and
+ * restaurants in the Hibernate second-level cache, with the cache warm and with it emptied before every dining.
+ */
+public class RewardNetworkCacheTests extends AbstractRewardNetworkProfileTests {
+
+    /**
+     * Number of dinings rewarded after warming up
+     */
+    private static final int DINING_COUNT = 10;
+
+    /**
+     * Constructor activating the hibernate-cache profile
+     */
+    public RewardNetworkCacheTests() {
+        super("hibernate-cache");
+    }
+
+
+    /**
+     * Rewarding with the cache should need fewer statements, once the account is cached
+     */
+    @Test
+    public void testCacheSavesStatements() {
+        long uncached = countStatements(true);
+        long cached = countStatements(false);
+
+        Assert.assertTrue("cached=" + cached + ", uncached=" + uncached, cached < uncached);
+        // no query for the account, only the beneficiary updates
+        Assert.assertEquals("cached statements", DINING_COUNT * 2, cached);
+    }
+
+
+    /**
+     * Helper rewarding dinings for the same credit card, after rewarding one to warm up
+     *
+     * @param evict whether to empty the second-level cache before each dining
+     * @return number of statements Hibernate prepared for the dinings after the first
+     */
+    private long countStatements(boolean evict) {
+        SessionFactory sessionFactory = context.getBean(SessionFactory.class);
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        Date now = new Date(System.currentTimeMillis() + (evict ? 0 : DINING_COUNT + 1));
+        rewardNetwork.rewardAccountFor(createDining(now, 0));
+        statistics.clear();
+        for (int i = 1; i <= DINING_COUNT; i++) {
+            if (evict) {
+                sessionFactory.getCache().evictEntityRegions();
+                sessionFactory.getCache().evictCollectionRegions();
+                sessionFactory.getCache().evictQueryRegions();
+            }
+            RewardConfirmation confirmation = rewardNetwork.rewardAccountFor(createDining(now, i));
+            Assert.assertEquals("account", "123456789", confirmation.getAccountContribution().getAccountNumber());
+        }
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Helper creating dining by the test account, distinct for each i
+     *
+     * @param now
+     * @param i
+     * @return dining
+     */
+    private Dining createDining(Date now, int i) {
+        return new Dining(100.0f, "1234123412341234", "1234567890", new Date(now.getTime() + i));
+    }
+}
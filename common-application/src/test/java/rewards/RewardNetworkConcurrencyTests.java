@@ -0,0 +1,102 @@
+package rewards;
+
+import common.money.MonetaryAmount;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rewards.internal.StripedAccountLocks;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A system test rewarding dinings for the same account from several threads at once, with the account-locks profile
+ * serializing them.
+ */
+public class RewardNetworkConcurrencyTests extends AbstractRewardNetworkProfileTests {
+
+    /**
+     * Number of threads rewarding at once
+     */
+    private static final int THREAD_COUNT = 4;
+
+    /**
+     * Number of dinings rewarded by each thread
+     */
+    private static final int DININGS_PER_THREAD = 10;
+
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor activating the account-locks profile
+     */
+    public RewardNetworkConcurrencyTests() {
+        super("account-locks");
+    }
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(context.getBean("dataSource", DataSource.class));
+    }
+
+
+    /**
+     * Every reward for the account should succeed and be saved
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentRewardsForSameAccount() throws Exception {
+        final BigDecimal savingsBefore = getSavings();
+        final Date now = new Date();
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < THREAD_COUNT; t++) {
+                final int thread = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        for (int i = 0; i < DININGS_PER_THREAD; i++) {
+                            rewardNetwork.rewardAccountFor(new Dining(100.0f, "1234123412341234", "1234567890",
+                                    new Date(now.getTime() + thread * DININGS_PER_THREAD + i)));
+                        }
+                        return DININGS_PER_THREAD;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                Assert.assertEquals("rewarded", Integer.valueOf(DININGS_PER_THREAD), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // 8% of each 100.00 dining
+        MonetaryAmount expectedIncrease = new MonetaryAmount(8 * THREAD_COUNT * DININGS_PER_THREAD);
+        Assert.assertEquals("savings", expectedIncrease, new MonetaryAmount(getSavings().subtract(savingsBefore)));
+
+        StripedAccountLocks accountLocks = context.getBean(StripedAccountLocks.class);
+        Assert.assertEquals("acquired", THREAD_COUNT * DININGS_PER_THREAD, accountLocks.getAcquiredCount());
+        Assert.assertEquals("released", 0, accountLocks.getLockedCount());
+    }
+
+
+    /**
+     * Helper getting the total savings of the account's beneficiaries
+     *
+     * @return savings
+     */
+    private BigDecimal getSavings() {
+        return jdbcTemplate.queryForObject("select sum(SAVINGS) from T_ACCOUNT_BENEFICIARY where ACCOUNT_ID = 0",
+                                           BigDecimal.class);
+    }
+}
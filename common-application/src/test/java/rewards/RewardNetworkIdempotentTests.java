@@ -0,0 +1,78 @@
+package rewards;
+
+import common.money.MonetaryAmount;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A system test rewarding dinings with the idempotent-rewards profile, where rewarding a dining twice returns the
+ * first confirmation without crediting the account again.
+ */
+public class RewardNetworkIdempotentTests extends AbstractRewardNetworkProfileTests {
+
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor activating the idempotent-rewards profile
+     */
+    public RewardNetworkIdempotentTests() {
+        super("idempotent-rewards");
+    }
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(context.getBean("dataSource", DataSource.class));
+    }
+
+
+    /**
+     * Rewarding a dining again should return the first confirmation and leave the account's savings alone
+     */
+    @Test
+    public void testRewardForDiningTwice() {
+        Dining dining = new Dining(100.00f, "1234123412341234", "1234567890", new Date());
+        RewardConfirmation confirmation = rewardNetwork.rewardAccountFor(dining);
+        Assert.assertEquals("8% benefit", new MonetaryAmount(8), confirmation.getAccountContribution().getAmount());
+        double savings = annabelleSavings();
+
+        Assert.assertEquals("first confirmation", confirmation, rewardNetwork.rewardAccountFor(dining));
+        Assert.assertEquals("savings", savings, annabelleSavings(), 0.001);
+        Assert.assertEquals("rewards", 1, jdbcTemplate.queryForInt(
+                "select count(*) from T_REWARD where ACCOUNT_NUMBER = '123456789'"));
+    }
+
+    /**
+     * A batch with a dining already rewarded should only credit the account for the new one
+     */
+    @Test
+    public void testRewardForBatchWithDiningRewarded() {
+        Date now = new Date();
+        Dining dining = new Dining(100.00f, "1234123412341234", "1234567890", now);
+        Dining newDining = new Dining(100.00f, "1234123412341234", "1234567890", new Date(now.getTime() + 1000));
+        RewardConfirmation confirmation = rewardNetwork.rewardAccountFor(dining);
+        double savings = annabelleSavings();
+
+        List<RewardConfirmation> confirmations = rewardNetwork.rewardAccountsFor(Arrays.asList(dining, newDining));
+        Assert.assertEquals("first confirmation", confirmation, confirmations.get(0));
+        Assert.assertFalse("new confirmation", confirmation.getConfirmationNumber().equals(
+                confirmations.get(1).getConfirmationNumber()));
+        Assert.assertEquals("savings", savings + 4.0, annabelleSavings(), 0.001);
+    }
+
+    /**
+     * Helper reading the savings of a beneficiary of the rewarded account
+     *
+     * @return savings
+     */
+    private double annabelleSavings() {
+        return jdbcTemplate.queryForObject(
+                "select SAVINGS from T_ACCOUNT_BENEFICIARY where NAME = 'Annabelle' and ACCOUNT_ID = 0", Double.class);
+    }
+}
@@ -0,0 +1,70 @@
+package rewards;
+
+import common.datasource.ReplicaRoutingDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * A system test with read-only transactions routed to a replica database, checking which database each service call
+ * uses without any change to the services.
+ */
+public class RewardNetworkReplicaTests extends AbstractRewardNetworkProfileTests {
+
+    private AccountManager accountManager;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    /**
+     * Returns the replica test configuration, with a primary and a replica database
+     *
+     * @return location of the test configuration
+     */
+    @Override
+    protected String getConfigLocation() {
+        return "classpath:/rewards/common-application-replica-test-config.xml";
+    }
+
+    @Before
+    public void setUp() {
+        accountManager = context.getBean(AccountManager.class);
+        routingDataSource = context.getBean(ReplicaRoutingDataSource.class);
+    }
+
+
+    /**
+     * Read-only account lookups should read the replica
+     */
+    @Test
+    public void testReadOnlyFromReplica() {
+        new JdbcTemplate(context.getBean("rewardReplica", DataSource.class)).update(
+                "update T_ACCOUNT set NAME = 'Replica Name' where NUMBER = '123456789'");
+
+        Assert.assertEquals("name", "Replica Name", accountManager.getAccount(0).getName());
+        Assert.assertEquals("replica connections", 1, routingDataSource.getReplicaConnectionCount());
+    }
+
+    /**
+     * Rewards should be written to the primary, so a read-only lookup of the confirmation misses it until it is
+     * replicated
+     */
+    @Test
+    public void testRewardToPrimary() {
+        Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+        RewardConfirmation confirmation = rewardNetwork.rewardAccountFor(dining);
+
+        Assert.assertEquals("primary", 1, new JdbcTemplate(context.getBean("rewardPrimary", DataSource.class))
+                .queryForInt("select count(*) from T_REWARD where CONFIRMATION_NUMBER = ?",
+                             confirmation.getConfirmationNumber()));
+        try {
+            rewardNetwork.findConfirmationFor(dining);
+            Assert.fail("expected EmptyResultDataAccessException from the replica");
+        } catch (EmptyResultDataAccessException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package rewards;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import rewards.internal.restaurant.CachingRestaurantRepository;
+
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+
+/**
+ * A system test rewarding dinings with the restaurant-cache profile, which caches restaurants by merchant number in
+ * front of Hibernate.
+ */
+public class RewardNetworkRestaurantCacheTests extends AbstractRewardNetworkProfileTests {
+
+    private CachingRestaurantRepository restaurantRepository;
+
+    /**
+     * Constructor activating the restaurant-cache profile
+     */
+    public RewardNetworkRestaurantCacheTests() {
+        super("restaurant-cache");
+    }
+
+    @Before
+    public void setUp() {
+        restaurantRepository = context.getBean(CachingRestaurantRepository.class);
+    }
+
+
+    /**
+     * The second reward at a restaurant should find it in the cache
+     */
+    @Test
+    public void testRewardForDiningFromCache() {
+        Date now = new Date();
+        rewardNetwork.rewardAccountFor(new Dining(100.00f, "1234123412341234", "1234567890", now));
+        rewardNetwork.rewardAccountFor(
+                new Dining(100.00f, "1234123412341234", "1234567890", new Date(now.getTime() + 1000)));
+
+        Assert.assertEquals("misses", 1, restaurantRepository.getMissCount());
+        Assert.assertEquals("hits", 1, restaurantRepository.getHitCount());
+    }
+
+    /**
+     * The cache should be exported with just its annotated attributes and operations
+     */
+    @Test
+    public void testManagementInterface() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        MBeanInfo info = server.getMBeanInfo(new ObjectName("rewards:type=RestaurantCache"));
+
+        for (MBeanOperationInfo operation : info.getOperations()) {
+            Assert.assertFalse("repository method exposed", operation.getName().startsWith("find"));
+        }
+        Assert.assertEquals("size", 0, server.getAttribute(new ObjectName("rewards:type=RestaurantCache"), "Size"));
+    }
+}
@@ -0,0 +1,64 @@
+package rewards;
+
+import common.money.MonetaryAmount;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rewards.internal.restaurant.Restaurant;
+import rewards.internal.restaurant.SnapshotRestaurantRepository;
+
+import javax.sql.DataSource;
+import java.util.Date;
+
+/**
+ * A system test rewarding dinings with the restaurant-snapshot profile, which resolves restaurants from an in-memory
+ * snapshot instead of through Hibernate.
+ */
+public class RewardNetworkRestaurantSnapshotTests extends AbstractRewardNetworkProfileTests {
+
+    private SnapshotRestaurantRepository restaurantRepository;
+
+    private Statistics statistics;
+
+    /**
+     * Constructor activating the restaurant-snapshot profile
+     */
+    public RewardNetworkRestaurantSnapshotTests() {
+        super("restaurant-snapshot");
+    }
+
+    @Before
+    public void setUp() {
+        restaurantRepository = context.getBean(SnapshotRestaurantRepository.class);
+        statistics = context.getBean(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+
+    /**
+     * Rewards should use the restaurant from the snapshot, picking up changes once refreshed, without Hibernate
+     * loading any restaurant
+     */
+    @Test
+    public void testRewardForDiningFromSnapshot() {
+        Date now = new Date();
+        RewardConfirmation confirmation =
+                rewardNetwork.rewardAccountFor(new Dining(100.00f, "1234123412341234", "1234567890", now));
+        Assert.assertEquals("8% benefit", new MonetaryAmount(8), confirmation.getAccountContribution().getAmount());
+
+        new JdbcTemplate(context.getBean("dataSource", DataSource.class)).update(
+                "update T_RESTAURANT set BENEFIT_PERCENTAGE = 0.10, VERSION = VERSION + 1 " +
+                "where MERCHANT_NUMBER = '1234567890'");
+        restaurantRepository.refresh();
+
+        confirmation = rewardNetwork.rewardAccountFor(
+                new Dining(100.00f, "1234123412341234", "1234567890", new Date(now.getTime() + 1000)));
+        Assert.assertEquals("10% benefit", new MonetaryAmount(10), confirmation.getAccountContribution().getAmount());
+
+        Assert.assertEquals("restaurants loaded by Hibernate", 0,
+                            statistics.getEntityStatistics(Restaurant.class.getName()).getLoadCount());
+    }
+}
@@ -0,0 +1,46 @@
+package rewards;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import rewards.internal.reward.BloomFilterRewardRepository;
+
+import java.util.Date;
+
+/**
+ * A system test rewarding dinings with the reward-filter profile, which answers checks for an existing reward from a
+ * Bloom filter of rewarded dinings.
+ */
+public class RewardNetworkRewardFilterTests extends AbstractRewardNetworkProfileTests {
+
+    private BloomFilterRewardRepository rewardRepository;
+
+    /**
+     * Constructor activating the reward-filter profile
+     */
+    public RewardNetworkRewardFilterTests() {
+        super("reward-filter");
+    }
+
+    @Before
+    public void setUp() {
+        rewardRepository = context.getBean(BloomFilterRewardRepository.class);
+    }
+
+
+    /**
+     * A rewarded dining should be found, and a new one answered from the filter
+     */
+    @Test
+    public void testFindConfirmationForThroughFilter() {
+        Date now = new Date();
+        Dining dining = new Dining(100.00f, "1234123412341234", "1234567890", now);
+        RewardConfirmation confirmation = rewardNetwork.rewardAccountFor(dining);
+
+        Assert.assertEquals("rewarded dining", confirmation.getConfirmationNumber(),
+                            rewardRepository.findConfirmationFor(dining).getConfirmationNumber());
+        Assert.assertNull("new dining", rewardRepository.findConfirmationFor(
+                new Dining(100.00f, "1234123412341234", "1234567890", new Date(now.getTime() + 1000))));
+        Assert.assertEquals("lookups", 2, rewardRepository.getLookupCount());
+    }
+}
@@ -0,0 +1,70 @@
+package rewards;
+
+import common.money.MonetaryAmount;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rewards.internal.reward.LedgerRewardRepository;
+
+import javax.sql.DataSource;
+import java.util.Date;
+
+/**
+ * A system test rewarding dinings with the reward-ledger profile, which records rewards in a memory-mapped ledger and
+ * replays them into the database in the background.
+ */
+public class RewardNetworkRewardLedgerTests extends AbstractRewardNetworkProfileTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LedgerRewardRepository rewardRepository;
+
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor activating the reward-ledger profile
+     */
+    public RewardNetworkRewardLedgerTests() {
+        super("reward-ledger");
+    }
+
+    /**
+     * Points the ledger at the temporary folder before the application context is created
+     */
+    @Override
+    @Before
+    public void setUpContext() {
+        System.setProperty("rewards.ledger.dir", folder.getRoot().getPath());
+        super.setUpContext();
+        rewardRepository = context.getBean(LedgerRewardRepository.class);
+        jdbcTemplate = new JdbcTemplate(context.getBean("dataSource", DataSource.class));
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("rewards.ledger.dir");
+    }
+
+
+    /**
+     * A reward should be recorded in the ledger, found straight away, and reach the database once replayed
+     */
+    @Test
+    public void testRewardForDiningInLedger() {
+        Dining dining = new Dining(100.00f, "1234123412341234", "1234567890", new Date());
+        RewardConfirmation confirmation = rewardNetwork.rewardAccountFor(dining);
+        Assert.assertEquals("8% benefit", new MonetaryAmount(8), confirmation.getAccountContribution().getAmount());
+        Assert.assertEquals("in ledger", 1, rewardRepository.getAppendedCount());
+
+        Assert.assertEquals("found", confirmation, rewardNetwork.findConfirmationFor(dining));
+
+        rewardRepository.replay();
+        Assert.assertEquals("in database", 1, jdbcTemplate.queryForInt(
+                "select count(*) from T_REWARD where CONFIRMATION_NUMBER = ?", confirmation.getConfirmationNumber()));
+    }
+}
@@ -0,0 +1,202 @@
+package rewards;
+
+import common.money.MonetaryAmount;
+import common.money.Percentage;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rewards.internal.account.Account;
+import rewards.internal.account.CreditCard;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A system test with the account-shards profile, with accounts spread over two shard databases, checking each reward
+ * and account goes to the shard of its account without any change to the services.
+ */
+public class RewardNetworkShardTests extends AbstractRewardNetworkProfileTests {
+
+    private AccountManager accountManager;
+
+    private JdbcTemplate shard0;
+
+    private JdbcTemplate shard1;
+
+    /**
+     * Constructor activating the account-shards profile
+     */
+    public RewardNetworkShardTests() {
+        super("account-shards");
+    }
+
+    /**
+     * Returns the shard test configuration, with two shard databases
+     *
+     * @return location of the test configuration
+     */
+    @Override
+    protected String getConfigLocation() {
+        return "classpath:/rewards/common-application-shard-test-config.xml";
+    }
+
+    @Before
+    public void setUp() {
+        accountManager = context.getBean(AccountManager.class);
+        shard0 = new JdbcTemplate(context.getBean("rewardShard0", DataSource.class));
+        shard1 = new JdbcTemplate(context.getBean("rewardShard1", DataSource.class));
+    }
+
+
+    /**
+     * Rewards should be recorded on the shard of the account rewarded, and found there
+     */
+    @Test
+    public void testRewardOnAccountShard() {
+        // account 123456789 is on shard 1, account 123456001 on shard 0
+        Dining dining1 = new Dining(100.00f, "1234123412341234", "1234567890", new Date());
+        Dining dining0 = new Dining(100.00f, "1234123412340001", "1234567890", new Date());
+
+        RewardConfirmation confirmation1 = rewardNetwork.rewardAccountFor(dining1);
+        RewardConfirmation confirmation0 = rewardNetwork.rewardAccountFor(dining0);
+        Assert.assertEquals("8% benefit", new MonetaryAmount(8), confirmation1.getAccountContribution().getAmount());
+
+        Assert.assertEquals("rewards on shard 1", 1, countRewards(shard1, "123456789"));
+        Assert.assertEquals("rewards on shard 0", 1, countRewards(shard0, "123456001"));
+        Assert.assertEquals("no reward on other shard", 0,
+                            countRewards(shard0, "123456789") + countRewards(shard1, "123456001"));
+        Assert.assertEquals("savings on shard 1", 254.0, shard1.queryForObject(
+                "select SAVINGS from T_ACCOUNT_BENEFICIARY where NAME = 'Annabelle' and ACCOUNT_ID = 0",
+                Double.class), 0.001);
+
+        Assert.assertEquals("found on shard 1", confirmation1, rewardNetwork.findConfirmationFor(dining1));
+        Assert.assertEquals("found on shard 0", confirmation0, rewardNetwork.findConfirmationFor(dining0));
+        Assert.assertTrue("shard 1 prefix", confirmation1.getConfirmationNumber().startsWith("1-"));
+        Assert.assertTrue("shard 0 prefix", confirmation0.getConfirmationNumber().startsWith("0-"));
+    }
+
+    /**
+     * A batch of dinings for accounts on one shard should be rewarded on that shard
+     */
+    @Test
+    public void testBatchOnOneShard() {
+        // accounts 123456789 and 123456002 are both on shard 1
+        List<RewardConfirmation> confirmations = rewardNetwork.rewardAccountsFor(Arrays.asList(
+                new Dining(100.00f, "1234123412341234", "1234567890", new Date()),
+                new Dining(200.00f, "1234123412340002", "1234567890", new Date())));
+
+        Assert.assertEquals("confirmations", 2, confirmations.size());
+        Assert.assertEquals("rewards on shard 1", 2,
+                            countRewards(shard1, "123456789") + countRewards(shard1, "123456002"));
+    }
+
+    /**
+     * A batch of dinings for accounts on several shards should be rejected, rewarding none of them
+     */
+    @Test
+    public void testBatchOnSeveralShards() {
+        try {
+            rewardNetwork.rewardAccountsFor(Arrays.asList(
+                    new Dining(100.00f, "1234123412341234", "1234567890", new Date()),
+                    new Dining(200.00f, "1234123412340001", "1234567890", new Date())));
+            Assert.fail("batch on several shards rewarded");
+        } catch (InvalidDataAccessApiUsageException e) {
+            // expected
+        }
+
+        Assert.assertEquals("no rewards", 0, countRewards(shard1, "123456789") + countRewards(shard0, "123456001"));
+    }
+
+    /**
+     * Accounts should be listed and found by id from every shard
+     */
+    @Test
+    public void testAccountsFromEveryShard() {
+        Assert.assertEquals("all accounts", 21, accountManager.getAllAccounts().size());
+        Assert.assertEquals("account on shard 1", "123456789", accountManager.getAccount(0).getNumber());
+        Assert.assertEquals("account on shard 0", "123456001", accountManager.getAccount(1).getNumber());
+    }
+
+    /**
+     * An account id on no shard should not be found
+     */
+    @Test(expected = EmptyResultDataAccessException.class)
+    public void testNoAccount() {
+        accountManager.getAccount(999);
+    }
+
+    /**
+     * A new account should be created on the shard for its number, after checking its name and card on every shard
+     */
+    @Test
+    public void testCreateAccount() {
+        // on shard 0, with the name of an account on shard 1
+        Assert.assertFalse("name in use", accountManager.isAccountNameAvailableForCreate("Keith and Keri Donald"));
+        Assert.assertFalse("card in use", accountManager.isCreditCardAvailableForAccountCreate("1234123412341234"));
+
+        Account account = new Account("123456021", "Sharded Account", new Date(), "shard@example.com", false, false,
+                                      new CreditCard("1234123412340021"));
+        account.addBeneficiary("Sharded Beneficiary", Percentage.oneHundred());
+        accountManager.create(account);
+
+        Assert.assertEquals("on shard 0", 1,
+                            shard0.queryForInt("select count(*) from T_ACCOUNT where NUMBER = '123456021'"));
+        Assert.assertEquals("not on shard 1", 0,
+                            shard1.queryForInt("select count(*) from T_ACCOUNT where NUMBER = '123456021'"));
+        Assert.assertFalse("card now in use",
+                           accountManager.isCreditCardAvailableForAccountCreate("1234123412340021"));
+        Assert.assertNotNull("rewarded", rewardNetwork.rewardAccountFor(
+                new Dining(100.00f, "1234123412340021", "1234567890", new Date())));
+    }
+
+    /**
+     * Accounts created on different shards should get different ids, and be found by them
+     */
+    @Test
+    public void testCreateAccountsOnEachShard() {
+        // 123456021 hashes to shard 0, 123456022 to shard 1
+        Account account0 = new Account("123456021", "Shard 0 Account", new Date(), "shard0@example.com", false, false,
+                                       new CreditCard("1234123412340021"));
+        account0.addBeneficiary("Shard 0 Beneficiary", Percentage.oneHundred());
+        accountManager.create(account0);
+        Account account1 = new Account("123456022", "Shard 1 Account", new Date(), "shard1@example.com", false, false,
+                                       new CreditCard("1234123412340022"));
+        account1.addBeneficiary("Shard 1 Beneficiary", Percentage.oneHundred());
+        accountManager.create(account1);
+
+        Assert.assertFalse("ids differ", account0.getEntityId().equals(account1.getEntityId()));
+        Assert.assertEquals("found on shard 0", "123456021",
+                            accountManager.getAccount(account0.getEntityId()).getNumber());
+        Assert.assertEquals("found on shard 1", "123456022",
+                            accountManager.getAccount(account1.getEntityId()).getNumber());
+    }
+
+    /**
+     * An account given an id another shard could give as well should not be created
+     */
+    @Test(expected = DataIntegrityViolationException.class)
+    public void testCreateAccountIdNotStrided() {
+        shard0.execute("alter table T_ACCOUNT alter column ID restart with 1000101");
+        Account account = new Account("123456021", "Sharded Account", new Date(), "shard@example.com", false, false,
+                                      new CreditCard("1234123412340021"));
+        account.addBeneficiary("Sharded Beneficiary", Percentage.oneHundred());
+        accountManager.create(account);
+    }
+
+    /**
+     * Helper counting an account's rewards on a shard
+     *
+     * @param shard
+     * @param accountNumber
+     * @return count
+     */
+    private int countRewards(JdbcTemplate shard, String accountNumber) {
+        return shard.queryForInt("select count(*) from T_REWARD where ACCOUNT_NUMBER = ?", accountNumber);
+    }
+}
@@ -10,7 +10,10 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 
 
 /**
@@ -95,6 +98,34 @@ public class RewardNetworkTests {
     }
 
 
+    /**
+     * Test with dinings at a restaurant with benefit availability rules: weekday lunchtimes, dinings of 20.00 or more,
+     * and at most 10.00 benefit per account per month
+     */
+    @Test
+    public void testRewardForDiningsWithBenefitAvailabilityRules() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2010, Calendar.FEBRUARY, 1, 12, 0);
+        Date mondayLunch = calendar.getTime();
+        calendar.set(2010, Calendar.FEBRUARY, 6, 12, 0);
+        Date saturdayLunch = calendar.getTime();
+        calendar.set(2010, Calendar.FEBRUARY, 2, 19, 0);
+        Date tuesdayDinner = calendar.getTime();
+        calendar.set(2010, Calendar.FEBRUARY, 3, 12, 0);
+        Date wednesdayLunch = calendar.getTime();
+        calendar.set(2010, Calendar.FEBRUARY, 4, 12, 0);
+        Date thursdayLunch = calendar.getTime();
+
+        Assert.assertEquals("weekday lunch", new MonetaryAmount(6), rewardFor(60.00f, mondayLunch));
+        Assert.assertEquals("weekend", MonetaryAmount.zero(), rewardFor(60.00f, saturdayLunch));
+        Assert.assertEquals("dinner", MonetaryAmount.zero(), rewardFor(60.00f, tuesdayDinner));
+        Assert.assertEquals("under minimum", MonetaryAmount.zero(), rewardFor(19.00f, wednesdayLunch));
+        Assert.assertEquals("reaching cap", new MonetaryAmount(4), rewardFor(70.00f, wednesdayLunch));
+        Assert.assertEquals("over cap", MonetaryAmount.zero(), rewardFor(80.00f, thursdayLunch));
+    }
+
+
     /**
      * Test with dining, bad creditCardNumber
      */
@@ -220,4 +251,76 @@ public class RewardNetworkTests {
             // As expected
         }
     }
+
+
+    /**
+     * Test batch of valid dinings, including two for the same account
+     */
+    @Test
+    public void testRewardForDinings() {
+        Dining dining0 = Dining.createDining("100.00", "1234123412341234", "1234567890");
+        Dining dining1 = Dining.createDining("100.00", "1234123412340004", "1020304050");
+        Dining dining2 = Dining.createDining("50.00", "1234123412341234", "1122334455");
+
+        List<RewardConfirmation> confirmations = rewardNetwork.rewardAccountsFor(Arrays.asList(dining0, dining1,
+                                                                                               dining2));
+
+        Assert.assertEquals("confirmations.size()", 3, confirmations.size());
+
+        AccountContribution contribution0 = confirmations.get(0).getAccountContribution();
+        Assert.assertEquals("123456789", contribution0.getAccountNumber());
+        Assert.assertEquals(new MonetaryAmount(8), contribution0.getAmount());
+        Assert.assertEquals(new MonetaryAmount(4), contribution0.getDistribution("Annabelle").getAmount());
+
+        AccountContribution contribution1 = confirmations.get(1).getAccountContribution();
+        Assert.assertEquals("123456004", contribution1.getAccountNumber());
+        Assert.assertEquals(new MonetaryAmount(4), contribution1.getAmount());
+
+        // second dining for account 0 should build on the savings from the first
+        AccountContribution contribution2 = confirmations.get(2).getAccountContribution();
+        Assert.assertEquals("123456789", contribution2.getAccountNumber());
+        Assert.assertEquals(new MonetaryAmount(4), contribution2.getAmount());
+        Assert.assertEquals(contribution0.getDistribution("Annabelle").getTotalSavings().add(new MonetaryAmount(2)),
+                            contribution2.getDistribution("Annabelle").getTotalSavings());
+
+        Assert.assertEquals(confirmations.get(1), rewardNetwork.findConfirmationFor(dining1));
+    }
+
+
+    /**
+     * Test batch of dinings, one with bad creditCardNumber, so none should be rewarded
+     */
+    @Test
+    public void testRewardForDiningsBadCreditCard() {
+        Dining dining0 = Dining.createDining("400.00", "1234123412341234", "1234567890");
+        Dining dining1 = Dining.createDining("400.00", "1234123412341235", "1234567890");
+
+        try {
+            rewardNetwork.rewardAccountsFor(Arrays.asList(dining0, dining1));
+            Assert.fail("expected EmptyResultDataAccessException for account");
+        } catch (EmptyResultDataAccessException edae) {
+            Assert.assertTrue("creditCardNumber in message:" + edae.getMessage(),
+                              edae.getMessage().contains(dining1.getCreditCardNumber()));
+        }
+
+        try {
+            RewardConfirmation confirmation = rewardNetwork.findConfirmationFor(dining0);
+            Assert.fail("expected no confirmation for rolled back dining, but got:" + confirmation);
+        } catch (EmptyResultDataAccessException e) {
+            // As expected
+        }
+    }
+
+
+    /**
+     * Helper rewarding account 123456010 for dining at the restaurant with benefit availability rules
+     *
+     * @param amount
+     * @param date
+     * @return amount rewarded
+     */
+    private MonetaryAmount rewardFor(float amount, Date date) {
+        Dining dining = new Dining(amount, "1234123412340010", "4455667788", date);
+        return rewardNetwork.rewardAccountFor(dining).getAccountContribution().getAmount();
+    }
 }
@@ -0,0 +1,101 @@
+package rewards.internal;
+
+import common.concurrent.CompletionFuture;
+import common.money.MonetaryAmount;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import rewards.Dining;
+import rewards.RewardConfirmation;
+import rewards.RewardNetwork;
+import rewards.internal.account.AccountTestData;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Unit tests for the asynchronous reward network, with a mock reward network
+ */
+public class AsyncRewardNetworkImplTests {
+
+    /**
+     * Mock used
+     */
+    private RewardNetwork rewardNetwork;
+
+    private Dining dining;
+
+    @Before
+    public void setUp() {
+        rewardNetwork = EasyMock.createMock(RewardNetwork.class);
+        dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+    }
+
+
+    /**
+     * Confirmation from the reward network should complete the future
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRewardForDining() throws Exception {
+        RewardConfirmation expectedConfirmation = new RewardConfirmation(
+                "1", AccountTestData.createTestAccount0().makeContribution(new MonetaryAmount(8)));
+        EasyMock.expect(rewardNetwork.rewardAccountFor(dining)).andReturn(expectedConfirmation);
+        EasyMock.replay(rewardNetwork);
+
+        AsyncRewardNetworkImpl asyncRewardNetwork = new AsyncRewardNetworkImpl(rewardNetwork, new SyncTaskExecutor());
+        CompletionFuture<RewardConfirmation> future = asyncRewardNetwork.rewardAccountFor(dining);
+
+        Assert.assertSame("confirmation", expectedConfirmation, future.get());
+        EasyMock.verify(rewardNetwork);
+    }
+
+    /**
+     * Dining rejected by a full executor should fail its future, without being rewarded
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRewardForDiningRejected() throws Exception {
+        EasyMock.replay(rewardNetwork);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.afterPropertiesSet();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            // occupy the thread and the queue
+            for (int i = 0; i < 2; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            CompletionFuture<RewardConfirmation> future =
+                    new AsyncRewardNetworkImpl(rewardNetwork, executor).rewardAccountFor(dining);
+
+            try {
+                future.get();
+                Assert.fail("expected ExecutionException");
+            } catch (ExecutionException e) {
+                Assert.assertTrue("cause=" + e.getCause(), e.getCause() instanceof TaskRejectedException);
+            }
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        EasyMock.verify(rewardNetwork);
+    }
+}
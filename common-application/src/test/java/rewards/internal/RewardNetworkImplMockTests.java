@@ -15,10 +15,16 @@ import rewards.internal.account.Account;
 import rewards.internal.account.AccountRepository;
 import rewards.internal.account.AccountTestData;
 import rewards.internal.restaurant.BenefitAvailabilityPolicy;
+import rewards.internal.restaurant.BenefitAvailabilityRules;
 import rewards.internal.restaurant.Restaurant;
 import rewards.internal.restaurant.RestaurantRepository;
+import rewards.internal.reward.DiningAlreadyRewardedException;
 import rewards.internal.reward.RewardRepository;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -88,7 +94,7 @@ public class RewardNetworkImplMockTests {
         account = AccountTestData.createTestAccount0();
 
         EasyMock.expect(
-                accountRepo.findByCreditCard(dining.getCreditCardNumber()))
+                accountRepo.findForRewardByCreditCard(dining.getCreditCardNumber()))
                 .andReturn(account);
 
         Restaurant restaurant = new Restaurant("1234567890", "Apple Bees");
@@ -135,6 +141,106 @@ public class RewardNetworkImplMockTests {
         EasyMock.verify(accountRepo, restaurantRepo, rewardRepo);
     }
 
+
+    /**
+     * Benefit at a restaurant with a monthly cap should be limited by the account's benefit so far that month
+     */
+    @Test
+    public void testRewardForDiningWithMonthlyBenefitCap() {
+        Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+
+        Account account = AccountTestData.createTestAccount0();
+        final MonetaryAmount expectedAmount = new MonetaryAmount(3);
+        final AccountContribution expectedContribution = account.makeContribution(expectedAmount);
+        account = AccountTestData.createTestAccount0();
+
+        EasyMock.expect(accountRepo.findForRewardByCreditCard(dining.getCreditCardNumber())).andReturn(account);
+
+        Restaurant restaurant = new Restaurant("1234567890", "Apple Bees");
+        restaurant.setBenefitPercentage(new Percentage(0.08));
+        restaurant.setBenefitAvailabilityPolicy(benefitAvailabilityPolicy);
+        BenefitAvailabilityRules rules = BenefitAvailabilityRules.compile("monthlyCap=10.00");
+        restaurant.setBenefitAvailabilityRules(rules);
+        EasyMock.expect(restaurantRepo.findByMerchantNumber(dining.getMerchantNumber())).andReturn(restaurant);
+
+        EasyMock.expect(rewardRepo.findRewardTotalFor("123456789", "1234567890", rules.getMonthStart(dining),
+                                                      rules.getNextMonthStart(dining)))
+                .andReturn(new MonetaryAmount(7));
+        EasyMock.expect(rewardRepo.confirmReward(expectedContribution, dining))
+                .andReturn(new RewardConfirmation("1", expectedContribution));
+        EasyMock.replay(accountRepo, restaurantRepo, rewardRepo);
+
+        RewardConfirmation confirmation = rewardNetwork.rewardAccountFor(dining);
+
+        // only 3.00 of the 8.00 left under the cap
+        Assert.assertEquals(expectedAmount, confirmation.getAccountContribution().getAmount());
+        EasyMock.verify(accountRepo, restaurantRepo, rewardRepo);
+    }
+
+    /**
+     * A dining reported already rewarded should return the existing confirmation and leave the account alone, even
+     * when the existing contribution equals the new one
+     */
+    @Test
+    public void testRewardForDiningAlreadyRewarded() {
+        Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+
+        Account account = AccountTestData.createTestAccount0();
+        final AccountContribution expectedContribution = account.makeContribution(new MonetaryAmount(8));
+        final RewardConfirmation existingConfirmation = new RewardConfirmation("1", expectedContribution);
+        account = AccountTestData.createTestAccount0();
+        final MonetaryAmount savings = account.getBeneficiary("Annabelle").getSavings();
+
+        EasyMock.expect(accountRepo.findForRewardByCreditCard(dining.getCreditCardNumber())).andReturn(account);
+
+        Restaurant restaurant = new Restaurant("1234567890", "Apple Bees");
+        restaurant.setBenefitPercentage(new Percentage(0.08));
+        restaurant.setBenefitAvailabilityPolicy(benefitAvailabilityPolicy);
+        EasyMock.expect(restaurantRepo.findByMerchantNumber(dining.getMerchantNumber())).andReturn(restaurant);
+
+        EasyMock.expect(rewardRepo.confirmReward(expectedContribution, dining))
+                .andThrow(new DiningAlreadyRewardedException("dining already rewarded", existingConfirmation));
+        EasyMock.replay(accountRepo, restaurantRepo, rewardRepo);
+
+        Assert.assertSame("existing confirmation", existingConfirmation, rewardNetwork.rewardAccountFor(dining));
+        Assert.assertEquals("savings", savings, account.getBeneficiary("Annabelle").getSavings());
+        EasyMock.verify(accountRepo, restaurantRepo, rewardRepo);
+    }
+
+    /**
+     * Account for the dining should be locked and released again, outside a transaction
+     */
+    @Test
+    public void testRewardForDiningWithAccountLocks() {
+        StripedAccountLocks accountLocks = new StripedAccountLocks();
+        rewardNetwork.setAccountLocks(accountLocks);
+        Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+
+        Account account = AccountTestData.createTestAccount0();
+        final AccountContribution expectedContribution = account.makeContribution(new MonetaryAmount(8));
+
+        // Reset account, as makeContribution updates beneficiaries
+        account = AccountTestData.createTestAccount0();
+
+        EasyMock.expect(accountRepo.findAccountIdByCreditCard(dining.getCreditCardNumber())).andReturn(0);
+        EasyMock.expect(accountRepo.findForRewardByCreditCard(dining.getCreditCardNumber())).andReturn(account);
+
+        Restaurant restaurant = new Restaurant("1234567890", "Apple Bees");
+        restaurant.setBenefitPercentage(new Percentage(0.08));
+        restaurant.setBenefitAvailabilityPolicy(benefitAvailabilityPolicy);
+        EasyMock.expect(restaurantRepo.findByMerchantNumber(dining.getMerchantNumber())).andReturn(restaurant);
+
+        RewardConfirmation expectedConfirmation = new RewardConfirmation("1", expectedContribution);
+        EasyMock.expect(rewardRepo.confirmReward(expectedContribution, dining)).andReturn(expectedConfirmation);
+        EasyMock.replay(accountRepo, restaurantRepo, rewardRepo);
+
+        Assert.assertEquals("confirmation", expectedConfirmation, rewardNetwork.rewardAccountFor(dining));
+
+        Assert.assertEquals("acquired", 1, accountLocks.getAcquiredCount());
+        Assert.assertEquals("released", 0, accountLocks.getLockedCount());
+        EasyMock.verify(accountRepo, restaurantRepo, rewardRepo);
+    }
+
     /**
      * Usual test values, bad creditCard, but with mocks
      */
@@ -149,7 +255,7 @@ public class RewardNetworkImplMockTests {
         // Reset account, as makeContribution updates beneficiaries
         Account account = AccountTestData.createTestAccount0();
 
-        EasyMock.expect(accountRepo.findByCreditCard(dining.getCreditCardNumber())).andReturn(null);
+        EasyMock.expect(accountRepo.findForRewardByCreditCard(dining.getCreditCardNumber())).andReturn(null);
 
         EasyMock.replay(accountRepo, restaurantRepo, rewardRepo);
 
@@ -185,7 +291,7 @@ public class RewardNetworkImplMockTests {
         Account account = AccountTestData.createTestAccount0();
 
 
-        EasyMock.expect(accountRepo.findByCreditCard(dining.getCreditCardNumber())).andReturn(account);
+        EasyMock.expect(accountRepo.findForRewardByCreditCard(dining.getCreditCardNumber())).andReturn(account);
 
         EasyMock.expect(restaurantRepo.findByMerchantNumber(dining.getMerchantNumber())).andReturn(null);
 
@@ -209,6 +315,44 @@ public class RewardNetworkImplMockTests {
     }
 
 
+    /**
+     * Batch of dinings, with mocks
+     */
+    @Test
+    public void testRewardForDinings() {
+        Dining dining0 = Dining.createDining("100.00", "1234123412341234", "1234567890");
+        Dining dining1 = Dining.createDining("200.00", "1234123412341234", "1234567890");
+
+        Account account = AccountTestData.createTestAccount0();
+        final AccountContribution expectedContribution0 = account.makeContribution(new MonetaryAmount(8));
+        final AccountContribution expectedContribution1 = account.makeContribution(new MonetaryAmount(16));
+
+        // Reset account, as makeContribution updates beneficiaries
+        account = AccountTestData.createTestAccount0();
+
+        EasyMock.expect(accountRepo.findByCreditCards(new HashSet<String>(Arrays.asList("1234123412341234"))))
+                .andReturn(Collections.singletonMap("1234123412341234", account));
+
+        Restaurant restaurant = new Restaurant("1234567890", "Apple Bees");
+        restaurant.setBenefitPercentage(new Percentage(0.08));
+        restaurant.setBenefitAvailabilityPolicy(benefitAvailabilityPolicy);
+        EasyMock.expect(restaurantRepo.findByMerchantNumbers(new HashSet<String>(Arrays.asList("1234567890"))))
+                .andReturn(Collections.singletonMap("1234567890", restaurant));
+
+        RewardConfirmation expectedConfirmation0 = new RewardConfirmation("1", expectedContribution0);
+        RewardConfirmation expectedConfirmation1 = new RewardConfirmation("2", expectedContribution1);
+        EasyMock.expect(rewardRepo.confirmReward(expectedContribution0, dining0)).andReturn(expectedConfirmation0);
+        EasyMock.expect(rewardRepo.confirmReward(expectedContribution1, dining1)).andReturn(expectedConfirmation1);
+        EasyMock.replay(accountRepo, restaurantRepo, rewardRepo);
+
+        List<RewardConfirmation> confirmations = rewardNetwork.rewardAccountsFor(Arrays.asList(dining0, dining1));
+
+        Assert.assertEquals(Arrays.asList(expectedConfirmation0, expectedConfirmation1), confirmations);
+
+        EasyMock.verify(accountRepo, restaurantRepo, rewardRepo);
+    }
+
+
     /**
      * Test findRewardFor where reeward exists
      */
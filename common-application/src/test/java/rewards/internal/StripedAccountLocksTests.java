@@ -0,0 +1,164 @@
+package rewards.internal;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Unit tests for the striped account locks
+ */
+public class StripedAccountLocksTests {
+
+    /**
+     * The object being tested.
+     */
+    private StripedAccountLocks locks;
+
+    @Before
+    public void setUp() {
+        locks = new StripedAccountLocks(16);
+    }
+
+
+    /**
+     * Stripe count should be rounded up to a power of 2
+     */
+    @Test
+    public void testStripeCount() {
+        Assert.assertEquals("16", 16, locks.getStripeCount());
+        Assert.assertEquals("rounded", 64, new StripedAccountLocks(33).getStripeCount());
+        Assert.assertEquals("1", 1, new StripedAccountLocks(1).getStripeCount());
+    }
+
+    /**
+     * Account locked twice, or unknown, should only be locked once
+     */
+    @Test
+    public void testLockDistinctStripes() {
+        List<ReentrantLock> held = locks.lock(Arrays.asList(1, 1, null));
+
+        Assert.assertEquals("held", 1, held.size());
+        Assert.assertEquals("locked", 1, locks.getLockedCount());
+        locks.unlock(held);
+        Assert.assertEquals("unlocked", 0, locks.getLockedCount());
+        Assert.assertEquals("acquired", 1, locks.getAcquiredCount());
+        Assert.assertEquals("contended", 0, locks.getContendedCount());
+    }
+
+    /**
+     * Sequential accounts should be spread over the stripes
+     */
+    @Test
+    public void testLockSpread() {
+        List<ReentrantLock> held = locks.lock(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7));
+
+        Assert.assertTrue("held=" + held.size(), held.size() >= 6);
+        locks.unlock(held);
+    }
+
+    /**
+     * Thread locking an account should wait for the thread holding it, and the wait should be recorded
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLockSameAccountWaits() throws Exception {
+        final List<ReentrantLock> held = locks.lock(Collections.singleton(7));
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final AtomicBoolean unlocked = new AtomicBoolean();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                List<ReentrantLock> waited = locks.lock(Collections.singleton(7));
+                unlocked.set(locks.getLockedCount() == 1);
+                acquired.countDown();
+                locks.unlock(waited);
+            }
+        };
+        waiter.start();
+
+        Assert.assertFalse("should wait", acquired.await(100, TimeUnit.MILLISECONDS));
+        locks.unlock(held);
+        Assert.assertTrue("should acquire", acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+
+        Assert.assertTrue("waiter should hold the only lock", unlocked.get());
+        Assert.assertEquals("acquired", 2, locks.getAcquiredCount());
+        Assert.assertEquals("contended", 1, locks.getContendedCount());
+        Assert.assertTrue("max wait=" + locks.getMaxWaitMillis(), locks.getMaxWaitMillis() >= 90);
+        Assert.assertEquals("total wait", locks.getMaxWaitMillis(), locks.getTotalWaitMillis());
+
+        locks.resetStatistics();
+        Assert.assertEquals("reset", 0, locks.getContendedCount());
+    }
+
+    /**
+     * Thread waiting too long for an account should give up, releasing the locks it took
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLockTimesOut() throws Exception {
+        locks.setLockTimeoutMs(50L);
+        final List<ReentrantLock> held = locks.lock(Collections.singleton(7));
+        final AtomicBoolean timedOut = new AtomicBoolean();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    locks.lock(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7));
+                } catch (CannotAcquireLockException e) {
+                    timedOut.set(true);
+                }
+            }
+        };
+        waiter.start();
+        waiter.join(5000L);
+
+        Assert.assertTrue("should time out", timedOut.get());
+        Assert.assertEquals("timeouts", 1, locks.getTimeoutCount());
+        Assert.assertEquals("only the first lock held", 1, locks.getLockedCount());
+        locks.unlock(held);
+    }
+
+    /**
+     * Thread locking a different account should not wait
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLockOtherAccountDoesNotWait() throws Exception {
+        final List<ReentrantLock> held = locks.lock(Collections.singleton(0));
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                locks.unlock(locks.lock(Collections.singleton(1)));
+                acquired.countDown();
+            }
+        };
+        other.start();
+
+        Assert.assertTrue("should acquire", acquired.await(5, TimeUnit.SECONDS));
+        other.join();
+        locks.unlock(held);
+        Assert.assertEquals("contended", 0, locks.getContendedCount());
+    }
+
+    /**
+     * Stripe count must be positive
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStripeCount() {
+        new StripedAccountLocks(0);
+    }
+}
@@ -0,0 +1,160 @@
+package rewards.internal.account;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the credit card index.
+ */
+public class CreditCardIndexTests {
+
+    /**
+     * The object being tested.
+     */
+    private CreditCardIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new CreditCardIndex();
+    }
+
+
+    /**
+     * Indexed card should give its account, others none
+     */
+    @Test
+    public void testPutGet() {
+        Assert.assertTrue("indexed", index.put("1234123412341234", 0));
+        Assert.assertTrue("indexed", index.put("4320123412340005", 4));
+
+        Assert.assertEquals("account", 0, index.get("1234123412341234"));
+        Assert.assertEquals("account", 4, index.get("4320123412340005"));
+        Assert.assertEquals("account", CreditCardIndex.NO_ACCOUNT, index.get("4321123412341001"));
+        Assert.assertEquals("size", 2, index.size());
+    }
+
+
+    /**
+     * Putting an indexed card again should replace its account
+     */
+    @Test
+    public void testPutReplaces() {
+        index.put("1234123412341234", 0);
+        index.put("1234123412341234", 7);
+
+        Assert.assertEquals("account", 7, index.get("1234123412341234"));
+        Assert.assertEquals("size", 1, index.size());
+    }
+
+
+    /**
+     * Card numbers that are not all digits, or too long, cannot be indexed
+     */
+    @Test
+    public void testNotIndexable() {
+        Assert.assertFalse("null", index.put(null, 1));
+        Assert.assertFalse("empty", index.put("", 1));
+        Assert.assertFalse("not digits", index.put("1234-1234", 1));
+        Assert.assertFalse("too long", index.put("123412341234123412", 1));
+        Assert.assertTrue("17 digits", index.put("12341234123412341", 1));
+
+        Assert.assertEquals("account", CreditCardIndex.NO_ACCOUNT, index.get("1234-1234"));
+        Assert.assertEquals("size", 1, index.size());
+    }
+
+
+    /**
+     * Removed card should no longer be indexed, leaving the others
+     */
+    @Test
+    public void testRemove() {
+        for (int i = 0; i < 1000; i++) {
+            index.put(cardNumber(i), i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            index.remove(cardNumber(i));
+        }
+
+        Assert.assertEquals("size", 500, index.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("account", i % 2 == 0 ? CreditCardIndex.NO_ACCOUNT : i, index.get(cardNumber(i)));
+        }
+    }
+
+
+    /**
+     * All cards of an account should be removed together
+     */
+    @Test
+    public void testRemoveAccount() {
+        for (int i = 0; i < 1000; i++) {
+            index.put(cardNumber(i), i % 3);
+        }
+        index.removeAccount(1);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("account", i % 3 == 1 ? CreditCardIndex.NO_ACCOUNT : i % 3, index.get(cardNumber(i)));
+        }
+        Assert.assertEquals("size", 667, index.size());
+    }
+
+
+    /**
+     * Card moved to another account should not be removed with its old account
+     */
+    @Test
+    public void testRemoveAccountAfterCardMoved() {
+        index.put("1234123412341234", 1);
+        index.put("1234123412340001", 1);
+        index.put("1234123412341234", 2);
+        index.removeAccount(1);
+
+        Assert.assertEquals("moved card", 2, index.get("1234123412341234"));
+        Assert.assertEquals("removed card", CreditCardIndex.NO_ACCOUNT, index.get("1234123412340001"));
+        Assert.assertEquals("size", 1, index.size());
+
+        index.removeAccount(2);
+        Assert.assertEquals("size", 0, index.size());
+    }
+
+
+    /**
+     * Cleared index should be empty and still usable
+     */
+    @Test
+    public void testClear() {
+        index.put("1234123412341234", 0);
+        index.clear();
+
+        Assert.assertEquals("size", 0, index.size());
+        Assert.assertEquals("account", CreditCardIndex.NO_ACCOUNT, index.get("1234123412341234"));
+        index.put("1234123412341234", 0);
+        Assert.assertEquals("account", 0, index.get("1234123412341234"));
+    }
+
+
+    /**
+     * Card numbers differing only in leading zeros should be indexed separately
+     */
+    @Test
+    public void testLeadingZeros() {
+        index.put("0005", 1);
+        index.put("5", 2);
+
+        Assert.assertEquals("account", 1, index.get("0005"));
+        Assert.assertEquals("account", 2, index.get("5"));
+        Assert.assertEquals("account", CreditCardIndex.NO_ACCOUNT, index.get("05"));
+    }
+
+
+    /**
+     * Helper creating 16 digit card number
+     *
+     * @param i
+     * @return card number
+     */
+    private static String cardNumber(int i) {
+        return String.valueOf(4000000000000000L + i * 7919L);
+    }
+}
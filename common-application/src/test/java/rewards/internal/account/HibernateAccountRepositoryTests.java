@@ -3,6 +3,7 @@ package rewards.internal.account;
 import common.datetime.SimpleDate;
 import common.money.MonetaryAmount;
 import common.money.Percentage;
+import org.hibernate.LazyInitializationException;
 import org.hibernate.SessionFactory;
 import org.hibernate.exception.ConstraintViolationException;
 import org.junit.After;
@@ -19,8 +20,10 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import javax.sql.DataSource;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -148,6 +151,113 @@ public class HibernateAccountRepositoryTests {
     }
 
 
+    /**
+     * Account for rewarding should have its details and beneficiaries loaded but not its credit cards
+     */
+    @Test
+    public void testFindForRewardByCreditCard4() {
+        createTransactionStatus(true);
+        Account account = repository.findForRewardByCreditCard("4320123412340005");
+
+        Assert.assertEquals("entityId", Integer.valueOf(4), account.getEntityId());
+        Assert.assertEquals("number", "123456004", account.getNumber());
+        Assert.assertEquals("name", "Chad I. Cobbs", account.getName());
+        Assert.assertEquals("beneficiaries", 3, account.getBeneficiaries().size());
+        Assert.assertEquals("Susan allocation percentage", new Percentage(0.5),
+                            account.getBeneficiary("Susan").getAllocationPercentage());
+        Assert.assertTrue("credit cards should not be loaded", account.getCreditCardNumbers().isEmpty());
+    }
+
+    /**
+     * Account for rewarding with no beneficiaries
+     */
+    @Test
+    public void testFindForRewardByCreditCard1() {
+        createTransactionStatus(true);
+        Account account = repository.findForRewardByCreditCard("1234123412340001");
+
+        Assert.assertEquals("number", "123456001", account.getNumber());
+        Assert.assertEquals("beneficiaries", 0, account.getBeneficiaries().size());
+    }
+
+    /**
+     * Contribution to account for rewarding should be saved to its beneficiaries
+     */
+    @Test
+    public void testFindForRewardByCreditCardContributionSaved() {
+        createTransactionStatus(false);
+        Account account = repository.findForRewardByCreditCard("1234123412341234");
+        account.makeContribution(new MonetaryAmount(100));
+        commitTransaction();
+
+        createTransactionStatus(true);
+        Account updatedAccount = repository.getAccount(0);
+        Assert.assertEquals("Annabelle savings",
+                            AccountTestData.TEST_BENEFICIARY_SAVINGS_0_0.add(new MonetaryAmount(50)),
+                            updatedAccount.getBeneficiary("Annabelle").getSavings());
+        Assert.assertEquals("Corgan savings", AccountTestData.TEST_BENEFICIARY_SAVINGS_0_1.add(new MonetaryAmount(50)),
+                            updatedAccount.getBeneficiary("Corgan").getSavings());
+    }
+
+    /**
+     * Account for rewarding should not be found for unknown card, nor for a card removed since it was indexed
+     */
+    @Test
+    public void testFindForRewardByCreditCardNotFound() {
+        createTransactionStatus(true);
+        Assert.assertNull("unused card", repository.findForRewardByCreditCard(AccountTestData.TEST_CREDIT_CARD_UNUSED));
+        commitTransaction();
+
+        jdbcTemplate.update("delete from T_ACCOUNT_CREDIT_CARD where NUMBER = ?", "4320123412340005");
+
+        createTransactionStatus(true);
+        Assert.assertNull("removed card", repository.findForRewardByCreditCard("4320123412340005"));
+    }
+
+    /**
+     * Account id should be found for each card of an account, but not for an unused card
+     */
+    @Test
+    public void testFindAccountIdByCreditCard() {
+        createTransactionStatus(true);
+        Assert.assertEquals("first card", Integer.valueOf(4), repository.findAccountIdByCreditCard("1234123412340004"));
+        Assert.assertEquals("second card", Integer.valueOf(4),
+                            repository.findAccountIdByCreditCard("4320123412340005"));
+        Assert.assertNull("unused card", repository.findAccountIdByCreditCard(AccountTestData.TEST_CREDIT_CARD_UNUSED));
+    }
+
+    /**
+     * Account got by id should have its credit cards loaded for use outside the transaction
+     */
+    @Test
+    public void testGetAccountLoadsCreditCards() {
+        createTransactionStatus(true);
+        Account account = repository.getAccount(4);
+        commitTransaction();
+
+        verifyAccount4(account);
+    }
+
+
+    /**
+     * Find several accounts for rewarding at once, including both cards of account 4 and an unused card
+     */
+    @Test
+    public void testFindByCreditCards() {
+        createTransactionStatus(true);
+        Map<String, Account> accounts = repository.findByCreditCards(
+                Arrays.asList("1234123412341234", "1234123412340004", "4320123412340005",
+                              AccountTestData.TEST_CREDIT_CARD_UNUSED));
+        Assert.assertEquals("unused card should not be mapped", 3, accounts.size());
+        Assert.assertEquals("account 0", "123456789", accounts.get("1234123412341234").getNumber());
+        Assert.assertEquals("account 0 beneficiaries", 2, accounts.get("1234123412341234").getBeneficiaries().size());
+        Assert.assertEquals("account 4", "123456004", accounts.get("1234123412340004").getNumber());
+        Assert.assertEquals("account 4 beneficiaries", 3, accounts.get("1234123412340004").getBeneficiaries().size());
+        Assert.assertSame("same account for both cards", accounts.get("1234123412340004"),
+                          accounts.get("4320123412340005"));
+    }
+
+
     /**
      * Test hasNoAccountWithName for name that will not be there
      */
@@ -320,6 +430,94 @@ public class HibernateAccountRepositoryTests {
                           repository.hasNoAccountWithCreditCard(cardToTest));
     }
 
+    /**
+     * Credit card of created account should be found through the index once committed
+     */
+    @Test
+    public void testCreateAccountIndexesCreditCard() {
+        createTransactionStatus(true);
+        Assert.assertTrue("card should be unused",
+                          repository.hasNoAccountWithCreditCard(AccountTestData.TEST_CREDIT_CARD_1));
+        commitTransaction();
+
+        createTransactionStatus(false);
+        Account account = AccountTestData.createTestAccount1();
+        repository.create(account);
+        commitTransaction();
+
+        createTransactionStatus(true);
+        Assert.assertFalse("card should be in use",
+                           repository.hasNoAccountWithCreditCard(AccountTestData.TEST_CREDIT_CARD_1));
+        Account foundAccount = repository.findByCreditCard(AccountTestData.TEST_CREDIT_CARD_1);
+        Assert.assertNotNull("account for card", foundAccount);
+        Assert.assertEquals("account for card", account.getEntityId(), foundAccount.getEntityId());
+    }
+
+    /**
+     * Credit card removed by update should no longer be indexed once committed
+     */
+    @Test
+    public void testUpdateAccountRemovesCreditCard() {
+        createTransactionStatus(false);
+        Account account = repository.findByCreditCard("4320123412340005");
+        verifyAccount4(account);
+        account.removeCreditCard("4320123412340005");
+        repository.update(account);
+        commitTransaction();
+
+        createTransactionStatus(true);
+        Assert.assertTrue("card should be unused", repository.hasNoAccountWithCreditCard("4320123412340005"));
+        Assert.assertNull("account for removed card", repository.findByCreditCard("4320123412340005"));
+        Assert.assertEquals("account for remaining card", Integer.valueOf(4),
+                            repository.findByCreditCard("1234123412340004").getEntityId());
+    }
+
+    /**
+     * Credit card removed by update that is rolled back should stay indexed
+     */
+    @Test
+    public void testUpdateAccountRolledBackKeepsCreditCard() {
+        createTransactionStatus(false);
+        Account account = repository.findByCreditCard("4320123412340005");
+        account.removeCreditCard("4320123412340005");
+        repository.update(account);
+        transactionManager.rollback(transactionStatus);
+
+        createTransactionStatus(true);
+        Assert.assertFalse("card should be in use", repository.hasNoAccountWithCreditCard("4320123412340005"));
+    }
+
+    /**
+     * Card added to the database behind the repository's back should still be found
+     */
+    @Test
+    public void testFindByCreditCardNotYetIndexed() {
+        createTransactionStatus(false);
+        Assert.assertNull("unused card", repository.findByCreditCard(AccountTestData.TEST_CREDIT_CARD_UNUSED));
+        jdbcTemplate.update("insert into T_ACCOUNT_CREDIT_CARD (ACCOUNT_ID, NUMBER, VERSION) values (1, ?, 0)",
+                            AccountTestData.TEST_CREDIT_CARD_UNUSED);
+
+        Account account = repository.findByCreditCard(AccountTestData.TEST_CREDIT_CARD_UNUSED);
+        Assert.assertNotNull("account for card", account);
+        Assert.assertEquals("account for card", Integer.valueOf(1), account.getEntityId());
+        Assert.assertFalse("card should now be indexed",
+                           repository.hasNoAccountWithCreditCard(AccountTestData.TEST_CREDIT_CARD_UNUSED));
+    }
+
+    /**
+     * Card added to the database behind the repository's back should be in use, though not in the index
+     */
+    @Test
+    public void testHasNoAccountWithCreditCardNotYetIndexed() {
+        createTransactionStatus(false);
+        Assert.assertTrue("card should be unused",
+                          repository.hasNoAccountWithCreditCard(AccountTestData.TEST_CREDIT_CARD_UNUSED));
+        jdbcTemplate.update("insert into T_ACCOUNT_CREDIT_CARD (ACCOUNT_ID, NUMBER, VERSION) values (1, ?, 0)",
+                            AccountTestData.TEST_CREDIT_CARD_UNUSED);
+        Assert.assertFalse("card should be in use",
+                           repository.hasNoAccountWithCreditCard(AccountTestData.TEST_CREDIT_CARD_UNUSED));
+    }
+
     /**
      * Roll-back transaction if it's not been committed
      *
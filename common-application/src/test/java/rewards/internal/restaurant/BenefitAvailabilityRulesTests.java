@@ -0,0 +1,191 @@
+package rewards.internal.restaurant;
+
+import common.money.MonetaryAmount;
+import org.junit.Assert;
+import org.junit.Test;
+import rewards.Dining;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Unit tests for {@link BenefitAvailabilityRules}
+ */
+public class BenefitAvailabilityRulesTests {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    /**
+     * Empty rules should make benefit always available, uncapped
+     */
+    @Test
+    public void testNoRules() {
+        BenefitAvailabilityRules rules = BenefitAvailabilityRules.compile("", UTC);
+
+        Assert.assertTrue("saturday night", rules.isBenefitAvailableFor(dining("1.00", 8, 23, 59)));
+        Assert.assertFalse("no cap", rules.hasMonthlyCap());
+        Assert.assertEquals("uncapped", new MonetaryAmount(5),
+                            rules.capBenefit(new MonetaryAmount(5), new MonetaryAmount(1000)));
+    }
+
+    /**
+     * Benefit should only be available on the days given, including ranges wrapping round the week
+     */
+    @Test
+    public void testDays() {
+        BenefitAvailabilityRules weekdays = BenefitAvailabilityRules.compile("days=MON-FRI", UTC);
+        Assert.assertTrue("friday", weekdays.isBenefitAvailableFor(dining("50.00", 7, 12, 0)));
+        Assert.assertFalse("saturday", weekdays.isBenefitAvailableFor(dining("50.00", 8, 12, 0)));
+        Assert.assertFalse("sunday", weekdays.isBenefitAvailableFor(dining("50.00", 9, 12, 0)));
+        Assert.assertTrue("monday", weekdays.isBenefitAvailableFor(dining("50.00", 10, 12, 0)));
+
+        BenefitAvailabilityRules weekend = BenefitAvailabilityRules.compile("days=FRI-SUN,wed", UTC);
+        Assert.assertTrue("friday", weekend.isBenefitAvailableFor(dining("50.00", 7, 12, 0)));
+        Assert.assertTrue("sunday", weekend.isBenefitAvailableFor(dining("50.00", 9, 12, 0)));
+        Assert.assertFalse("monday", weekend.isBenefitAvailableFor(dining("50.00", 10, 12, 0)));
+        Assert.assertTrue("wednesday", weekend.isBenefitAvailableFor(dining("50.00", 12, 12, 0)));
+    }
+
+    /**
+     * Benefit should only be available from the start of each window up to, but not including, its end
+     */
+    @Test
+    public void testHours() {
+        BenefitAvailabilityRules rules = BenefitAvailabilityRules.compile("hours=11:30-14:30,22:00-02:00", UTC);
+
+        Assert.assertFalse("before lunch", rules.isBenefitAvailableFor(dining("50.00", 7, 11, 29)));
+        Assert.assertTrue("start of lunch", rules.isBenefitAvailableFor(dining("50.00", 7, 11, 30)));
+        Assert.assertTrue("end of lunch", rules.isBenefitAvailableFor(dining("50.00", 7, 14, 29)));
+        Assert.assertFalse("after lunch", rules.isBenefitAvailableFor(dining("50.00", 7, 14, 30)));
+        Assert.assertTrue("late", rules.isBenefitAvailableFor(dining("50.00", 7, 23, 0)));
+        Assert.assertTrue("after midnight", rules.isBenefitAvailableFor(dining("50.00", 8, 1, 59)));
+        Assert.assertFalse("early", rules.isBenefitAvailableFor(dining("50.00", 8, 2, 0)));
+    }
+
+    /**
+     * A window ending when it starts should be the whole day, not never
+     */
+    @Test
+    public void testHoursWholeDay() {
+        String[] wholeDays = {"hours=00:00-24:00", "hours=00:00-00:00", "hours=06:00-06:00"};
+        for (String wholeDay : wholeDays) {
+            BenefitAvailabilityRules rules = BenefitAvailabilityRules.compile(wholeDay, UTC);
+            Assert.assertTrue(wholeDay + " midnight", rules.isBenefitAvailableFor(dining("50.00", 7, 0, 0)));
+            Assert.assertTrue(wholeDay + " before six", rules.isBenefitAvailableFor(dining("50.00", 7, 5, 59)));
+            Assert.assertTrue(wholeDay + " six", rules.isBenefitAvailableFor(dining("50.00", 7, 6, 0)));
+            Assert.assertTrue(wholeDay + " before midnight", rules.isBenefitAvailableFor(dining("50.00", 7, 23, 59)));
+        }
+    }
+
+    /**
+     * Hours should be local to the time zone the rules were compiled for
+     */
+    @Test
+    public void testHoursInTimeZone() {
+        BenefitAvailabilityRules rules =
+                BenefitAvailabilityRules.compile("days=FRI;hours=00:00-01:00", TimeZone.getTimeZone("GMT+02:00"));
+
+        Assert.assertTrue("22:00 UTC thursday", rules.isBenefitAvailableFor(dining("50.00", 6, 22, 0)));
+        Assert.assertFalse("00:00 UTC friday", rules.isBenefitAvailableFor(dining("50.00", 7, 0, 0)));
+    }
+
+    /**
+     * Benefit should only be available for at least the minimum amount
+     */
+    @Test
+    public void testMinimumAmount() {
+        BenefitAvailabilityRules rules = BenefitAvailabilityRules.compile("minAmount=20.00", UTC);
+
+        Assert.assertFalse("under", rules.isBenefitAvailableFor(dining("19.99", 7, 12, 0)));
+        Assert.assertTrue("minimum", rules.isBenefitAvailableFor(dining("20.00", 7, 12, 0)));
+    }
+
+    /**
+     * Benefit should be reduced to what is left of the monthly cap
+     */
+    @Test
+    public void testMonthlyCap() {
+        BenefitAvailabilityRules rules = BenefitAvailabilityRules.compile("monthlyCap=10.00", UTC);
+
+        Assert.assertTrue("cap", rules.hasMonthlyCap());
+        Assert.assertEquals("under cap", new MonetaryAmount(4),
+                            rules.capBenefit(new MonetaryAmount(4), new MonetaryAmount(6)));
+        Assert.assertEquals("reaching cap", new MonetaryAmount(3),
+                            rules.capBenefit(new MonetaryAmount(4), new MonetaryAmount(7)));
+        Assert.assertEquals("over cap", MonetaryAmount.zero(),
+                            rules.capBenefit(new MonetaryAmount(4), new MonetaryAmount(10)));
+    }
+
+    /**
+     * Month should run from the first of the month to the first of the next
+     */
+    @Test
+    public void testMonth() {
+        BenefitAvailabilityRules rules = BenefitAvailabilityRules.compile("monthlyCap=10.00", UTC);
+        Dining dining = dining("50.00", 7, 12, 0);
+
+        Assert.assertEquals("start", date(2011, Calendar.OCTOBER, 1, 0, 0), rules.getMonthStart(dining));
+        Assert.assertEquals("next start", date(2011, Calendar.NOVEMBER, 1, 0, 0), rules.getNextMonthStart(dining));
+    }
+
+    /**
+     * Rules that cannot be understood should be rejected when compiled
+     */
+    @Test
+    public void testInvalidRules() {
+        String[] invalid = {"days=MON-FUN", "hours=11:30", "hours=25:00-26:00", "minAmount=ten", "monthly=10",
+                            "days"};
+        for (String rules : invalid) {
+            try {
+                BenefitAvailabilityRules.compile(rules, UTC);
+                Assert.fail("expected IllegalArgumentException:rules=" + rules);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Rules should be equal when written the same
+     */
+    @Test
+    public void testEquals() {
+        String rules = "days=MON-FRI;minAmount=20.00";
+        Assert.assertEquals("equal", BenefitAvailabilityRules.compile(rules, UTC),
+                            BenefitAvailabilityRules.compile(rules, UTC));
+        Assert.assertEquals("toString", rules, BenefitAvailabilityRules.compile(rules, UTC).toString());
+    }
+
+
+    /**
+     * Helper creating a dining in October 2011, UTC. The 7th was a Friday.
+     *
+     * @param amount
+     * @param day
+     * @param hour
+     * @param minute
+     * @return dining
+     */
+    private Dining dining(String amount, int day, int hour, int minute) {
+        return new Dining(new Float(amount), "1234123412341234", "1234567890",
+                          date(2011, Calendar.OCTOBER, day, hour, minute));
+    }
+
+    /**
+     * Helper creating a date, UTC
+     *
+     * @param year
+     * @param month
+     * @param day
+     * @param hour
+     * @param minute
+     * @return date
+     */
+    private Date date(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,228 @@
+package rewards.internal.restaurant;
+
+import common.money.Percentage;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Unit tests for the caching restaurant repository, using a mock repository behind the cache and a controllable
+ * clock for expiry.
+ */
+public class CachingRestaurantRepositoryTests {
+
+    /**
+     * The object being tested.
+     */
+    private CachingRestaurantRepository repository;
+
+    /**
+     * Mock repository being cached
+     */
+    private RestaurantRepository restaurantRepo;
+
+    /**
+     * Time returned by the cache clock
+     */
+    private long now = 1000L;
+
+    @Before
+    public void setUp() throws Exception {
+        restaurantRepo = EasyMock.createMock(RestaurantRepository.class);
+        repository = createRepository(2);
+        repository.setTimeToLiveMs(100L);
+    }
+
+
+    /**
+     * Second lookup should come from the cache
+     */
+    @Test
+    public void testFindByMerchantNumberCached() {
+        Restaurant restaurant = createRestaurant("1234567890");
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("1234567890")).andReturn(restaurant);
+        EasyMock.replay(restaurantRepo);
+
+        Assert.assertSame(restaurant, repository.findByMerchantNumber("1234567890"));
+        Assert.assertSame(restaurant, repository.findByMerchantNumber("1234567890"));
+
+        Assert.assertEquals("hits", 1, repository.getHitCount());
+        Assert.assertEquals("misses", 1, repository.getMissCount());
+        EasyMock.verify(restaurantRepo);
+    }
+
+
+    /**
+     * Unknown merchant numbers should not be cached
+     */
+    @Test
+    public void testFindByMerchantNumberNotFound() {
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("0000000000")).andReturn(null).times(2);
+        EasyMock.replay(restaurantRepo);
+
+        Assert.assertNull(repository.findByMerchantNumber("0000000000"));
+        Assert.assertNull(repository.findByMerchantNumber("0000000000"));
+
+        Assert.assertEquals("size", 0, repository.getSize());
+        EasyMock.verify(restaurantRepo);
+    }
+
+
+    /**
+     * Expired entry with unchanged version should be kept without reloading the restaurant
+     */
+    @Test
+    public void testExpiredSameVersion() {
+        Restaurant restaurant = createRestaurant("1234567890");
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("1234567890")).andReturn(restaurant);
+        EasyMock.expect(restaurantRepo.findVersionByMerchantNumber("1234567890")).andReturn(0);
+        EasyMock.replay(restaurantRepo);
+
+        repository.findByMerchantNumber("1234567890");
+        now += 100L;
+        Assert.assertSame(restaurant, repository.findByMerchantNumber("1234567890"));
+        // revalidated entry should be good for another time-to-live
+        now += 50L;
+        Assert.assertSame(restaurant, repository.findByMerchantNumber("1234567890"));
+
+        Assert.assertEquals("hits", 2, repository.getHitCount());
+        Assert.assertEquals("invalidations", 0, repository.getInvalidationCount());
+        EasyMock.verify(restaurantRepo);
+    }
+
+
+    /**
+     * Expired entry with changed version should be reloaded
+     */
+    @Test
+    public void testExpiredChangedVersion() {
+        Restaurant restaurant = createRestaurant("1234567890");
+        Restaurant updatedRestaurant = createRestaurant("1234567890");
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("1234567890")).andReturn(restaurant);
+        EasyMock.expect(restaurantRepo.findVersionByMerchantNumber("1234567890")).andReturn(1);
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("1234567890")).andReturn(updatedRestaurant);
+        EasyMock.replay(restaurantRepo);
+
+        repository.findByMerchantNumber("1234567890");
+        now += 100L;
+        Assert.assertSame(updatedRestaurant, repository.findByMerchantNumber("1234567890"));
+
+        Assert.assertEquals("invalidations", 1, repository.getInvalidationCount());
+        Assert.assertEquals("misses", 2, repository.getMissCount());
+        EasyMock.verify(restaurantRepo);
+    }
+
+
+    /**
+     * Least recently used restaurant should be evicted beyond maximum size
+     */
+    @Test
+    public void testEviction() {
+        Restaurant restaurant0 = createRestaurant("0000000000");
+        Restaurant restaurant1 = createRestaurant("1111111111");
+        Restaurant restaurant2 = createRestaurant("2222222222");
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("0000000000")).andReturn(restaurant0);
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("1111111111")).andReturn(restaurant1).times(2);
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("2222222222")).andReturn(restaurant2);
+        EasyMock.replay(restaurantRepo);
+
+        repository.findByMerchantNumber("0000000000");
+        repository.findByMerchantNumber("1111111111");
+        repository.findByMerchantNumber("0000000000");
+        repository.findByMerchantNumber("2222222222");
+        // 1111111111 was least recently used, so should have been evicted
+        repository.findByMerchantNumber("1111111111");
+
+        Assert.assertEquals("size", 2, repository.getSize());
+        Assert.assertEquals("evictions", 2, repository.getEvictionCount());
+        EasyMock.verify(restaurantRepo);
+    }
+
+
+    /**
+     * Bulk lookup should only load the restaurants not already cached
+     */
+    @Test
+    public void testFindByMerchantNumbers() {
+        Restaurant restaurant0 = createRestaurant("0000000000");
+        Restaurant restaurant1 = createRestaurant("1111111111");
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("0000000000")).andReturn(restaurant0);
+        EasyMock.expect(restaurantRepo.findByMerchantNumbers(Arrays.asList("1111111111")))
+                .andReturn(Collections.singletonMap("1111111111", restaurant1));
+        EasyMock.replay(restaurantRepo);
+
+        repository.findByMerchantNumber("0000000000");
+        Map<String, Restaurant> restaurants =
+                repository.findByMerchantNumbers(Arrays.asList("0000000000", "1111111111"));
+
+        Assert.assertEquals("size", 2, restaurants.size());
+        Assert.assertSame(restaurant0, restaurants.get("0000000000"));
+        Assert.assertSame(restaurant1, restaurants.get("1111111111"));
+        Assert.assertSame(restaurant1, repository.findByMerchantNumber("1111111111"));
+        EasyMock.verify(restaurantRepo);
+    }
+
+
+    /**
+     * Bulk lookup should revalidate expired entries by version, loading only those that changed
+     */
+    @Test
+    public void testFindByMerchantNumbersExpired() {
+        Restaurant restaurant0 = createRestaurant("0000000000");
+        Restaurant restaurant1 = createRestaurant("1111111111");
+        Restaurant updatedRestaurant1 = createRestaurant("1111111111");
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("0000000000")).andReturn(restaurant0);
+        EasyMock.expect(restaurantRepo.findByMerchantNumber("1111111111")).andReturn(restaurant1);
+        EasyMock.expect(restaurantRepo.findVersionByMerchantNumber("0000000000")).andReturn(0);
+        EasyMock.expect(restaurantRepo.findVersionByMerchantNumber("1111111111")).andReturn(1);
+        EasyMock.expect(restaurantRepo.findByMerchantNumbers(Arrays.asList("1111111111")))
+                .andReturn(Collections.singletonMap("1111111111", updatedRestaurant1));
+        EasyMock.replay(restaurantRepo);
+
+        repository.findByMerchantNumber("0000000000");
+        repository.findByMerchantNumber("1111111111");
+        now += 100L;
+        Map<String, Restaurant> restaurants =
+                repository.findByMerchantNumbers(Arrays.asList("0000000000", "1111111111"));
+
+        Assert.assertSame(restaurant0, restaurants.get("0000000000"));
+        Assert.assertSame(updatedRestaurant1, restaurants.get("1111111111"));
+        Assert.assertEquals("hits", 1, repository.getHitCount());
+        Assert.assertEquals("invalidations", 1, repository.getInvalidationCount());
+        EasyMock.verify(restaurantRepo);
+    }
+
+
+    /**
+     * Helper creating repository with controllable clock
+     *
+     * @param maxSize
+     * @return repository
+     */
+    private CachingRestaurantRepository createRepository(int maxSize) {
+        return new CachingRestaurantRepository(restaurantRepo, maxSize) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    /**
+     * Helper creating restaurant
+     *
+     * @param merchantNumber
+     * @return restaurant
+     */
+    private Restaurant createRestaurant(String merchantNumber) {
+        Restaurant restaurant = new Restaurant(merchantNumber, "Restaurant " + merchantNumber);
+        restaurant.setBenefitPercentage(new Percentage(0.08));
+        restaurant.setBenefitAvailabilityPolicy(BenefitAvailabilityPolicy.ALWAYS_AVAILABLE);
+        return restaurant;
+    }
+}
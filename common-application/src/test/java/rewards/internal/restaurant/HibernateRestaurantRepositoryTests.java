@@ -2,7 +2,10 @@ package rewards.internal.restaurant;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.sql.DataSource;
@@ -58,6 +61,30 @@ public class HibernateRestaurantRepositoryTests {
 				.getBenefitAvailabilityPolicy());
 	}
 
+    @Test
+    public void testFindRestaurantWithBenefitAvailabilityRules() {
+        Restaurant restaurant = repository.findByMerchantNumber("4455667788");
+        assertEquals("the benefit availability rules are wrong",
+                     BenefitAvailabilityRules.compile("days=MON-FRI;hours=11:30-14:30;minAmount=20.00;monthlyCap=10.00"),
+                     restaurant.getBenefitAvailabilityRules());
+        assertNull("restaurant without rules", repository.findByMerchantNumber("1234567890").getBenefitAvailabilityRules());
+    }
+
+    @Test
+    public void testFindRestaurantsByMerchantNumbers() {
+        Map<String, Restaurant> restaurants =
+                repository.findByMerchantNumbers(Arrays.asList("1234567890", "1020304050", "0000000000"));
+        assertEquals("only known merchant numbers should be found", 2, restaurants.size());
+        assertEquals("the name is wrong", "AppleBees", restaurants.get("1234567890").getName());
+        assertEquals("the name is wrong", "Subway", restaurants.get("1020304050").getName());
+    }
+
+    @Test
+    public void testFindVersionByMerchantNumber() {
+        assertEquals("the version is wrong", Integer.valueOf(0), repository.findVersionByMerchantNumber("1234567890"));
+        assertNull("unknown merchant number should have no version", repository.findVersionByMerchantNumber("0000000000"));
+    }
+
 	private SessionFactory createTestSessionFactory() throws Exception {
 		// createAccountInfo a FactoryBean to help createAccountInfo a Hibernate SessionFactory
 		AnnotationSessionFactoryBean factoryBean = new AnnotationSessionFactoryBean();
@@ -1,6 +1,8 @@
 package rewards.internal.restaurant;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import common.money.MonetaryAmount;
 import common.money.Percentage;
@@ -50,5 +52,23 @@ public class RestaurantTests {
 		assertEquals("benefit", MonetaryAmount.zero(), benefit);
 	}
 
-	
+	@Test
+	public void testBenefitAvailabilityRules() {
+		// benefit only available for dining of 200.00 or more
+		restaurant.setBenefitAvailabilityRules(BenefitAvailabilityRules.compile("minAmount=200.00"));
+		assertEquals("benefit", MonetaryAmount.zero(), restaurant.calculateBenefitFor(account, dining));
+		// benefit available for dining of 50.00 or more
+		restaurant.setBenefitAvailabilityRules(BenefitAvailabilityRules.compile("minAmount=50.00"));
+		assertEquals("benefit", new MonetaryAmount(8), restaurant.calculateBenefitFor(account, dining));
+	}
+
+	@Test
+	public void testMonthlyBenefitCap() {
+		assertFalse("no cap without rules", restaurant.hasMonthlyBenefitCap());
+		restaurant.setBenefitAvailabilityRules(BenefitAvailabilityRules.compile("monthlyCap=10.00"));
+		assertTrue("cap", restaurant.hasMonthlyBenefitCap());
+		// assert only 5.00 of the 8.00 left under the cap
+		MonetaryAmount benefit = restaurant.calculateBenefitFor(account, dining, new MonetaryAmount(5));
+		assertEquals("benefit", new MonetaryAmount(5), benefit);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package rewards.internal.restaurant;
+
+import common.money.Percentage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Tests the snapshot restaurant repository against the test database, checking refresh only reloads changed
+ * restaurants.
+ */
+public class SnapshotRestaurantRepositoryTests {
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * The object being tested.
+     */
+    private SnapshotRestaurantRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setName("restaurantSnapshot")
+                .addScript("/rewards/testdb/schema.sql")
+                .addScript("/rewards/testdb/test-data.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new SnapshotRestaurantRepository();
+        repository.setDataSource(dataSource);
+        repository.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSource.shutdown();
+    }
+
+
+    /**
+     * All restaurants should be loaded, mapped as Hibernate maps them
+     */
+    @Test
+    public void testFindByMerchantNumber() {
+        Restaurant restaurant = repository.findByMerchantNumber("1234567890");
+        Assert.assertEquals("name", "AppleBees", restaurant.getName());
+        Assert.assertEquals("percentage", new Percentage(0.08), restaurant.getBenefitPercentage());
+        Assert.assertEquals("policy", BenefitAvailabilityPolicy.ALWAYS_AVAILABLE,
+                            restaurant.getBenefitAvailabilityPolicy());
+        Assert.assertNull("rules", restaurant.getBenefitAvailabilityRules());
+        Assert.assertEquals("rules", BenefitAvailabilityRules.compile(
+                "days=MON-FRI;hours=11:30-14:30;minAmount=20.00;monthlyCap=10.00"),
+                            repository.findByMerchantNumber("4455667788").getBenefitAvailabilityRules());
+        Assert.assertNull("unknown", repository.findByMerchantNumber("0000000000"));
+
+        Assert.assertEquals("size", 6, repository.getSize());
+        Assert.assertEquals("reloaded", 6, repository.getReloadedCount());
+    }
+
+    /**
+     * Only known merchant numbers should be found
+     */
+    @Test
+    public void testFindByMerchantNumbers() {
+        Map<String, Restaurant> restaurants =
+                repository.findByMerchantNumbers(Arrays.asList("1234567890", "1020304050", "0000000000"));
+        Assert.assertEquals("size", 2, restaurants.size());
+        Assert.assertEquals("name", "Subway", restaurants.get("1020304050").getName());
+    }
+
+    /**
+     * Refresh should reload only restaurants whose version changed, replacing the snapshot without changing the
+     * restaurants already handed out
+     */
+    @Test
+    public void testRefreshChanged() {
+        Restaurant before = repository.findByMerchantNumber("1234567890");
+        Restaurant unchanged = repository.findByMerchantNumber("1020304050");
+        jdbcTemplate.update("update T_RESTAURANT set BENEFIT_PERCENTAGE = 0.10, VERSION = VERSION + 1 " +
+                            "where MERCHANT_NUMBER = '1234567890'");
+
+        repository.refresh();
+
+        Restaurant after = repository.findByMerchantNumber("1234567890");
+        Assert.assertEquals("new percentage", new Percentage(0.10), after.getBenefitPercentage());
+        Assert.assertEquals("new version", 1, after.getVersion());
+        Assert.assertEquals("old percentage", new Percentage(0.08), before.getBenefitPercentage());
+        Assert.assertSame("unchanged", unchanged, repository.findByMerchantNumber("1020304050"));
+        Assert.assertEquals("reloaded", 7, repository.getReloadedCount());
+        Assert.assertEquals("version", Integer.valueOf(1), repository.findVersionByMerchantNumber("1234567890"));
+    }
+
+    /**
+     * Refresh should add new restaurants and drop deleted ones
+     */
+    @Test
+    public void testRefreshInsertedAndDeleted() {
+        jdbcTemplate.update("insert into T_RESTAURANT (MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, " +
+                            "BENEFIT_AVAILABILITY_POLICY, VERSION) values ('5566778899', 'Wagamama', .05, " +
+                            "'NEVER_AVAILABLE', 0)");
+        jdbcTemplate.update("delete from T_RESTAURANT where MERCHANT_NUMBER = '1020304050'");
+
+        repository.refresh();
+
+        Assert.assertEquals("inserted", BenefitAvailabilityPolicy.NEVER_AVAILABLE,
+                            repository.findByMerchantNumber("5566778899").getBenefitAvailabilityPolicy());
+        Assert.assertNull("deleted", repository.findByMerchantNumber("1020304050"));
+        Assert.assertEquals("size", 6, repository.getSize());
+        Assert.assertEquals("reloaded", 7, repository.getReloadedCount());
+    }
+
+    /**
+     * Refresh should skip and count rows that are not valid restaurants, keeping the last good version of a restaurant
+     */
+    @Test
+    public void testRefreshSkipsBadRows() {
+        Restaurant before = repository.findByMerchantNumber("1234567890");
+        jdbcTemplate.update("insert into T_RESTAURANT (MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, " +
+                            "BENEFIT_AVAILABILITY_POLICY, VERSION) values ('5566778899', 'Wagamama', .05, " +
+                            "'SOMETIMES', 0)");
+        jdbcTemplate.update("update T_RESTAURANT set BENEFIT_AVAILABILITY_RULES = 'days=MON-FUN', " +
+                            "VERSION = VERSION + 1 where MERCHANT_NUMBER = '1234567890'");
+        jdbcTemplate.update("update T_RESTAURANT set NAME = 'Subway Express', VERSION = VERSION + 1 " +
+                            "where MERCHANT_NUMBER = '1020304050'");
+
+        repository.refresh();
+
+        Assert.assertEquals("skipped", 2, repository.getSkippedCount());
+        Assert.assertNull("bad new row", repository.findByMerchantNumber("5566778899"));
+        Assert.assertSame("last good version", before, repository.findByMerchantNumber("1234567890"));
+        Assert.assertEquals("good row", "Subway Express", repository.findByMerchantNumber("1020304050").getName());
+    }
+
+    /**
+     * Refresh with nothing changed should reload nothing
+     */
+    @Test
+    public void testRefreshUnchanged() {
+        Restaurant restaurant = repository.findByMerchantNumber("1234567890");
+
+        repository.refresh();
+
+        Assert.assertSame("same restaurant", restaurant, repository.findByMerchantNumber("1234567890"));
+        Assert.assertEquals("refreshes", 2, repository.getRefreshCount());
+        Assert.assertEquals("reloaded", 6, repository.getReloadedCount());
+    }
+}
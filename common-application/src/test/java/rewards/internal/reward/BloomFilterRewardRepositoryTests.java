@@ -0,0 +1,159 @@
+package rewards.internal.reward;
+
+import common.money.MonetaryAmount;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import rewards.AccountContribution;
+import rewards.Dining;
+import rewards.RewardConfirmation;
+import rewards.internal.account.AccountTestData;
+
+import java.util.Date;
+
+/**
+ * Tests the Bloom filter reward repository in front of the JDBC reward repository, with a test data source.
+ */
+public class BloomFilterRewardRepositoryTests {
+
+    private EmbeddedDatabase dataSource;
+
+    /**
+     * Repository behind the filter
+     */
+    private JdbcRewardRepository jdbcRewardRepository;
+
+    /**
+     * The object being tested.
+     */
+    private BloomFilterRewardRepository repository;
+
+    private Date now;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setName("rewardFilter")
+                .addScript("/rewards/testdb/schema.sql")
+                .addScript("/rewards/testdb/test-data.sql")
+                .build();
+        jdbcRewardRepository = new JdbcRewardRepository();
+        jdbcRewardRepository.setDataSource(dataSource);
+        repository = new BloomFilterRewardRepository(jdbcRewardRepository);
+        repository.setDataSource(dataSource);
+        repository.setInitialCapacity(100);
+        now = new Date();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSource.shutdown();
+    }
+
+
+    /**
+     * Rewards already in the database should be found after warming
+     */
+    @Test
+    public void testWarmedFromDatabase() throws Exception {
+        Dining dining = createDining(0);
+        RewardConfirmation confirmation = jdbcRewardRepository.confirmReward(createContribution(), dining);
+        repository.afterPropertiesSet();
+
+        Assert.assertEquals("size", 1, repository.getSize());
+        Assert.assertEquals("confirmation", confirmation.getConfirmationNumber(),
+                            repository.findConfirmationFor(dining).getConfirmationNumber());
+        Assert.assertEquals("filtered", 0, repository.getFilteredCount());
+    }
+
+
+    /**
+     * Dinings not rewarded should be answered by the filter
+     */
+    @Test
+    public void testNotRewardedFiltered() throws Exception {
+        repository.afterPropertiesSet();
+        for (int i = 0; i < 100; i++) {
+            repository.confirmReward(createContribution(), createDining(i));
+        }
+
+        int found = 0;
+        for (int i = 100; i < 200; i++) {
+            if (repository.findConfirmationFor(createDining(i)) != null) {
+                found++;
+            }
+        }
+
+        Assert.assertEquals("found", 0, found);
+        Assert.assertEquals("lookups", 100, repository.getLookupCount());
+        Assert.assertEquals("every lookup not filtered should be a false positive", 100,
+                            repository.getFilteredCount() + repository.getFalsePositiveCount());
+        Assert.assertTrue("most lookups should be filtered:filtered=" + repository.getFilteredCount(),
+                          repository.getFilteredCount() >= 90);
+    }
+
+
+    /**
+     * Rewards confirmed through the repository should be found
+     */
+    @Test
+    public void testConfirmedRewardFound() throws Exception {
+        repository.afterPropertiesSet();
+        Dining dining = createDining(0);
+        Assert.assertNull("not yet rewarded", repository.findConfirmationFor(dining));
+
+        RewardConfirmation confirmation = repository.confirmReward(createContribution(), dining);
+
+        Assert.assertEquals("confirmation", confirmation.getConfirmationNumber(),
+                            repository.findConfirmationFor(dining).getConfirmationNumber());
+        Assert.assertEquals("filtered", 1, repository.getFilteredCount());
+    }
+
+
+    /**
+     * Reward deleted from the database should cost a query, and not be found
+     */
+    @Test
+    public void testDeletedRewardFalsePositive() throws Exception {
+        repository.afterPropertiesSet();
+        Dining dining = createDining(0);
+        repository.confirmReward(createContribution(), dining);
+        new JdbcTemplate(dataSource).update("delete from T_REWARD");
+
+        Assert.assertNull("deleted", repository.findConfirmationFor(dining));
+        Assert.assertEquals("false positives", 1, repository.getFalsePositiveCount());
+    }
+
+
+    /**
+     * Filter must be warmed before use
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testNotWarmed() {
+        repository.findConfirmationFor(createDining(0));
+    }
+
+
+    /**
+     * Helper creating dining, distinct for each i
+     *
+     * @param i
+     * @return dining
+     */
+    private Dining createDining(int i) {
+        return new Dining(100.0f, AccountTestData.TEST_CREDIT_CARD_0, "1234567890", new Date(now.getTime() + i));
+    }
+
+    /**
+     * Helper creating contribution
+     *
+     * @return contribution
+     */
+    private AccountContribution createContribution() {
+        return AccountTestData.createTestAccount0().makeContribution(new MonetaryAmount(8));
+    }
+}
@@ -0,0 +1,195 @@
+package rewards.internal.reward;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests the pooled confirmation number allocator against the confirmation number sequence in a test data source.
+ */
+public class ConfirmationNumberAllocatorTests {
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setName("confirmationNumbers")
+                .addScript("/rewards/testdb/schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSource.shutdown();
+    }
+
+
+    /**
+     * Block size of 1 with a sequence incrementing by 1 should hand out the numbers before the sequence values
+     */
+    @Test
+    public void testBlockSize1() {
+        alterSequence(1, 1);
+        ConfirmationNumberAllocator allocator = new ConfirmationNumberAllocator(jdbcTemplate, 1);
+        Assert.assertEquals("0", allocator.nextConfirmationNumber());
+        Assert.assertEquals("1", allocator.nextConfirmationNumber());
+        Assert.assertEquals("2", allocator.nextConfirmationNumber());
+    }
+
+
+    /**
+     * Numbers within a block should come from memory, only one sequence value used per block
+     */
+    @Test
+    public void testOneSequenceValuePerBlock() {
+        alterSequence(10, 10);
+        ConfirmationNumberAllocator allocator = new ConfirmationNumberAllocator(jdbcTemplate, 10);
+        for (int i = 0; i < 25; i++) {
+            Assert.assertEquals(String.valueOf(i), allocator.nextConfirmationNumber());
+        }
+
+        Assert.assertEquals("3 blocks should have been reserved", 40, nextSequenceValue());
+    }
+
+
+    /**
+     * Two allocators sharing the database (as in two JVMs, or before and after a restart) must not collide
+     */
+    @Test
+    public void testAllocatorsSharingDatabaseAreUnique() {
+        ConfirmationNumberAllocator allocator0 = new ConfirmationNumberAllocator(jdbcTemplate, 10);
+        ConfirmationNumberAllocator allocator1 = new ConfirmationNumberAllocator(jdbcTemplate, 10);
+
+        Set<String> numbers = new HashSet<String>();
+        for (int i = 0; i < 35; i++) {
+            Assert.assertTrue("duplicate", numbers.add(allocator0.nextConfirmationNumber()));
+            Assert.assertTrue("duplicate", numbers.add(allocator1.nextConfirmationNumber()));
+        }
+
+        ConfirmationNumberAllocator restarted = new ConfirmationNumberAllocator(jdbcTemplate, 10);
+        for (int i = 0; i < 15; i++) {
+            Assert.assertTrue("duplicate after restart", numbers.add(restarted.nextConfirmationNumber()));
+        }
+    }
+
+
+    /**
+     * Allocators with different block sizes sharing the database must not collide, nor must an allocator after the
+     * block size is changed
+     */
+    @Test
+    public void testDifferentBlockSizesAreUnique() {
+        ConfirmationNumberAllocator allocator0 = new ConfirmationNumberAllocator(jdbcTemplate, 100);
+        ConfirmationNumberAllocator allocator1 = new ConfirmationNumberAllocator(jdbcTemplate, 7);
+
+        Set<String> numbers = new HashSet<String>();
+        for (int i = 0; i < 250; i++) {
+            Assert.assertTrue("duplicate", numbers.add(allocator0.nextConfirmationNumber()));
+            Assert.assertTrue("duplicate", numbers.add(allocator1.nextConfirmationNumber()));
+        }
+
+        alterSequence(nextSequenceValue() + 250, 250);
+        ConfirmationNumberAllocator resized = new ConfirmationNumberAllocator(jdbcTemplate, 250);
+        for (int i = 0; i < 500; i++) {
+            Assert.assertTrue("duplicate after resizing", numbers.add(resized.nextConfirmationNumber()));
+            Assert.assertTrue("duplicate", numbers.add(allocator0.nextConfirmationNumber()));
+        }
+    }
+
+
+    /**
+     * A block size more than the sequence increments by would overlap other blocks, so should be refused
+     */
+    @Test(expected = InvalidDataAccessResourceUsageException.class)
+    public void testBlockSizeMoreThanIncrement() {
+        new ConfirmationNumberAllocator(jdbcTemplate, 101).nextConfirmationNumber();
+    }
+
+
+    /**
+     * Concurrent callers must all get distinct numbers
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentAllocationIsUnique() throws Exception {
+        final ConfirmationNumberAllocator allocator = new ConfirmationNumberAllocator(jdbcTemplate, 7);
+        final int threadCount = 8;
+        final int perThread = 500;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+            for (int t = 0; t < threadCount; t++) {
+                futures.add(executorService.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() {
+                        List<String> numbers = new ArrayList<String>(perThread);
+                        for (int i = 0; i < perThread; i++) {
+                            numbers.add(allocator.nextConfirmationNumber());
+                        }
+                        return numbers;
+                    }
+                }));
+            }
+
+            Set<String> numbers = new HashSet<String>();
+            for (Future<List<String>> future : futures) {
+                numbers.addAll(future.get());
+            }
+            Assert.assertEquals("all numbers should be distinct", threadCount * perThread, numbers.size());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+
+    /**
+     * Block size must be positive
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testBlockSize0() {
+        new ConfirmationNumberAllocator(jdbcTemplate, 0);
+    }
+
+
+    /**
+     * Helper restarting the sequence with a different increment
+     *
+     * @param start     next sequence value
+     * @param increment
+     */
+    private void alterSequence(long start, long increment) {
+        jdbcTemplate.execute("alter sequence S_REWARD_CONFIRMATION_NUMBER restart with " + start);
+        jdbcTemplate.execute("alter sequence S_REWARD_CONFIRMATION_NUMBER increment by " + increment);
+    }
+
+
+    /**
+     * Helper taking next sequence value directly
+     *
+     * @return next sequence value
+     */
+    private long nextSequenceValue() {
+        return jdbcTemplate.queryForLong(
+                "select next value for S_REWARD_CONFIRMATION_NUMBER from DUAL_REWARD_CONFIRMATION_NUMBER");
+    }
+}
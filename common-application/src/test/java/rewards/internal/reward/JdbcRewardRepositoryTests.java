@@ -8,8 +8,13 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.ObjectUtils;
 import rewards.AccountContribution;
 import rewards.Dining;
@@ -258,6 +263,186 @@ public class JdbcRewardRepositoryTests {
     }
 
 
+    /**
+     * Test (not) finding reward for dining with the same merchant, amount and time on a different credit card
+     */
+    @Test
+    public void testFindRewardForDiningAccount0DifferentCard() {
+        Date now = new Date();
+        Dining dining = new Dining(100.00f, "1234123412341234", "0123456789", now);
+        Dining diningOtherCard = new Dining(100.00f, "1234123412340001", "0123456789", now);
+
+        Account account = AccountTestData.createTestAccount0();
+        AccountContribution contribution = account.makeContribution(new MonetaryAmount(8));
+        repository.confirmReward(contribution, dining);
+
+        RewardConfirmation confirmation = repository.findConfirmationFor(diningOtherCard);
+        Assert.assertNull("confirmation should not found for dining=" + diningOtherCard + ":confirmation=" +
+                          confirmation, confirmation);
+    }
+
+
+    /**
+     * Test the dining fingerprint is stored with the reward
+     */
+    @Test
+    public void testCreateRewardStoresFingerprint() {
+        Date date = new SimpleDate(10, 7, 2011).asDate();
+        Dining dining = new Dining(100.00f, "1234123412341234", "1234567890", date);
+
+        Account account = AccountTestData.createTestAccount0();
+        RewardConfirmation confirmation =
+                repository.confirmReward(account.makeContribution(new MonetaryAmount(8)), dining);
+
+        Assert.assertEquals("fingerprint", "1234123412341234|1234567890|100.0|" + date.getTime(),
+                            jdbcTemplate.queryForObject(
+                                    "select DINING_FINGERPRINT from T_REWARD where CONFIRMATION_NUMBER = ?",
+                                    String.class, confirmation.getConfirmationNumber()));
+    }
+
+
+    /**
+     * Test confirming a reward for a dining already rewarded fails by default
+     */
+    @Test(expected = DuplicateKeyException.class)
+    public void testCreateRewardDuplicateDining() {
+        Dining dining = new Dining(100.00f, "1234123412341234", "1234567890", new SimpleDate(10, 7, 2011));
+        Account account = AccountTestData.createTestAccount0();
+        repository.confirmReward(account.makeContribution(new MonetaryAmount(8)), dining);
+        repository.confirmReward(account.makeContribution(new MonetaryAmount(8)), dining);
+    }
+
+    /**
+     * Test confirming a reward for a dining already rewarded in idempotent mode reports the existing confirmation,
+     * inserting nothing
+     */
+    @Test
+    public void testCreateRewardDuplicateDiningIdempotent() {
+        repository.setIdempotent(true);
+        Dining dining = new Dining(100.00f, "1234123412341234", "1234567890", new SimpleDate(10, 7, 2011));
+        Account account = AccountTestData.createTestAccount0();
+        RewardConfirmation confirmation =
+                repository.confirmReward(account.makeContribution(new MonetaryAmount(8)), dining);
+
+        try {
+            repository.confirmReward(account.makeContribution(new MonetaryAmount(8)), dining);
+            Assert.fail("dining rewarded twice");
+        } catch (DiningAlreadyRewardedException e) {
+            Assert.assertEquals("existing confirmation", confirmation, e.getExistingConfirmation());
+        }
+        Assert.assertEquals("rewards", 1, jdbcTemplate.queryForInt(
+                "select count(*) from T_REWARD where DINING_FINGERPRINT = ?", DiningFingerprint.fingerprintOf(dining)));
+    }
+
+    /**
+     * Test a transaction can carry on and commit after confirming a reward for a dining already rewarded in idempotent
+     * mode, the failed insert having been rolled back to a savepoint
+     */
+    @Test
+    public void testCreateRewardDuplicateDiningIdempotentInTransaction() {
+        repository.setIdempotent(true);
+        final Dining dining = new Dining(100.00f, "1234123412341234", "1234567890", new SimpleDate(10, 7, 2011));
+        final Dining newDining = new Dining(50.00f, "1234123412341234", "1234567890", new SimpleDate(10, 8, 2011));
+        final Account account = AccountTestData.createTestAccount0();
+        repository.confirmReward(account.makeContribution(new MonetaryAmount(8)), dining);
+
+        new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())).execute(
+                new TransactionCallbackWithoutResult() {
+                    @Override
+                    protected void doInTransactionWithoutResult(TransactionStatus status) {
+                        try {
+                            repository.confirmReward(account.makeContribution(new MonetaryAmount(8)), dining);
+                            Assert.fail("dining rewarded twice");
+                        } catch (DiningAlreadyRewardedException e) {
+                            // expected
+                        }
+                        repository.confirmReward(account.makeContribution(new MonetaryAmount(4)), newDining);
+                    }
+                });
+
+        Assert.assertEquals("rewards", 2, jdbcTemplate.queryForInt("select count(*) from T_REWARD"));
+    }
+
+
+    /**
+     * Test the total reward is summed over the account's rewards for dining at the merchant between the times
+     */
+    @Test
+    public void testFindRewardTotalFor() {
+        Account account = AccountTestData.createTestAccount0();
+        repository.confirmReward(account.makeContribution(new MonetaryAmount(8)),
+                                 new Dining(100.00f, "1234123412341234", "1234567890", new SimpleDate(10, 7, 2011)));
+        repository.confirmReward(account.makeContribution(new MonetaryAmount(4)),
+                                 new Dining(50.00f, "1234123412341234", "1234567890", new SimpleDate(10, 31, 2011)));
+        repository.confirmReward(account.makeContribution(new MonetaryAmount(2)),
+                                 new Dining(25.00f, "1234123412341234", "1234567890", new SimpleDate(11, 1, 2011)));
+        repository.confirmReward(account.makeContribution(new MonetaryAmount(1)),
+                                 new Dining(10.00f, "1234123412341234", "1020304050", new SimpleDate(10, 7, 2011)));
+
+        Date from = new SimpleDate(10, 1, 2011).asDate();
+        Date until = new SimpleDate(11, 1, 2011).asDate();
+        Assert.assertEquals("october", new MonetaryAmount(12),
+                            repository.findRewardTotalFor(AccountTestData.TEST_NUMBER_0, "1234567890", from, until));
+        Assert.assertEquals("other account", MonetaryAmount.zero(),
+                            repository.findRewardTotalFor(AccountTestData.TEST_NUMBER_1, "1234567890", from, until));
+    }
+
+
+    /**
+     * Test an account's rewards are listed oldest first, across several pages, without other accounts' rewards
+     */
+    @Test
+    public void testFindConfirmationsFor() {
+        repository.setHistoryPageSize(2);
+        Account account = AccountTestData.createTestAccount0();
+        final List<RewardConfirmation> expected = new ArrayList<RewardConfirmation>();
+        for (int day = 1; day <= 5; day++) {
+            expected.add(repository.confirmReward(account.makeContribution(new MonetaryAmount(day)), new Dining(
+                    100.00f + day, "1234123412341234", "1234567890", new SimpleDate(10, day, 2011))));
+        }
+        repository.confirmReward(AccountTestData.createTestAccount1().makeContribution(new MonetaryAmount(8)),
+                                 new Dining(100.00f, "4320123412340001", "1234567890", new SimpleDate(10, 1, 2011)));
+        // the last reward confirmed the day before the others, so listed first
+        jdbcTemplate.update("update T_REWARD set REWARD_DATE = ? where CONFIRMATION_NUMBER = ?",
+                            new SimpleDate(10, 1, 2011).asDate(), expected.get(4).getConfirmationNumber());
+        expected.add(0, expected.remove(4));
+
+        final List<RewardConfirmation> confirmations = new ArrayList<RewardConfirmation>();
+        final List<Date> rewardDates = new ArrayList<Date>();
+        repository.findConfirmationsFor(AccountTestData.TEST_NUMBER_0, new RewardConfirmationHandler() {
+            @Override
+            public void processConfirmation(RewardConfirmation rewardConfirmation, Date rewardDate) {
+                confirmations.add(rewardConfirmation);
+                rewardDates.add(rewardDate);
+            }
+        });
+        Assert.assertEquals("confirmations", expected, confirmations);
+        Assert.assertEquals("first reward date", new SimpleDate(10, 1, 2011).asDate().getTime(),
+                            rewardDates.get(0).getTime());
+    }
+
+    /**
+     * History page size must be positive, or listing rewards would never finish
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHistoryPageSize() {
+        repository.setHistoryPageSize(0);
+    }
+
+    /**
+     * Test an account with no rewards lists none
+     */
+    @Test
+    public void testFindConfirmationsForNoRewards() {
+        repository.findConfirmationsFor(AccountTestData.TEST_NUMBER_0, new RewardConfirmationHandler() {
+            @Override
+            public void processConfirmation(RewardConfirmation rewardConfirmation, Date rewardDate) {
+                Assert.fail("no rewards expected:" + rewardConfirmation);
+            }
+        });
+    }
+
+
     /**
      * Helper to check what should have been inserted DINING_MERCHANT_NUMBER, DINING_DATE, DINING_AMOUNT
      *
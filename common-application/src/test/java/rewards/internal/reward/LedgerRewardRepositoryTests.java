@@ -0,0 +1,229 @@
+package rewards.internal.reward;
+
+import common.money.MonetaryAmount;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import rewards.AccountContribution;
+import rewards.Dining;
+import rewards.RewardConfirmation;
+import rewards.internal.account.AccountTestData;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests the ledger reward repository against the test database and a ledger in a temporary directory, checking
+ * rewards are found before and after they are replayed, and recovered from the ledger by a new repository.
+ */
+public class LedgerRewardRepositoryTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EmbeddedDatabase dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * The object being tested.
+     */
+    private LedgerRewardRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setName("rewardLedger")
+                .addScript("/rewards/testdb/schema.sql")
+                .addScript("/rewards/testdb/test-data.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = createRepository();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSource.shutdown();
+    }
+
+
+    /**
+     * A confirmed reward should be found straight away, and only be in the database once replayed
+     */
+    @Test
+    public void testConfirmAndReplay() {
+        Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+        AccountContribution contribution = AccountTestData.createTestAccount0().makeContribution(new MonetaryAmount(8));
+
+        RewardConfirmation confirmation = repository.confirmReward(contribution, dining);
+        Assert.assertEquals("found before replay", confirmation, repository.findConfirmationFor(dining));
+        Assert.assertEquals("in database before replay", 0, getRewardCount());
+        Assert.assertEquals("pending", 1, repository.getPendingCount());
+
+        Assert.assertEquals("replayed", 1, repository.replay());
+        Assert.assertEquals("found after replay", confirmation, repository.findConfirmationFor(dining));
+        Assert.assertEquals("in database after replay", 1, getRewardCount());
+        Assert.assertEquals("distributions in database", 2,
+                            jdbcTemplate.queryForInt("select count(*) from T_REWARD_DISTRIBUTION"));
+        Assert.assertEquals("pending", 0, repository.getPendingCount());
+        Assert.assertEquals("checkpoint", 1, repository.getCheckpoint());
+    }
+
+    /**
+     * Totals should count rewards both before and after they are replayed
+     */
+    @Test
+    public void testFindRewardTotalFor() {
+        AccountContribution contribution = AccountTestData.createTestAccount0().makeContribution(new MonetaryAmount(8));
+        repository.confirmReward(contribution, new Dining(100.00f, "1234123412341234", "1234567890", date(1)));
+        repository.replay();
+        repository.confirmReward(contribution, new Dining(100.00f, "1234123412341234", "1234567890", date(2)));
+        repository.confirmReward(contribution, new Dining(100.00f, "1234123412341234", "1020304050", date(2)));
+
+        Assert.assertEquals("total", new MonetaryAmount(16),
+                            repository.findRewardTotalFor("123456789", "1234567890", date(1), date(3)));
+        Assert.assertEquals("total from day 2", new MonetaryAmount(8),
+                            repository.findRewardTotalFor("123456789", "1234567890", date(2), date(3)));
+    }
+
+    /**
+     * An account's rewards should be listed once each, whether replayed or not
+     */
+    @Test
+    public void testFindConfirmationsFor() {
+        AccountContribution contribution = AccountTestData.createTestAccount0().makeContribution(new MonetaryAmount(8));
+        RewardConfirmation replayed = repository.confirmReward(
+                contribution, new Dining(100.00f, "1234123412341234", "1234567890", date(1)));
+        repository.replay();
+        RewardConfirmation notReplayed = repository.confirmReward(
+                contribution, new Dining(100.00f, "1234123412341234", "1234567890", date(2)));
+
+        final List<RewardConfirmation> confirmations = new ArrayList<RewardConfirmation>();
+        repository.findConfirmationsFor("123456789", new RewardConfirmationHandler() {
+            @Override
+            public void processConfirmation(RewardConfirmation rewardConfirmation, Date rewardDate) {
+                confirmations.add(rewardConfirmation);
+            }
+        });
+        Assert.assertEquals("confirmations", Arrays.asList(replayed, notReplayed), confirmations);
+    }
+
+    /**
+     * Rewards not replayed when the repository stopped should be recovered from the ledger and replayed by the next,
+     * without replaying twice those replayed before the checkpoint was written
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecovery() throws Exception {
+        AccountContribution contribution = AccountTestData.createTestAccount0().makeContribution(new MonetaryAmount(8));
+        Dining replayed = new Dining(100.00f, "1234123412341234", "1234567890", date(1));
+        Dining notReplayed = new Dining(100.00f, "1234123412341234", "1234567890", date(2));
+        repository.confirmReward(contribution, replayed);
+        repository.replay();
+        RewardConfirmation confirmation = repository.confirmReward(contribution, notReplayed);
+        // stop without replaying, as if the JVM had stopped before the checkpoint was written
+        Assert.assertTrue("checkpoint deleted", new File(folder.getRoot(), "checkpoint").delete());
+
+        LedgerRewardRepository recovered = createRepository();
+        Assert.assertEquals("pending", 2, recovered.getPendingCount());
+        Assert.assertEquals("found before replay", confirmation, recovered.findConfirmationFor(notReplayed));
+
+        Assert.assertEquals("replayed", 2, recovered.replay());
+        Assert.assertEquals("in database", 2, getRewardCount());
+        Assert.assertEquals("found after replay", confirmation, recovered.findConfirmationFor(notReplayed));
+    }
+
+    /**
+     * A dining already rewarded should be rejected, whether or not its reward has been replayed
+     */
+    @Test
+    public void testConfirmDuplicate() {
+        Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+        AccountContribution contribution = AccountTestData.createTestAccount0().makeContribution(new MonetaryAmount(8));
+        repository.confirmReward(contribution, dining);
+
+        try {
+            repository.confirmReward(contribution, dining);
+            Assert.fail("pending dining should be rejected");
+        } catch (DuplicateKeyException e) {
+            // expected
+        }
+        repository.replay();
+        try {
+            repository.confirmReward(contribution, dining);
+            Assert.fail("replayed dining should be rejected");
+        } catch (DuplicateKeyException e) {
+            // expected
+        }
+        Assert.assertEquals("appended", 1, repository.getAppendedCount());
+    }
+
+    /**
+     * A reward whose dining has been rewarded in the database under another confirmation number should stop the
+     * replay, and stay pending
+     */
+    @Test
+    public void testReplayConflict() {
+        Dining dining = Dining.createDining("100.00", "1234123412341234", "1234567890");
+        AccountContribution contribution = AccountTestData.createTestAccount0().makeContribution(new MonetaryAmount(8));
+        RewardConfirmation confirmation = repository.confirmReward(contribution, dining);
+        JdbcRewardRepository otherWriter = new JdbcRewardRepository();
+        otherWriter.setDataSource(dataSource);
+        otherWriter.confirmReward(contribution, dining);
+
+        Assert.assertEquals("replayed", 0, repository.replay());
+        Assert.assertEquals("failures", 1, repository.getReplayFailureCount());
+        Assert.assertEquals("pending", 1, repository.getPendingCount());
+        Assert.assertEquals("checkpoint", 0, repository.getCheckpoint());
+        Assert.assertEquals("still found", confirmation, repository.findConfirmationFor(dining));
+    }
+
+    /**
+     * Helper creating a repository on the test ledger and database
+     *
+     * @return repository
+     * @throws Exception
+     */
+    private LedgerRewardRepository createRepository() throws Exception {
+        LedgerRewardRepository ledgerRepository = new LedgerRewardRepository();
+        ledgerRepository.setDataSource(dataSource);
+        ledgerRepository.setDirectory(folder.getRoot());
+        ledgerRepository.setSegmentSize(4096);
+        ledgerRepository.afterPropertiesSet();
+        return ledgerRepository;
+    }
+
+    /**
+     * Helper making a dining time, at noon on a day in January 2010
+     *
+     * @param day
+     * @return time
+     */
+    private Date date(int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2010, Calendar.JANUARY, day, 12, 0);
+        return calendar.getTime();
+    }
+
+    /**
+     * Helper counting the rewards in the database
+     *
+     * @return count
+     */
+    private int getRewardCount() {
+        return jdbcTemplate.queryForInt("select count(*) from T_REWARD");
+    }
+}
@@ -0,0 +1,162 @@
+package rewards.internal.reward;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for the memory-mapped reward ledger, in a temporary directory.
+ */
+public class RewardLedgerTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Records should be read back in sequence, from wherever the cursor was left
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAppendAndRead() throws Exception {
+        RewardLedger ledger = new RewardLedger(folder.getRoot(), 1024, false);
+        Assert.assertEquals("first", 1, ledger.append(record("one")));
+        Assert.assertEquals("second", 2, ledger.append(record("two")));
+
+        RewardLedger.Cursor cursor = ledger.cursorAfter(0);
+        Assert.assertEquals("records", list("one", "two"), read(ledger, cursor));
+
+        ledger.append(record("three"));
+        Assert.assertEquals("records after cursor", list("three"), read(ledger, cursor));
+        Assert.assertEquals("records after 1", list("two", "three"), read(ledger, ledger.cursorAfter(1)));
+    }
+
+    /**
+     * Records not fitting in a segment should go in a new one, and be read across segments
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRollSegments() throws Exception {
+        RewardLedger ledger = new RewardLedger(folder.getRoot(), 64, false);
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            ledger.append(record("record" + i));
+            expected.add("record" + i);
+        }
+
+        Assert.assertEquals("segments", 5, ledger.getSegmentCount());
+        Assert.assertEquals("records", expected, read(ledger, ledger.cursorAfter(0)));
+        Assert.assertEquals("records after 5", expected.subList(5, 10), read(ledger, ledger.cursorAfter(5)));
+    }
+
+    /**
+     * Reopening should find the end of the log, ignoring a torn record after it
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecovery() throws Exception {
+        RewardLedger ledger = new RewardLedger(folder.getRoot(), 1024, false);
+        ledger.append(record("one"));
+        ledger.append(record("two"));
+        ledger.close();
+        // tear the second record, after the first's header and 3 bytes, and its own header
+        RandomAccessFile file = new RandomAccessFile(segmentFiles()[0], "rw");
+        file.seek(RewardLedger.HEADER_SIZE + 3 + RewardLedger.HEADER_SIZE);
+        file.write('X');
+        file.close();
+
+        RewardLedger reopened = new RewardLedger(folder.getRoot(), 1024, false);
+        Assert.assertEquals("last sequence", 1, reopened.getLastSequence());
+        Assert.assertEquals("next sequence", 2, reopened.append(record("two again")));
+        Assert.assertEquals("records", list("one", "two again"), read(reopened, reopened.cursorAfter(0)));
+    }
+
+    /**
+     * A checkpoint should survive reopening, and delete the segments holding only records up to it
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCheckpoint() throws Exception {
+        RewardLedger ledger = new RewardLedger(folder.getRoot(), 64, false);
+        for (int i = 0; i < 10; i++) {
+            ledger.append(record("record" + i));
+        }
+        RewardLedger.Cursor cursor = ledger.cursorAfter(0);
+        read(ledger, cursor);
+
+        ledger.checkpoint(5);
+        Assert.assertEquals("segments", 3, segmentFiles().length);
+        Assert.assertEquals("records after checkpoint", list("record5", "record6", "record7", "record8", "record9"),
+                            read(ledger, ledger.cursorAfter(5)));
+        ledger.append(record("record10"));
+        Assert.assertEquals("records after cursor", list("record10"), read(ledger, cursor));
+        ledger.close();
+
+        RewardLedger reopened = new RewardLedger(folder.getRoot(), 64, false);
+        Assert.assertEquals("checkpoint", 5, reopened.getCheckpoint());
+        Assert.assertEquals("last sequence", 11, reopened.getLastSequence());
+    }
+
+    /**
+     * Helper listing the segment files
+     *
+     * @return files
+     */
+    private File[] segmentFiles() {
+        return folder.getRoot().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".log");
+            }
+        });
+    }
+
+    /**
+     * Helper reading all records from a cursor
+     *
+     * @param ledger
+     * @param cursor
+     * @return records, as strings
+     */
+    private List<String> read(RewardLedger ledger, RewardLedger.Cursor cursor) {
+        final List<String> records = new ArrayList<String>();
+        ledger.read(cursor, Integer.MAX_VALUE, new RewardLedger.RecordHandler() {
+            @Override
+            public void handle(long sequence, byte[] record) {
+                records.add(new String(record));
+            }
+        });
+        return records;
+    }
+
+    /**
+     * Helper making a record of a string
+     *
+     * @param value
+     * @return record
+     */
+    private static byte[] record(String value) {
+        return value.getBytes();
+    }
+
+    /**
+     * Helper listing strings
+     *
+     * @param values
+     * @return list
+     */
+    private static List<String> list(String... values) {
+        return Arrays.asList(values);
+    }
+}
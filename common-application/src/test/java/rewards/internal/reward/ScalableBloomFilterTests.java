@@ -0,0 +1,81 @@
+package rewards.internal.reward;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the scalable Bloom filter.
+ */
+public class ScalableBloomFilterTests {
+
+    /**
+     * Everything added must be reported as possibly contained, also after the filter has grown
+     */
+    @Test
+    public void testNoFalseNegatives() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("added-" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue("added-" + i, filter.mightContain("added-" + i));
+        }
+        Assert.assertEquals("size", 1000, filter.getSize());
+        Assert.assertTrue("filter should have grown:stageCount=" + filter.getStageCount(),
+                          filter.getStageCount() > 1);
+    }
+
+
+    /**
+     * False-positive rate should stay within the target, also after the filter has grown
+     */
+    @Test
+    public void testFalsePositiveRate() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 20000; i++) {
+            filter.add("added-" + i);
+        }
+
+        int falsePositives = 0;
+        final int probes = 100000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("not-added-" + i)) {
+                falsePositives++;
+            }
+        }
+        final double rate = (double) falsePositives / probes;
+        Assert.assertTrue("false-positive rate=" + rate, rate <= 0.01);
+        Assert.assertTrue("estimated false-positive rate=" + filter.getEstimatedFalsePositiveRate(),
+                          filter.getEstimatedFalsePositiveRate() <= 0.01);
+    }
+
+
+    /**
+     * Empty filter should contain nothing
+     */
+    @Test
+    public void testEmpty() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(10, 0.01);
+        Assert.assertFalse("empty", filter.mightContain("anything"));
+        Assert.assertEquals("stages", 1, filter.getStageCount());
+    }
+
+
+    /**
+     * False-positive rate must be a probability
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFalsePositiveRate1() {
+        new ScalableBloomFilter(10, 1.0);
+    }
+
+
+    /**
+     * Capacity must be positive
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialCapacity0() {
+        new ScalableBloomFilter(0, 0.01);
+    }
+}
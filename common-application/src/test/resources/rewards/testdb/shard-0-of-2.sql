@@ -0,0 +1,4 @@
+-- Shard 0 of 2 keeps the accounts whose numbers hash to it; credit cards and beneficiaries go with their accounts
+delete from T_ACCOUNT where NUMBER in ('123456789', '123456002', '123456004', '123456006', '123456008', '123456011', '123456013', '123456015', '123456017', '123456019', '123456020');
+-- new accounts get even ids, so that they are never used on shard 1
+alter table T_ACCOUNT alter column ID integer generated by default as identity (start with 1000000 increment by 2);
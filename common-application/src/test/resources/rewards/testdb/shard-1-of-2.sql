@@ -0,0 +1,4 @@
+-- Shard 1 of 2 keeps the accounts whose numbers hash to it; credit cards and beneficiaries go with their accounts
+delete from T_ACCOUNT where NUMBER in ('123456001', '123456003', '123456005', '123456007', '123456009', '123456010', '123456012', '123456014', '123456016', '123456018');
+-- new accounts get odd ids, so that they are never used on shard 0
+alter table T_ACCOUNT alter column ID integer generated by default as identity (start with 1000001 increment by 2);
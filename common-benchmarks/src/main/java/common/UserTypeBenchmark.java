@@ -0,0 +1,172 @@
+package common;
+
+import common.datetime.SimpleDate;
+import common.datetime.SimpleDateUserType;
+import common.money.MonetaryAmount;
+import common.money.MonetaryAmountUserType;
+import common.money.Percentage;
+import common.money.PercentageUserType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Hibernate user types reading values from, and binding them to, an in-memory HSQL database, as for
+ * every account, beneficiary and restaurant loaded and saved.
+ * <p/>
+ * Values are read from a scrollable result set over rows selected once, and bound to a statement that is never
+ * executed, so that what is measured is the user type and the driver's accessors rather than the query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserTypeBenchmark {
+
+    /**
+     * Number of rows cycled through, a power of 2
+     */
+    private static final int ROW_COUNT = 1024;
+
+    private static final String[] AMOUNT = {"AMOUNT"};
+
+    private static final String[] PERCENTAGE = {"PERCENTAGE"};
+
+    private static final String[] DAY = {"DAY"};
+
+    private final MonetaryAmountUserType amountType = new MonetaryAmountUserType();
+
+    private final PercentageUserType percentageType = new PercentageUserType();
+
+    private final SimpleDateUserType dateType = new SimpleDateUserType();
+
+    private final MonetaryAmount[] amounts = new MonetaryAmount[ROW_COUNT];
+
+    private final Percentage[] percentages = new Percentage[ROW_COUNT];
+
+    private final SimpleDate[] dates = new SimpleDate[ROW_COUNT];
+
+    private Connection connection;
+
+    private ResultSet rows;
+
+    private PreparedStatement insert;
+
+    private int next;
+
+    /**
+     * Create the table and its rows, and select them
+     *
+     * @throws SQLException
+     */
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:hsqldb:mem:userTypeBenchmark", "sa", "");
+        Statement statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        statement.execute("create table T_VALUE (ID integer primary key, AMOUNT decimal(8,2), PERCENTAGE decimal(3,2), "
+                          + "DAY date)");
+        insert = connection.prepareStatement("insert into T_VALUE (ID, AMOUNT, PERCENTAGE, DAY) values (?, ?, ?, ?)");
+        Random random = new Random(42);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            amounts[i] = new MonetaryAmount((500 + random.nextInt(9500)) / 100.0);
+            percentages[i] = Percentage.valueOf(random.nextInt(101) / 100.0);
+            dates[i] = new SimpleDate(1 + random.nextInt(12), 1 + random.nextInt(28), 2005 + random.nextInt(10));
+            insert.setInt(1, i);
+            amountType.nullSafeSet(insert, amounts[i], 2);
+            percentageType.nullSafeSet(insert, percentages[i], 3);
+            dateType.nullSafeSet(insert, dates[i], 4);
+            insert.executeUpdate();
+        }
+        rows = statement.executeQuery("select AMOUNT, PERCENTAGE, DAY from T_VALUE order by ID");
+    }
+
+    /**
+     * Drop the database
+     *
+     * @throws SQLException
+     */
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.createStatement().execute("shutdown");
+        connection.close();
+    }
+
+    /**
+     * @return amount read
+     * @throws SQLException
+     */
+    @Benchmark
+    public Object getMonetaryAmount() throws SQLException {
+        rows.absolute(1 + (next++ & (ROW_COUNT - 1)));
+        return amountType.nullSafeGet(rows, AMOUNT, null);
+    }
+
+    /**
+     * @return statement with the amount bound
+     * @throws SQLException
+     */
+    @Benchmark
+    public PreparedStatement setMonetaryAmount() throws SQLException {
+        amountType.nullSafeSet(insert, amounts[next++ & (ROW_COUNT - 1)], 2);
+        return insert;
+    }
+
+    /**
+     * @return percentage read
+     * @throws SQLException
+     */
+    @Benchmark
+    public Object getPercentage() throws SQLException {
+        rows.absolute(1 + (next++ & (ROW_COUNT - 1)));
+        return percentageType.nullSafeGet(rows, PERCENTAGE, null);
+    }
+
+    /**
+     * @return statement with the percentage bound
+     * @throws SQLException
+     */
+    @Benchmark
+    public PreparedStatement setPercentage() throws SQLException {
+        percentageType.nullSafeSet(insert, percentages[next++ & (ROW_COUNT - 1)], 3);
+        return insert;
+    }
+
+    /**
+     * @return date read
+     * @throws SQLException
+     */
+    @Benchmark
+    public Object getSimpleDate() throws SQLException {
+        rows.absolute(1 + (next++ & (ROW_COUNT - 1)));
+        return dateType.nullSafeGet(rows, DAY, null);
+    }
+
+    /**
+     * @return statement with the date bound
+     * @throws SQLException
+     */
+    @Benchmark
+    public PreparedStatement setSimpleDate() throws SQLException {
+        dateType.nullSafeSet(insert, dates[next++ & (ROW_COUNT - 1)], 4);
+        return insert;
+    }
+}
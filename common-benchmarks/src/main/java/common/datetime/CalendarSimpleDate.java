@@ -0,0 +1,81 @@
+package common.datetime;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+/**
+ * SimpleDate as it was when held as a calendar, kept as the baseline for {@link SimpleDateBenchmark}.
+ */
+public final class CalendarSimpleDate {
+
+    private final GregorianCalendar base;
+
+    /**
+     * Create a date
+     *
+     * @param month the month
+     * @param day the day
+     * @param year the year
+     */
+    public CalendarSimpleDate(int month, int day, int year) {
+        this.base = trimToDays(new GregorianCalendar(year, month - 1, day));
+    }
+
+    /**
+     * Create the date of a time
+     *
+     * @param time milliseconds since 1970
+     */
+    public CalendarSimpleDate(long time) {
+        GregorianCalendar cal = new GregorianCalendar();
+        cal.setTimeInMillis(time);
+        this.base = trimToDays(cal);
+    }
+
+    /**
+     * @return today's date
+     */
+    public static CalendarSimpleDate today() {
+        return new CalendarSimpleDate(System.currentTimeMillis());
+    }
+
+    /**
+     * Helper trimming time to 00:00
+     *
+     * @param cal
+     * @return cal
+     */
+    private static GregorianCalendar trimToDays(GregorianCalendar cal) {
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal;
+    }
+
+    /**
+     * @return the date
+     */
+    public Date asDate() {
+        return base.getTime();
+    }
+
+    /**
+     * @param date
+     * @return comparison
+     */
+    public int compareTo(CalendarSimpleDate date) {
+        return asDate().compareTo(date.asDate());
+    }
+
+    @Override
+    public boolean equals(Object day) {
+        return (day instanceof CalendarSimpleDate) && base.equals(((CalendarSimpleDate) day).base);
+    }
+
+    @Override
+    public int hashCode() {
+        return 29 * base.hashCode();
+    }
+}
@@ -0,0 +1,154 @@
+package common.datetime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares SimpleDate held as a count of days against the calendar it replaced: today's date as each reward is
+ * confirmed, dates read from dining times and database rows, and comparing and hashing them.
+ * <p/>
+ * Run with -prof gc to compare the bytes allocated per operation as well as the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleDateBenchmark {
+
+    /**
+     * Number of dates cycled through, a power of 2
+     */
+    private static final int DATE_COUNT = 1024;
+
+    private final long[] times = new long[DATE_COUNT];
+
+    private final SimpleDate[] dates = new SimpleDate[DATE_COUNT];
+
+    private final CalendarSimpleDate[] calendarDates = new CalendarSimpleDate[DATE_COUNT];
+
+    private int next;
+
+    /**
+     * Create dates over ten years from 2005
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long start = new SimpleDate(1, 1, 2005).inMilliseconds();
+        for (int i = 0; i < DATE_COUNT; i++) {
+            times[i] = start + (long) (random.nextDouble() * 10 * 365 * 24 * 60 * 60 * 1000);
+            dates[i] = SimpleDate.valueOf(times[i]);
+            calendarDates[i] = new CalendarSimpleDate(times[i]);
+        }
+    }
+
+    /**
+     * @return today's date, shared until it changes
+     */
+    @Benchmark
+    public SimpleDate today() {
+        return SimpleDate.today();
+    }
+
+    /**
+     * @return today's date, as a count of days
+     */
+    @Benchmark
+    public Date todayAsDate() {
+        return SimpleDate.today().asDate();
+    }
+
+    /**
+     * @return today's date, as a calendar
+     */
+    @Benchmark
+    public Date todayAsDateCalendar() {
+        return CalendarSimpleDate.today().asDate();
+    }
+
+    /**
+     * @return date of a time, as a count of days
+     */
+    @Benchmark
+    public SimpleDate valueOf() {
+        return SimpleDate.valueOf(times[next++ & (DATE_COUNT - 1)]);
+    }
+
+    /**
+     * @return date of a time, as a calendar
+     */
+    @Benchmark
+    public CalendarSimpleDate valueOfCalendar() {
+        return new CalendarSimpleDate(times[next++ & (DATE_COUNT - 1)]);
+    }
+
+    /**
+     * @return date from month, day and year, as a count of days
+     */
+    @Benchmark
+    public SimpleDate construct() {
+        final int i = next++ & (DATE_COUNT - 1);
+        return new SimpleDate(1 + (i & 7), 1 + (i & 15), 2005 + (i & 3));
+    }
+
+    /**
+     * @return date from month, day and year, as a calendar
+     */
+    @Benchmark
+    public CalendarSimpleDate constructCalendar() {
+        final int i = next++ & (DATE_COUNT - 1);
+        return new CalendarSimpleDate(1 + (i & 7), 1 + (i & 15), 2005 + (i & 3));
+    }
+
+    /**
+     * @return comparison of dates, as counts of days
+     */
+    @Benchmark
+    public int compareTo() {
+        final int i = next++;
+        return dates[i & (DATE_COUNT - 1)].compareTo(dates[(i + 1) & (DATE_COUNT - 1)]);
+    }
+
+    /**
+     * @return comparison of dates, as calendars
+     */
+    @Benchmark
+    public int compareToCalendar() {
+        final int i = next++;
+        return calendarDates[i & (DATE_COUNT - 1)].compareTo(calendarDates[(i + 1) & (DATE_COUNT - 1)]);
+    }
+
+    /**
+     * @return equality and hash of dates, as counts of days
+     */
+    @Benchmark
+    public int equalsAndHashCode() {
+        final int i = next++;
+        final SimpleDate date = dates[i & (DATE_COUNT - 1)];
+        return date.hashCode() + (date.equals(dates[(i + 1) & (DATE_COUNT - 1)]) ? 1 : 0);
+    }
+
+    /**
+     * @return equality and hash of dates, as calendars
+     */
+    @Benchmark
+    public int equalsAndHashCodeCalendar() {
+        final int i = next++;
+        final CalendarSimpleDate date = calendarDates[i & (DATE_COUNT - 1)];
+        return date.hashCode() + (date.equals(calendarDates[(i + 1) & (DATE_COUNT - 1)]) ? 1 : 0);
+    }
+}
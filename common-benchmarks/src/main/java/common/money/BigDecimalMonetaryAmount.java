@@ -0,0 +1,70 @@
+package common.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The arithmetic of MonetaryAmount as it was when held as a BigDecimal, kept as the baseline for
+ * {@link MonetaryAmountBenchmark}.
+ */
+public final class BigDecimalMonetaryAmount {
+
+    private final BigDecimal value;
+
+    /**
+     * Create an amount, rounded HALF_EVEN to cents
+     *
+     * @param value
+     */
+    public BigDecimalMonetaryAmount(BigDecimal value) {
+        this.value = value.setScale(2, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Create an amount from a double, rounded HALF_EVEN to cents
+     *
+     * @param value
+     */
+    public BigDecimalMonetaryAmount(double value) {
+        this(BigDecimal.valueOf(value));
+    }
+
+    /**
+     * @param amount
+     * @return sum
+     */
+    public BigDecimalMonetaryAmount add(BigDecimalMonetaryAmount amount) {
+        return new BigDecimalMonetaryAmount(value.add(amount.value));
+    }
+
+    /**
+     * @param amount
+     * @return difference
+     */
+    public BigDecimalMonetaryAmount subtract(BigDecimalMonetaryAmount amount) {
+        return new BigDecimalMonetaryAmount(value.subtract(amount.value));
+    }
+
+    /**
+     * @param percentage
+     * @return percentage of this amount
+     */
+    public BigDecimalMonetaryAmount multiplyBy(Percentage percentage) {
+        return new BigDecimalMonetaryAmount(value.multiply(percentage.asBigDecimal()));
+    }
+
+    /**
+     * @param amount
+     * @return whether this is greater
+     */
+    public boolean greaterThan(BigDecimalMonetaryAmount amount) {
+        return value.compareTo(amount.value) > 0;
+    }
+
+    /**
+     * @return value
+     */
+    public BigDecimal asBigDecimal() {
+        return value;
+    }
+}
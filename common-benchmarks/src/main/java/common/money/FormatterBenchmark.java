@@ -0,0 +1,94 @@
+package common.money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures MonetaryAmountFormatter and PercentageFormatter parsing and printing, as done binding every amount and
+ * percentage to and from the web and REST layers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+
+    /**
+     * Number of values cycled through, a power of 2
+     */
+    private static final int VALUE_COUNT = 1024;
+
+    private final MonetaryAmountFormatter amountFormatter = new MonetaryAmountFormatter();
+
+    private final PercentageFormatter percentageFormatter = new PercentageFormatter();
+
+    private final MonetaryAmount[] amounts = new MonetaryAmount[VALUE_COUNT];
+
+    private final String[] amountStrings = new String[VALUE_COUNT];
+
+    private final Percentage[] percentages = new Percentage[VALUE_COUNT];
+
+    private final String[] percentageStrings = new String[VALUE_COUNT];
+
+    private int next;
+
+    /**
+     * Create the values and their strings as printed
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            amounts[i] = new MonetaryAmount((500 + random.nextInt(9500)) / 100.0);
+            amountStrings[i] = amountFormatter.print(amounts[i], Locale.US);
+            percentages[i] = Percentage.valueOf(random.nextInt(101) / 100.0);
+            percentageStrings[i] = percentageFormatter.print(percentages[i], Locale.US);
+        }
+    }
+
+    /**
+     * @return amount parsed
+     */
+    @Benchmark
+    public MonetaryAmount parseMonetaryAmount() {
+        return amountFormatter.parse(amountStrings[next++ & (VALUE_COUNT - 1)], Locale.US);
+    }
+
+    /**
+     * @return amount printed
+     */
+    @Benchmark
+    public String printMonetaryAmount() {
+        return amountFormatter.print(amounts[next++ & (VALUE_COUNT - 1)], Locale.US);
+    }
+
+    /**
+     * @return percentage parsed
+     */
+    @Benchmark
+    public Percentage parsePercentage() {
+        return percentageFormatter.parse(percentageStrings[next++ & (VALUE_COUNT - 1)], Locale.US);
+    }
+
+    /**
+     * @return percentage printed
+     */
+    @Benchmark
+    public String printPercentage() {
+        return percentageFormatter.print(percentages[next++ & (VALUE_COUNT - 1)], Locale.US);
+    }
+}
@@ -0,0 +1,149 @@
+package common.money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares MonetaryAmount held in cents against the BigDecimal it replaced, for the money arithmetic done for every
+ * reward: the restaurant's percentage of the dining amount, split between beneficiaries by percentage and added to
+ * their savings, and the monthly cap check.
+ * <p/>
+ * Run with -prof gc to compare the bytes allocated per operation as well as the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonetaryAmountBenchmark {
+
+    /**
+     * Number of amounts cycled through, a power of 2
+     */
+    private static final int AMOUNT_COUNT = 1024;
+
+    private final double[] diningAmounts = new double[AMOUNT_COUNT];
+
+    private final MonetaryAmount[] amounts = new MonetaryAmount[AMOUNT_COUNT];
+
+    private final BigDecimalMonetaryAmount[] bigDecimalAmounts = new BigDecimalMonetaryAmount[AMOUNT_COUNT];
+
+    private int next;
+
+    private Percentage benefitPercentage;
+
+    private Percentage allocationPercentage;
+
+    private MonetaryAmount savings;
+
+    private BigDecimalMonetaryAmount bigDecimalSavings;
+
+    private MonetaryAmount monthlyCap;
+
+    private BigDecimalMonetaryAmount bigDecimalMonthlyCap;
+
+    /**
+     * Create the amounts and percentages
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < AMOUNT_COUNT; i++) {
+            diningAmounts[i] = (500 + random.nextInt(9500)) / 100.0;
+            amounts[i] = new MonetaryAmount(diningAmounts[i]);
+            bigDecimalAmounts[i] = new BigDecimalMonetaryAmount(diningAmounts[i]);
+        }
+        benefitPercentage = new Percentage(0.08);
+        allocationPercentage = new Percentage(0.5);
+        savings = new MonetaryAmount(250);
+        bigDecimalSavings = new BigDecimalMonetaryAmount(250);
+        monthlyCap = new MonetaryAmount(50);
+        bigDecimalMonthlyCap = new BigDecimalMonetaryAmount(50);
+    }
+
+    /**
+     * @return amount from a double, in cents
+     */
+    @Benchmark
+    public MonetaryAmount fromDouble() {
+        return new MonetaryAmount(diningAmounts[next++ & (AMOUNT_COUNT - 1)]);
+    }
+
+    /**
+     * @return amount from a double, as a BigDecimal
+     */
+    @Benchmark
+    public BigDecimalMonetaryAmount fromDoubleBigDecimal() {
+        return new BigDecimalMonetaryAmount(diningAmounts[next++ & (AMOUNT_COUNT - 1)]);
+    }
+
+    /**
+     * @return sum, in cents
+     */
+    @Benchmark
+    public MonetaryAmount add() {
+        return savings.add(amounts[next++ & (AMOUNT_COUNT - 1)]);
+    }
+
+    /**
+     * @return sum, as BigDecimals
+     */
+    @Benchmark
+    public BigDecimalMonetaryAmount addBigDecimal() {
+        return bigDecimalSavings.add(bigDecimalAmounts[next++ & (AMOUNT_COUNT - 1)]);
+    }
+
+    /**
+     * @return percentage of an amount, in cents
+     */
+    @Benchmark
+    public MonetaryAmount multiplyByPercentage() {
+        return amounts[next++ & (AMOUNT_COUNT - 1)].multiplyBy(benefitPercentage);
+    }
+
+    /**
+     * @return percentage of an amount, as BigDecimals
+     */
+    @Benchmark
+    public BigDecimalMonetaryAmount multiplyByPercentageBigDecimal() {
+        return bigDecimalAmounts[next++ & (AMOUNT_COUNT - 1)].multiplyBy(benefitPercentage);
+    }
+
+    /**
+     * @return a beneficiary's savings after a reward for a dining, in cents
+     */
+    @Benchmark
+    public MonetaryAmount reward() {
+        MonetaryAmount benefit = new MonetaryAmount(diningAmounts[next++ & (AMOUNT_COUNT - 1)])
+                .multiplyBy(benefitPercentage);
+        if (benefit.greaterThan(monthlyCap)) {
+            benefit = monthlyCap;
+        }
+        return savings.add(benefit.multiplyBy(allocationPercentage));
+    }
+
+    /**
+     * @return a beneficiary's savings after a reward for a dining, as BigDecimals
+     */
+    @Benchmark
+    public BigDecimalMonetaryAmount rewardBigDecimal() {
+        BigDecimalMonetaryAmount benefit = new BigDecimalMonetaryAmount(diningAmounts[next++ & (AMOUNT_COUNT - 1)])
+                .multiplyBy(benefitPercentage);
+        if (benefit.greaterThan(bigDecimalMonthlyCap)) {
+            benefit = bigDecimalMonthlyCap;
+        }
+        return bigDecimalSavings.add(benefit.multiplyBy(allocationPercentage));
+    }
+}
@@ -0,0 +1,110 @@
+package common.money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up the shared Percentage for the values it is read from, as restaurant benefits and beneficiary
+ * allocations are loaded, against constructing one, and adding allocations as an account is validated.
+ * <p/>
+ * Run with -prof gc to check the valueOf and add paths allocate nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PercentageBenchmark {
+
+    /**
+     * Number of values cycled through, a power of 2
+     */
+    private static final int VALUE_COUNT = 1024;
+
+    private final double[] doubles = new double[VALUE_COUNT];
+
+    private final BigDecimal[] decimals = new BigDecimal[VALUE_COUNT];
+
+    private final String[] strings = new String[VALUE_COUNT];
+
+    private final Percentage[] halves = new Percentage[VALUE_COUNT];
+
+    private int next;
+
+    /**
+     * Create the values, whole percents up to 100%, with the strings as percents half the time
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            final int percent = random.nextInt(101);
+            doubles[i] = percent / 100.0;
+            decimals[i] = BigDecimal.valueOf(percent, 2);
+            strings[i] = random.nextBoolean() ? percent + "%" : decimals[i].toPlainString();
+            halves[i] = Percentage.valueOf(percent / 200.0);
+        }
+    }
+
+    /**
+     * @return shared percentage of a double
+     */
+    @Benchmark
+    public Percentage valueOfDouble() {
+        return Percentage.valueOf(doubles[next++ & (VALUE_COUNT - 1)]);
+    }
+
+    /**
+     * @return new percentage of a double
+     */
+    @Benchmark
+    public Percentage constructDouble() {
+        return new Percentage(doubles[next++ & (VALUE_COUNT - 1)]);
+    }
+
+    /**
+     * @return shared percentage of a decimal
+     */
+    @Benchmark
+    public Percentage valueOfBigDecimal() {
+        return Percentage.valueOf(decimals[next++ & (VALUE_COUNT - 1)]);
+    }
+
+    /**
+     * @return new percentage of a decimal
+     */
+    @Benchmark
+    public Percentage constructBigDecimal() {
+        return new Percentage(decimals[next++ & (VALUE_COUNT - 1)]);
+    }
+
+    /**
+     * @return shared percentage of a string
+     */
+    @Benchmark
+    public Percentage valueOfString() {
+        return Percentage.valueOf(strings[next++ & (VALUE_COUNT - 1)]);
+    }
+
+    /**
+     * @return sum of two percentages of at most 50%
+     */
+    @Benchmark
+    public Percentage add() {
+        final int i = next++;
+        return halves[i & (VALUE_COUNT - 1)].add(halves[(i + 1) & (VALUE_COUNT - 1)]);
+    }
+}
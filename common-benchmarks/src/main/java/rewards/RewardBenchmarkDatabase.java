@@ -0,0 +1,164 @@
+package rewards;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Creates an in-memory rewards database for benchmarking, with the application schema and a configurable number of
+ * accounts, each with one credit card and its beneficiaries, and restaurants. Numbers are derived from the index of
+ * the account or restaurant, so a benchmark can make up dinings for them without reading them back.
+ */
+public final class RewardBenchmarkDatabase {
+
+    /**
+     * Rows inserted in each batch
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    private RewardBenchmarkDatabase() {
+    }
+
+    /**
+     * Create and seed a database
+     *
+     * @param name          database name
+     * @param accounts      number of accounts
+     * @param beneficiaries number of beneficiaries of each account, at least one
+     * @param restaurants   number of restaurants
+     * @return database, to be shut down when finished with
+     */
+    public static EmbeddedDatabase create(String name, int accounts, final int beneficiaries, int restaurants) {
+        if (beneficiaries < 1) {
+            throw new IllegalArgumentException("Accounts need at least one beneficiary to be rewarded");
+        }
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setName(name)
+                .addScript("classpath:/rewards/testdb/schema.sql").build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+
+        insertInBatches(jdbcTemplate, "insert into T_ACCOUNT (ID, NUMBER, NAME, DATE_OF_BIRTH, EMAIL, "
+                                      + "REWARDS_NEWSLETTER, MONTHLY_EMAIL_UPDATE, VERSION) values (?, ?, ?, ?, ?, 'N', 'N', 0)",
+                        accounts, new RowSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, i);
+                ps.setString(2, accountNumber(i));
+                ps.setString(3, "Benchmark Account " + i);
+                ps.setDate(4, Date.valueOf("1970-01-01"));
+                ps.setString(5, "account" + i + "@example.com");
+            }
+        });
+        insertInBatches(jdbcTemplate, "insert into T_ACCOUNT_CREDIT_CARD (ID, ACCOUNT_ID, NUMBER, VERSION) "
+                                      + "values (?, ?, ?, 0)", accounts, new RowSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, i);
+                ps.setInt(2, i);
+                ps.setString(3, creditCardNumber(i));
+            }
+        });
+        // whole percents, the first beneficiary taking what is left over
+        final int percent = 100 / beneficiaries;
+        final int firstPercent = 100 - percent * (beneficiaries - 1);
+        insertInBatches(jdbcTemplate, "insert into T_ACCOUNT_BENEFICIARY (ID, ACCOUNT_ID, NAME, ALLOCATION_PERCENTAGE, "
+                                      + "SAVINGS, VERSION) values (?, ?, ?, ?, 0, 0)", accounts * beneficiaries,
+                        new RowSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                final int beneficiary = i % beneficiaries;
+                ps.setInt(1, i);
+                ps.setInt(2, i / beneficiaries);
+                ps.setString(3, "Beneficiary " + beneficiary);
+                ps.setDouble(4, ((beneficiary == 0) ? firstPercent : percent) / 100.0);
+            }
+        });
+        insertInBatches(jdbcTemplate, "insert into T_RESTAURANT (ID, MERCHANT_NUMBER, NAME, BENEFIT_PERCENTAGE, "
+                                      + "BENEFIT_AVAILABILITY_POLICY, VERSION) values (?, ?, ?, 0.08, 'ALWAYS_AVAILABLE', 0)",
+                        restaurants, new RowSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, i);
+                ps.setString(2, merchantNumber(i));
+                ps.setString(3, "Benchmark Restaurant " + i);
+            }
+        });
+        return database;
+    }
+
+    /**
+     * Get the number of an account
+     *
+     * @param i account index
+     * @return account number
+     */
+    public static String accountNumber(int i) {
+        return String.format("%09d", i);
+    }
+
+    /**
+     * Get the number of the credit card of an account
+     *
+     * @param i account index
+     * @return credit card number
+     */
+    public static String creditCardNumber(int i) {
+        return String.format("4%015d", i);
+    }
+
+    /**
+     * Get the merchant number of a restaurant
+     *
+     * @param i restaurant index
+     * @return merchant number
+     */
+    public static String merchantNumber(int i) {
+        return String.format("%010d", i);
+    }
+
+    /**
+     * Helper inserting rows in batches
+     *
+     * @param jdbcTemplate
+     * @param sql
+     * @param rows
+     * @param setter
+     */
+    private static void insertInBatches(JdbcTemplate jdbcTemplate, String sql, final int rows,
+                                        final RowSetter setter) {
+        for (int start = 0; start < rows; start += BATCH_SIZE) {
+            final int first = start;
+            final int size = Math.min(BATCH_SIZE, rows - start);
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setter.setValues(ps, first + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    /**
+     * Sets the values of a row
+     */
+    private interface RowSetter {
+
+        /**
+         * Set the values of a row
+         *
+         * @param ps
+         * @param i row index
+         * @throws SQLException
+         */
+        void setValues(PreparedStatement ps, int i) throws SQLException;
+    }
+}
@@ -0,0 +1,191 @@
+package rewards;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.util.StringUtils;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks the rewards application end to end: common-application-config.xml against an in-memory database seeded
+ * with the number of accounts, beneficiaries and restaurants given by the parameters, rewarding dinings and finding
+ * the confirmations of dinings already rewarded.
+ * <p/>
+ * Run on as many threads as wanted with -t, or through {@link RewardNetworkBenchmarkRunner} for throughput, latency
+ * percentiles, statements and bytes allocated per call from one thread up. The statements and calls counters give
+ * the statements executed per call; -prof gc gives the bytes allocated per call as gc.alloc.rate.norm. Application
+ * profiles are chosen with -p profiles=, separated by '+' since JMH separates parameter values by ','; account-locks
+ * is active by default, so that concurrent rewards for the same account wait for each other rather than fail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RewardNetworkBenchmark {
+
+    /**
+     * Number of rewarded dinings whose confirmations are found, a power of 2
+     */
+    private static final int REWARDED_COUNT = 1024;
+
+    @Param("1000")
+    public int accounts;
+
+    @Param("2")
+    public int beneficiaries;
+
+    @Param("100")
+    public int restaurants;
+
+    @Param("account-locks")
+    public String profiles;
+
+    private EmbeddedDatabase database;
+
+    private GenericXmlApplicationContext context;
+
+    private RewardNetwork rewardNetwork;
+
+    private StatementCountingDataSource dataSource;
+
+    private final Dining[] rewarded = new Dining[REWARDED_COUNT];
+
+    /**
+     * Milliseconds added to the time of each dining made up, so that every one is distinct
+     */
+    private final AtomicLong diningSequence = new AtomicLong();
+
+    private long firstDiningTime;
+
+    /**
+     * Seed the database, start the application and reward the dinings to be found
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = RewardBenchmarkDatabase.create("rewardBenchmark", accounts, beneficiaries, restaurants);
+        context = new GenericXmlApplicationContext();
+        context.getBeanFactory().registerSingleton("rewardBenchmark", database);
+        context.getEnvironment().setActiveProfiles(StringUtils.tokenizeToStringArray(profiles, "+"));
+        context.load("classpath:/rewards/reward-benchmark-config.xml");
+        context.refresh();
+        rewardNetwork = context.getBean("rewardNetwork", RewardNetwork.class);
+        dataSource = context.getBean("dataSource", StatementCountingDataSource.class);
+
+        firstDiningTime = System.currentTimeMillis();
+        Random random = new Random(42);
+        for (int i = 0; i < REWARDED_COUNT; i++) {
+            rewarded[i] = nextDining(random);
+            rewardNetwork.rewardAccountFor(rewarded[i]);
+        }
+    }
+
+    /**
+     * Stop the application and drop the database
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        database.shutdown();
+    }
+
+    /**
+     * @param diner dinings for this thread
+     * @param counters calls and statements for this thread
+     * @return confirmation of a new dining
+     */
+    @Benchmark
+    public RewardConfirmation rewardAccountFor(Diner diner, Counters counters) {
+        final long statements = dataSource.getThreadStatementCount();
+        final RewardConfirmation confirmation = rewardNetwork.rewardAccountFor(nextDining(diner.random));
+        counters.count(dataSource.getThreadStatementCount() - statements);
+        return confirmation;
+    }
+
+    /**
+     * @param diner dinings for this thread
+     * @param counters calls and statements for this thread
+     * @return confirmation found for a dining rewarded
+     */
+    @Benchmark
+    public RewardConfirmation findConfirmationFor(Diner diner, Counters counters) {
+        final long statements = dataSource.getThreadStatementCount();
+        final RewardConfirmation confirmation =
+                rewardNetwork.findConfirmationFor(rewarded[diner.next++ & (REWARDED_COUNT - 1)]);
+        counters.count(dataSource.getThreadStatementCount() - statements);
+        return confirmation;
+    }
+
+    /**
+     * Helper making up a new dining at a random restaurant with a random account's card
+     *
+     * @param random
+     * @return dining
+     */
+    private Dining nextDining(Random random) {
+        return new Dining((500 + random.nextInt(9500)) / 100.0f,
+                          RewardBenchmarkDatabase.creditCardNumber(random.nextInt(accounts)),
+                          RewardBenchmarkDatabase.merchantNumber(random.nextInt(restaurants)),
+                          new Date(firstDiningTime + diningSequence.incrementAndGet()));
+    }
+
+    /**
+     * Where each thread's dinings come from
+     */
+    @State(Scope.Thread)
+    public static class Diner {
+
+        private final Random random = new Random(Thread.currentThread().getId());
+
+        private int next = (int) Thread.currentThread().getId();
+    }
+
+    /**
+     * Calls made and statements executed by each thread, reported with the results
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long calls;
+
+        public long statements;
+
+        /**
+         * Reset the counts for each iteration
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            calls = 0;
+            statements = 0;
+        }
+
+        /**
+         * Count a call
+         *
+         * @param callStatements statements the call executed
+         */
+        void count(long callStatements) {
+            calls++;
+            statements += callStatements;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package rewards;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Statistics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link RewardNetworkBenchmark} on one thread, then two, four and so on up to a maximum, measuring throughput
+ * and sampling latencies with the GC profiler, and reports for each benchmark and thread count:
+ * <ul>
+ * <li>calls per second</li>
+ * <li>50th, 99th and 99.9th percentile latencies in microseconds</li>
+ * <li>SQL statements executed per call</li>
+ * <li>bytes allocated per call</li>
+ * </ul>
+ * The JMH results of each thread count are written as JSON to reward-benchmark-t&lt;threads&gt;.json in the results
+ * directory.
+ * <p/>
+ * Usage: java -cp target/benchmarks.jar rewards.RewardNetworkBenchmarkRunner [max threads] [results directory], with
+ * -Daccounts=, -Dbeneficiaries=, -Drestaurants= and -Dprofiles= passed on to the benchmark parameters.
+ */
+public final class RewardNetworkBenchmarkRunner {
+
+    private static final String[] PARAMETERS = {"accounts", "beneficiaries", "restaurants", "profiles"};
+
+    private RewardNetworkBenchmarkRunner() {
+    }
+
+    /**
+     * Run the benchmarks and print the report
+     *
+     * @param args maximum number of threads, by default the number of processors; directory for the results, by
+     *             default target
+     * @throws RunnerException
+     */
+    public static void main(String[] args) throws RunnerException {
+        final int maxThreads = (args.length > 0) ? Integer.parseInt(args[0])
+                                                 : Runtime.getRuntime().availableProcessors();
+        final String resultsDirectory = (args.length > 1) ? args[1] : "target";
+
+        StringBuilder report = new StringBuilder(String.format("%-20s %7s %12s %10s %10s %10s %10s %12s%n",
+                                                               "Benchmark", "Threads", "Calls/s", "p50 us",
+                                                               "p99 us", "p99.9 us", "SQL/call", "Bytes/call"));
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            OptionsBuilder options = new OptionsBuilder();
+            options.include(RewardNetworkBenchmark.class.getName())
+                   .mode(Mode.Throughput)
+                   .mode(Mode.SampleTime)
+                   .timeUnit(TimeUnit.MICROSECONDS)
+                   .threads(threads)
+                   .addProfiler(GCProfiler.class)
+                   .resultFormat(ResultFormatType.JSON)
+                   .result(resultsDirectory + "/reward-benchmark-t" + threads + ".json");
+            for (String parameter : PARAMETERS) {
+                if (System.getProperty(parameter) != null) {
+                    options.param(parameter, System.getProperty(parameter));
+                }
+            }
+            report(report, threads, new Runner(options.build()).run());
+        }
+        System.out.println();
+        System.out.print(report);
+    }
+
+    /**
+     * Helper adding a line to the report for each benchmark, from its throughput and sampled latency results
+     *
+     * @param report
+     * @param threads
+     * @param results
+     */
+    private static void report(StringBuilder report, int threads, Collection<RunResult> results) {
+        for (RunResult throughput : results) {
+            if (throughput.getParams().getMode() != Mode.Throughput) {
+                continue;
+            }
+            final String benchmark = throughput.getParams().getBenchmark();
+            Statistics latency = null;
+            for (RunResult sample : results) {
+                if (sample.getParams().getMode() == Mode.SampleTime
+                    && sample.getParams().getBenchmark().equals(benchmark)) {
+                    latency = sample.getPrimaryResult().getStatistics();
+                }
+            }
+            final Map<String, Result> secondary = throughput.getSecondaryResults();
+            // ops/us, as the time unit is microseconds
+            report.append(String.format("%-20s %7d %12.0f %10.1f %10.1f %10.1f %10.2f %12.0f%n",
+                                        benchmark.substring(benchmark.lastIndexOf('.') + 1), threads,
+                                        throughput.getPrimaryResult().getScore() * 1000000,
+                                        percentile(latency, 50), percentile(latency, 99), percentile(latency, 99.9),
+                                        score(secondary, "statements") / score(secondary, "calls"),
+                                        score(secondary, "\u00b7gc.alloc.rate.norm")));
+        }
+    }
+
+    /**
+     * Helper finding a percentile of sampled latencies
+     *
+     * @param latency sampled latencies, or null if none
+     * @param percentile
+     * @return latency, or NaN if none
+     */
+    private static double percentile(Statistics latency, double percentile) {
+        return (latency == null) ? Double.NaN : latency.getPercentile(percentile);
+    }
+
+    /**
+     * Helper finding the score of a secondary result
+     *
+     * @param secondary secondary results by label
+     * @param label
+     * @return score, or NaN if there is no such result
+     */
+    private static double score(Map<String, Result> secondary, String label) {
+        final Result result = secondary.get(label);
+        return (result == null) ? Double.NaN : result.getScore();
+    }
+}
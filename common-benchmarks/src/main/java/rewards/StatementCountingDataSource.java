@@ -0,0 +1,115 @@
+package rewards;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A data source counting the statements executed through its connections, by the thread executing them, so that a
+ * benchmark can find the number of statements each call makes. Each execute, executeQuery, executeUpdate or
+ * executeBatch counts once, so a batch of inserts counts as the single round trip it is.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    /**
+     * Statements executed by each thread
+     */
+    private final ThreadLocal<long[]> threadCount = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    /**
+     * Constructor taking the data source counted
+     *
+     * @param targetDataSource
+     */
+    public StatementCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countingConnection(getTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countingConnection(getTargetDataSource().getConnection(username, password));
+    }
+
+    /**
+     * Get the number of statements executed by the current thread so far
+     *
+     * @return count
+     */
+    public long getThreadStatementCount() {
+        return threadCount.get()[0];
+    }
+
+    /**
+     * Helper wrapping a connection so that the statements it creates are counted
+     *
+     * @param connection
+     * @return counting connection
+     */
+    private Connection countingConnection(final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                                                   new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                final Object result = invokeTarget(connection, method, args);
+                if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                    return countingStatement((Statement) result, method.getReturnType());
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Helper wrapping a statement so that its executions are counted
+     *
+     * @param statement
+     * @param statementInterface Statement, PreparedStatement or CallableStatement
+     * @return counting statement
+     */
+    private Object countingStatement(final Statement statement, Class<?> statementInterface) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{statementInterface},
+                                      new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().startsWith("execute")) {
+                    threadCount.get()[0]++;
+                }
+                return invokeTarget(statement, method, args);
+            }
+        });
+    }
+
+    /**
+     * Helper invoking a method on the wrapped object, throwing what it throws
+     *
+     * @param target
+     * @param method
+     * @param args
+     * @return result
+     * @throws Throwable
+     */
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
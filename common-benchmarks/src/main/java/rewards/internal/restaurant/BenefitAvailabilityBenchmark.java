@@ -0,0 +1,137 @@
+package rewards.internal.restaurant;
+
+import common.money.MonetaryAmount;
+import common.money.Percentage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rewards.Dining;
+import rewards.internal.account.Account;
+import rewards.internal.account.CreditCard;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares checking benefit availability with the BenefitAvailabilityPolicy enum alone against compiled
+ * BenefitAvailabilityRules, and the cost of each in calculating the benefit for a dining.
+ * <p/>
+ * Dinings are spread over a month at random times and amounts, so that the rules take every path, and are cycled
+ * through so that the JIT cannot fold the checks away.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenefitAvailabilityBenchmark {
+
+    /**
+     * Number of dinings cycled through, a power of 2
+     */
+    private static final int DINING_COUNT = 1024;
+
+    private static final String RULES = "days=MON-FRI;hours=11:30-14:30,18:00-22:00;minAmount=20.00;monthlyCap=50.00";
+
+    private final Dining[] dinings = new Dining[DINING_COUNT];
+
+    private int next;
+
+    private Account account;
+
+    private BenefitAvailabilityPolicy policy;
+
+    private BenefitAvailabilityRules rules;
+
+    private Restaurant restaurantWithPolicy;
+
+    private Restaurant restaurantWithRules;
+
+    private MonetaryAmount benefitThisMonth;
+
+    /**
+     * Create the dinings, account and restaurants
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Calendar calendar = Calendar.getInstance();
+        for (int i = 0; i < DINING_COUNT; i++) {
+            calendar.clear();
+            calendar.set(2011, Calendar.OCTOBER, 1 + random.nextInt(31), random.nextInt(24), random.nextInt(60));
+            dinings[i] = new Dining(5 + random.nextInt(9500) / 100f, "1234123412341234", "1234567890",
+                                    calendar.getTime());
+        }
+
+        calendar.clear();
+        calendar.set(1977, Calendar.DECEMBER, 1);
+        account = new Account("123456789", "Keith and Keri Donald", calendar.getTime(), "keith@gmail.com", true, false,
+                              new CreditCard("1234123412341234"));
+        account.addBeneficiary("Annabelle", new Percentage(0.5));
+        account.addBeneficiary("Corgan", new Percentage(0.5));
+
+        policy = BenefitAvailabilityPolicy.ALWAYS_AVAILABLE;
+        rules = BenefitAvailabilityRules.compile(RULES);
+
+        restaurantWithPolicy = new Restaurant("1234567890", "AppleBees");
+        restaurantWithPolicy.setBenefitPercentage(new Percentage(0.08));
+        restaurantWithPolicy.setBenefitAvailabilityPolicy(policy);
+
+        restaurantWithRules = new Restaurant("1234567890", "AppleBees");
+        restaurantWithRules.setBenefitPercentage(new Percentage(0.08));
+        restaurantWithRules.setBenefitAvailabilityPolicy(policy);
+        restaurantWithRules.setBenefitAvailabilityRules(rules);
+
+        benefitThisMonth = new MonetaryAmount(45);
+    }
+
+    /**
+     * @return whether the enum makes benefit available
+     */
+    @Benchmark
+    public boolean policy() {
+        return policy.isBenefitAvailableFor(account, nextDining());
+    }
+
+    /**
+     * @return whether the compiled rules make benefit available
+     */
+    @Benchmark
+    public boolean rules() {
+        return rules.isBenefitAvailableFor(nextDining());
+    }
+
+    /**
+     * @return benefit from a restaurant with only a policy
+     */
+    @Benchmark
+    public MonetaryAmount calculateBenefitWithPolicy() {
+        return restaurantWithPolicy.calculateBenefitFor(account, nextDining());
+    }
+
+    /**
+     * @return benefit from a restaurant with rules, capped
+     */
+    @Benchmark
+    public MonetaryAmount calculateBenefitWithRules() {
+        return restaurantWithRules.calculateBenefitFor(account, nextDining(), benefitThisMonth);
+    }
+
+    /**
+     * Helper cycling through the dinings
+     *
+     * @return next dining
+     */
+    private Dining nextDining() {
+        return dinings[next++ & (DINING_COUNT - 1)];
+    }
+}
@@ -0,0 +1,416 @@
+package common.concurrent;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Future that is completed explicitly, with a value or a failure, and that callers can compose without blocking: by
+ * adding callbacks, falling back to a value on failure, timing out, or waiting for several together.
+ * <p/>
+ * Callbacks are run by the thread that completes the future, or by the thread adding them if it is already complete,
+ * so they should be quick and must not block.
+ * <p/>
+ * Thread-safe.
+ *
+ * @param <T> type of value
+ */
+public class CompletionFuture<T> implements Future<T> {
+
+    /**
+     * Called when a future completes
+     *
+     * @param <T> type of value
+     */
+    public interface Callback<T> {
+
+        /**
+         * Called when the future completes with a value
+         *
+         * @param value
+         */
+        void onSuccess(T value);
+
+        /**
+         * Called when the future fails, is cancelled or times out
+         *
+         * @param failure
+         */
+        void onFailure(Throwable failure);
+    }
+
+    /**
+     * Supplies a value in place of a failure
+     *
+     * @param <T> type of value
+     */
+    public interface Fallback<T> {
+
+        /**
+         * Get the value to use in place of a failure
+         *
+         * @param failure
+         * @return value
+         * @throws Exception if there is no value for the failure
+         */
+        T valueFor(Throwable failure) throws Exception;
+    }
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = Logger.getLogger(CompletionFuture.class);
+
+    /**
+     * Released on completion, for threads waiting in get
+     */
+    private final CountDownLatch completion = new CountDownLatch(1);
+
+    /**
+     * Callbacks to run on completion; null once complete
+     */
+    private List<Callback<? super T>> callbacks = new ArrayList<Callback<? super T>>();
+
+    /**
+     * Value, or null if failed
+     */
+    private T value;
+
+    /**
+     * Failure, or null if completed with a value
+     */
+    private Throwable failure;
+
+    /**
+     * Create a future completed by running a task with an executor. If the executor rejects the task, the future
+     * fails with the rejection; if the future is complete (such as cancelled) before the task starts, it is not run.
+     *
+     * @param task     task supplying the value
+     * @param executor executor to run it
+     * @param <T>      type of value
+     * @return future for the task's value
+     */
+    public static <T> CompletionFuture<T> supply(final Callable<T> task, Executor executor) {
+        final CompletionFuture<T> future = new CompletionFuture<T>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (future.isDone()) {
+                        return;
+                    }
+                    try {
+                        future.complete(task.call());
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Create a future already completed with a value
+     *
+     * @param value
+     * @param <T>   type of value
+     * @return completed future
+     */
+    public static <T> CompletionFuture<T> completed(T value) {
+        CompletionFuture<T> future = new CompletionFuture<T>();
+        future.complete(value);
+        return future;
+    }
+
+    /**
+     * Create a future completed with the values of several futures when all of them have completed, or failed as soon
+     * as any of them fails
+     *
+     * @param futures
+     * @param <T>     type of value
+     * @return future for the values, in the same order as the futures
+     */
+    public static <T> CompletionFuture<List<T>> allOf(List<? extends CompletionFuture<? extends T>> futures) {
+        final CompletionFuture<List<T>> all = new CompletionFuture<List<T>>();
+        final int count = futures.size();
+        if (count == 0) {
+            all.complete(new ArrayList<T>());
+            return all;
+        }
+
+        final Object[] values = new Object[count];
+        final AtomicInteger remaining = new AtomicInteger(count);
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            futures.get(i).addCallback(new Callback<T>() {
+                @Override
+                public void onSuccess(T value) {
+                    values[index] = value;
+                    if (remaining.decrementAndGet() == 0) {
+                        all.complete(CompletionFuture.<T>toList(values));
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    all.completeExceptionally(failure);
+                }
+            });
+        }
+        return all;
+    }
+
+    /**
+     * Complete with a value, unless already complete
+     *
+     * @param value
+     * @return true if this call completed the future
+     */
+    public boolean complete(T value) {
+        return completeWith(value, null);
+    }
+
+    /**
+     * Complete with a failure, unless already complete
+     *
+     * @param failure
+     * @return true if this call completed the future
+     */
+    public boolean completeExceptionally(Throwable failure) {
+        if (failure == null) {
+            throw new IllegalArgumentException("failure must not be null");
+        }
+        return completeWith(null, failure);
+    }
+
+    /**
+     * Add a callback to run when complete; run it now if already complete
+     *
+     * @param callback
+     */
+    public void addCallback(Callback<? super T> callback) {
+        synchronized (this) {
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        runCallback(callback);
+    }
+
+    /**
+     * Get a future completed with this one's value, or if this one fails, with the fallback's value for the failure
+     *
+     * @param fallback
+     * @return future with fallback
+     */
+    public CompletionFuture<T> withFallback(final Fallback<? extends T> fallback) {
+        final CompletionFuture<T> fallbackFuture = new CompletionFuture<T>();
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                fallbackFuture.complete(value);
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                try {
+                    fallbackFuture.complete(fallback.valueFor(failure));
+                } catch (Throwable t) {
+                    fallbackFuture.completeExceptionally(t);
+                }
+            }
+        });
+        return fallbackFuture;
+    }
+
+    /**
+     * Fail this future with a TimeoutException if it has not completed within the timeout. A task supplying the
+     * value that has already started carries on, but its value is ignored.
+     *
+     * @param timeout
+     * @param unit
+     * @param scheduler scheduler to time out with
+     * @return this future
+     */
+    public CompletionFuture<T> withTimeout(final long timeout, final TimeUnit unit,
+                                           ScheduledExecutorService scheduler) {
+        final ScheduledFuture<?> timer = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                completeExceptionally(new TimeoutException("not complete after " + timeout + " " + unit));
+            }
+        }, timeout, unit);
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                timer.cancel(false);
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                timer.cancel(false);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Cancel, failing the future with a CancellationException unless already complete. A task supplying the value
+     * that has already started is not interrupted.
+     *
+     * @param mayInterruptIfRunning ignored
+     * @return true if this call cancelled the future
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return completeExceptionally(new CancellationException());
+    }
+
+    /**
+     * @return true if cancelled before completing
+     */
+    @Override
+    public synchronized boolean isCancelled() {
+        return (failure instanceof CancellationException);
+    }
+
+    /**
+     * @return true if completed, with a value or a failure
+     */
+    @Override
+    public synchronized boolean isDone() {
+        return (callbacks == null);
+    }
+
+    /**
+     * Wait for completion and get the value
+     *
+     * @return value
+     * @throws InterruptedException
+     * @throws ExecutionException   wrapping the failure, if failed
+     * @throws CancellationException if cancelled
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        completion.await();
+        return getValue();
+    }
+
+    /**
+     * Wait for completion for up to the timeout, and get the value
+     *
+     * @param timeout
+     * @param unit
+     * @return value
+     * @throws InterruptedException
+     * @throws ExecutionException   wrapping the failure, if failed
+     * @throws TimeoutException     if not complete within the timeout
+     * @throws CancellationException if cancelled
+     */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!completion.await(timeout, unit)) {
+            throw new TimeoutException("not complete after " + timeout + " " + unit);
+        }
+        return getValue();
+    }
+
+    /**
+     * Helper completing, if not already complete, and running the callbacks
+     *
+     * @param completeValue
+     * @param completeFailure
+     * @return true if this call completed the future
+     */
+    private boolean completeWith(T completeValue, Throwable completeFailure) {
+        final List<Callback<? super T>> completedCallbacks;
+        synchronized (this) {
+            if (callbacks == null) {
+                return false;
+            }
+            value = completeValue;
+            failure = completeFailure;
+            completedCallbacks = callbacks;
+            callbacks = null;
+        }
+        completion.countDown();
+        for (Callback<? super T> callback : completedCallbacks) {
+            runCallback(callback);
+        }
+        return true;
+    }
+
+    /**
+     * Helper running a callback for the completed future, logging anything it throws so that other callbacks still
+     * run
+     *
+     * @param callback
+     */
+    private void runCallback(Callback<? super T> callback) {
+        final T completedValue;
+        final Throwable completedFailure;
+        synchronized (this) {
+            completedValue = value;
+            completedFailure = failure;
+        }
+        try {
+            if (completedFailure == null) {
+                callback.onSuccess(completedValue);
+            } else {
+                callback.onFailure(completedFailure);
+            }
+        } catch (RuntimeException e) {
+            logger.error("exception from callback:callback=" + callback, e);
+        }
+    }
+
+    /**
+     * Helper getting the value of the completed future
+     *
+     * @return value
+     * @throws ExecutionException    wrapping the failure, if failed
+     * @throws CancellationException if cancelled
+     */
+    private synchronized T getValue() throws ExecutionException {
+        if (failure instanceof CancellationException) {
+            throw (CancellationException) failure;
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return value;
+    }
+
+    /**
+     * Helper converting the values collected by allOf to a list
+     *
+     * @param values
+     * @param <T>    type of value
+     * @return list
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> toList(Object[] values) {
+        List<T> list = new ArrayList<T>(values.length);
+        for (Object value : values) {
+            list.add((T) value);
+        }
+        return list;
+    }
+}
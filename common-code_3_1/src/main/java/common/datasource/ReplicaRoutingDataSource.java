@@ -0,0 +1,396 @@
+package common.datasource;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DataSource sending connections for read-only transactions to replicas of the primary database, and everything else
+ * to the primary, so that read traffic can be spread over several databases without changing any
+ * <code>@Transactional(readOnly = true)</code> call site.
+ * <p/>
+ * Read-only connections go to the replicas in turn, skipping any that are lagging too far behind the primary or
+ * cannot be reached; if none is usable they go to the primary. Lag is measured by running lagQuery, which must return
+ * the replica's lag in milliseconds (for example, on PostgreSQL, "select extract(epoch from now() -
+ * pg_last_xact_replay_timestamp()) * 1000"), against each replica every lagCheckIntervalMs, on a background thread
+ * of its own, so asking for a connection never waits for a check; a lagCheckIntervalMs of 0 or less leaves checking
+ * to calls of checkReplicas. Without a lagQuery, replicas are only skipped when a connection to one fails, until the
+ * next check.
+ * <p/>
+ * Transaction managers open the connection before the transaction is marked read-only, so this must be wrapped in a
+ * LazyConnectionDataSourceProxy, which only asks for the real connection when the first statement is run:
+ * <pre>
+ * &lt;bean id="dataSource" class="org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy"&gt;
+ *     &lt;property name="targetDataSource"&gt;
+ *         &lt;bean class="common.datasource.ReplicaRoutingDataSource"&gt; ... &lt;/bean&gt;
+ *     &lt;/property&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ * Replicas only see the primary's changes once they are replicated, so a read-only transaction may not see what the
+ * same caller has just written.
+ */
+@ManagedResource
+public class ReplicaRoutingDataSource extends AbstractDataSource implements InitializingBean, DisposableBean {
+
+    /**
+     * Default greatest replica lag before it is skipped
+     */
+    public static final long DEFAULT_MAX_LAG_MS = 5000L;
+
+    /**
+     * Default time between lag checks
+     */
+    public static final long DEFAULT_LAG_CHECK_INTERVAL_MS = 1000L;
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = Logger.getLogger(ReplicaRoutingDataSource.class);
+
+    /**
+     * Database written to
+     */
+    private DataSource primary;
+
+    /**
+     * Replicas of the primary
+     */
+    private List<DataSource> replicas = new ArrayList<DataSource>();
+
+    /**
+     * Query returning a replica's lag in milliseconds, or null not to check lag
+     */
+    private String lagQuery;
+
+    /**
+     * Greatest replica lag before it is skipped
+     */
+    private volatile long maxLagMs = DEFAULT_MAX_LAG_MS;
+
+    /**
+     * Time between lag checks
+     */
+    private volatile long lagCheckIntervalMs = DEFAULT_LAG_CHECK_INTERVAL_MS;
+
+    /**
+     * Indexes of the replicas currently usable; replaced whole, never changed
+     */
+    private volatile int[] usableReplicas = new int[0];
+
+    /**
+     * Lag of each replica at the last check, -1 if unknown or unreachable; replaced whole, never changed
+     */
+    private volatile long[] replicaLagsMs = new long[0];
+
+    /**
+     * Runs the lag checks, or null if they are not run in the background
+     */
+    private ScheduledExecutorService checkScheduler;
+
+    /**
+     * Counter for taking the replicas in turn
+     */
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong primaryConnectionCount = new AtomicLong();
+    private final AtomicLong replicaConnectionCount = new AtomicLong();
+    private final AtomicLong fallbackCount          = new AtomicLong();
+
+    /**
+     * Setter for the database written to
+     *
+     * @param primary
+     */
+    public void setPrimary(DataSource primary) {
+        this.primary = primary;
+    }
+
+    /**
+     * Setter for the replicas of the primary
+     *
+     * @param replicas
+     */
+    public void setReplicas(List<DataSource> replicas) {
+        this.replicas = new ArrayList<DataSource>(replicas);
+    }
+
+    /**
+     * Setter for the query returning a replica's lag in milliseconds; by default lag is not checked
+     *
+     * @param lagQuery
+     */
+    public void setLagQuery(String lagQuery) {
+        this.lagQuery = lagQuery;
+    }
+
+    /**
+     * Check the properties and the replicas, and start checking the replicas in the background
+     *
+     * @throws Exception
+     */
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (primary == null) {
+            throw new IllegalArgumentException("primary is required");
+        }
+        checkReplicas();
+        if (!replicas.isEmpty() && lagCheckIntervalMs > 0) {
+            checkScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "replica-lag-check");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduleCheck();
+        }
+    }
+
+    /**
+     * Stop checking the replicas in the background
+     */
+    @Override
+    public void destroy() {
+        if (checkScheduler != null) {
+            checkScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Get a connection to a replica, for a read-only transaction, or otherwise to the primary
+     *
+     * @return connection
+     * @throws SQLException
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    /**
+     * Get a connection to a replica, for a read-only transaction, or otherwise to the primary
+     *
+     * @param username username, or null for the data source's own
+     * @param password password, or null for the data source's own
+     * @return connection
+     * @throws SQLException
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !replicas.isEmpty()) {
+            final int[] usable = usableReplicas;
+            if (usable.length > 0) {
+                final int replica = usable[(nextReplica.getAndIncrement() & Integer.MAX_VALUE) % usable.length];
+                try {
+                    final Connection connection = connect(replicas.get(replica), username, password);
+                    replicaConnectionCount.incrementAndGet();
+                    return connection;
+                } catch (SQLException e) {
+                    logger.warn("cannot connect to replica, skipping it until next check:replica=" + replica, e);
+                    markUnusable(replica);
+                }
+            }
+            fallbackCount.incrementAndGet();
+        }
+
+        primaryConnectionCount.incrementAndGet();
+        return connect(primary, username, password);
+    }
+
+    /**
+     * Check the lag of every replica now, deciding which are usable
+     */
+    @ManagedOperation
+    public synchronized void checkReplicas() {
+        final long[] lags = new long[replicas.size()];
+        final List<Integer> usable = new ArrayList<Integer>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            lags[i] = checkLag(i);
+            if (lagQuery == null || (lags[i] >= 0 && lags[i] <= maxLagMs)) {
+                usable.add(i);
+            }
+        }
+
+        final int[] usableArray = new int[usable.size()];
+        for (int i = 0; i < usableArray.length; i++) {
+            usableArray[i] = usable.get(i);
+        }
+        replicaLagsMs = lags;
+        usableReplicas = usableArray;
+    }
+
+    /**
+     * @return number of replicas
+     */
+    @ManagedAttribute
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * @return number of replicas currently used for read-only transactions
+     */
+    @ManagedAttribute
+    public int getUsableReplicaCount() {
+        return usableReplicas.length;
+    }
+
+    /**
+     * @return lag of each replica at the last check, in milliseconds, -1 if unknown or unreachable
+     */
+    @ManagedAttribute
+    public long[] getReplicaLagsMs() {
+        return replicaLagsMs.clone();
+    }
+
+    /**
+     * @return number of connections to the primary
+     */
+    @ManagedAttribute
+    public long getPrimaryConnectionCount() {
+        return primaryConnectionCount.get();
+    }
+
+    /**
+     * @return number of connections to replicas
+     */
+    @ManagedAttribute
+    public long getReplicaConnectionCount() {
+        return replicaConnectionCount.get();
+    }
+
+    /**
+     * @return number of read-only connections sent to the primary because no replica was usable
+     */
+    @ManagedAttribute
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    /**
+     * @return greatest replica lag before it is skipped
+     */
+    @ManagedAttribute
+    public long getMaxLagMs() {
+        return maxLagMs;
+    }
+
+    /**
+     * @param maxLagMs greatest replica lag before it is skipped
+     */
+    @ManagedAttribute
+    public void setMaxLagMs(long maxLagMs) {
+        this.maxLagMs = maxLagMs;
+    }
+
+    /**
+     * @return time between lag checks
+     */
+    @ManagedAttribute
+    public long getLagCheckIntervalMs() {
+        return lagCheckIntervalMs;
+    }
+
+    /**
+     * @param lagCheckIntervalMs time between lag checks, from the next check
+     */
+    @ManagedAttribute
+    public void setLagCheckIntervalMs(long lagCheckIntervalMs) {
+        this.lagCheckIntervalMs = lagCheckIntervalMs;
+    }
+
+    /**
+     * Helper scheduling the next background check, which schedules the one after it, so that a change to the check
+     * interval takes effect from the next check
+     */
+    private void scheduleCheck() {
+        checkScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checkReplicas();
+                } catch (RuntimeException e) {
+                    logger.warn("replica check failed", e);
+                } finally {
+                    if (!checkScheduler.isShutdown()) {
+                        scheduleCheck();
+                    }
+                }
+            }
+        }, Math.max(lagCheckIntervalMs, 1L), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Helper getting the lag of a replica
+     *
+     * @param replica index of replica
+     * @return lag in milliseconds, 0 if lag is not checked, -1 if the replica cannot be queried
+     */
+    private long checkLag(int replica) {
+        if (lagQuery == null) {
+            return 0;
+        }
+        try {
+            final Number lag = new JdbcTemplate(replicas.get(replica)).queryForObject(lagQuery, Number.class);
+            return (lag == null) ? -1 : lag.longValue();
+        } catch (DataAccessException e) {
+            logger.warn("cannot check replica lag:replica=" + replica, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Helper taking a replica out of use until the next check
+     *
+     * @param replica index of replica
+     */
+    private synchronized void markUnusable(int replica) {
+        final int[] usable = usableReplicas;
+        final int[] remaining = new int[usable.length];
+        int count = 0;
+        for (int index : usable) {
+            if (index != replica) {
+                remaining[count++] = index;
+            }
+        }
+        final int[] trimmed = new int[count];
+        System.arraycopy(remaining, 0, trimmed, 0, count);
+        usableReplicas = trimmed;
+    }
+
+    /**
+     * Helper connecting to a data source, with its own credentials if none are given
+     *
+     * @param dataSource
+     * @param username
+     * @param password
+     * @return connection
+     * @throws SQLException
+     */
+    private Connection connect(DataSource dataSource, String username, String password) throws SQLException {
+        return (username == null) ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+}
@@ -0,0 +1,67 @@
+package common.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Holds the shard the current transaction works on, for {@link ShardRoutingDataSource}.
+ * <p/>
+ * A transaction works on a single shard: once bound, its shard stays until it completes, and binding another shard
+ * fails rather than silently using the connection already open on the first. A transaction started with
+ * REQUIRES_NEW has a shard of its own, and the suspended transaction gets its shard back when it resumes.
+ */
+public final class ShardContext {
+
+    /**
+     * Key of the shard among the transaction resources
+     */
+    private static final Object SHARD_KEY = new Object();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Bind a shard to the current transaction, for the rest of the transaction
+     *
+     * @param shard index of the shard
+     * @throws IllegalStateException if there is no transaction, or it is already bound to another shard
+     */
+    public static void bindToTransaction(final int shard) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("shard can only be bound within a transaction:shard=" + shard);
+        }
+        final Integer bound = getCurrentShard();
+        if (bound != null) {
+            if (bound != shard) {
+                throw new IllegalStateException("transaction already bound to another shard:bound=" + bound +
+                                                ", shard=" + shard);
+            }
+            return;
+        }
+
+        TransactionSynchronizationManager.bindResource(SHARD_KEY, shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(SHARD_KEY);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(SHARD_KEY, shard);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(SHARD_KEY);
+            }
+        });
+    }
+
+    /**
+     * @return index of the shard bound to the current transaction, or null if none
+     */
+    public static Integer getCurrentShard() {
+        return (Integer) TransactionSynchronizationManager.getResource(SHARD_KEY);
+    }
+}
@@ -0,0 +1,116 @@
+package common.datasource;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DataSource sending connections to one of several databases (shards) holding different parts of the data, chosen by
+ * the shard bound to the current transaction with {@link ShardContext}. Which data goes to which shard is up to the
+ * repositories binding the shard.
+ * <p/>
+ * Transaction managers open the connection before anything is known of the data the transaction will work on, so this
+ * must be wrapped in a LazyConnectionDataSourceProxy, which only asks for the real connection when the first statement
+ * is run, by when a repository has bound the shard:
+ * <pre>
+ * &lt;bean id="dataSource" class="org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy"&gt;
+ *     &lt;property name="targetDataSource"&gt;
+ *         &lt;bean class="common.datasource.ShardRoutingDataSource"&gt; ... &lt;/bean&gt;
+ *     &lt;/property&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ * Asking for a connection in a transaction with no shard bound fails. Outside any transaction, such as when Hibernate
+ * reads the database metadata on startup, connections go to the first shard, the shards all having the same schema.
+ */
+public class ShardRoutingDataSource extends AbstractDataSource implements InitializingBean {
+
+    /**
+     * Shard databases, by index
+     */
+    private List<DataSource> shards = new ArrayList<DataSource>();
+
+    /**
+     * Setter for the shard databases; a shard's index is its position in the list
+     *
+     * @param shards
+     */
+    public void setShards(List<DataSource> shards) {
+        this.shards = new ArrayList<DataSource>(shards);
+    }
+
+    /**
+     * Check there are shards
+     *
+     * @throws Exception
+     */
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("shards are required");
+        }
+    }
+
+    /**
+     * Get a connection to the shard bound to the current transaction
+     *
+     * @return connection
+     * @throws SQLException
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return currentShard().getConnection();
+    }
+
+    /**
+     * Get a connection to the shard bound to the current transaction
+     *
+     * @param username
+     * @param password
+     * @return connection
+     * @throws SQLException
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return currentShard().getConnection(username, password);
+    }
+
+    /**
+     * @return number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Get a shard database directly, for working on it outside a transaction
+     *
+     * @param shard index of the shard
+     * @return shard database
+     */
+    public DataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * Helper getting the database for the shard bound to the current transaction
+     *
+     * @return shard database, the first outside a transaction
+     * @throws IllegalStateException if no shard is bound to the current transaction
+     */
+    private DataSource currentShard() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return shards.get(0);
+        }
+        final Integer shard = ShardContext.getCurrentShard();
+        if (shard == null) {
+            throw new IllegalStateException("no shard bound to the current transaction");
+        }
+        return shards.get(shard);
+    }
+}
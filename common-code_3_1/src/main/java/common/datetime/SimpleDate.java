@@ -1,22 +1,55 @@
 package common.datetime;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.text.SimpleDateFormat;
+import java.util.TimeZone;
 
 /**
  * A simple wrapper around a calendar for working with dates like 12/29/1977. Does not consider time.
+ * <p/>
+ * Held as the number of days since 1/1/1970 in the default time zone, so creating, comparing and hashing dates is
+ * integer arithmetic, with no calendar field computation. Days are counted on the Gregorian calendar throughout,
+ * including before its adoption in 1582. Today's date is cached until the next midnight, when the default time zone is
+ * looked up again; code changing the default time zone should call {@link #resetToday()} so that today is found in the
+ * new zone straight away.
  */
 public class SimpleDate implements Serializable {
 
 	/**
-	 * 
+	 *
 	 */
 	private static final long serialVersionUID = 1L;
-	
-	private GregorianCalendar base;
+
+    /**
+     * Serialized as the calendar it used to hold, so serialized dates can still be read either way
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("base", GregorianCalendar.class)};
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * Days in each 400 year cycle of the Gregorian calendar
+     */
+    private static final int DAYS_PER_ERA = 146097;
+
+    /**
+     * Days from 1/3/0000, the start of the calendar as counted by {@link #toEpochDay(int, int, int)}, to 1/1/1970
+     */
+    private static final int DAYS_TO_EPOCH = 719468;
+
+    /**
+     * Today, and when it is today
+     */
+    private static volatile Today today = startingToday(System.currentTimeMillis(), TimeZone.getDefault());
+
+	private transient int epochDay;
 
 	/**
 	 * Create a new simple date.
@@ -25,7 +58,7 @@ public class SimpleDate implements Serializable {
 	 * @param year the year
 	 */
 	public SimpleDate(int month, int day, int year) {
-		init(new GregorianCalendar(year, month - 1, day));
+		this.epochDay = toEpochDay(month, day, year);
 	}
 
 	/**
@@ -33,46 +66,23 @@ public class SimpleDate implements Serializable {
 	 * @param time
 	 */
 	SimpleDate(long time) {
-		GregorianCalendar cal = new GregorianCalendar();
-		cal.setTimeInMillis(time);
-		init(cal);
+		this.epochDay = toEpochDay(time, TimeZone.getDefault());
 	}
 
-	/**
-	 * Default constructor
-	 */
-	private SimpleDate() {
-		init(new GregorianCalendar());
-	}
-
-	/**
-	 * helper taking a Gregorian calendar
-	 * 
-	 * @param cal
-	 */
-	private void init(GregorianCalendar cal) {
-		this.base = trimToDays(cal);
-	}
-
-	/**
-	 * Helper trimming time to 00:00
-	 * @param cal
-	 * @return
-	 */
-	private GregorianCalendar trimToDays(GregorianCalendar cal) {
-		cal.set(Calendar.HOUR_OF_DAY, 0);
-		cal.set(Calendar.MINUTE, 0);
-		cal.set(Calendar.SECOND, 0);
-		cal.set(Calendar.MILLISECOND, 0);
-		return cal;
-	}
+    /**
+     * Create a new simple date from a count of days
+     * @param epochDay days since 1/1/1970
+     */
+    private SimpleDate(int epochDay) {
+        this.epochDay = epochDay;
+    }
 
 	/**
 	 * Returns this simple date as a <code>java.util.Date</code>
 	 * @return this simple date as a Date
 	 */
 	public Date asDate() {
-		return base.getTime();
+		return new Date(inMilliseconds());
 	}
 
 	/**
@@ -80,7 +90,11 @@ public class SimpleDate implements Serializable {
 	 * @return
 	 */
 	public long inMilliseconds() {
-		return asDate().getTime();
+        final Today today = SimpleDate.today;
+        if (epochDay == today.date.epochDay) {
+            return today.start;
+        }
+		return toMillis(epochDay, TimeZone.getDefault());
 	}
 
 	/**
@@ -90,12 +104,12 @@ public class SimpleDate implements Serializable {
 	 */
 	public int compareTo(Object date) {
 		SimpleDate other = (SimpleDate) date;
-		return asDate().compareTo(other.asDate());
+		return (epochDay < other.epochDay) ? -1 : ((epochDay == other.epochDay) ? 0 : 1);
 	}
 
 	/**
 	 * Equals
-	 * 
+	 *
 	 * @param day
 	 * @return result
 	 */
@@ -104,23 +118,37 @@ public class SimpleDate implements Serializable {
 			return false;
 		}
 		SimpleDate other = (SimpleDate) day;
-		return (base.equals(other.base));
+		return (epochDay == other.epochDay);
 	}
 
 	/**
 	 * @return hashCode
 	 */
 	public int hashCode() {
-		return 29 * base.hashCode();
+		return 29 * epochDay;
 	}
 
 	/**
 	 * Returns todays date. A convenient static factory method.
 	 */
 	public static SimpleDate today() {
-		return new SimpleDate();
+        final long now = System.currentTimeMillis();
+        Today today = SimpleDate.today;
+        if (now < today.from || now >= today.until) {
+            today = startingToday(now, TimeZone.getDefault());
+            SimpleDate.today = today;
+        }
+		return today.date;
 	}
 
+    /**
+     * Finds today again in the current default time zone. The default time zone is only looked up when the cached
+     * today ends, as looking it up copies it, so code changing the default time zone should call this afterwards.
+     */
+    public static void resetToday() {
+        today = startingToday(System.currentTimeMillis(), TimeZone.getDefault());
+    }
+
 	/**
 	 * Converts the specified date to a SimpleDate. Will trim hour, minute, second, and millisecond fields.
 	 * @param date the java.util.Date
@@ -136,12 +164,170 @@ public class SimpleDate implements Serializable {
 	 * @return the time as a SimpleDate
 	 */
 	public static SimpleDate valueOf(long time) {
-		return new SimpleDate(time);
+        final Today today = SimpleDate.today;
+        if (time >= today.from && time < today.until) {
+            return today.date;
+        }
+		return new SimpleDate(toEpochDay(time, TimeZone.getDefault()));
 	}
-	
+
+    /**
+     * Helper finding the day of an instant in a time zone, with its start and end
+     * @param now milliseconds since 1970
+     * @param zone the default time zone
+     * @return today
+     */
+    private static Today startingToday(long now, TimeZone zone) {
+        final int epochDay = toEpochDay(now, zone);
+        return new Today(endOfDay(epochDay - 1, zone), endOfDay(epochDay, zone), toMillis(epochDay, zone),
+                         new SimpleDate(epochDay));
+    }
+
+    /**
+     * Helper counting the days from 1/1/1970 to a date. As with a lenient calendar, months and days out of range roll
+     * over into the next or previous year or month.
+     * @param month the month
+     * @param day the day
+     * @param year the year
+     * @return days since 1/1/1970
+     */
+    static int toEpochDay(int month, int day, int year) {
+        // months counted from March, so the leap day is the last day of the year
+        int monthFromMarch = month - 3;
+        year += floorDiv(monthFromMarch, 12);
+        monthFromMarch -= floorDiv(monthFromMarch, 12) * 12;
+        final int era = floorDiv(year, 400);
+        final int yearOfEra = year - era * 400;
+        final int dayOfYear = (153 * monthFromMarch + 2) / 5;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_TO_EPOCH + day - 1;
+    }
+
+    /**
+     * Helper finding the day of an instant in a time zone
+     * @param time milliseconds since 1970
+     * @param zone the time zone
+     * @return days since 1/1/1970
+     */
+    static int toEpochDay(long time, TimeZone zone) {
+        return (int) floorDiv(time + zone.getOffset(time), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Helper finding the start of a day in a time zone, as a calendar trimmed to the day has it. Midnight is at the
+     * offset in force a day either side of it, the later if midnight happens at both. Where a change of offset skips
+     * midnight, the day starts at the time midnight would have been at the offset before the change.
+     * @param epochDay days since 1/1/1970
+     * @param zone the time zone
+     * @return milliseconds since 1970
+     */
+    static long toMillis(int epochDay, TimeZone zone) {
+        final long midnight = epochDay * MILLIS_PER_DAY;
+        final int offsetAfter = zone.getOffset(midnight + MILLIS_PER_DAY);
+        if (zone.getOffset(midnight - offsetAfter) == offsetAfter) {
+            return midnight - offsetAfter;
+        }
+        return midnight - zone.getOffset(midnight - MILLIS_PER_DAY);
+    }
+
+    /**
+     * Helper finding the end of a day in a time zone, the first time on a later day. This is usually the start of the
+     * next day, but not where the clocks change at midnight: going back, the next day starts at the second of the two
+     * midnights; going forward, a calendar may start it at the hour before. The end of the day is then midnight at the
+     * offset at the start of the day or at the start of the next.
+     * @param epochDay days since 1/1/1970
+     * @param zone the time zone
+     * @return milliseconds since 1970
+     */
+    static long endOfDay(int epochDay, TimeZone zone) {
+        final long nextMidnight = (epochDay + 1) * MILLIS_PER_DAY;
+        final long nextStart = toMillis(epochDay + 1, zone);
+        long end = Long.MAX_VALUE;
+        for (long time : new long[]{nextStart, nextMidnight - zone.getOffset(toMillis(epochDay, zone)),
+                nextMidnight - zone.getOffset(nextStart)}) {
+            if (time < end && toEpochDay(time, zone) > epochDay && toEpochDay(time - 1, zone) <= epochDay) {
+                end = time;
+            }
+        }
+        return (end == Long.MAX_VALUE) ? nextStart : end;
+    }
+
+    /**
+     * Helper dividing, rounding towards negative infinity
+     * @param dividend
+     * @param divisor positive divisor
+     * @return quotient
+     */
+    private static long floorDiv(long dividend, long divisor) {
+        final long quotient = dividend / divisor;
+        return (dividend % divisor < 0) ? quotient - 1 : quotient;
+    }
+
+    /**
+     * Helper dividing, rounding towards negative infinity
+     * @param dividend
+     * @param divisor positive divisor
+     * @return quotient
+     */
+    private static int floorDiv(int dividend, int divisor) {
+        final int quotient = dividend / divisor;
+        return (dividend % divisor < 0) ? quotient - 1 : quotient;
+    }
+
+    /**
+     * Write this date as the calendar it used to hold
+     * @param out
+     * @throws IOException
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        GregorianCalendar base = new GregorianCalendar();
+        base.setTimeInMillis(inMilliseconds());
+        out.putFields().put("base", base);
+        out.writeFields();
+    }
+
+    /**
+     * Read this date from the calendar it used to hold
+     * @param in
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        GregorianCalendar base = (GregorianCalendar) in.readFields().get("base", null);
+        this.epochDay = toEpochDay(base.getTimeInMillis(), TimeZone.getDefault());
+    }
+
 	@Override
 	public String toString() {
-        return new SimpleDateFormat().format(base.getTime());
+        return new SimpleDateFormat().format(asDate());
     }
 
-}
\ No newline at end of file
+    /**
+     * Today's date, with the time it starts and the times between which it is today, in the default time zone when it
+     * was found
+     */
+    private static final class Today {
+
+        private final long from;
+
+        private final long until;
+
+        private final long start;
+
+        private final SimpleDate date;
+
+        /**
+         * Constructor taking values to be used
+         * @param from milliseconds since 1970 from which it is today
+         * @param until milliseconds since 1970 from which it is a later day
+         * @param start milliseconds since 1970 at which today starts, as a calendar trimmed to the day has it
+         * @param date the date
+         */
+        private Today(long from, long until, long start, SimpleDate date) {
+            this.from = from;
+            this.until = until;
+            this.start = start;
+            this.date = date;
+        }
+    }
+}
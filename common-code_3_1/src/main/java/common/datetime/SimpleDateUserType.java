@@ -24,8 +24,8 @@ public class SimpleDateUserType implements UserType {
 	}
 
 	public Object deepCopy(Object value) throws HibernateException {
-		SimpleDate amount = (SimpleDate) value;
-		return new SimpleDate(amount.inMilliseconds());
+		// immutable
+		return value;
 	}
 
 	public Serializable disassemble(Object value) throws HibernateException {
@@ -50,7 +50,7 @@ public class SimpleDateUserType implements UserType {
 		if (value == null) {
 			return null;
 		} else {
-			return new SimpleDate(value.getTime());
+			return SimpleDate.valueOf(value.getTime());
 		}
 	}
 
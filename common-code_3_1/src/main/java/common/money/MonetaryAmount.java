@@ -3,19 +3,47 @@ package common.money;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonValue;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
 /**
  * A representation of money.
- * 
+ *
  * A value object. Immutable.
+ * <p/>
+ * Held as a whole number of cents, so that adding, subtracting and taking a percentage of amounts, as is done for
+ * every reward, is long arithmetic creating nothing but the result. Values are rounded to cents HALF_EVEN, as they
+ * always have been; a BigDecimal is only created when one is asked for, or to multiply by an arbitrary decimal.
  */
-@SuppressWarnings("serial")
 public class MonetaryAmount implements Serializable {
 
-	private BigDecimal value;
+    /**
+     * Computed from the class when it held a BigDecimal, so amounts serialized then can still be read
+     */
+    private static final long serialVersionUID = -7291537496672603023L;
+
+    /**
+     * Serialized as the BigDecimal value it used to hold, so serialized amounts can still be read either way
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("value", BigDecimal.class)};
+
+    /**
+     * The zero amount, shared
+     */
+    private static final MonetaryAmount ZERO = new MonetaryAmount(0L);
+
+    /**
+     * Largest amount in cents that converts exactly to and from a double
+     */
+    private static final long MAX_EXACT_DOUBLE_CENTS = 1L << 53;
+
+	private long cents;
 
 	/**
 	 * Create a new monetary amount from the specified value.
@@ -23,7 +51,7 @@ public class MonetaryAmount implements Serializable {
 	 */
     @JsonCreator
 	public MonetaryAmount(BigDecimal value) {
-		initValue(value);
+		this.cents = toCents(value);
 	}
 
 	/**
@@ -31,16 +59,37 @@ public class MonetaryAmount implements Serializable {
 	 * @param value the monetary amount as a double
 	 */
 	public MonetaryAmount(double value) {
-		initValue(BigDecimal.valueOf(value));
+        // a double that is exactly the nearest to a whole number of cents has that many cents, without having to go
+        // through its decimal representation
+        final double scaled = value * 100;
+        if (Math.abs(scaled) < MAX_EXACT_DOUBLE_CENTS && scaled == Math.rint(scaled) && scaled / 100 == value) {
+            this.cents = (long) scaled;
+        } else {
+            this.cents = toCents(BigDecimal.valueOf(value));
+        }
 	}
 
+    /**
+     * Create a new monetary amount of a number of cents
+     * @param cents the amount in cents
+     */
+    private MonetaryAmount(long cents) {
+        this.cents = cents;
+    }
+
 	@SuppressWarnings("unused")
 	private MonetaryAmount() {
 	}
 
-	private void initValue(BigDecimal value) {
-		this.value = value.setScale(2, RoundingMode.HALF_EVEN);
-	}
+    /**
+     * Helper rounding a decimal value to a whole number of cents
+     * @param value the decimal value
+     * @return cents
+     * @throws ArithmeticException if the value is too large
+     */
+    private static long toCents(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_EVEN).movePointRight(2).longValueExact();
+    }
 
 	/**
 	 * Convert the string representation of a monetary amount (e.g. $5 or 5) to a MonetaryAmount object.
@@ -64,7 +113,7 @@ public class MonetaryAmount implements Serializable {
 	 * Returns the zero (0.00) monetary amount.
 	 */
 	public static MonetaryAmount zero() {
-		return new MonetaryAmount(0);
+		return ZERO;
 	}
 
 	/**
@@ -73,7 +122,11 @@ public class MonetaryAmount implements Serializable {
 	 * @return the sum
 	 */
 	public MonetaryAmount add(MonetaryAmount amount) {
-		return new MonetaryAmount(value.add(amount.value));
+        final long sum = cents + amount.cents;
+        if (((cents ^ sum) & (amount.cents ^ sum)) < 0) {
+            throw new ArithmeticException("monetary amount overflow:" + this + " + " + amount);
+        }
+		return new MonetaryAmount(sum);
 	}
 
 	/**
@@ -82,7 +135,11 @@ public class MonetaryAmount implements Serializable {
 	 * @return the difference
 	 */
 	public MonetaryAmount subtract(MonetaryAmount amount) {
-		return new MonetaryAmount(value.subtract(amount.value));
+        final long difference = cents - amount.cents;
+        if (((cents ^ amount.cents) & (cents ^ difference)) < 0) {
+            throw new ArithmeticException("monetary amount overflow:" + this + " - " + amount);
+        }
+		return new MonetaryAmount(difference);
 	}
 
 	/**
@@ -91,7 +148,7 @@ public class MonetaryAmount implements Serializable {
 	 * @return the product
 	 */
 	public MonetaryAmount multiplyBy(BigDecimal amount) {
-		return new MonetaryAmount(value.multiply(amount));
+		return new MonetaryAmount(asBigDecimal().multiply(amount));
 	}
 
 	/**
@@ -100,7 +157,7 @@ public class MonetaryAmount implements Serializable {
 	 * @return the quotient
 	 */
 	public BigDecimal divide(MonetaryAmount amount) {
-		return value.divide(amount.value);
+		return BigDecimal.valueOf(cents).divide(BigDecimal.valueOf(amount.cents));
 	}
 
 	/**
@@ -109,16 +166,20 @@ public class MonetaryAmount implements Serializable {
 	 * @return the quotient
 	 */
 	public MonetaryAmount divideBy(BigDecimal amount) {
-		return new MonetaryAmount(value.divide(amount));
+		return new MonetaryAmount(asBigDecimal().divide(amount));
 	}
 
 	/**
-	 * Multiply this monetary amount by a percentage.
+	 * Multiply this monetary amount by a percentage, rounding the product to cents HALF_EVEN.
 	 * @param percentage the percentage
 	 * @return the percentage amount
 	 */
 	public MonetaryAmount multiplyBy(Percentage percentage) {
-		return new MonetaryAmount(value.multiply(percentage.asBigDecimal()));
+        final int basisPoints = percentage.asBasisPoints();
+        if (Math.abs(cents) > Long.MAX_VALUE / Percentage.BASIS_POINTS_IN_ONE) {
+            return multiplyBy(percentage.asBigDecimal());
+        }
+		return new MonetaryAmount(divideHalfEven(cents * basisPoints, Percentage.BASIS_POINTS_IN_ONE));
 	}
 
 	/**
@@ -127,7 +188,7 @@ public class MonetaryAmount implements Serializable {
 	 * @return true or false
 	 */
 	public boolean greaterThan(MonetaryAmount amount) {
-		return value.compareTo(amount.value) > 0;
+		return cents > amount.cents;
 	}
 
 	/**
@@ -135,7 +196,10 @@ public class MonetaryAmount implements Serializable {
 	 * @return this amount as a double
 	 */
 	public double asDouble() {
-		return value.doubleValue();
+        if (Math.abs(cents) < MAX_EXACT_DOUBLE_CENTS) {
+            return cents / 100.0;
+        }
+		return asBigDecimal().doubleValue();
 	}
 
 	/**
@@ -144,22 +208,57 @@ public class MonetaryAmount implements Serializable {
 	 */
     @JsonValue
 	public BigDecimal asBigDecimal() {
-		return value;
+		return BigDecimal.valueOf(cents, 2);
 	}
 
+    /**
+     * Helper dividing, rounding HALF_EVEN
+     * @param dividend
+     * @param divisor positive divisor
+     * @return quotient
+     */
+    private static long divideHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        final long twiceRemainder = Math.abs(dividend % divisor) * 2;
+        if (twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) != 0)) {
+            quotient += (dividend < 0 ? -1 : 1);
+        }
+        return quotient;
+    }
+
+    /**
+     * Write this amount as the BigDecimal value it used to hold
+     * @param out
+     * @throws IOException
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.putFields().put("value", asBigDecimal());
+        out.writeFields();
+    }
+
+    /**
+     * Read this amount from the BigDecimal value it used to hold
+     * @param in
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        this.cents = toCents((BigDecimal) in.readFields().get("value", null));
+    }
+
 	public boolean equals(Object o) {
 		if (!(o instanceof MonetaryAmount)) {
 			return false;
 		}
-		return value.equals(((MonetaryAmount) o).value);
+		return cents == ((MonetaryAmount) o).cents;
 	}
 
 	public int hashCode() {
-		return value.hashCode();
+		return (int) (cents ^ (cents >>> 32));
 	}
 
 	public String toString() {
-		return "$" + value.toString();
+		return "$" + asBigDecimal().toString();
 	}
 
-}
\ No newline at end of file
+}
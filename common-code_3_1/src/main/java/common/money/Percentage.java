@@ -3,18 +3,70 @@ package common.money;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonValue;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
 
 /**
  * A percentage. Represented as a decimal value with scale 2 between 0.00 and 1.00.
- * 
+ *
  * A value object. Immutable.
+ * <p/>
+ * Held as a whole number of basis points (hundredths of a percent), which after rounding to two decimal places is
+ * always a whole percent, so there are only 101 possible values. One shared instance of each, with its decimal value,
+ * is made up front: the valueOf methods, zero, oneHundred and add return them, without allocating or rescaling a
+ * BigDecimal, and should be used in preference to the constructors.
  */
-@SuppressWarnings("serial")
 public class Percentage implements Serializable {
 
-	private BigDecimal value;
+    /**
+     * Computed from the class when it held a BigDecimal, so percentages serialized then can still be read
+     */
+    private static final long serialVersionUID = 7906532877559502426L;
+
+    /**
+     * Serialized as the BigDecimal value it used to hold, so serialized percentages can still be read either way
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("value", BigDecimal.class)};
+
+    /**
+     * Number of basis points (hundredths of a percent) in 100%
+     */
+    static final int BASIS_POINTS_IN_ONE = 10000;
+
+    /**
+     * Number of basis points in 1%, the precision percentages are rounded to
+     */
+    private static final int BASIS_POINTS_IN_ONE_PERCENT = 100;
+
+    /**
+     * Largest number of percent digits parsed without a BigDecimal
+     */
+    private static final int MAX_PARSED_DIGITS = 15;
+
+    /**
+     * Decimal value of each whole percent, by percent
+     */
+    private static final BigDecimal[] DECIMALS = new BigDecimal[101];
+
+    /**
+     * Shared instance of each whole percent, by percent
+     */
+    private static final Percentage[] PERCENTAGES = new Percentage[101];
+
+    static {
+        for (int percent = 0; percent <= 100; percent++) {
+            DECIMALS[percent] = BigDecimal.valueOf(percent, 2);
+            PERCENTAGES[percent] = new Percentage();
+            PERCENTAGES[percent].basisPoints = percent * BASIS_POINTS_IN_ONE_PERCENT;
+        }
+    }
+
+	private int basisPoints;
 
 	/**
 	 * Create a new percentage from the specified value. Value must be between 0 and 1. For example, value .45
@@ -22,10 +74,10 @@ public class Percentage implements Serializable {
 	 * value .24555 rounds up to .25.
 	 * @param value the percentage value
 	 * @throws IllegalArgumentException if the value is not between 0 and 1
+	 * @see #valueOf(BigDecimal)
 	 */
-    @JsonCreator
 	public Percentage(BigDecimal value) {
-		initValue(value);
+		this.basisPoints = toBasisPoints(value);
 	}
 
 	/**
@@ -34,25 +86,39 @@ public class Percentage implements Serializable {
 	 * decimal point it will be rounded up. For example, value .24555 rounds up to .25.
 	 * @param value the percentage value as a double
 	 * @throws IllegalArgumentException if the value is not between 0 and 1
+	 * @see #valueOf(double)
 	 */
 	public Percentage(double value) {
-		initValue(BigDecimal.valueOf(value));
+		this.basisPoints = toBasisPoints(value);
 	}
 
-	@SuppressWarnings("unused")
 	private Percentage() {
 	}
 
-	private void initValue(BigDecimal value) {
-		value = value.setScale(2, BigDecimal.ROUND_HALF_UP);
-		if (value.compareTo(BigDecimal.ZERO) == -1 || value.compareTo(BigDecimal.ONE) == 1) {
-			throw new IllegalArgumentException("Percentage value as decimal must be between 0 and 1; your value was " + value);
-		}
-		this.value = value;
-	}
+    /**
+     * Get the shared percentage for a decimal value, rounded up to two decimal places as the constructor does.
+     * @param value the percentage value, between 0 and 1
+     * @return the percentage
+     * @throws IllegalArgumentException if the value is not between 0 and 1
+     */
+    @JsonCreator
+    public static Percentage valueOf(BigDecimal value) {
+        return PERCENTAGES[toBasisPoints(value) / BASIS_POINTS_IN_ONE_PERCENT];
+    }
+
+    /**
+     * Get the shared percentage for a double value, rounded up to two decimal places as the constructor does.
+     * @param value the percentage value, between 0 and 1
+     * @return the percentage
+     * @throws IllegalArgumentException if the value is not between 0 and 1
+     */
+    public static Percentage valueOf(double value) {
+        return PERCENTAGES[toBasisPoints(value) / BASIS_POINTS_IN_ONE_PERCENT];
+    }
 
 	/**
 	 * Convert the string representation of a percentage (e.g. 5% or 5) to a Percentage object.
+	 * Plain decimals are parsed directly; anything else, such as exponents or signs, goes through BigDecimal.
 	 * @param string the percentage string
 	 * @return the percentage object
 	 */
@@ -60,30 +126,35 @@ public class Percentage implements Serializable {
 		if (string == null || string.length() == 0) {
 			throw new IllegalArgumentException("The percentage value is required");
 		}
-		boolean percent = string.endsWith("%");
-		if (percent) {
+        final int percent = parsePercent(string);
+        if (percent >= 0) {
+            return PERCENTAGES[percent];
+        }
+
+		boolean percentSign = string.endsWith("%");
+		if (percentSign) {
 			int index = string.lastIndexOf('%');
 			string = string.substring(0, index);
 		}
 		BigDecimal value = new BigDecimal(string);
-		if (percent) {
+		if (percentSign) {
 			value = value.divide(new BigDecimal(100));
 		}
-		return new Percentage(value);
+		return valueOf(value);
 	}
 
 	/**
 	 * Returns zero percent.
 	 */
 	public static Percentage zero() {
-		return new Percentage(0);
+		return PERCENTAGES[0];
 	}
 
 	/**
 	 * Returns one hundred percent.
 	 */
 	public static Percentage oneHundred() {
-		return new Percentage(1);
+		return PERCENTAGES[100];
 	}
 
 	/**
@@ -93,7 +164,12 @@ public class Percentage implements Serializable {
 	 * @throws IllegalArgumentException if the new percentage exceeds 1
 	 */
 	public Percentage add(Percentage percentage) throws IllegalArgumentException {
-		return new Percentage(value.add(percentage.value));
+        final int sum = basisPoints + percentage.basisPoints;
+        if (sum > BASIS_POINTS_IN_ONE) {
+            throw new IllegalArgumentException(
+                    "Percentage value as decimal must be between 0 and 1; your value was " + BigDecimal.valueOf(sum / BASIS_POINTS_IN_ONE_PERCENT, 2));
+        }
+		return PERCENTAGES[sum / BASIS_POINTS_IN_ONE_PERCENT];
 	}
 
 	/**
@@ -101,7 +177,15 @@ public class Percentage implements Serializable {
 	 * @return this percentage as a double
 	 */
 	public double asDouble() {
-		return value.doubleValue();
+		return basisPoints / (double) BASIS_POINTS_IN_ONE;
+	}
+
+	/**
+	 * Return this percentage as a whole number of basis points (hundredths of a percent), for exact integer arithmetic.
+	 * @return this percentage in basis points, 10000 for 100%
+	 */
+	int asBasisPoints() {
+		return basisPoints;
 	}
 
 	/**
@@ -111,21 +195,123 @@ public class Percentage implements Serializable {
 	 */
     @JsonValue
 	public BigDecimal asBigDecimal() {
-		return value;
+		return DECIMALS[basisPoints / BASIS_POINTS_IN_ONE_PERCENT];
 	}
 
+    /**
+     * Write this percentage as the BigDecimal value it used to hold
+     * @param out
+     * @throws IOException
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.putFields().put("value", asBigDecimal());
+        out.writeFields();
+    }
+
+    /**
+     * Read this percentage from the BigDecimal value it used to hold
+     * @param in
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        this.basisPoints = toBasisPoints((BigDecimal) in.readFields().get("value", null));
+    }
+
+    /**
+     * Replace a deserialized percentage with the shared one
+     * @return shared percentage
+     */
+    private Object readResolve() {
+        return PERCENTAGES[basisPoints / BASIS_POINTS_IN_ONE_PERCENT];
+    }
+
+    /**
+     * Helper rounding a decimal value up to a whole percent, in basis points
+     * @param value the percentage value
+     * @return basis points
+     * @throws IllegalArgumentException if the value is not between 0 and 1
+     */
+    private static int toBasisPoints(BigDecimal value) {
+        value = value.setScale(2, BigDecimal.ROUND_HALF_UP);
+        if (value.compareTo(BigDecimal.ZERO) == -1 || value.compareTo(BigDecimal.ONE) == 1) {
+            throw new IllegalArgumentException("Percentage value as decimal must be between 0 and 1; your value was " + value);
+        }
+        return value.movePointRight(2).intValue() * BASIS_POINTS_IN_ONE_PERCENT;
+    }
+
+    /**
+     * Helper rounding a double value up to a whole percent, in basis points. A double that is exactly the nearest to a
+     * whole percent is that percent, without having to go through its decimal representation.
+     * @param value the percentage value
+     * @return basis points
+     * @throws IllegalArgumentException if the value is not between 0 and 1
+     */
+    private static int toBasisPoints(double value) {
+        final double percent = value * 100;
+        if (percent >= 0 && percent <= 100 && percent == Math.rint(percent) && percent / 100 == value) {
+            return (int) percent * BASIS_POINTS_IN_ONE_PERCENT;
+        }
+        return toBasisPoints(BigDecimal.valueOf(value));
+    }
+
+    /**
+     * Helper parsing a plain decimal, such as 5%, 23.5% or .05, rounded up to a whole percent.
+     * @param string the percentage string
+     * @return the percent, or -1 if the string is not a plain decimal between 0 and 1 (or 0% and 100%)
+     */
+    private static int parsePercent(String string) {
+        final int length = string.length();
+        final boolean percentSign = string.charAt(length - 1) == '%';
+        final int end = percentSign ? length - 1 : length;
+        long digits = 0;
+        int digitCount = 0;
+        int fractionDigits = -1;
+        for (int i = 0; i < end; i++) {
+            final char c = string.charAt(i);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (c >= '0' && c <= '9' && digitCount < MAX_PARSED_DIGITS) {
+                digits = digits * 10 + (c - '0');
+                digitCount++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (digitCount == 0) {
+            return -1;
+        }
+
+        // the value is digits / 10^fractionDigits, percent or not
+        long divisor = 1;
+        for (int i = 0; i < fractionDigits; i++) {
+            divisor *= 10;
+        }
+        if (!percentSign) {
+            digits *= 100;
+        }
+        long percent = digits / divisor;
+        if ((digits % divisor) * 2 >= divisor) {
+            percent++;
+        }
+        return (percent <= 100) ? (int) percent : -1;
+    }
+
 	public boolean equals(Object o) {
 		if (!(o instanceof Percentage)) {
 			return false;
 		}
-		return value.equals(((Percentage) o).value);
+		return basisPoints == ((Percentage) o).basisPoints;
 	}
 
 	public int hashCode() {
-		return value.hashCode();
+		return basisPoints;
 	}
 
 	public String toString() {
-		return value.multiply(new BigDecimal("100")).setScale(0) + "%";
+		return (basisPoints / BASIS_POINTS_IN_ONE_PERCENT) + "%";
 	}
-}
\ No newline at end of file
+}
@@ -30,7 +30,7 @@ public class PercentageUserType extends ImmutableValueUserType {
 		if (value == null) {
 			return null;
 		} else {
-			return new Percentage(value);
+			return Percentage.valueOf(value);
 		}
 	}
 
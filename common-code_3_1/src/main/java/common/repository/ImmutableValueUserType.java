@@ -27,11 +27,11 @@ public abstract class ImmutableValueUserType implements UserType {
 	}
 
 	public boolean equals(Object x, Object y) throws HibernateException {
-		return x.equals(y);
+		return (x == null) ? (y == null) : x.equals(y);
 	}
 
 	public int hashCode(Object x) throws HibernateException {
-		return x.hashCode();
+		return (x == null) ? 0 : x.hashCode();
 	}
 
 	public boolean isMutable() {
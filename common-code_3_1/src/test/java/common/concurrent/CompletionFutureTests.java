@@ -0,0 +1,308 @@
+package common.concurrent;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for {@link CompletionFuture}
+ */
+public class CompletionFutureTests {
+
+    private ExecutorService executor;
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+
+    /**
+     * Value supplied by task should be got, and passed to callbacks added before and after completion
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSupply() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        CompletionFuture<String> future = CompletionFuture.supply(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                started.await();
+                return "value";
+            }
+        }, executor);
+        RecordingCallback<String> before = new RecordingCallback<String>();
+        future.addCallback(before);
+        Assert.assertFalse("not done", future.isDone());
+
+        started.countDown();
+        Assert.assertEquals("value", "value", future.get(5, TimeUnit.SECONDS));
+        RecordingCallback<String> after = new RecordingCallback<String>();
+        future.addCallback(after);
+
+        Assert.assertTrue("done", future.isDone());
+        Assert.assertTrue("before called", before.called.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals("before", "value", before.value.get());
+        Assert.assertEquals("after", "value", after.value.get());
+    }
+
+    /**
+     * Failure thrown by task should be wrapped by get, and passed to callbacks
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSupplyFails() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("test");
+        CompletionFuture<String> future = CompletionFuture.supply(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw failure;
+            }
+        }, executor);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertSame("cause", failure, e.getCause());
+        }
+        RecordingCallback<String> callback = new RecordingCallback<String>();
+        future.addCallback(callback);
+        Assert.assertSame("callback", failure, callback.failure.get());
+    }
+
+    /**
+     * Task rejected by executor should fail the future
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSupplyRejected() throws Exception {
+        CompletionFuture<String> future = CompletionFuture.supply(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "value";
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("full");
+            }
+        });
+
+        RecordingCallback<String> callback = new RecordingCallback<String>();
+        future.addCallback(callback);
+        Assert.assertTrue("rejected", callback.failure.get() instanceof RejectedExecutionException);
+    }
+
+    /**
+     * Cancelled future should not run its task
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCancelBeforeStart() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final CountDownLatch ran = new CountDownLatch(1);
+        CompletionFuture<String> future = CompletionFuture.supply(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                ran.countDown();
+                return "value";
+            }
+        }, executor);
+
+        Assert.assertTrue("cancelled", future.cancel(false));
+        blocker.countDown();
+
+        Assert.assertFalse("should not run", ran.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertTrue("isCancelled", future.isCancelled());
+        try {
+            future.get();
+            Assert.fail("expected CancellationException");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Only the first completion should count
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCompleteOnce() throws Exception {
+        CompletionFuture<String> future = new CompletionFuture<String>();
+
+        Assert.assertTrue("first", future.complete("first"));
+        Assert.assertFalse("second", future.complete("second"));
+        Assert.assertFalse("failure", future.completeExceptionally(new IllegalStateException()));
+        Assert.assertFalse("cancel", future.cancel(true));
+        Assert.assertEquals("value", "first", future.get());
+    }
+
+    /**
+     * Failure should be replaced by the fallback's value, and value passed through
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWithFallback() throws Exception {
+        CompletionFuture.Fallback<String> fallback = new CompletionFuture.Fallback<String>() {
+            @Override
+            public String valueFor(Throwable failure) throws Exception {
+                return "fallback:" + failure.getMessage();
+            }
+        };
+        CompletionFuture<String> failing = new CompletionFuture<String>();
+        CompletionFuture<String> failingWithFallback = failing.withFallback(fallback);
+        failing.completeExceptionally(new IllegalStateException("test"));
+
+        Assert.assertEquals("fallback", "fallback:test", failingWithFallback.get());
+        Assert.assertEquals("value", "value", CompletionFuture.completed("value").withFallback(fallback).get());
+    }
+
+    /**
+     * Future not complete in time should fail with TimeoutException
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWithTimeout() throws Exception {
+        CompletionFuture<String> future = new CompletionFuture<String>().withTimeout(50, TimeUnit.MILLISECONDS,
+                                                                                     scheduler);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("cause=" + e.getCause(), e.getCause() instanceof TimeoutException);
+        }
+
+        CompletionFuture<String> completed = new CompletionFuture<String>().withTimeout(5, TimeUnit.SECONDS,
+                                                                                        scheduler);
+        completed.complete("value");
+        Assert.assertEquals("value", "value", completed.get());
+    }
+
+    /**
+     * All values should be collected in order, once all are complete
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAllOf() throws Exception {
+        CompletionFuture<String> first = new CompletionFuture<String>();
+        CompletionFuture<String> second = new CompletionFuture<String>();
+        CompletionFuture<List<String>> all = CompletionFuture.allOf(Arrays.asList(first, second));
+
+        second.complete("second");
+        Assert.assertFalse("not done", all.isDone());
+        first.complete("first");
+
+        Assert.assertEquals("values", Arrays.asList("first", "second"), all.get());
+        Assert.assertEquals("empty", Collections.emptyList(),
+                            CompletionFuture.allOf(Collections.<CompletionFuture<String>>emptyList()).get());
+    }
+
+    /**
+     * All should fail as soon as one fails
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAllOfFails() throws Exception {
+        CompletionFuture<String> first = new CompletionFuture<String>();
+        CompletionFuture<String> second = new CompletionFuture<String>();
+        CompletionFuture<List<String>> all = CompletionFuture.allOf(Arrays.asList(first, second));
+
+        IllegalStateException failure = new IllegalStateException("test");
+        second.completeExceptionally(failure);
+
+        RecordingCallback<List<String>> callback = new RecordingCallback<List<String>>();
+        all.addCallback(callback);
+        Assert.assertSame("failure", failure, callback.failure.get());
+    }
+
+    /**
+     * Callback that throws should not stop other callbacks being run
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCallbackThrows() throws Exception {
+        CompletionFuture<String> future = new CompletionFuture<String>();
+        future.addCallback(new RecordingCallback<String>() {
+            @Override
+            public void onSuccess(String value) {
+                throw new IllegalStateException("test");
+            }
+        });
+        RecordingCallback<String> callback = new RecordingCallback<String>();
+        future.addCallback(callback);
+
+        future.complete("value");
+        Assert.assertEquals("value", "value", callback.value.get());
+    }
+
+
+    /**
+     * Callback recording what it is called with
+     *
+     * @param <T> type of value
+     */
+    private static class RecordingCallback<T> implements CompletionFuture.Callback<T> {
+        final AtomicReference<T>         value   = new AtomicReference<T>();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch             called  = new CountDownLatch(1);
+
+        @Override
+        public void onSuccess(T value) {
+            this.value.set(value);
+            called.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable failure) {
+            this.failure.set(failure);
+            called.countDown();
+        }
+    }
+}
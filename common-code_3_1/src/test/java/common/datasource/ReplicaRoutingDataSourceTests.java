@@ -0,0 +1,230 @@
+package common.datasource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Unit tests for {@link ReplicaRoutingDataSource}, with embedded databases standing in for the primary and its
+ * replicas. Each holds its own name in T_DATABASE, so a query shows which one it was run against, and each replica
+ * holds its lag in T_LAG.
+ */
+public class ReplicaRoutingDataSourceTests {
+
+    private EmbeddedDatabase primary;
+    private EmbeddedDatabase replica0;
+    private EmbeddedDatabase replica1;
+
+    /**
+     * The object being tested.
+     */
+    private ReplicaRoutingDataSource routingDataSource;
+
+    /**
+     * Routing data source behind a lazy proxy, as it must be used
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private TransactionTemplate readWriteTransaction;
+
+    @Before
+    public void setUp() throws Exception {
+        primary = createDatabase("primary");
+        replica0 = createDatabase("replica0");
+        replica1 = createDatabase("replica1");
+
+        routingDataSource = new ReplicaRoutingDataSource();
+        routingDataSource.setPrimary(primary);
+        routingDataSource.setReplicas(Arrays.<DataSource>asList(replica0, replica1));
+        routingDataSource.setLagQuery("select LAG_MS from T_LAG");
+        routingDataSource.setMaxLagMs(1000L);
+        routingDataSource.setLagCheckIntervalMs(0L);
+        routingDataSource.afterPropertiesSet();
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        dataSource.setTargetDataSource(routingDataSource);
+        // given the defaults, the proxy need not connect to find them out
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        dataSource.afterPropertiesSet();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        routingDataSource.destroy();
+        primary.shutdown();
+        replica0.shutdown();
+        replica1.shutdown();
+    }
+
+
+    /**
+     * Read-only transactions should go to the replicas in turn, everything else to the primary
+     */
+    @Test
+    public void testRouting() {
+        Assert.assertEquals("read-write", "primary", databaseIn(readWriteTransaction));
+        Assert.assertEquals("no transaction", "primary", database());
+        Assert.assertEquals("read-only", "replica0", databaseIn(readOnlyTransaction));
+        Assert.assertEquals("read-only", "replica1", databaseIn(readOnlyTransaction));
+        Assert.assertEquals("read-only", "replica0", databaseIn(readOnlyTransaction));
+
+        Assert.assertEquals("primary connections", 2, routingDataSource.getPrimaryConnectionCount());
+        Assert.assertEquals("replica connections", 3, routingDataSource.getReplicaConnectionCount());
+    }
+
+    /**
+     * A replica lagging too far behind should be skipped until it catches up, and the primary used if all are
+     */
+    @Test
+    public void testLaggingReplica() {
+        setLag(replica0, 5000);
+        routingDataSource.checkReplicas();
+        Assert.assertEquals("replica0 lagging", "replica1", databaseIn(readOnlyTransaction));
+        Assert.assertEquals("replica0 lagging", "replica1", databaseIn(readOnlyTransaction));
+        Assert.assertArrayEquals("lags", new long[]{5000, 0}, routingDataSource.getReplicaLagsMs());
+
+        setLag(replica1, 5000);
+        routingDataSource.checkReplicas();
+        Assert.assertEquals("all lagging", "primary", databaseIn(readOnlyTransaction));
+        Assert.assertEquals("fallbacks", 1, routingDataSource.getFallbackCount());
+
+        setLag(replica0, 0);
+        routingDataSource.checkReplicas();
+        Assert.assertEquals("replica0 caught up", "replica0", databaseIn(readOnlyTransaction));
+    }
+
+    /**
+     * Replicas should be checked in the background, without waiting for a connection to be asked for
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBackgroundCheck() throws Exception {
+        routingDataSource.destroy();
+        routingDataSource.setLagCheckIntervalMs(10L);
+        routingDataSource.afterPropertiesSet();
+
+        setLag(replica0, 5000);
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (routingDataSource.getUsableReplicaCount() != 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals("usable", 1, routingDataSource.getUsableReplicaCount());
+        Assert.assertEquals("replica0 lagging", "replica1", databaseIn(readOnlyTransaction));
+    }
+
+    /**
+     * A replica whose lag cannot be checked should be skipped
+     */
+    @Test
+    public void testUncheckableReplica() {
+        new JdbcTemplate(replica1).execute("drop table T_LAG");
+        routingDataSource.checkReplicas();
+        Assert.assertEquals("replica1 uncheckable", "replica0", databaseIn(readOnlyTransaction));
+        Assert.assertEquals("replica1 uncheckable", "replica0", databaseIn(readOnlyTransaction));
+        Assert.assertEquals("usable", 1, routingDataSource.getUsableReplicaCount());
+    }
+
+    /**
+     * A replica that cannot be connected to should fall back to the primary, and be skipped until the next check
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUnreachableReplica() throws Exception {
+        routingDataSource.setReplicas(Collections.<DataSource>singletonList(new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                throw new SQLException("unreachable");
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                throw new SQLException("unreachable");
+            }
+        }));
+        routingDataSource.setLagQuery(null);
+        routingDataSource.setLagCheckIntervalMs(60000L);
+        routingDataSource.checkReplicas();
+
+        Assert.assertEquals("usable before", 1, routingDataSource.getUsableReplicaCount());
+        Assert.assertEquals("unreachable", "primary", databaseIn(readOnlyTransaction));
+        Assert.assertEquals("usable after", 0, routingDataSource.getUsableReplicaCount());
+        Assert.assertEquals("fallbacks", 1, routingDataSource.getFallbackCount());
+    }
+
+
+    /**
+     * Helper creating an embedded database that knows its own name
+     *
+     * @param name
+     * @return database
+     */
+    private EmbeddedDatabase createDatabase(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setName("replicaRouting-" + name).build();
+        JdbcTemplate template = new JdbcTemplate(database);
+        template.execute("create table T_DATABASE (NAME varchar(20))");
+        template.update("insert into T_DATABASE values (?)", name);
+        template.execute("create table T_LAG (LAG_MS bigint)");
+        template.update("insert into T_LAG values (0)");
+        return database;
+    }
+
+    /**
+     * Helper setting the lag reported by a replica
+     *
+     * @param replica
+     * @param lagMs
+     */
+    private void setLag(DataSource replica, long lagMs) {
+        new JdbcTemplate(replica).update("update T_LAG set LAG_MS = ?", lagMs);
+    }
+
+    /**
+     * Helper finding the database queried outside a transaction
+     *
+     * @return database name
+     */
+    private String database() {
+        return jdbcTemplate.queryForObject("select NAME from T_DATABASE", String.class);
+    }
+
+    /**
+     * Helper finding the database queried in a transaction
+     *
+     * @param transaction
+     * @return database name
+     */
+    private String databaseIn(TransactionTemplate transaction) {
+        return transaction.execute(new TransactionCallback<String>() {
+            @Override
+            public String doInTransaction(TransactionStatus status) {
+                return database();
+            }
+        });
+    }
+}
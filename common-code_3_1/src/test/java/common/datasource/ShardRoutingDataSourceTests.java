@@ -0,0 +1,189 @@
+package common.datasource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link ShardRoutingDataSource} and {@link ShardContext}, with embedded databases standing in for the
+ * shards. Each holds its own name in T_DATABASE, so a query shows which one it was run against.
+ */
+public class ShardRoutingDataSourceTests {
+
+    private EmbeddedDatabase shard0;
+    private EmbeddedDatabase shard1;
+
+    /**
+     * Routing data source behind a lazy proxy, as it must be used
+     */
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transaction;
+
+    private TransactionTemplate newTransaction;
+
+    @Before
+    public void setUp() throws Exception {
+        shard0 = createDatabase("shard0");
+        shard1 = createDatabase("shard1");
+
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setShards(Arrays.<DataSource>asList(shard0, shard1));
+        routingDataSource.afterPropertiesSet();
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        dataSource.setTargetDataSource(routingDataSource);
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        dataSource.afterPropertiesSet();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transaction = new TransactionTemplate(transactionManager);
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        shard0.shutdown();
+        shard1.shutdown();
+    }
+
+
+    /**
+     * Each transaction should go to the shard bound to it
+     */
+    @Test
+    public void testRouting() {
+        Assert.assertEquals("shard 0", "shard0", databaseOn(0));
+        Assert.assertEquals("shard 1", "shard1", databaseOn(1));
+        Assert.assertNull("unbound after transaction", ShardContext.getCurrentShard());
+    }
+
+    /**
+     * Binding the shard already bound should be allowed, but not another shard
+     */
+    @Test
+    public void testBindAnotherShard() {
+        transaction.execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                ShardContext.bindToTransaction(1);
+                ShardContext.bindToTransaction(1);
+                try {
+                    ShardContext.bindToTransaction(0);
+                    Assert.fail("bound another shard");
+                } catch (IllegalStateException e) {
+                    // expected
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * A new transaction should have a shard of its own, and the suspended one get its shard back
+     */
+    @Test
+    public void testNewTransaction() {
+        transaction.execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                ShardContext.bindToTransaction(1);
+                Assert.assertEquals("inner", "shard0", newTransaction.execute(new TransactionCallback<String>() {
+                    @Override
+                    public String doInTransaction(TransactionStatus status) {
+                        Assert.assertNull("unbound in new transaction", ShardContext.getCurrentShard());
+                        ShardContext.bindToTransaction(0);
+                        return database();
+                    }
+                }));
+                Assert.assertEquals("outer", "shard1", database());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * A shard can only be bound within a transaction
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testBindOutsideTransaction() {
+        ShardContext.bindToTransaction(0);
+    }
+
+    /**
+     * Connecting in a transaction with no shard bound should fail
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testNoShardBound() {
+        transaction.execute(new TransactionCallback<String>() {
+            @Override
+            public String doInTransaction(TransactionStatus status) {
+                return database();
+            }
+        });
+    }
+
+    /**
+     * Connecting outside a transaction should go to the first shard
+     */
+    @Test
+    public void testOutsideTransaction() {
+        Assert.assertEquals("first shard", "shard0", database());
+    }
+
+
+    /**
+     * Helper creating an embedded database that knows its own name
+     *
+     * @param name
+     * @return database
+     */
+    private EmbeddedDatabase createDatabase(String name) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setName("shardRouting-" + name).build();
+        JdbcTemplate template = new JdbcTemplate(database);
+        template.execute("create table T_DATABASE (NAME varchar(20))");
+        template.update("insert into T_DATABASE values (?)", name);
+        return database;
+    }
+
+    /**
+     * Helper finding the database queried
+     *
+     * @return database name
+     */
+    private String database() {
+        return jdbcTemplate.queryForObject("select NAME from T_DATABASE", String.class);
+    }
+
+    /**
+     * Helper finding the database queried in a transaction bound to a shard
+     *
+     * @param shard
+     * @return database name
+     */
+    private String databaseOn(final int shard) {
+        return transaction.execute(new TransactionCallback<String>() {
+            @Override
+            public String doInTransaction(TransactionStatus status) {
+                ShardContext.bindToTransaction(shard);
+                return database();
+            }
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package common.datetime;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Unit tests for {@link SimpleDate} held as a count of days, checking it gives the same dates and times as the
+ * calendar it replaces, including in time zones whose offset changes at midnight.
+ */
+public class SimpleDateTests {
+
+    /**
+     * Time zones with offset changes at or around midnight, and ones well away from UTC
+     */
+    private static final String[] ZONES = {"UTC", "Europe/London", "America/Sao_Paulo", "America/Havana",
+            "America/Santiago", "Asia/Tehran", "Pacific/Apia", "Pacific/Kiritimati", "America/Los_Angeles"};
+
+    /**
+     * Days counted from months, days and years should be those of a lenient calendar, out of range values included
+     */
+    @Test
+    public void testToEpochDay() {
+        GregorianCalendar calendar = calendar("UTC");
+        for (int year = 1600; year <= 2400; year++) {
+            for (int month = 0; month <= 13; month++) {
+                for (int day = 0; day <= 32; day += 4) {
+                    calendar.clear();
+                    calendar.set(year, month - 1, day);
+                    Assert.assertEquals(month + "/" + day + "/" + year,
+                                        calendar.getTimeInMillis() / (24 * 60 * 60 * 1000),
+                                        SimpleDate.toEpochDay(month, day, year));
+                }
+            }
+        }
+    }
+
+    /**
+     * Each day should start as a calendar trimmed to the day has it, and end at the first time on a later day
+     */
+    @Test
+    public void testDaysInZones() {
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            GregorianCalendar calendar = calendar(id);
+            for (int epochDay = SimpleDate.toEpochDay(1, 1, 1970); epochDay < SimpleDate.toEpochDay(1, 1, 2040);
+                 epochDay++) {
+                calendar.clear();
+                calendar.set(1970, Calendar.JANUARY, 1 + epochDay);
+                long start = SimpleDate.toMillis(epochDay, zone);
+                Assert.assertEquals(id + " day " + epochDay, calendar.getTimeInMillis(), start);
+                // a day skipped altogether starts as the next day does
+                Assert.assertTrue(id + " start of day " + epochDay, SimpleDate.toEpochDay(start, zone) >= epochDay);
+                long end = SimpleDate.endOfDay(epochDay, zone);
+                Assert.assertTrue(id + " before end of day " + epochDay,
+                                  SimpleDate.toEpochDay(end - 1, zone) <= epochDay);
+                Assert.assertTrue(id + " end of day " + epochDay, SimpleDate.toEpochDay(end, zone) > epochDay);
+            }
+        }
+    }
+
+    /**
+     * Dates should convert to and from times in the default zone
+     */
+    @Test
+    public void testConversions() {
+        GregorianCalendar calendar = new GregorianCalendar(2011, Calendar.OCTOBER, 7);
+        SimpleDate date = new SimpleDate(10, 7, 2011);
+        Assert.assertEquals("date", calendar.getTime(), date.asDate());
+        Assert.assertEquals("milliseconds", calendar.getTimeInMillis(), date.inMilliseconds());
+
+        calendar.set(Calendar.HOUR_OF_DAY, 23);
+        calendar.set(Calendar.MINUTE, 59);
+        Assert.assertEquals("trimmed", date, SimpleDate.valueOf(calendar.getTime()));
+        Assert.assertEquals("string", new java.text.SimpleDateFormat().format(date.asDate()), date.toString());
+    }
+
+    /**
+     * Dates should compare and hash by day
+     */
+    @Test
+    public void testEqualsAndCompare() {
+        SimpleDate date = new SimpleDate(10, 7, 2011);
+        Assert.assertEquals("equal", date, new SimpleDate(9, 37, 2011));
+        Assert.assertEquals("hash", date.hashCode(), new SimpleDate(9, 37, 2011).hashCode());
+        Assert.assertFalse("not equal", date.equals(new SimpleDate(10, 8, 2011)));
+        Assert.assertEquals("same", 0, date.compareTo(new SimpleDate(10, 7, 2011)));
+        Assert.assertEquals("before", -1, date.compareTo(new SimpleDate(1, 1, 2012)));
+        Assert.assertEquals("after", 1, date.compareTo(new SimpleDate(12, 31, 1969)));
+    }
+
+    /**
+     * Today should be shared until midnight, and be the day of the current time
+     */
+    @Test
+    public void testToday() {
+        SimpleDate today = SimpleDate.today();
+        Assert.assertSame("shared", today, SimpleDate.today());
+        Assert.assertEquals("current time", SimpleDate.valueOf(System.currentTimeMillis()), today);
+        Assert.assertEquals("start of today", SimpleDate.toMillis(SimpleDate.toEpochDay(System.currentTimeMillis(),
+                                                                                        TimeZone.getDefault()),
+                                                                  TimeZone.getDefault()), today.inMilliseconds());
+    }
+
+    /**
+     * Today should follow a change of the default time zone once reset, rather than stay the day it was in the old one
+     */
+    @Test
+    public void testTodayAfterTimeZoneChange() {
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            // 25 hours apart, so always on different days
+            TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+            SimpleDate.resetToday();
+            SimpleDate kiritimatiToday = SimpleDate.today();
+            TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Pago_Pago"));
+            SimpleDate.resetToday();
+            SimpleDate pagoPagoToday = SimpleDate.today();
+
+            Assert.assertEquals("day before", -1, pagoPagoToday.compareTo(kiritimatiToday));
+            Assert.assertEquals("current time", SimpleDate.valueOf(System.currentTimeMillis()), pagoPagoToday);
+            Assert.assertEquals("start of today", SimpleDate.toMillis(
+                    SimpleDate.toEpochDay(System.currentTimeMillis(), TimeZone.getDefault()), TimeZone.getDefault()),
+                                pagoPagoToday.inMilliseconds());
+        } finally {
+            TimeZone.setDefault(defaultZone);
+            SimpleDate.resetToday();
+        }
+    }
+
+    /**
+     * Dates should serialize as the calendar they used to hold, and read back to the same day
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSerialize() throws Exception {
+        SimpleDate date = new SimpleDate(2, 29, 2012);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(date);
+        out.close();
+        Assert.assertEquals("read", date, new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+                .readObject());
+    }
+
+    /**
+     * Helper creating a calendar in a time zone
+     *
+     * @param id the time zone id
+     * @return calendar
+     */
+    private GregorianCalendar calendar(String id) {
+        GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone(id));
+        calendar.setGregorianChange(new java.util.Date(Long.MIN_VALUE));
+        return calendar;
+    }
+}
@@ -0,0 +1,149 @@
+package common.money;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+/**
+ * Unit tests for the arithmetic of {@link MonetaryAmount} held in cents, checking it gives the same results as the
+ * BigDecimal arithmetic rounded HALF_EVEN to cents that it replaces.
+ */
+public class MonetaryAmountArithmeticTests {
+
+    /**
+     * $12.34 serialized by the class when it held a BigDecimal
+     */
+    private static final String BIG_DECIMAL_SERIALIZED_AMOUNT =
+            "aced00057372001b636f6d6d6f6e2e6d6f6e65792e4d6f6e6574617279416d6f756e749acf41476c6374710200014c00" +
+            "0576616c75657400164c6a6176612f6d6174682f426967446563696d616c3b7870737200146a6176612e6d6174682e42" +
+            "6967446563696d616c54c71557f981284f0300024900057363616c654c0006696e7456616c7400164c6a6176612f6d61" +
+            "74682f426967496e74656765723b787200106a6176612e6c616e672e4e756d62657286ac951d0b94e08b020000787000" +
+            "000002737200146a6176612e6d6174682e426967496e74656765728cfc9f1fa93bfb1d030006490008626974436f756e" +
+            "744900096269744c656e67746849001366697273744e6f6e7a65726f427974654e756d49000c6c6f7765737453657442" +
+            "69744900067369676e756d5b00096d61676e69747564657400025b427871007e0005fffffffffffffffffffffffeffff" +
+            "fffe00000001757200025b42acf317f8060854e002000078700000000204d27878";
+
+    /**
+     * Doubles should round to the same cents as their decimal representation
+     */
+    @Test
+    public void testConstructorDouble() {
+        Assert.assertEquals("2.675", new BigDecimal("2.68"), new MonetaryAmount(2.675).asBigDecimal());
+        Assert.assertEquals("0.125", new BigDecimal("0.12"), new MonetaryAmount(0.125).asBigDecimal());
+        Assert.assertEquals("-0.29", new BigDecimal("-0.29"), new MonetaryAmount(-0.29).asBigDecimal());
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            double value = (random.nextInt(2000000) - 1000000) / (random.nextBoolean() ? 100.0 : 1000.0);
+            Assert.assertEquals("value=" + value, BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_EVEN),
+                                new MonetaryAmount(value).asBigDecimal());
+        }
+    }
+
+    /**
+     * Sums and differences should be exact
+     */
+    @Test
+    public void testAddSubtract() {
+        Assert.assertEquals("sum", new MonetaryAmount(new BigDecimal("10.30")),
+                            new MonetaryAmount(0.1).add(new MonetaryAmount(10.2)));
+        Assert.assertEquals("difference", new MonetaryAmount(new BigDecimal("-0.01")),
+                            new MonetaryAmount(1.99).subtract(new MonetaryAmount(2)));
+        Assert.assertSame("zero", MonetaryAmount.zero(), MonetaryAmount.zero());
+    }
+
+    /**
+     * Sums too large for cents in a long should fail rather than wrap
+     */
+    @Test(expected = ArithmeticException.class)
+    public void testAddOverflow() {
+        MonetaryAmount large = new MonetaryAmount(BigDecimal.valueOf(Long.MAX_VALUE, 2));
+        large.add(new MonetaryAmount(0.01));
+    }
+
+    /**
+     * Percentages of amounts should round HALF_EVEN to cents, as BigDecimal does
+     */
+    @Test
+    public void testMultiplyByPercentage() {
+        Assert.assertEquals("8% of 100", new MonetaryAmount(8), new MonetaryAmount(100).multiplyBy(new Percentage(0.08)));
+        Assert.assertEquals("half of 0.25", new MonetaryAmount(0.12),
+                            new MonetaryAmount(0.25).multiplyBy(new Percentage(0.5)));
+        Assert.assertEquals("half of 0.35", new MonetaryAmount(0.18),
+                            new MonetaryAmount(0.35).multiplyBy(new Percentage(0.5)));
+        Assert.assertEquals("half of -0.25", new MonetaryAmount(-0.12),
+                            new MonetaryAmount(-0.25).multiplyBy(new Percentage(0.5)));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(2000000) - 1000000, 2);
+            Percentage percentage = new Percentage(BigDecimal.valueOf(random.nextInt(101), 2));
+            Assert.assertEquals("amount=" + amount + ", percentage=" + percentage,
+                                amount.multiply(percentage.asBigDecimal()).setScale(2, RoundingMode.HALF_EVEN),
+                                new MonetaryAmount(amount).multiplyBy(percentage).asBigDecimal());
+        }
+    }
+
+    /**
+     * Percentages of amounts too large to multiply in a long should still be exact
+     */
+    @Test
+    public void testMultiplyLargeByPercentage() {
+        BigDecimal amount = BigDecimal.valueOf(Long.MAX_VALUE / 3, 2);
+        Assert.assertEquals(amount.multiply(new BigDecimal("0.33")).setScale(2, RoundingMode.HALF_EVEN),
+                            new MonetaryAmount(amount).multiplyBy(new Percentage(0.33)).asBigDecimal());
+    }
+
+    /**
+     * Doubles, decimals and comparisons should come from the cents
+     */
+    @Test
+    public void testConversions() {
+        MonetaryAmount amount = new MonetaryAmount(new BigDecimal("1234.56"));
+        Assert.assertEquals("double", 1234.56, amount.asDouble(), 0);
+        Assert.assertEquals("decimal scale", 2, new MonetaryAmount(100).asBigDecimal().scale());
+        Assert.assertEquals("string", "$1234.56", amount.toString());
+        Assert.assertTrue("greater", amount.greaterThan(new MonetaryAmount(1234.55)));
+        Assert.assertFalse("not greater", amount.greaterThan(amount));
+        Assert.assertEquals("ratio", new BigDecimal("2"), new MonetaryAmount(10).divide(new MonetaryAmount(5)));
+        Assert.assertEquals("hash", new MonetaryAmount(0.1).hashCode(),
+                            new MonetaryAmount(new BigDecimal("0.10")).hashCode());
+    }
+
+    /**
+     * Amounts serialized when the class held a BigDecimal should still read, and amounts should read back as written
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSerialize() throws Exception {
+        Assert.assertEquals("BigDecimal form", new MonetaryAmount(new BigDecimal("12.34")),
+                            deserialize(DatatypeConverter.parseHexBinary(BIG_DECIMAL_SERIALIZED_AMOUNT)));
+
+        MonetaryAmount amount = new MonetaryAmount(new BigDecimal("-98765.43"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(amount);
+        out.close();
+        Assert.assertEquals("round trip", amount, deserialize(bytes.toByteArray()));
+    }
+
+    /**
+     * Helper reading an object from serialized bytes
+     *
+     * @param bytes
+     * @return object read
+     * @throws Exception
+     */
+    private static Object deserialize(byte[] bytes) throws Exception {
+        return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    }
+}
@@ -0,0 +1,121 @@
+package common.money;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ * Unit tests for the shared instances of {@link Percentage} held in basis points, checking they are returned wherever
+ * a percentage is looked up, and that parsing gives the same percentage as the BigDecimal path it short-cuts.
+ */
+public class PercentageValueOfTests {
+
+    /**
+     * 8% serialized by the class when it held a BigDecimal
+     */
+    private static final String BIG_DECIMAL_SERIALIZED_PERCENTAGE =
+            "aced000573720017636f6d6d6f6e2e6d6f6e65792e50657263656e746167656db9a5c2f3e1965a0200014c000576616c" +
+            "75657400164c6a6176612f6d6174682f426967446563696d616c3b7870737200146a6176612e6d6174682e4269674465" +
+            "63696d616c54c71557f981284f0300024900057363616c654c0006696e7456616c7400164c6a6176612f6d6174682f42" +
+            "6967496e74656765723b787200106a6176612e6c616e672e4e756d62657286ac951d0b94e08b02000078700000000273" +
+            "7200146a6176612e6d6174682e426967496e74656765728cfc9f1fa93bfb1d030006490008626974436f756e74490009" +
+            "6269744c656e67746849001366697273744e6f6e7a65726f427974654e756d49000c6c6f776573745365744269744900" +
+            "067369676e756d5b00096d61676e69747564657400025b427871007e0005fffffffffffffffffffffffefffffffe0000" +
+            "0001757200025b42acf317f8060854e0020000787000000001087878";
+
+    /**
+     * Lookups and sums should return the shared instance for the percent
+     */
+    @Test
+    public void testSharedInstances() {
+        Assert.assertSame("zero", Percentage.zero(), Percentage.valueOf(0.0));
+        Assert.assertSame("one hundred", Percentage.oneHundred(), Percentage.valueOf(BigDecimal.ONE));
+        Assert.assertSame("double", Percentage.valueOf(new BigDecimal("0.08")), Percentage.valueOf(0.08));
+        Assert.assertSame("string", Percentage.valueOf(0.08), Percentage.valueOf("8%"));
+        Assert.assertSame("sum", Percentage.valueOf(0.5), Percentage.valueOf(0.2).add(Percentage.valueOf(0.3)));
+        Assert.assertEquals("constructed equals shared", Percentage.valueOf(0.33), new Percentage(0.33));
+        Assert.assertEquals("hash", Percentage.valueOf(0.33).hashCode(), new Percentage(0.33).hashCode());
+    }
+
+    /**
+     * Values should round up to whole percents as before
+     */
+    @Test
+    public void testRounding() {
+        Assert.assertEquals("double half up", Percentage.valueOf(0.24), Percentage.valueOf(0.235));
+        Assert.assertEquals("string half up", Percentage.valueOf(0.24), Percentage.valueOf("23.5%"));
+        Assert.assertEquals("decimal", new BigDecimal("0.24"), Percentage.valueOf(0.2355).asBigDecimal());
+        Assert.assertEquals("basis points", 2400, Percentage.valueOf(0.24).asBasisPoints());
+        Assert.assertEquals("double value", 0.24, Percentage.valueOf(0.24).asDouble(), 0);
+        Assert.assertEquals("string value", "24%", Percentage.valueOf(0.24).toString());
+    }
+
+    /**
+     * Plain decimals parsed directly should give the same percentage as through BigDecimal
+     */
+    @Test
+    public void testParse() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int fractionDigits = random.nextInt(5);
+            BigDecimal value = BigDecimal.valueOf(random.nextInt(10001), 4).setScale(fractionDigits,
+                                                                                      BigDecimal.ROUND_DOWN);
+            String string = random.nextBoolean() ? value.toPlainString() : value.movePointRight(2).toPlainString() + "%";
+            Assert.assertEquals("string=" + string, new Percentage(value), Percentage.valueOf(string));
+        }
+        Assert.assertEquals("leading point", Percentage.valueOf(0.05), Percentage.valueOf(".05"));
+        Assert.assertEquals("exponent", Percentage.valueOf(0.05), Percentage.valueOf("5E-2"));
+    }
+
+    /**
+     * Percentages out of range should be rejected, whether parsed or added
+     */
+    @Test
+    public void testOutOfRange() {
+        for (String string : new String[]{"101%", "1.01", "-1%"}) {
+            try {
+                Percentage.valueOf(string);
+                Assert.fail("accepted " + string);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            Percentage.valueOf(0.6).add(Percentage.valueOf(0.5));
+            Assert.fail("accepted sum over 100%");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue("value in message:" + e.getMessage(), e.getMessage().endsWith("1.10"));
+        }
+    }
+
+    /**
+     * Deserializing should give back the shared instance, also for percentages serialized when the class held a
+     * BigDecimal, or one equal to it from JSON
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDeserialize() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(new Percentage(0.45));
+        out.close();
+        Object read = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        Assert.assertSame("serialized", Percentage.valueOf(0.45), read);
+        Object old = new ObjectInputStream(new ByteArrayInputStream(
+                DatatypeConverter.parseHexBinary(BIG_DECIMAL_SERIALIZED_PERCENTAGE))).readObject();
+        Assert.assertSame("BigDecimal form", Percentage.valueOf(0.08), old);
+
+        ObjectMapper mapper = new ObjectMapper();
+        Assert.assertEquals("json", Percentage.valueOf(0.45),
+                          mapper.readValue(mapper.writeValueAsString(new Percentage(0.45)), Percentage.class));
+    }
+}
@@ -0,0 +1,86 @@
+package rewards.workload;
+
+import rewards.Dining;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+
+/**
+ * Writes dinings as CSV lines, laid out for the reader they are for.
+ */
+public class CsvDiningWriter implements DiningWriter {
+
+    /**
+     * Layouts of CSV lines
+     */
+    public enum Layout {
+
+        /**
+         * amount,card,merchant,yyyy/MM/dd HH:mm:ss, as read by the concurrency lab's CSV batch processors
+         */
+        CONCURRENCY("yyyy/MM/dd HH:mm:ss"),
+
+        /**
+         * card, merchant, amount, yyyy-MM-dd, as read by the batch labs' dining request reader. Only the day of the
+         * dining time is kept, which the workload allows for by never repeating an amount at a merchant on a day.
+         */
+        BATCH("yyyy-MM-dd");
+
+        private final String datePattern;
+
+        /**
+         * Constructor taking values to be used
+         *
+         * @param datePattern
+         */
+        private Layout(String datePattern) {
+            this.datePattern = datePattern;
+        }
+    }
+
+    private final Writer out;
+
+    private final Layout layout;
+
+    private final SimpleDateFormat dateFormat;
+
+    /**
+     * Constructor taking values to be used
+     *
+     * @param out    where the lines are written; buffer it
+     * @param layout layout of the lines
+     */
+    public CsvDiningWriter(Writer out, Layout layout) {
+        this.out = out;
+        this.layout = layout;
+        this.dateFormat = new SimpleDateFormat(layout.datePattern);
+    }
+
+    @Override
+    public void write(Dining dining) throws IOException {
+        if (layout == Layout.CONCURRENCY) {
+            out.write(DiningWriters.formatAmount(dining));
+            out.write(',');
+            out.write(dining.getCreditCardNumber());
+            out.write(',');
+            out.write(dining.getMerchantNumber());
+            out.write(',');
+            out.write(dateFormat.format(dining.getDate()));
+        } else {
+            out.write(dining.getCreditCardNumber());
+            out.write(", ");
+            out.write(dining.getMerchantNumber());
+            out.write(", ");
+            out.write(DiningWriters.formatAmount(dining));
+            out.write(", ");
+            out.write(dateFormat.format(dining.getDate()));
+        }
+        out.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,361 @@
+package rewards.workload;
+
+import common.datetime.SimpleDate;
+import rewards.Dining;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A reproducible stream of dinings for scale testing. Each iteration makes up the same dinings, one at a time as
+ * they are asked for, so any number can be streamed without holding them in memory.
+ * <p/>
+ * Dinings are made with the credit cards and at the restaurants given, by default those of the test data. A fraction
+ * of the cards and restaurants can be made hot, taking a given share of the dinings: the first cards and restaurants
+ * listed are the hot ones. A fraction of dinings can repeat one of the recent dinings exactly, as a duplicate
+ * submission would. Dining times start at the start date and move on by up to the maximum gap each time, to the
+ * second.
+ * <p/>
+ * Rewards are unique by dining amount, merchant and dining date, and some writers keep only the day of the dining
+ * time, so no two dinings other than duplicates share an amount at a merchant on the same day (in the default time
+ * zone): an amount already dined at the merchant that day moves up to the next one not yet dined. Otherwise distinct
+ * dinings would be rejected as duplicates, and more than the duplicate rate would be.
+ */
+public class DiningWorkload implements Iterable<Dining> {
+
+    /**
+     * Credit card numbers of the accounts in test-data.sql
+     */
+    public static final List<String> TEST_DATA_CREDIT_CARD_NUMBERS = Collections.unmodifiableList(Arrays.asList(
+            "1234123412341234", "1234123412340001", "1234123412340002", "1234123412340003", "1234123412340004",
+            "1234123412340005", "1234123412340006", "1234123412340007", "1234123412340008", "1234123412340009",
+            "1234123412340010", "1234123412340011", "1234123412340012", "1234123412340013", "1234123412340014",
+            "1234123412340015", "1234123412340016", "1234123412340017", "1234123412340018", "1234123412340019",
+            "1234123412340020"));
+
+    /**
+     * Merchant numbers of the restaurants in test-data.sql
+     */
+    public static final List<String> TEST_DATA_MERCHANT_NUMBERS = Collections.unmodifiableList(Arrays.asList(
+            "1234567890", "1020304050", "1122334455", "2233445566", "3344556677", "4455667788"));
+
+    /**
+     * Number of recent dinings a duplicate may repeat, a power of 2
+     */
+    private static final int DUPLICATE_WINDOW = 1024;
+
+    private long seed = 42;
+
+    private long count = 1000;
+
+    private List<String> creditCardNumbers = TEST_DATA_CREDIT_CARD_NUMBERS;
+
+    private List<String> merchantNumbers = TEST_DATA_MERCHANT_NUMBERS;
+
+    private double hotAccountRatio;
+
+    private double hotAccountShare;
+
+    private double hotMerchantRatio;
+
+    private double hotMerchantShare;
+
+    private double duplicateRate;
+
+    private int minAmountCents = 500;
+
+    private int maxAmountCents = 20000;
+
+    private Date startDate = new GregorianCalendar(2012, Calendar.JANUARY, 1).getTime();
+
+    private int maxGapSeconds = 60;
+
+    /**
+     * Get numbered credit card numbers, as for accounts seeded by number rather than from test data
+     *
+     * @param count number of cards
+     * @return card numbers 4000000000000000, 4000000000000001 and so on
+     */
+    public static List<String> numberedCreditCardNumbers(int count) {
+        List<String> numbers = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            numbers.add(String.format("4%015d", i));
+        }
+        return numbers;
+    }
+
+    /**
+     * Get numbered merchant numbers, as for restaurants seeded by number rather than from test data
+     *
+     * @param count number of merchants
+     * @return merchant numbers 0000000000, 0000000001 and so on
+     */
+    public static List<String> numberedMerchantNumbers(int count) {
+        List<String> numbers = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            numbers.add(String.format("%010d", i));
+        }
+        return numbers;
+    }
+
+    /**
+     * Set the seed of the random numbers the dinings are made from
+     *
+     * @param seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Set the number of dinings, including duplicates
+     *
+     * @param count
+     */
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * Set the credit cards dined with, the hot ones first
+     *
+     * @param creditCardNumbers
+     */
+    public void setCreditCardNumbers(List<String> creditCardNumbers) {
+        this.creditCardNumbers = creditCardNumbers;
+    }
+
+    /**
+     * Set the restaurants dined at, the hot ones first
+     *
+     * @param merchantNumbers
+     */
+    public void setMerchantNumbers(List<String> merchantNumbers) {
+        this.merchantNumbers = merchantNumbers;
+    }
+
+    /**
+     * Set the fraction of accounts that are hot
+     *
+     * @param hotAccountRatio between 0 and 1
+     */
+    public void setHotAccountRatio(double hotAccountRatio) {
+        this.hotAccountRatio = hotAccountRatio;
+    }
+
+    /**
+     * Set the share of dinings with the cards of hot accounts
+     *
+     * @param hotAccountShare between 0 and 1
+     */
+    public void setHotAccountShare(double hotAccountShare) {
+        this.hotAccountShare = hotAccountShare;
+    }
+
+    /**
+     * Set the fraction of restaurants that are hot
+     *
+     * @param hotMerchantRatio between 0 and 1
+     */
+    public void setHotMerchantRatio(double hotMerchantRatio) {
+        this.hotMerchantRatio = hotMerchantRatio;
+    }
+
+    /**
+     * Set the share of dinings at hot restaurants
+     *
+     * @param hotMerchantShare between 0 and 1
+     */
+    public void setHotMerchantShare(double hotMerchantShare) {
+        this.hotMerchantShare = hotMerchantShare;
+    }
+
+    /**
+     * Set the fraction of dinings that repeat a recent dining
+     *
+     * @param duplicateRate between 0 and 1
+     */
+    public void setDuplicateRate(double duplicateRate) {
+        this.duplicateRate = duplicateRate;
+    }
+
+    /**
+     * Set the smallest dining amount
+     *
+     * @param minAmountCents amount in cents
+     */
+    public void setMinAmountCents(int minAmountCents) {
+        this.minAmountCents = minAmountCents;
+    }
+
+    /**
+     * Set the largest dining amount
+     *
+     * @param maxAmountCents amount in cents
+     */
+    public void setMaxAmountCents(int maxAmountCents) {
+        this.maxAmountCents = maxAmountCents;
+    }
+
+    /**
+     * Set the time of the first dining
+     *
+     * @param startDate
+     */
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    /**
+     * Set the longest time between one dining and the next
+     *
+     * @param maxGapSeconds
+     */
+    public void setMaxGapSeconds(int maxGapSeconds) {
+        this.maxGapSeconds = maxGapSeconds;
+    }
+
+    /**
+     * Make up the dinings from the start
+     *
+     * @return dinings
+     * @throws IllegalStateException if there are no cards or restaurants, or the settings are out of range
+     */
+    @Override
+    public Iterator<Dining> iterator() {
+        if (creditCardNumbers.isEmpty() || merchantNumbers.isEmpty()) {
+            throw new IllegalStateException("Dinings need credit cards and restaurants");
+        }
+        if (minAmountCents <= 0 || maxAmountCents < minAmountCents || maxGapSeconds < 0) {
+            throw new IllegalStateException("Dining amounts must be positive, and gaps not negative");
+        }
+        return new DiningIterator();
+    }
+
+    /**
+     * Helper finding the number of hot items
+     *
+     * @param size  number of items
+     * @param ratio fraction that is hot
+     * @return number of hot items, at least one if any are hot
+     */
+    private static int hotCount(int size, double ratio) {
+        return (ratio <= 0) ? 0 : Math.max(1, Math.min(size, (int) Math.round(size * ratio)));
+    }
+
+    /**
+     * Makes up the dinings as they are asked for
+     */
+    private class DiningIterator implements Iterator<Dining> {
+
+        private final Random random = new Random(seed);
+
+        private final int hotAccounts = hotCount(creditCardNumbers.size(), hotAccountRatio);
+
+        private final int hotMerchants = hotCount(merchantNumbers.size(), hotMerchantRatio);
+
+        /**
+         * Recent dinings, by dining number
+         */
+        private final Dining[] recent = new Dining[DUPLICATE_WINDOW];
+
+        private long made;
+
+        private long time = startDate.getTime();
+
+        /**
+         * Day of the last dining made, not a duplicate
+         */
+        private SimpleDate day;
+
+        /**
+         * Merchant and amount of each dining made that day, not a duplicate
+         */
+        private final Set<String> dayAmountsAtMerchants = new HashSet<String>();
+
+        @Override
+        public boolean hasNext() {
+            return made < count;
+        }
+
+        @Override
+        public Dining next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Dining dining;
+            if (made > 0 && random.nextDouble() < duplicateRate) {
+                dining = recent[random.nextInt((int) Math.min(made, DUPLICATE_WINDOW))];
+            } else {
+                time += random.nextInt(maxGapSeconds + 1) * 1000L;
+                final int cents = minAmountCents + random.nextInt(maxAmountCents - minAmountCents + 1);
+                final String creditCardNumber = pick(creditCardNumbers, hotAccounts, hotAccountShare);
+                final String merchantNumber = pick(merchantNumbers, hotMerchants, hotMerchantShare);
+                dining = new Dining(unusedAmountCents(cents, merchantNumber) / 100.0f, creditCardNumber,
+                                    merchantNumber, new Date(time));
+            }
+            recent[(int) (made++ & (DUPLICATE_WINDOW - 1))] = dining;
+            return dining;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Dinings are made up, not removed");
+        }
+
+        /**
+         * Helper finding an amount not yet dined at the merchant on the day of the current time: the amount drawn,
+         * or else the next one up, wrapping round to the smallest
+         *
+         * @param cents          amount drawn, in cents
+         * @param merchantNumber merchant dined at
+         * @return amount in cents
+         * @throws IllegalStateException if every amount in the range has been dined at the merchant that day
+         */
+        private int unusedAmountCents(int cents, String merchantNumber) {
+            final SimpleDate timeDay = SimpleDate.valueOf(time);
+            if (!timeDay.equals(day)) {
+                day = timeDay;
+                dayAmountsAtMerchants.clear();
+            }
+
+            final int amounts = maxAmountCents - minAmountCents + 1;
+            for (int i = 0; i < amounts; i++) {
+                final int candidate = minAmountCents + (cents - minAmountCents + i) % amounts;
+                if (dayAmountsAtMerchants.add(merchantNumber + ':' + candidate)) {
+                    return candidate;
+                }
+            }
+            throw new IllegalStateException("Every dining amount already dined at the merchant that day, widen the " +
+                                            "amount range:merchantNumber=" + merchantNumber + ", day=" + day);
+        }
+
+        /**
+         * Helper picking a card or merchant, from the hot ones for their share of picks
+         *
+         * @param numbers card or merchant numbers, the hot ones first
+         * @param hot     number of hot ones
+         * @param share   share of picks from the hot ones
+         * @return number picked
+         */
+        private String pick(List<String> numbers, int hot, double share) {
+            if (hot == 0 || hot == numbers.size()) {
+                return numbers.get(random.nextInt(numbers.size()));
+            }
+            if (random.nextDouble() < share) {
+                return numbers.get(random.nextInt(hot));
+            }
+            return numbers.get(hot + random.nextInt(numbers.size() - hot));
+        }
+    }
+}
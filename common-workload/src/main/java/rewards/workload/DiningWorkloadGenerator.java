@@ -0,0 +1,86 @@
+package rewards.workload;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes a dining workload to a file, for the labs to read: a CSV file for the concurrency or batch labs, or a
+ * dinings XML document. Run as
+ * <pre>
+ * java rewards.workload.DiningWorkloadGenerator file [concurrency|batch|xml]
+ * </pre>
+ * with the workload set by system properties: workload.seed, workload.count, workload.accounts and
+ * workload.restaurants (numbered cards and merchants; the test data's by default), workload.hotAccountRatio,
+ * workload.hotAccountShare, workload.hotMerchantRatio, workload.hotMerchantShare and workload.duplicateRate.
+ */
+public final class DiningWorkloadGenerator {
+
+    private DiningWorkloadGenerator() {
+    }
+
+    /**
+     * Write the workload
+     *
+     * @param args file, then format
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: DiningWorkloadGenerator file [concurrency|batch|xml]");
+            System.exit(1);
+        }
+        final String format = (args.length > 1) ? args[1] : "concurrency";
+        final DiningWorkload workload = workloadFromProperties();
+
+        final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[0]), "UTF-8"), 65536);
+        final DiningWriter writer;
+        if ("xml".equals(format)) {
+            writer = new XmlDiningWriter(out);
+        } else {
+            writer = new CsvDiningWriter(out, CsvDiningWriter.Layout.valueOf(format.toUpperCase()));
+        }
+        final long start = System.currentTimeMillis();
+        final long written = DiningWriters.writeAll(workload, writer);
+        System.out.println("Wrote " + written + " dinings to " + args[0] + " in "
+                           + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Helper setting up the workload from system properties
+     *
+     * @return workload
+     */
+    private static DiningWorkload workloadFromProperties() {
+        DiningWorkload workload = new DiningWorkload();
+        workload.setSeed(Long.getLong("workload.seed", 42));
+        workload.setCount(Long.getLong("workload.count", 1000));
+        if (System.getProperty("workload.accounts") != null) {
+            workload.setCreditCardNumbers(
+                    DiningWorkload.numberedCreditCardNumbers(Integer.getInteger("workload.accounts")));
+        }
+        if (System.getProperty("workload.restaurants") != null) {
+            workload.setMerchantNumbers(
+                    DiningWorkload.numberedMerchantNumbers(Integer.getInteger("workload.restaurants")));
+        }
+        workload.setHotAccountRatio(doubleProperty("workload.hotAccountRatio"));
+        workload.setHotAccountShare(doubleProperty("workload.hotAccountShare"));
+        workload.setHotMerchantRatio(doubleProperty("workload.hotMerchantRatio"));
+        workload.setHotMerchantShare(doubleProperty("workload.hotMerchantShare"));
+        workload.setDuplicateRate(doubleProperty("workload.duplicateRate"));
+        return workload;
+    }
+
+    /**
+     * Helper getting a fraction from a system property
+     *
+     * @param name
+     * @return fraction, 0 if not set
+     */
+    private static double doubleProperty(String name) {
+        final String value = System.getProperty(name);
+        return (value == null) ? 0 : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,20 @@
+package rewards.workload;
+
+import rewards.Dining;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes dinings somewhere they will be read for rewarding, one at a time. Close to finish writing.
+ */
+public interface DiningWriter extends Closeable {
+
+    /**
+     * Write a dining
+     *
+     * @param dining
+     * @throws IOException
+     */
+    void write(Dining dining) throws IOException;
+}
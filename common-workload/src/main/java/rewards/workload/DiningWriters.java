@@ -0,0 +1,47 @@
+package rewards.workload;
+
+import rewards.Dining;
+
+import java.io.IOException;
+
+/**
+ * Helpers for writing dinings
+ */
+public final class DiningWriters {
+
+    private DiningWriters() {
+    }
+
+    /**
+     * Write every dining of a workload, then close the writer
+     *
+     * @param workload
+     * @param writer
+     * @return number of dinings written
+     * @throws IOException
+     */
+    public static long writeAll(Iterable<Dining> workload, DiningWriter writer) throws IOException {
+        long written = 0;
+        try {
+            for (Dining dining : workload) {
+                writer.write(dining);
+                written++;
+            }
+        } finally {
+            writer.close();
+        }
+        return written;
+    }
+
+    /**
+     * Helper formatting a dining amount as dollars and cents
+     *
+     * @param dining
+     * @return amount, such as 12.50
+     */
+    static String formatAmount(Dining dining) {
+        final long cents = Math.round(dining.getAmount() * 100.0);
+        final long fraction = cents % 100;
+        return (cents / 100) + ((fraction < 10) ? ".0" : ".") + fraction;
+    }
+}
@@ -0,0 +1,75 @@
+package rewards.workload;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import rewards.Dining;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Writes dinings as rows of T_DINING_REQUEST, as read by the partitioned batch job, inserting them in batches. Only
+ * a batch of dinings is held at a time. DINING_DATE keeps only the day of the dining time, which the workload allows
+ * for by never repeating an amount at a merchant on a day.
+ */
+public class JdbcDiningWriter implements DiningWriter {
+
+    private static final String INSERT_SQL =
+            "insert into T_DINING_REQUEST (CC_NUMBER, MERCHANT, AMOUNT, DINING_DATE) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Dining[] batch;
+
+    private int batched;
+
+    /**
+     * Constructor taking values to be used
+     *
+     * @param dataSource database holding T_DINING_REQUEST
+     * @param batchSize  number of rows inserted at a time
+     */
+    public JdbcDiningWriter(DataSource dataSource, int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.batch = new Dining[batchSize];
+    }
+
+    @Override
+    public void write(Dining dining) {
+        batch[batched++] = dining;
+        if (batched == batch.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Insert the dinings written since the last batch
+     */
+    public void flush() {
+        if (batched == 0) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                final Dining dining = batch[i];
+                ps.setString(1, dining.getCreditCardNumber());
+                ps.setString(2, dining.getMerchantNumber());
+                ps.setDouble(3, dining.getAmount());
+                ps.setDate(4, new java.sql.Date(dining.getDate().getTime()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batched;
+            }
+        });
+        batched = 0;
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
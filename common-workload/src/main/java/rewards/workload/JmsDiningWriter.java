@@ -0,0 +1,50 @@
+package rewards.workload;
+
+import org.springframework.jms.core.JmsTemplate;
+import rewards.Dining;
+
+import javax.jms.ConnectionFactory;
+
+/**
+ * Sends dinings as object messages to a queue, by default rewards.queue.dining, as consumed by the JMS labs' reward
+ * network listener.
+ */
+public class JmsDiningWriter implements DiningWriter {
+
+    /**
+     * Queue the reward network listens to for dinings
+     */
+    public static final String DINING_QUEUE = "rewards.queue.dining";
+
+    private final JmsTemplate jmsTemplate;
+
+    /**
+     * Constructor taking the connection factory, sending to the dining queue
+     *
+     * @param connectionFactory
+     */
+    public JmsDiningWriter(ConnectionFactory connectionFactory) {
+        this(connectionFactory, DINING_QUEUE);
+    }
+
+    /**
+     * Constructor taking values to be used
+     *
+     * @param connectionFactory
+     * @param queueName
+     */
+    public JmsDiningWriter(ConnectionFactory connectionFactory, String queueName) {
+        this.jmsTemplate = new JmsTemplate(connectionFactory);
+        this.jmsTemplate.setDefaultDestinationName(queueName);
+    }
+
+    @Override
+    public void write(Dining dining) {
+        jmsTemplate.convertAndSend(dining);
+    }
+
+    @Override
+    public void close() {
+        // nothing held open
+    }
+}
@@ -0,0 +1,107 @@
+package rewards.workload;
+
+import rewards.Dining;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+
+/**
+ * Writes dinings as a dinings XML document, each dining element laid out for DiningRequestUnmarshaller once split
+ * out of it:
+ * <pre>
+ * &lt;dining&gt;
+ *     &lt;amount value="10.50"/&gt;
+ *     &lt;creditcard number="1234123412340003"/&gt;
+ *     &lt;merchant number="1234567890"/&gt;
+ *     &lt;timestamp&gt;&lt;date&gt;2012-01-21&lt;/date&gt;&lt;time&gt;09:00:00&lt;/time&gt;&lt;/timestamp&gt;
+ * &lt;/dining&gt;
+ * </pre>
+ * The document is streamed, so it can be as large as wanted.
+ */
+public class XmlDiningWriter implements DiningWriter {
+
+    private final Writer out;
+
+    private final XMLStreamWriter xml;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+
+    /**
+     * Constructor taking where the document is written
+     *
+     * @param out where the document is written; buffer it
+     * @throws IOException if the document cannot be started
+     */
+    public XmlDiningWriter(Writer out) throws IOException {
+        this.out = out;
+        try {
+            xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("dinings");
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to start dinings document", e);
+        }
+    }
+
+    @Override
+    public void write(Dining dining) throws IOException {
+        try {
+            xml.writeStartElement("dining");
+            writeEmptyElement("amount", "value", DiningWriters.formatAmount(dining));
+            writeEmptyElement("creditcard", "number", dining.getCreditCardNumber());
+            writeEmptyElement("merchant", "number", dining.getMerchantNumber());
+            xml.writeStartElement("timestamp");
+            writeTextElement("date", dateFormat.format(dining.getDate()));
+            writeTextElement("time", timeFormat.format(dining.getDate()));
+            xml.writeEndElement();
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to write dining " + dining, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to finish dinings document", e);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Helper writing an element with one attribute
+     *
+     * @param name
+     * @param attribute
+     * @param value
+     * @throws XMLStreamException
+     */
+    private void writeEmptyElement(String name, String attribute, String value) throws XMLStreamException {
+        xml.writeEmptyElement(name);
+        xml.writeAttribute(attribute, value);
+    }
+
+    /**
+     * Helper writing an element holding text
+     *
+     * @param name
+     * @param text
+     * @throws XMLStreamException
+     */
+    private void writeTextElement(String name, String text) throws XMLStreamException {
+        xml.writeStartElement(name);
+        xml.writeCharacters(text);
+        xml.writeEndElement();
+    }
+}
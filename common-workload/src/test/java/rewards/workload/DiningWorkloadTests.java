@@ -0,0 +1,148 @@
+package rewards.workload;
+
+import common.datetime.SimpleDate;
+import org.junit.Assert;
+import org.junit.Test;
+import rewards.Dining;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link DiningWorkload}, checking dinings are reproducible and skewed and duplicated as set.
+ */
+public class DiningWorkloadTests {
+
+    /**
+     * The same seed should make the same dinings, and another seed others
+     */
+    @Test
+    public void testReproducible() {
+        DiningWorkload workload = new DiningWorkload();
+        workload.setDuplicateRate(0.1);
+        List<Dining> first = toList(workload);
+        Assert.assertEquals("count", 1000, first.size());
+        Assert.assertEquals("same again", first, toList(workload));
+
+        workload.setSeed(43);
+        Assert.assertFalse("other seed", first.equals(toList(workload)));
+    }
+
+    /**
+     * Dinings should be with the cards and at the restaurants given, for amounts in range, moving on in time
+     */
+    @Test
+    public void testDinings() {
+        DiningWorkload workload = new DiningWorkload();
+        workload.setCount(10000);
+        long time = 0;
+        for (Dining dining : workload) {
+            Assert.assertTrue("card", DiningWorkload.TEST_DATA_CREDIT_CARD_NUMBERS.contains(
+                    dining.getCreditCardNumber()));
+            Assert.assertTrue("merchant", DiningWorkload.TEST_DATA_MERCHANT_NUMBERS.contains(
+                    dining.getMerchantNumber()));
+            Assert.assertTrue("amount " + dining.getAmount(), dining.getAmount() >= 5 && dining.getAmount() <= 200);
+            Assert.assertTrue("time", dining.getDate().getTime() >= time);
+            Assert.assertEquals("whole seconds", 0, dining.getDate().getTime() % 1000);
+            time = dining.getDate().getTime();
+        }
+    }
+
+    /**
+     * Hot accounts and restaurants should take their share of the dinings
+     */
+    @Test
+    public void testSkew() {
+        DiningWorkload workload = new DiningWorkload();
+        workload.setCount(100000);
+        workload.setCreditCardNumbers(DiningWorkload.numberedCreditCardNumbers(1000));
+        workload.setMerchantNumbers(DiningWorkload.numberedMerchantNumbers(100));
+        workload.setHotAccountRatio(0.01);
+        workload.setHotAccountShare(0.9);
+        workload.setHotMerchantRatio(0.1);
+        workload.setHotMerchantShare(0.5);
+
+        Set<String> hotCards = new HashSet<String>(DiningWorkload.numberedCreditCardNumbers(10));
+        Set<String> hotMerchants = new HashSet<String>(DiningWorkload.numberedMerchantNumbers(10));
+        int hotCardDinings = 0;
+        int hotMerchantDinings = 0;
+        for (Dining dining : workload) {
+            hotCardDinings += hotCards.contains(dining.getCreditCardNumber()) ? 1 : 0;
+            hotMerchantDinings += hotMerchants.contains(dining.getMerchantNumber()) ? 1 : 0;
+        }
+        Assert.assertEquals("hot account share", 0.9, hotCardDinings / 100000.0, 0.01);
+        Assert.assertEquals("hot merchant share", 0.5, hotMerchantDinings / 100000.0, 0.01);
+    }
+
+    /**
+     * Duplicates should repeat recent dinings at the rate set, and there should be none otherwise
+     */
+    @Test
+    public void testDuplicates() {
+        DiningWorkload workload = new DiningWorkload();
+        workload.setCount(100000);
+        workload.setCreditCardNumbers(DiningWorkload.numberedCreditCardNumbers(1000));
+        Assert.assertEquals("no duplicates", 100000, new HashSet<Dining>(toList(workload)).size());
+
+        workload.setDuplicateRate(0.05);
+        Assert.assertEquals("duplicate rate", 0.05, 1 - new HashSet<Dining>(toList(workload)).size() / 100000.0,
+                            0.005);
+    }
+
+    /**
+     * Dinings other than duplicates should not share an amount at a merchant on a day, as rewards recorded with the
+     * day only would then clash, even with few amounts to draw from
+     */
+    @Test
+    public void testUniqueAmountMerchantAndDay() {
+        DiningWorkload workload = new DiningWorkload();
+        workload.setCount(10000);
+        workload.setMinAmountCents(500);
+        workload.setMaxAmountCents(599);
+        workload.setMaxGapSeconds(600);
+        Set<String> keys = new HashSet<String>();
+        for (Dining dining : workload) {
+            keys.add(dining.getAmount() + ":" + dining.getMerchantNumber() + ":" +
+                     SimpleDate.valueOf(dining.getDate()));
+        }
+        Assert.assertEquals("unique", 10000, keys.size());
+    }
+
+    /**
+     * A workload with more dinings at a merchant on a day than amounts to draw from cannot be made
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testTooFewAmounts() {
+        DiningWorkload workload = new DiningWorkload();
+        workload.setMerchantNumbers(DiningWorkload.numberedMerchantNumbers(1));
+        workload.setMinAmountCents(500);
+        workload.setMaxAmountCents(500);
+        toList(workload);
+    }
+
+    /**
+     * A workload without restaurants cannot be made
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testNoRestaurants() {
+        DiningWorkload workload = new DiningWorkload();
+        workload.setMerchantNumbers(new ArrayList<String>());
+        workload.iterator();
+    }
+
+    /**
+     * Helper collecting the dinings of a workload
+     *
+     * @param workload
+     * @return dinings
+     */
+    private static List<Dining> toList(DiningWorkload workload) {
+        List<Dining> dinings = new ArrayList<Dining>();
+        for (Dining dining : workload) {
+            dinings.add(dining);
+        }
+        return dinings;
+    }
+}
@@ -0,0 +1,195 @@
+package rewards.workload;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jms.connection.SingleConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import rewards.Dining;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the dining writers, checking dinings written can be read back as their readers in the labs read them.
+ */
+public class DiningWriterTests {
+
+    /**
+     * Concurrency CSV lines should be amount,card,merchant,yyyy/MM/dd HH:mm:ss
+     */
+    @Test
+    public void testConcurrencyCsv() throws Exception {
+        List<Dining> dinings = dinings(100);
+        StringWriter out = new StringWriter();
+        DiningWriters.writeAll(dinings, new CsvDiningWriter(out, CsvDiningWriter.Layout.CONCURRENCY));
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+        BufferedReader in = new BufferedReader(new StringReader(out.toString()));
+        for (Dining dining : dinings) {
+            String[] fields = in.readLine().split(",");
+            Assert.assertEquals("fields", 4, fields.length);
+            Assert.assertEquals(dining, new Dining(Float.valueOf(fields[0]), fields[1], fields[2],
+                                                   dateFormat.parse(fields[3])));
+        }
+        Assert.assertNull("no more lines", in.readLine());
+    }
+
+    /**
+     * Batch CSV lines should be card, merchant, amount, yyyy-MM-dd
+     */
+    @Test
+    public void testBatchCsv() throws Exception {
+        List<Dining> dinings = dinings(100);
+        StringWriter out = new StringWriter();
+        DiningWriters.writeAll(dinings, new CsvDiningWriter(out, CsvDiningWriter.Layout.BATCH));
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        BufferedReader in = new BufferedReader(new StringReader(out.toString()));
+        for (Dining dining : dinings) {
+            String[] fields = in.readLine().split(", ");
+            Assert.assertEquals("fields", 4, fields.length);
+            Assert.assertEquals("card", dining.getCreditCardNumber(), fields[0]);
+            Assert.assertEquals("merchant", dining.getMerchantNumber(), fields[1]);
+            Assert.assertEquals("amount", dining.getAmount(), Float.valueOf(fields[2]), 0);
+            Assert.assertEquals("date", dateFormat.format(dining.getDate()), fields[3]);
+        }
+    }
+
+    /**
+     * Amounts should always have two decimal places
+     */
+    @Test
+    public void testAmountFormat() {
+        Assert.assertEquals("12.50", DiningWriters.formatAmount(new Dining(12.5f, "", "", new java.util.Date())));
+        Assert.assertEquals("5.05", DiningWriters.formatAmount(new Dining(5.05f, "", "", new java.util.Date())));
+        Assert.assertEquals("200.00", DiningWriters.formatAmount(new Dining(200f, "", "", new java.util.Date())));
+    }
+
+    /**
+     * Dinings XML should hold a dining element for each dining
+     */
+    @Test
+    public void testXml() throws Exception {
+        List<Dining> dinings = dinings(100);
+        StringWriter out = new StringWriter();
+        DiningWriters.writeAll(dinings, new XmlDiningWriter(out));
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(out.toString())));
+        NodeList elements = document.getDocumentElement().getElementsByTagName("dining");
+        Assert.assertEquals("dinings", dinings.size(), elements.getLength());
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        for (int i = 0; i < dinings.size(); i++) {
+            Element element = (Element) elements.item(i);
+            Dining dining = new Dining(Float.valueOf(attribute(element, "amount", "value")),
+                                       attribute(element, "creditcard", "number"),
+                                       attribute(element, "merchant", "number"),
+                                       dateFormat.parse(text(element, "date") + " " + text(element, "time")));
+            Assert.assertEquals(dinings.get(i), dining);
+        }
+    }
+
+    /**
+     * Dinings should be inserted as dining requests, including those left over from the last batch
+     */
+    @Test
+    public void testJdbc() throws Exception {
+        EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+                .addScript("classpath:/rewards/workload/dining-request-schema.sql").build();
+        try {
+            List<Dining> dinings = dinings(250);
+            DiningWriters.writeAll(dinings, new JdbcDiningWriter(dataSource, 100));
+
+            List<Map<String, Object>> rows = new JdbcTemplate(dataSource).queryForList(
+                    "select CC_NUMBER, MERCHANT, AMOUNT, DINING_DATE from T_DINING_REQUEST order by ID");
+            Assert.assertEquals("rows", dinings.size(), rows.size());
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            for (int i = 0; i < dinings.size(); i++) {
+                Dining dining = dinings.get(i);
+                Map<String, Object> row = rows.get(i);
+                Assert.assertEquals("card", dining.getCreditCardNumber(), row.get("CC_NUMBER"));
+                Assert.assertEquals("merchant", dining.getMerchantNumber(), row.get("MERCHANT"));
+                Assert.assertEquals("amount", dining.getAmount(), ((Number) row.get("AMOUNT")).floatValue(), 0);
+                Assert.assertEquals("date", dateFormat.format(dining.getDate()),
+                                    dateFormat.format(row.get("DINING_DATE")));
+            }
+        } finally {
+            dataSource.shutdown();
+        }
+    }
+
+    /**
+     * Dinings should be sent to the dining queue as they are
+     */
+    @Test
+    public void testJms() throws Exception {
+        // one connection throughout, as the embedded broker stops when its last connection closes
+        SingleConnectionFactory connectionFactory = new SingleConnectionFactory(
+                new ActiveMQConnectionFactory("vm://workload?broker.persistent=false"));
+        try {
+            List<Dining> dinings = dinings(20);
+            DiningWriters.writeAll(dinings, new JmsDiningWriter(connectionFactory));
+
+            JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+            jmsTemplate.setReceiveTimeout(5000);
+            for (Dining dining : dinings) {
+                Assert.assertEquals(dining, jmsTemplate.receiveAndConvert(JmsDiningWriter.DINING_QUEUE));
+            }
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+
+    /**
+     * Helper making up dinings
+     *
+     * @param count
+     * @return dinings
+     */
+    private static List<Dining> dinings(int count) {
+        DiningWorkload workload = new DiningWorkload();
+        workload.setCount(count);
+        List<Dining> dinings = new ArrayList<Dining>();
+        for (Dining dining : workload) {
+            dinings.add(dining);
+        }
+        return dinings;
+    }
+
+    /**
+     * Helper getting an attribute of the child element of a dining
+     *
+     * @param dining
+     * @param name
+     * @param attribute
+     * @return attribute value
+     */
+    private static String attribute(Element dining, String name, String attribute) {
+        return ((Element) dining.getElementsByTagName(name).item(0)).getAttribute(attribute);
+    }
+
+    /**
+     * Helper getting the text of the child element of a dining
+     *
+     * @param dining
+     * @param name
+     * @return text
+     */
+    private static String text(Element dining, String name) {
+        return dining.getElementsByTagName(name).item(0).getTextContent();
+    }
+}
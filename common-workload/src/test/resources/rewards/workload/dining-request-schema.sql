@@ -0,0 +1,3 @@
+drop table T_DINING_REQUEST if exists;
+
+create table T_DINING_REQUEST (ID integer identity primary key, CC_NUMBER varchar(16) not null, MERCHANT varchar(10) not null, AMOUNT double not null, DINING_DATE date not null);
@@ -23,9 +23,7 @@ import rewards.Dining;
 import rewards.RewardConfirmation;
 import rewards.RewardNetwork;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -73,24 +71,26 @@ public class AsyncJavaCSVDiningBatchProcessor extends CSVDiningBatchProcessorBas
     public int processBatch(Resource batchInput) throws IOException {
         int count = 0;
 
-        BufferedReader inputReader = new BufferedReader(new InputStreamReader(
-                batchInput.getInputStream()));
-
         List<Future<RewardConfirmation>> futureRewardConfirmations = new ArrayList<Future<RewardConfirmation>>();
-        String csvRecord;
-        while ((csvRecord = inputReader.readLine()) != null) {
-            final Dining dining = createDiningFromCsv(csvRecord);
+        CsvDiningReader diningReader = openDiningReader(batchInput);
+        try {
+            Dining nextDining;
+            while ((nextDining = diningReader.read()) != null) {
+                final Dining dining = nextDining;
 
-            Callable<RewardConfirmation> task = new Callable<RewardConfirmation>() {
-                @Override
-                public RewardConfirmation call() {
-                    return rewardNetwork.rewardAccountFor(dining);
-                }
-            };
+                Callable<RewardConfirmation> task = new Callable<RewardConfirmation>() {
+                    @Override
+                    public RewardConfirmation call() {
+                        return rewardNetwork.rewardAccountFor(dining);
+                    }
+                };
 
-            Future<RewardConfirmation> futureRewardConfirmation = executorService.submit(task);
-            futureRewardConfirmations.add(futureRewardConfirmation);
-            ++count;
+                Future<RewardConfirmation> futureRewardConfirmation = executorService.submit(task);
+                futureRewardConfirmations.add(futureRewardConfirmation);
+                ++count;
+            }
+        } finally {
+            diningReader.close();
         }
 
         for (Future<RewardConfirmation> futureRewardConfirmation : futureRewardConfirmations) {
@@ -22,9 +22,7 @@ import org.springframework.core.io.Resource;
 import rewards.Dining;
 import rewards.RewardConfirmation;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Future;
@@ -65,17 +63,19 @@ public class AsyncSpringCSVDiningBatchProcessor extends CSVDiningBatchProcessorB
     public int processBatch(Resource batchInput) throws IOException {
         int count = 0;
 
-        BufferedReader inputReader = new BufferedReader(new InputStreamReader(
-                batchInput.getInputStream()));
-
         List<Future<RewardConfirmation>> futureRewardConfirmations = new ArrayList<Future<RewardConfirmation>>();
-        String csvRecord;
-        while ((csvRecord = inputReader.readLine()) != null) {
-            final Dining dining = createDiningFromCsv(csvRecord);
+        CsvDiningReader diningReader = openDiningReader(batchInput);
+        try {
+            Dining nextDining;
+            while ((nextDining = diningReader.read()) != null) {
+                final Dining dining = nextDining;
 
-            Future<RewardConfirmation> futureRewardConfirmation = rewardNetworkAsync.submitRewardAccountFor(dining);
-            futureRewardConfirmations.add(futureRewardConfirmation);
-            ++count;
+                Future<RewardConfirmation> futureRewardConfirmation = rewardNetworkAsync.submitRewardAccountFor(dining);
+                futureRewardConfirmations.add(futureRewardConfirmation);
+                ++count;
+            }
+        } finally {
+            diningReader.close();
         }
 
         for (Future<RewardConfirmation> futureRewardConfirmation : futureRewardConfirmations) {
@@ -19,13 +19,9 @@
 package rewards.batch;
 
 import org.apache.log4j.Logger;
-import org.springframework.util.StringUtils;
-import rewards.Dining;
+import org.springframework.core.io.Resource;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
 
 /**
  * Base class for concurrency tests
@@ -39,9 +35,9 @@ public abstract class CSVDiningBatchProcessorBase implements DiningBatchProcesso
     private final Logger logger = Logger.getLogger("rewards");
 
     /**
-     * Date-time format for parsing
+     * Thread-safe date-time format for parsing records
      */
-    protected final DateFormat dateTimeFormat;
+    private final CsvDateTimeFormat csvDateTimeFormat;
 
     /**
      * Constructor taking string format
@@ -49,28 +45,18 @@ public abstract class CSVDiningBatchProcessorBase implements DiningBatchProcesso
      * @param dateTimeFormatString
      */
     public CSVDiningBatchProcessorBase(String dateTimeFormatString) {
-        this.dateTimeFormat = new SimpleDateFormat(dateTimeFormatString);
+        this.csvDateTimeFormat = new CsvDateTimeFormat(dateTimeFormatString);
     }
 
     /**
-     * Return a dining object created by parsing one record of CSV file
+     * Open a reader of the dinings in a CSV file, parsing records in place
      *
-     * @param csvRecord
-     * @return dining
+     * @param batchInput
+     * @return reader, to be closed
+     * @throws IOException
      */
-    protected Dining createDiningFromCsv(String csvRecord) {
-        String[] fields = StringUtils.commaDelimitedListToStringArray(csvRecord);
-        float amount = Float.valueOf(fields[0]);
-        String creditCardNumber = fields[1];
-        String merchantNumber = fields[2];
-        Date date = null;
-        try {
-            date = getDateTimeFormat().parse(fields[3]);
-        } catch (ParseException pe) {
-            throw new RuntimeException("error parsing date-time for record'" + csvRecord + "'", pe);
-        }
-
-        return new Dining(amount, creditCardNumber, merchantNumber, date);
+    protected CsvDiningReader openDiningReader(Resource batchInput) throws IOException {
+        return new CsvDiningReader(batchInput, csvDateTimeFormat);
     }
 
     /**
@@ -79,11 +65,4 @@ public abstract class CSVDiningBatchProcessorBase implements DiningBatchProcesso
     protected Logger getLogger() {
         return logger;
     }
-
-    /**
-     * @return Date-Time Format
-     */
-    protected DateFormat getDateTimeFormat() {
-        return dateTimeFormat;
-    }
 }
@@ -0,0 +1,295 @@
+/*
+ *
+ *  * Copyright 2002-2011 the original author or authors, or Red-Black IT Ltd, as appropriate.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package rewards.batch;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Thread-safe parser of date-times in CSV records, giving the same results as a SimpleDateFormat of the same pattern.
+ * <p/>
+ * Patterns made up of year (yyyy), month (M or MM), day, hour (H), minute and second fields separated by other
+ * characters, such as yyyy/MM/dd HH:mm:ss, are parsed straight from the bytes of a record. The start of the day last
+ * parsed on each thread is cached, so that times on the same day, as most are in a batch, cost no calendar
+ * arithmetic, unless the clocks change that day. Anything else, including other patterns and any record that is not
+ * simply digits and separators, goes through a SimpleDateFormat of the thread's own.
+ */
+public class CsvDateTimeFormat {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * Most digits parsed in a field, keeping it well within an int
+     */
+    private static final int MAX_FIELD_DIGITS = 9;
+
+    /**
+     * Pattern letters parsed directly, in field order
+     */
+    private static final String FIELD_LETTERS = "yMdHms";
+
+    private static final int YEAR = 0;
+
+    private static final int MONTH = 1;
+
+    private static final int DAY = 2;
+
+    private static final int HOUR = 3;
+
+    private static final int MINUTE = 4;
+
+    private static final int SECOND = 5;
+
+    private final SimpleDateFormat format;
+
+    /**
+     * Field of each part of the pattern, or -1 for a separator
+     */
+    private final int[] fields;
+
+    /**
+     * Separator character of each part of the pattern
+     */
+    private final char[] separators;
+
+    /**
+     * Whether the pattern can be parsed directly
+     */
+    private final boolean direct;
+
+    private final ThreadLocal<ParseState> parseState = new ThreadLocal<ParseState>() {
+        @Override
+        protected ParseState initialValue() {
+            return new ParseState((SimpleDateFormat) format.clone());
+        }
+    };
+
+    /**
+     * Constructor taking the date-time pattern, for date-times in the default time zone
+     *
+     * @param pattern SimpleDateFormat pattern
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    public CsvDateTimeFormat(String pattern) {
+        this(pattern, TimeZone.getDefault());
+    }
+
+    /**
+     * Constructor taking the date-time pattern and the time zone of the date-times
+     *
+     * @param pattern SimpleDateFormat pattern
+     * @param zone    time zone
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    CsvDateTimeFormat(String pattern, TimeZone zone) {
+        this.format = new SimpleDateFormat(pattern);
+        format.setTimeZone(zone);
+
+        List<Integer> fieldList = new ArrayList<Integer>();
+        StringBuilder separatorList = new StringBuilder();
+        boolean directPattern = true;
+        int fieldsSeen = 0;
+        for (int i = 0; i < pattern.length(); ) {
+            final char c = pattern.charAt(i);
+            int count = 1;
+            while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+                count++;
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                final int field = FIELD_LETTERS.indexOf(c);
+                final boolean abutting = !fieldList.isEmpty() && fieldList.get(fieldList.size() - 1) >= 0;
+                if (field < 0 || abutting || (field == YEAR && count <= 2) || (field == MONTH && count > 2)
+                    || (fieldsSeen & (1 << field)) != 0) {
+                    directPattern = false;
+                }
+                if (field >= 0) {
+                    fieldsSeen |= 1 << field;
+                }
+                fieldList.add(field);
+                separatorList.append(c);
+                i += count;
+            } else {
+                if (c == '\'') {
+                    directPattern = false;
+                }
+                fieldList.add(-1);
+                separatorList.append(c);
+                i++;
+            }
+        }
+        final int dateFields = (1 << YEAR) | (1 << MONTH) | (1 << DAY);
+        this.direct = directPattern && (fieldsSeen & dateFields) == dateFields;
+        this.fields = new int[fieldList.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fieldList.get(i);
+        }
+        this.separators = separatorList.toString().toCharArray();
+    }
+
+    /**
+     * Parse a date-time
+     *
+     * @param text
+     * @return date-time
+     * @throws ParseException if the text cannot be parsed
+     */
+    public Date parse(String text) throws ParseException {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7f) {
+                return parseState.get().format.parse(text);
+            }
+        }
+        final byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return new Date(parse(ByteBuffer.wrap(bytes), 0, bytes.length));
+    }
+
+    /**
+     * Parse a date-time from ASCII bytes, without moving the buffer's position
+     *
+     * @param bytes
+     * @param from  index of the first byte
+     * @param to    index after the last byte
+     * @return milliseconds since 1970
+     * @throws ParseException if the bytes cannot be parsed
+     */
+    public long parse(ByteBuffer bytes, int from, int to) throws ParseException {
+        final ParseState state = parseState.get();
+        if (direct) {
+            final int[] values = state.values;
+            int position = from;
+            boolean parsed = true;
+            for (int i = 0; parsed && i < fields.length; i++) {
+                if (fields[i] < 0) {
+                    parsed = position < to && bytes.get(position++) == separators[i];
+                } else {
+                    int value = 0;
+                    final int start = position;
+                    while (position < to && position - start <= MAX_FIELD_DIGITS) {
+                        final int digit = bytes.get(position) - '0';
+                        if (digit < 0 || digit > 9) {
+                            break;
+                        }
+                        value = value * 10 + digit;
+                        position++;
+                    }
+                    values[fields[i]] = value;
+                    parsed = position > start && position - start <= MAX_FIELD_DIGITS;
+                }
+            }
+            if (parsed && position == to) {
+                return state.toMillis(values[YEAR], values[MONTH], values[DAY], values[HOUR], values[MINUTE],
+                                      values[SECOND]);
+            }
+        }
+
+        final char[] chars = new char[to - from];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (bytes.get(from + i) & 0xff);
+        }
+        return state.format.parse(new String(chars)).getTime();
+    }
+
+    /**
+     * A thread's own formatter and calendar, with the day it last parsed
+     */
+    private static final class ParseState {
+
+        private final SimpleDateFormat format;
+
+        private final Calendar calendar;
+
+        private final int[] values = new int[FIELD_LETTERS.length()];
+
+        private int year = Integer.MIN_VALUE;
+
+        private int month;
+
+        private int day;
+
+        /**
+         * Start of the day, or Long.MIN_VALUE if the clocks change that day
+         */
+        private long dayStart;
+
+        /**
+         * Constructor taking the thread's own formatter
+         *
+         * @param format
+         */
+        private ParseState(SimpleDateFormat format) {
+            this.format = format;
+            this.calendar = (Calendar) format.getCalendar().clone();
+        }
+
+        /**
+         * Helper finding the time of date-time fields, as the formatter's lenient calendar does
+         *
+         * @param year
+         * @param month  month of the year, from 1
+         * @param day
+         * @param hour
+         * @param minute
+         * @param second
+         * @return milliseconds since 1970
+         */
+        private long toMillis(int year, int month, int day, int hour, int minute, int second) {
+            if (year != this.year || month != this.month || day != this.day) {
+                final long start = calendarMillis(year, month, day, 0, 0, 0);
+                final long end = calendarMillis(year, month, day + 1, 0, 0, 0);
+                final boolean uniform = end - start == MILLIS_PER_DAY
+                                        && calendar.getTimeZone().getOffset(start)
+                                           == calendar.getTimeZone().getOffset(end - 1);
+                this.year = year;
+                this.month = month;
+                this.day = day;
+                this.dayStart = uniform ? start : Long.MIN_VALUE;
+            }
+            if (dayStart != Long.MIN_VALUE && hour < 24 && minute < 60 && second < 60) {
+                return dayStart + ((hour * 60L + minute) * 60 + second) * 1000;
+            }
+            return calendarMillis(year, month, day, hour, minute, second);
+        }
+
+        /**
+         * Helper finding the time of date-time fields with the calendar
+         *
+         * @param year
+         * @param month  month of the year, from 1
+         * @param day
+         * @param hour
+         * @param minute
+         * @param second
+         * @return milliseconds since 1970
+         */
+        private long calendarMillis(int year, int month, int day, int hour, int minute, int second) {
+            calendar.clear();
+            calendar.set(year, month - 1, day, hour, minute, second);
+            return calendar.getTimeInMillis();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ *
+ *  * Copyright 2002-2011 the original author or authors, or Red-Black IT Ltd, as appropriate.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package rewards.batch;
+
+import org.springframework.core.io.Resource;
+import rewards.Dining;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * Reads dinings from CSV records of amount, credit card number, merchant number and date-time, one to a line, such
+ * as
+ * <pre>
+ * 100,1234123412341234,1234567890,2007/02/12 10:00:00
+ * </pre>
+ * Records are parsed where they lie: a file is memory-mapped a window at a time, and any other resource read into a
+ * direct buffer, so the only objects made for a record are its dining, its card and merchant numbers and its date.
+ * Amounts that are plain decimals are parsed directly, to the same float as Float.valueOf gives. Lines may end with
+ * a line feed or a carriage return and line feed; blank lines are skipped. A record holding anything other than ASCII
+ * is decoded in the platform charset, as a reader would.
+ * <p/>
+ * Not thread-safe: each batch should have its own reader.
+ */
+public class CsvDiningReader implements Closeable {
+
+    /**
+     * Bytes of a file mapped at a time
+     */
+    private static final int MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Bytes of any other resource buffered at a time
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Largest amount in hundredths, or any other unit, that is exactly a float
+     */
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+
+    /**
+     * Most decimal places of an amount parsed directly, keeping the power of 10 exactly a float
+     */
+    private static final int MAX_EXACT_FLOAT_SCALE = 10;
+
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_FLOAT_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final CsvDateTimeFormat dateTimeFormat;
+
+    private final FileChannel fileChannel;
+
+    private final ReadableByteChannel channel;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+    /**
+     * Size of the window to map, grown if a line does not fit
+     */
+    private int windowSize;
+
+    /**
+     * File position of the start of the buffer, when mapped
+     */
+    private long bufferOffset;
+
+    /**
+     * Index in the buffer of the next line
+     */
+    private int position;
+
+    /**
+     * Whether the buffer holds the rest of the input
+     */
+    private boolean endOfInput;
+
+    private char[] chars = new char[32];
+
+    /**
+     * Constructor taking the resource to read and the format of its date-times
+     *
+     * @param csvInput
+     * @param dateTimeFormat
+     * @throws IOException if the resource cannot be opened
+     */
+    public CsvDiningReader(Resource csvInput, CsvDateTimeFormat dateTimeFormat) throws IOException {
+        this(csvInput, dateTimeFormat, MAPPED_WINDOW_SIZE, BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor taking values to be used
+     *
+     * @param csvInput
+     * @param dateTimeFormat
+     * @param windowSize     bytes of a file to map at a time
+     * @param bufferSize     bytes of any other resource to buffer at a time
+     * @throws IOException if the resource cannot be opened
+     */
+    CsvDiningReader(Resource csvInput, CsvDateTimeFormat dateTimeFormat, int windowSize, int bufferSize)
+            throws IOException {
+        this.dateTimeFormat = dateTimeFormat;
+        this.windowSize = windowSize;
+        final File file = fileOf(csvInput);
+        if (file != null) {
+            this.fileChannel = new FileInputStream(file).getChannel();
+            this.channel = fileChannel;
+        } else {
+            this.fileChannel = null;
+            this.channel = Channels.newChannel(csvInput.getInputStream());
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+            this.buffer.limit(0);
+        }
+    }
+
+    /**
+     * Read the next dining
+     *
+     * @return dining, or null at the end of the input
+     * @throws IOException if the input cannot be read
+     * @throws RuntimeException if a record cannot be parsed
+     */
+    public Dining read() throws IOException {
+        while (true) {
+            int end = indexOf('\n', position, buffer.limit());
+            if (end < 0) {
+                if (!endOfInput) {
+                    fill();
+                    continue;
+                }
+                if (position == buffer.limit()) {
+                    return null;
+                }
+                end = buffer.limit();
+            }
+
+            final int start = position;
+            position = Math.min(end + 1, buffer.limit());
+            final int recordEnd = (end > start && buffer.get(end - 1) == '\r') ? end - 1 : end;
+            if (recordEnd > start) {
+                return parseRecord(start, recordEnd);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Helper moving the buffer on to the line at the current position, with as much of the input after it as fits
+     *
+     * @throws IOException
+     */
+    private void fill() throws IOException {
+        final boolean lineFillsBuffer = position == 0 && buffer.limit() == buffer.capacity() && buffer.limit() > 0;
+        if (fileChannel != null) {
+            if (lineFillsBuffer) {
+                windowSize = (int) Math.min(Integer.MAX_VALUE, windowSize * 2L);
+            }
+            bufferOffset += position;
+            final long remaining = fileChannel.size() - bufferOffset;
+            final int size = (int) Math.min(windowSize, remaining);
+            endOfInput = size == remaining;
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, bufferOffset, size);
+        } else {
+            buffer.position(position);
+            if (lineFillsBuffer) {
+                final ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            endOfInput = channel.read(buffer) < 0;
+            buffer.flip();
+        }
+        position = 0;
+    }
+
+    /**
+     * Helper parsing a record
+     *
+     * @param start index of the record
+     * @param end   index after the record
+     * @return dining
+     */
+    private Dining parseRecord(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                return parseDecodedRecord(start, end);
+            }
+        }
+
+        final int amountEnd = indexOf(',', start, end);
+        final int creditCardNumberEnd = indexOf(',', amountEnd + 1, end);
+        final int merchantNumberEnd = indexOf(',', creditCardNumberEnd + 1, end);
+        if (amountEnd < 0 || creditCardNumberEnd < 0 || merchantNumberEnd < 0) {
+            throw new IllegalArgumentException("expected 4 fields in record'" + asString(start, end) + "'");
+        }
+        final int dateTimeEnd = indexOf(',', merchantNumberEnd + 1, end);
+
+        final float amount = parseAmount(start, amountEnd);
+        final String creditCardNumber = asString(amountEnd + 1, creditCardNumberEnd);
+        final String merchantNumber = asString(creditCardNumberEnd + 1, merchantNumberEnd);
+        final Date date;
+        try {
+            date = new Date(dateTimeFormat.parse(buffer, merchantNumberEnd + 1, (dateTimeEnd < 0) ? end : dateTimeEnd));
+        } catch (ParseException pe) {
+            throw new RuntimeException("error parsing date-time for record'" + asString(start, end) + "'", pe);
+        }
+        return new Dining(amount, creditCardNumber, merchantNumber, date);
+    }
+
+    /**
+     * Helper parsing a record that is not all ASCII, decoded in the platform charset
+     *
+     * @param start index of the record
+     * @param end   index after the record
+     * @return dining
+     */
+    private Dining parseDecodedRecord(int start, int end) {
+        final byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        final String csvRecord = new String(bytes, Charset.defaultCharset());
+        final String[] fields = csvRecord.split(",", -1);
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("expected 4 fields in record'" + csvRecord + "'");
+        }
+        try {
+            return new Dining(Float.valueOf(fields[0]), fields[1], fields[2], dateTimeFormat.parse(fields[3]));
+        } catch (ParseException pe) {
+            throw new RuntimeException("error parsing date-time for record'" + csvRecord + "'", pe);
+        }
+    }
+
+    /**
+     * Helper parsing an amount, directly if it is a plain decimal that is exactly a float once scaled
+     *
+     * @param start index of the amount
+     * @param end   index after the amount
+     * @return amount
+     */
+    private float parseAmount(int start, int end) {
+        long mantissa = 0;
+        int scale = -1;
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa >= MAX_EXACT_FLOAT_MANTISSA) {
+                    return Float.valueOf(asString(start, end));
+                }
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return Float.valueOf(asString(start, end));
+            }
+        }
+        if (end - start == ((scale < 0) ? 0 : 1) || scale > MAX_EXACT_FLOAT_SCALE) {
+            return Float.valueOf(asString(start, end));
+        }
+        // both are exactly floats, so the quotient rounded to a double and then to a float is the quotient rounded
+        // to a float, the closest float to the decimal
+        return (scale <= 0) ? (float) mantissa : (float) (mantissa / POWERS_OF_TEN[scale]);
+    }
+
+    /**
+     * Helper making a string of ASCII bytes
+     *
+     * @param start index of the first byte
+     * @param end   index after the last byte
+     * @return string
+     */
+    private String asString(int start, int end) {
+        final int length = end - start;
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) buffer.get(start + i);
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Helper finding a byte in the buffer
+     *
+     * @param b     byte to find
+     * @param start index to look from
+     * @param end   index to look before
+     * @return index of the byte, or -1 if it is not there
+     */
+    private int indexOf(char b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper finding the file of a resource, if it is one
+     *
+     * @param resource
+     * @return file, or null if the resource is not a file
+     */
+    private static File fileOf(Resource resource) {
+        try {
+            return resource.getFile();
+        } catch (IOException e) {
+            return null;
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *
+ *  * Copyright 2002-2011 the original author or authors, or Red-Black IT Ltd, as appropriate.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package rewards.batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests for {@link CsvDateTimeFormat}, checking it parses date-times as SimpleDateFormat does, including on days
+ * the clocks change, and can be shared between threads.
+ */
+public class CsvDateTimeFormatTests {
+
+    private static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    /**
+     * Date-times should parse as SimpleDateFormat parses them, in time zones with and without daylight saving time
+     */
+    @Test
+    public void testSameAsSimpleDateFormat() throws ParseException {
+        for (String id : new String[]{"UTC", "Europe/London", "America/New_York", "America/Havana",
+                "Australia/Lord_Howe", "Pacific/Apia"}) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            List<Long> times = sampleTimes(zone);
+            for (String pattern : new String[]{"yyyy/MM/dd HH:mm:ss", "dd-MM-yyyy HH:mm", "yyyy-MM-dd",
+                    "yyyyMMdd HH:mm:ss", "yy/MM/dd HH:mm:ss"}) {
+                assertSameAsSimpleDateFormat(zone, pattern, times);
+            }
+        }
+    }
+
+    /**
+     * Unusual date-times should still parse as SimpleDateFormat parses them
+     */
+    @Test
+    public void testLenient() throws ParseException {
+        String[] dateTimes = {"12/02/2007 10:00:00", "2007/13/32 25:61:61", "2007/2/3 4:05:06", "2007/02/03 04:05:06x",
+                "02007/02/03 04:05:06", "2007/02/03 4:05:06 ", "0/0/0 0:0:0"};
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+        CsvDateTimeFormat csvDateTimeFormat = new CsvDateTimeFormat("yyyy/MM/dd HH:mm:ss");
+        for (String dateTime : dateTimes) {
+            Assert.assertEquals(dateTime, simpleDateFormat.parse(dateTime), csvDateTimeFormat.parse(dateTime));
+        }
+    }
+
+    /**
+     * Text that is not a date-time should fail to parse
+     */
+    @Test(expected = ParseException.class)
+    public void testNotDateTime() throws ParseException {
+        new CsvDateTimeFormat("yyyy/MM/dd HH:mm:ss").parse("2007-02-03");
+    }
+
+    /**
+     * One format should parse correctly on many threads at once
+     */
+    @Test
+    public void testThreadSafe() throws Exception {
+        final CsvDateTimeFormat csvDateTimeFormat = new CsvDateTimeFormat("yyyy/MM/dd HH:mm:ss");
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                final int seed = i;
+                futures[i] = executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws ParseException {
+                        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+                        Random random = new Random(seed);
+                        for (int j = 0; j < 10000; j++) {
+                            String dateTime = simpleDateFormat.format(
+                                    new java.util.Date(random.nextLong() % (100L * 365 * 24 * 60 * 60 * 1000)));
+                            Assert.assertEquals(dateTime, simpleDateFormat.parse(dateTime),
+                                                csvDateTimeFormat.parse(dateTime));
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Helper finding times to check in a time zone from 1970 to 2040: every other hour of the day either side of each
+     * change of offset, every quarter hour of the hour either side, and a random sample of other times
+     *
+     * @param zone
+     * @return times in milliseconds since 1970
+     */
+    private static List<Long> sampleTimes(TimeZone zone) {
+        List<Long> times = new ArrayList<Long>();
+        long end = 70L * 365 * 24 * MILLIS_PER_HOUR;
+        for (long day = MILLIS_PER_DAY; day < end; day += MILLIS_PER_DAY) {
+            if (zone.getOffset(day) != zone.getOffset(day - MILLIS_PER_DAY)) {
+                long time = day;
+                for (long step = MILLIS_PER_DAY / 2; step >= 60 * 1000; step /= 2) {
+                    if (zone.getOffset(time - step) != zone.getOffset(day - MILLIS_PER_DAY)) {
+                        time -= step;
+                    }
+                }
+                for (long hour = time - 24 * MILLIS_PER_HOUR; hour < time + 24 * MILLIS_PER_HOUR;
+                     hour += 2 * MILLIS_PER_HOUR) {
+                    times.add(hour);
+                }
+                for (long quarter = time - MILLIS_PER_HOUR; quarter < time + MILLIS_PER_HOUR;
+                     quarter += MILLIS_PER_HOUR / 4) {
+                    times.add(quarter);
+                }
+            }
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            times.add((long) (random.nextDouble() * end));
+        }
+        return times;
+    }
+
+    /**
+     * Helper checking date-times in a time zone parse as SimpleDateFormat parses them
+     *
+     * @param zone
+     * @param pattern
+     * @param times   times to format and parse back
+     * @throws ParseException
+     */
+    private static void assertSameAsSimpleDateFormat(TimeZone zone, String pattern, List<Long> times)
+            throws ParseException {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
+        simpleDateFormat.setTimeZone(zone);
+        CsvDateTimeFormat csvDateTimeFormat = new CsvDateTimeFormat(pattern, zone);
+        for (long time : times) {
+            String dateTime = simpleDateFormat.format(new java.util.Date(time));
+            Assert.assertEquals(zone.getID() + " " + pattern + " " + dateTime, simpleDateFormat.parse(dateTime),
+                                csvDateTimeFormat.parse(dateTime));
+        }
+    }
+}
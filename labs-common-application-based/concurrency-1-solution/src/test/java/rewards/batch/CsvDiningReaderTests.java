@@ -0,0 +1,186 @@
+/*
+ *
+ *  * Copyright 2002-2011 the original author or authors, or Red-Black IT Ltd, as appropriate.
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ */
+
+package rewards.batch;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileCopyUtils;
+import rewards.Dining;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link CsvDiningReader}, checking it reads the same dinings as splitting lines and parsing fields
+ * with Float.valueOf and SimpleDateFormat does, from files and other resources, whatever the window or buffer size.
+ */
+public class CsvDiningReaderTests {
+
+    private static final String DATE_TIME_FORMAT = "yyyy/MM/dd HH:mm:ss";
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("dinings", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * The lab's dining batch should be read as lines are parsed
+     */
+    @Test
+    public void testLargeBatch() throws Exception {
+        Resource csvInput = new ClassPathResource("dining-input-large.csv");
+        List<Dining> dinings = read(new CsvDiningReader(csvInput, new CsvDateTimeFormat(DATE_TIME_FORMAT)));
+
+        Assert.assertEquals("dinings", 1000, dinings.size());
+        Assert.assertEquals(parseLines(csvInput), dinings);
+    }
+
+    /**
+     * Records should be read across window and buffer boundaries, whatever the line endings, growing windows and
+     * buffers that do not hold a whole line
+     */
+    @Test
+    public void testBoundaries() throws Exception {
+        String csv = "100,1234123412341234,1234567890,2007/02/12 10:00:00\r\n"
+                     + "\n"
+                     + "12.5,1234123412340001,1234567890,2007/02/13 10:00:00\n"
+                     + "99.99,1234123412340002,1234567890,2012/1/2 3:04:05,extra\n"
+                     + "1e2,1234123412340003,1234567890,12/02/2007 10:00:00\n"
+                     + " 7 ,1234123412340004,1234567890,2007/02/14 24:00:00";
+        List<Dining> expected = parseLines(new ByteArrayResource(csv.getBytes("UTF-8")));
+        Assert.assertEquals("dinings", 5, expected.size());
+
+        FileCopyUtils.copy(csv.getBytes("UTF-8"), file);
+        for (int size = 8; size <= 256; size *= 2) {
+            Assert.assertEquals("mapped " + size, expected, read(new CsvDiningReader(
+                    new FileSystemResource(file), new CsvDateTimeFormat(DATE_TIME_FORMAT), size, size)));
+            Assert.assertEquals("buffered " + size, expected, read(new CsvDiningReader(
+                    new ByteArrayResource(csv.getBytes("UTF-8")), new CsvDateTimeFormat(DATE_TIME_FORMAT), size,
+                    size)));
+        }
+    }
+
+    /**
+     * Amounts should be parsed to the same float as Float.valueOf gives
+     */
+    @Test
+    public void testAmounts() throws Exception {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            long mantissa = (random.nextInt(4) == 0) ? (random.nextLong() >>> 1) >>> random.nextInt(63)
+                                                     : random.nextInt(1 << 25);
+            String amount = Long.toString(mantissa);
+            int point = random.nextInt(amount.length() + 2) - 1;
+            if (point >= 0) {
+                amount = amount.substring(0, point) + "." + amount.substring(point);
+            }
+            csv.append(amount).append(",1234123412341234,1234567890,2007/02/12 10:00:00\n");
+        }
+        FileCopyUtils.copy(csv.toString().getBytes("UTF-8"), file);
+        Resource csvInput = new FileSystemResource(file);
+        Assert.assertEquals(parseLines(csvInput),
+                            read(new CsvDiningReader(csvInput, new CsvDateTimeFormat(DATE_TIME_FORMAT))));
+    }
+
+    /**
+     * An empty resource holds no dinings
+     */
+    @Test
+    public void testEmpty() throws Exception {
+        Assert.assertTrue("file", read(new CsvDiningReader(new FileSystemResource(file),
+                                                           new CsvDateTimeFormat(DATE_TIME_FORMAT))).isEmpty());
+        Assert.assertTrue("stream", read(new CsvDiningReader(new ByteArrayResource(new byte[0]),
+                                                             new CsvDateTimeFormat(DATE_TIME_FORMAT))).isEmpty());
+    }
+
+    /**
+     * A record with a date-time that cannot be parsed should fail
+     */
+    @Test(expected = RuntimeException.class)
+    public void testBadDateTime() throws Exception {
+        read(new CsvDiningReader(new ByteArrayResource("100,1234123412341234,1234567890,today".getBytes("UTF-8")),
+                                 new CsvDateTimeFormat(DATE_TIME_FORMAT)));
+    }
+
+    /**
+     * Helper reading all the dinings of a reader, then closing it
+     *
+     * @param diningReader
+     * @return dinings
+     * @throws IOException
+     */
+    private static List<Dining> read(CsvDiningReader diningReader) throws IOException {
+        List<Dining> dinings = new ArrayList<Dining>();
+        try {
+            Dining dining;
+            while ((dining = diningReader.read()) != null) {
+                dinings.add(dining);
+            }
+        } finally {
+            diningReader.close();
+        }
+        return dinings;
+    }
+
+    /**
+     * Helper parsing the non-blank lines of a resource as the batch processors used to
+     *
+     * @param csvInput
+     * @return dinings
+     * @throws Exception
+     */
+    private static List<Dining> parseLines(Resource csvInput) throws Exception {
+        SimpleDateFormat dateTimeFormat = new SimpleDateFormat(DATE_TIME_FORMAT);
+        BufferedReader inputReader = new BufferedReader(new InputStreamReader(csvInput.getInputStream()));
+        List<Dining> dinings = new ArrayList<Dining>();
+        try {
+            String csvRecord;
+            while ((csvRecord = inputReader.readLine()) != null) {
+                if (csvRecord.length() > 0) {
+                    String[] fields = csvRecord.split(",");
+                    dinings.add(new Dining(Float.valueOf(fields[0]), fields[1], fields[2],
+                                           dateTimeFormat.parse(fields[3])));
+                }
+            }
+        } finally {
+            inputReader.close();
+        }
+        return dinings;
+    }
+}